@@ -0,0 +1,73 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link LookupDifferEngine#run} over generated source/target folders: parse, index, diff and
+ * report, without output files. Both layouts hold the same rows, so the scores compare per-file overhead
+ * against single-file parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LookupDifferBenchmark {
+
+    @Param({"MANY_SMALL_FILES", "ONE_HUGE_FILE"})
+    public String layout;
+
+    @Param({"WIDE", "LONG_LITERALS", "HEAVY_COMMENTS"})
+    public String shape;
+
+    @Param({"200"})
+    public int tables;
+
+    @Param({"100"})
+    public int rowsPerTable;
+
+    private Path dir;
+    private LookupDifferRequest request;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("lookupdiffer-bench-");
+        Path source = dir.resolve("source");
+        Path target = dir.resolve("target");
+        SyntheticExports.Shape s = SyntheticExports.Shape.valueOf(shape);
+        if ("ONE_HUGE_FILE".equals(layout)) {
+            SyntheticExports.oneHugeFile(source, s, tables, rowsPerTable, 7);
+        } else {
+            SyntheticExports.manySmallFiles(source, s, tables, rowsPerTable, 7);
+        }
+        SyntheticExports.drift(source, target, 17, 5);
+        request = LookupDifferRequest.builder(source.toString(), target.toString()).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        SyntheticExports.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public LookupDifferResult run() throws Exception {
+        return new LookupDifferEngine().run(request);
+    }
+}
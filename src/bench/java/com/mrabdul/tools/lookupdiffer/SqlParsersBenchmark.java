@@ -0,0 +1,74 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the {@link SqlParsers} helpers on one synthetic table export. Run with -prof gc (the default in
+ * the bench profile) to also get the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SqlParsersBenchmark {
+
+    @Param({"WIDE", "LONG_LITERALS", "HEAVY_COMMENTS"})
+    public String shape;
+
+    @Param({"200"})
+    public int rows;
+
+    private String export;
+    private List<String> statements;
+    private String insert;
+    private String values;
+
+    @Setup
+    public void setup() {
+        export = SyntheticExports.table(SyntheticExports.Shape.valueOf(shape), "LKP_BENCH", rows, 42);
+        statements = SqlParsers.splitStatements(export);
+        insert = statements.get(statements.size() - 1);
+        values = SqlParsers.firstBalanced(insert.substring(insert.toUpperCase().indexOf("VALUES")), '(', ')');
+    }
+
+    @Benchmark
+    public List<String> splitStatements() {
+        return SqlParsers.splitStatements(export);
+    }
+
+    @Benchmark
+    public void normalizeSql(Blackhole bh) {
+        for (String s : statements) bh.consume(SqlParsers.normalizeSql(s));
+    }
+
+    @Benchmark
+    public List<String> splitTopLevelComma() {
+        return SqlParsers.splitTopLevelComma(values);
+    }
+
+    @Benchmark
+    public String firstBalanced() {
+        return SqlParsers.firstBalanced(insert, '(', ')');
+    }
+
+    @Benchmark
+    public void normToken(Blackhole bh) {
+        for (String v : SqlParsers.splitTopLevelComma(values)) bh.consume(SqlParsers.normToken(v));
+    }
+}
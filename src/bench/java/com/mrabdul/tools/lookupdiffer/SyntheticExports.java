@@ -0,0 +1,138 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates lookup export SQL shaped like the ones the benchmarks care about. Output is deterministic for a
+ * given seed, so runs are comparable.
+ */
+final class SyntheticExports {
+
+    enum Shape {
+        /** Many columns per row, short values. */
+        WIDE,
+        /** Few columns, multi-KB string literals with quotes, commas and parentheses inside. */
+        LONG_LITERALS,
+        /** Every statement surrounded by line and block comments. */
+        HEAVY_COMMENTS
+    }
+
+    private SyntheticExports() {}
+
+    /** One table export: CREATE TABLE, PK and rows INSERTs. */
+    static String table(Shape shape, String table, int rows, long seed) {
+        Random rnd = new Random(seed);
+        int cols = shape == Shape.WIDE ? 60 : 4;
+        StringBuilder sb = new StringBuilder(rows * 256);
+
+        comment(sb, shape, "table " + table);
+        sb.append("CREATE TABLE \"LOOKUP\".\"").append(table).append("\" (\n");
+        for (int c = 0; c < cols; c++) {
+            sb.append("  \"C").append(c).append("\" ").append(c == 0 ? "NUMBER(10,0)" : "VARCHAR2(4000)");
+            sb.append(c + 1 < cols ? ",\n" : "\n");
+        }
+        sb.append(");\n");
+        sb.append("ALTER TABLE \"LOOKUP\".\"").append(table).append("\" ADD CONSTRAINT \"PK_").append(table)
+          .append("\" PRIMARY KEY (\"C0\");\n");
+
+        for (int r = 0; r < rows; r++) {
+            comment(sb, shape, "row " + r);
+            sb.append("Insert into LOOKUP.").append(table).append(" (");
+            for (int c = 0; c < cols; c++) {
+                if (c > 0) sb.append(',');
+                sb.append("C").append(c);
+            }
+            sb.append(") values (").append(r);
+            for (int c = 1; c < cols; c++) {
+                sb.append(",");
+                value(sb, shape, rnd);
+            }
+            sb.append(");\n");
+        }
+        return sb.toString();
+    }
+
+    /** files tables of rowsPerTable rows each, one file per table. */
+    static void manySmallFiles(Path dir, Shape shape, int files, int rowsPerTable, long seed) throws IOException {
+        Files.createDirectories(dir);
+        for (int f = 0; f < files; f++) {
+            String table = "LKP_" + f;
+            write(dir.resolve(table + ".sql"), table(shape, table, rowsPerTable, seed + f));
+        }
+    }
+
+    /** tables tables of rowsPerTable rows each, all in one file. */
+    static void oneHugeFile(Path dir, Shape shape, int tables, int rowsPerTable, long seed) throws IOException {
+        Files.createDirectories(dir);
+        StringBuilder sb = new StringBuilder();
+        for (int t = 0; t < tables; t++) {
+            sb.append(table(shape, "LKP_" + t, rowsPerTable, seed + t));
+        }
+        write(dir.resolve("export.sql"), sb.toString());
+    }
+
+    /**
+     * Copy of source with every dropEvery-th row removed and every changeEvery-th row's values changed, so the
+     * diff has missing and mismatched rows to report.
+     */
+    static void drift(Path source, Path target, int dropEvery, int changeEvery) throws IOException {
+        Files.createDirectories(target);
+        try (Stream<Path> files = Files.list(source)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                StringBuilder out = new StringBuilder();
+                int row = 0;
+                for (String line : new String(Files.readAllBytes(p), StandardCharsets.UTF_8).split("\n", -1)) {
+                    if (line.startsWith("Insert into")) {
+                        row++;
+                        if (row % dropEvery == 0) continue;
+                        if (row % changeEvery == 0) line = line.replace(",'", ",'~");
+                    }
+                    out.append(line).append('\n');
+                }
+                write(target.resolve(p.getFileName()), out.toString());
+            }
+        }
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) return;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            Path[] paths = walk.sorted((a, b) -> b.getNameCount() - a.getNameCount()).toArray(Path[]::new);
+            for (Path p : paths) Files.deleteIfExists(p);
+        }
+    }
+
+    private static void value(StringBuilder sb, Shape shape, Random rnd) {
+        if (shape == Shape.LONG_LITERALS) {
+            int len = 1024 + rnd.nextInt(3072);
+            sb.append('\'');
+            for (int i = 0; i < len; i++) {
+                int k = rnd.nextInt(40);
+                if (k == 0) sb.append("''");
+                else if (k == 1) sb.append(", ");
+                else if (k == 2) sb.append("(x)");
+                else sb.append((char) ('a' + rnd.nextInt(26)));
+            }
+            sb.append('\'');
+        } else if (rnd.nextInt(10) == 0) {
+            sb.append("null");
+        } else {
+            sb.append("'V").append(rnd.nextInt(100000)).append('\'');
+        }
+    }
+
+    private static void comment(StringBuilder sb, Shape shape, String text) {
+        if (shape != Shape.HEAVY_COMMENTS) return;
+        sb.append("-- ").append(text).append(": generated; values (a, b); don't edit\n");
+        sb.append("/* ").append(text).append("\n   ; ( ' \" multi-line block comment */\n");
+    }
+
+    private static void write(Path file, String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,164 @@
+package com.mrabdul.tools;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+/**
+ * Streams findings to a --jsonOut file one at a time, as the tools produce them, instead of serializing a
+ * finished List at the end.
+ *
+ * PRETTY (the default) writes exactly what ObjectMapper with INDENT_OUTPUT wrote for the whole list; COMPACT is
+ * the same JSON without whitespace; NDJSON writes one finding per line for log pipelines. Leading fields (e.g.
+ * cachettl's "report") are written before the findings array, or as one leading line in NDJSON.
+ *
+ * The findings go to a temporary file next to the target, which only replaces it once {@link #finish()} was
+ * called: closing an unfinished writer (a cancelled or failed run) deletes the temporary file, so the previous
+ * report is kept rather than overwritten by a truncated one.
+ *
+ * A writer opened with a null path does nothing. Not thread-safe.
+ */
+public final class FindingsJsonWriter implements Closeable {
+
+    public enum Format {
+        PRETTY, COMPACT, NDJSON;
+
+        /** Parses a --jsonFormat value; null or empty means PRETTY. */
+        public static Format parse(String s) {
+            if (s == null || s.trim().isEmpty()) return PRETTY;
+            for (Format f : values()) {
+                if (f.name().equalsIgnoreCase(s.trim())) return f;
+            }
+            throw new IllegalArgumentException("Unknown JSON format: " + s + " (expected pretty, compact or ndjson)");
+        }
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final JsonGenerator gen;
+    private final Path out;
+    private final Path temp;
+    private final ObjectWriter writer;
+    private final Format format;
+    private final boolean wrapped;
+    private boolean anyLine;
+    private boolean finished;
+
+    private FindingsJsonWriter(JsonGenerator gen, Path out, Path temp, Format format, boolean wrapped) {
+        this.gen = gen;
+        this.out = out;
+        this.temp = temp;
+        this.format = format;
+        this.wrapped = wrapped;
+        this.writer = MAPPER.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /** Findings as a top-level array (or bare lines in NDJSON). */
+    public static FindingsJsonWriter open(Path out, Format format) throws IOException {
+        return open(out, format, null, null);
+    }
+
+    /**
+     * Findings as the array field arrayField of a top-level object, after leadingFields. With a null arrayField
+     * the findings are a top-level array and leadingFields is ignored.
+     */
+    public static FindingsJsonWriter open(Path out, Format format, String arrayField,
+                                          Map<String, ?> leadingFields) throws IOException {
+        if (out == null) return new FindingsJsonWriter(null, null, null, format, false);
+        Path dir = out.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+
+        Path temp = Files.createTempFile(dir, "." + out.getFileName(), ".tmp");
+        JsonGenerator gen;
+        try {
+            gen = MAPPER.getFactory().createGenerator(Files.newOutputStream(temp), JsonEncoding.UTF8);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        boolean wrapped = arrayField != null;
+        if (format == Format.PRETTY) {
+            gen.useDefaultPrettyPrinter();
+        } else if (format == Format.NDJSON) {
+            gen.setRootValueSeparator(new SerializedString("\n"));
+        }
+
+        FindingsJsonWriter w = new FindingsJsonWriter(gen, out, temp, format, wrapped);
+        try {
+            if (format == Format.NDJSON) {
+                if (wrapped && leadingFields != null && !leadingFields.isEmpty()) {
+                    w.writer.writeValue(gen, leadingFields);
+                    w.anyLine = true;
+                }
+            } else {
+                if (wrapped) {
+                    gen.writeStartObject();
+                    if (leadingFields != null) {
+                        for (Map.Entry<String, ?> e : leadingFields.entrySet()) {
+                            gen.writeFieldName(e.getKey());
+                            w.writer.writeValue(gen, e.getValue());
+                        }
+                    }
+                    gen.writeFieldName(arrayField);
+                }
+                gen.writeStartArray();
+            }
+        } catch (IOException | RuntimeException e) {
+            w.close();
+            throw e;
+        }
+        return w;
+    }
+
+    public void write(Object finding) throws IOException {
+        if (gen == null) return;
+        writer.writeValue(gen, finding);
+        anyLine = true;
+    }
+
+    /** Marks the findings complete, so that {@link #close()} puts the file in place. */
+    public void finish() {
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (gen == null) return;
+        boolean kept = false;
+        try {
+            try {
+                if (finished) {
+                    if (format == Format.NDJSON) {
+                        if (anyLine) gen.writeRaw('\n');
+                    } else {
+                        gen.writeEndArray();
+                        if (wrapped) gen.writeEndObject();
+                    }
+                }
+            } finally {
+                gen.close();
+            }
+            if (finished) {
+                try {
+                    Files.move(temp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, out, StandardCopyOption.REPLACE_EXISTING);
+                }
+                kept = true;
+            }
+        } finally {
+            if (!kept) Files.deleteIfExists(temp);
+        }
+    }
+}
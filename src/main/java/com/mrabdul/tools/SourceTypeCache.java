@@ -0,0 +1,211 @@
+package com.mrabdul.tools;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.cache.Cache;
+import com.github.javaparser.resolution.cache.CacheStats;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.symbolsolver.cache.GuavaCache;
+import com.github.javaparser.symbolsolver.cache.NoCache;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Project sources parsed for symbol solving, kept for the life of the process and shared by every engine that
+ * resolves types (jdbcdetector, cachettl), so chained scans of one tree parse each source once.
+ *
+ * Memory is bounded: parsed files are weighed by their line count against a quarter of the heap (at an estimated
+ * 2 KB of syntax tree per line) and the least recently used go first; values are soft as well. Each entry is
+ * checked against its file's size and modification time (a folder's against those of its sources), so an edited
+ * tree is read again.
+ *
+ * Type solvers are not thread-safe and the declarations they return are bound to them, so each caller gets its
+ * own solver with small bounded type caches; only the parsed sources are shared.
+ */
+public final class SourceTypeCache {
+
+    private static final long BYTES_PER_LINE = 2048;
+    private static final int TYPES_PER_SOLVER = 10000;
+
+    private static final SourceTypeCache SHARED = new SourceTypeCache(Runtime.getRuntime().maxMemory() / 4 / BYTES_PER_LINE);
+
+    private final Cache<Path, Optional<CompilationUnit>> parsedFiles;
+    private final Cache<Path, List<CompilationUnit>> parsedDirectories;
+    private final Map<Path, SourceTypeIndex> indexes = new ConcurrentHashMap<Path, SourceTypeIndex>();
+
+    /** maxLines is split between parsed files and parsed folders, which mostly hold the same trees. */
+    SourceTypeCache(long maxLines) {
+        this.parsedFiles = new Fresh<Optional<CompilationUnit>>(maxLines / 2,
+                cu -> cu.map(SourceTypeCache::lines).orElse(1), SourceTypeCache::fileStamp);
+        this.parsedDirectories = new Fresh<List<CompilationUnit>>(maxLines / 2,
+                cus -> 1 + cus.stream().mapToInt(SourceTypeCache::lines).sum(), SourceTypeCache::folderStamp);
+    }
+
+    /** The cache of this process. */
+    public static SourceTypeCache shared() {
+        return SHARED;
+    }
+
+    /** The type index of root, refreshed; loaded from and saved to indexFile when one is given. */
+    public SourceTypeIndex index(Path root, Path indexFile) throws IOException {
+        SourceTypeIndex index = indexes.computeIfAbsent(root.toAbsolutePath().normalize(), SourceTypeIndex::new);
+        index.refresh(indexFile == null ? null : indexFile.toAbsolutePath().normalize());
+        return index;
+    }
+
+    /** A new solver for the JDK (by reflection) and the sources under index's root. */
+    public TypeSolver typeSolver(SourceTypeIndex index) {
+        return typeSolver(index, null);
+    }
+
+    /**
+     * Like {@link #typeSolver(SourceTypeIndex)}, also reporting every project file or folder the solver looks up
+     * (or answers from the index) to lookups. So that each resolution is seen, that solver caches no types itself.
+     */
+    public TypeSolver typeSolver(SourceTypeIndex index, Consumer<Path> lookups) {
+        Cache<Path, Optional<CompilationUnit>> files = lookups == null ? parsedFiles : new Reporting<Optional<CompilationUnit>>(parsedFiles, lookups);
+        Cache<Path, List<CompilationUnit>> folders = lookups == null ? parsedDirectories : new Reporting<List<CompilationUnit>>(parsedDirectories, lookups);
+        JavaParser parser = new JavaParser(new ParserConfiguration().setLanguageLevel(ParserConfiguration.LanguageLevel.BLEEDING_EDGE));
+        JavaParserTypeSolver project = new JavaParserTypeSolver(index.getRoot(), parser, files, folders, typeCache(lookups == null));
+        List<TypeSolver> solvers = Arrays.<TypeSolver>asList(new ReflectionTypeSolver(), new Indexed(project, index, lookups));
+        return new CombinedTypeSolver(CombinedTypeSolver.ExceptionHandlers.IGNORE_NONE, solvers, typeCache(lookups == null));
+    }
+
+    private static Cache<String, SymbolReference<ResolvedReferenceTypeDeclaration>> typeCache(boolean enabled) {
+        return enabled
+                ? GuavaCache.<String, SymbolReference<ResolvedReferenceTypeDeclaration>>create(
+                        CacheBuilder.newBuilder().maximumSize(TYPES_PER_SOLVER).softValues().build())
+                : NoCache.<String, SymbolReference<ResolvedReferenceTypeDeclaration>>create();
+    }
+
+    private static int lines(CompilationUnit cu) {
+        return cu.getRange().map(r -> r.end.line).orElse(1);
+    }
+
+    private static String fileStamp(Path file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            return attrs.size() + ":" + attrs.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return "-";
+        }
+    }
+
+    // the solver parses a folder's *.java files; a folder's own mtime misses edits to them
+    private static String folderStamp(Path folder) {
+        Map<String, String> sources = new TreeMap<String, String>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(folder, "*.java")) {
+            for (Path child : children) sources.put(child.getFileName().toString(), fileStamp(child));
+        } catch (IOException e) {
+            return "-";
+        }
+        return sources.toString();
+    }
+
+    /** Answers from the index for names no project source can declare, and asks the project solver otherwise. */
+    private static final class Indexed implements TypeSolver {
+        private final JavaParserTypeSolver project;
+        private final SourceTypeIndex index;
+        private final Consumer<Path> lookups;
+
+        Indexed(JavaParserTypeSolver project, SourceTypeIndex index, Consumer<Path> lookups) {
+            this.project = project;
+            this.index = index;
+            this.lookups = lookups;
+        }
+
+        @Override public TypeSolver getParent() { return project.getParent(); }
+        @Override public void setParent(TypeSolver parent) { project.setParent(parent); }
+
+        @Override
+        public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+            if (!index.mayDeclare(name, lookups)) return SymbolReference.unsolved();
+            return project.tryToSolveType(name);
+        }
+    }
+
+    /** A size-bounded cache whose entries are dropped once the file or folder they were read from changes. */
+    private static final class Fresh<V> implements Cache<Path, V> {
+        private final GuavaCache<Path, Stamped<V>> entries;
+        private final Function<Path, String> stamp;
+
+        Fresh(long maxWeight, Function<V, Integer> weight, Function<Path, String> stamp) {
+            Weigher<Path, Stamped<V>> weigher = (path, stamped) -> weight.apply(stamped.value);
+            this.entries = GuavaCache.create(CacheBuilder.newBuilder().maximumWeight(Math.max(1, maxWeight)).weigher(weigher).softValues().build());
+            this.stamp = stamp;
+        }
+
+        @Override
+        public void put(Path key, V value) {
+            entries.put(key, new Stamped<V>(stamp.apply(key), value));
+        }
+
+        @Override
+        public Optional<V> get(Path key) {
+            Optional<Stamped<V>> found = entries.get(key);
+            if (!found.isPresent()) return Optional.empty();
+            if (!found.get().stamp.equals(stamp.apply(key))) {
+                entries.remove(key);
+                return Optional.empty();
+            }
+            return Optional.of(found.get().value);
+        }
+
+        @Override public void remove(Path key) { entries.remove(key); }
+        @Override public void removeAll() { entries.removeAll(); }
+        @Override public boolean contains(Path key) { return get(key).isPresent(); }
+        @Override public long size() { return entries.size(); }
+        @Override public boolean isEmpty() { return entries.isEmpty(); }
+        @Override public CacheStats stats() { return entries.stats(); }
+    }
+
+    private static final class Stamped<V> {
+        final String stamp;
+        final V value;
+
+        Stamped(String stamp, V value) {
+            this.stamp = stamp;
+            this.value = value;
+        }
+    }
+
+    /** Reports every key looked up or stored, then delegates. */
+    private static final class Reporting<V> implements Cache<Path, V> {
+        private final Cache<Path, V> delegate;
+        private final Consumer<Path> lookups;
+
+        Reporting(Cache<Path, V> delegate, Consumer<Path> lookups) {
+            this.delegate = delegate;
+            this.lookups = lookups;
+        }
+
+        @Override public void put(Path key, V value) { lookups.accept(key); delegate.put(key, value); }
+        @Override public Optional<V> get(Path key) { lookups.accept(key); return delegate.get(key); }
+        @Override public void remove(Path key) { delegate.remove(key); }
+        @Override public void removeAll() { delegate.removeAll(); }
+        @Override public boolean contains(Path key) { lookups.accept(key); return delegate.contains(key); }
+        @Override public long size() { return delegate.size(); }
+        @Override public boolean isEmpty() { return delegate.isEmpty(); }
+        @Override public CacheStats stats() { return delegate.stats(); }
+    }
+}
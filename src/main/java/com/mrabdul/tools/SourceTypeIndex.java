@@ -0,0 +1,236 @@
+package com.mrabdul.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The type names declared by the sources under one root, per folder, found by a lexical scan (no parsing). The
+ * symbol solver is asked about many names the project cannot declare (every import and same-package guess), and
+ * answering those from the index spares it a file probe and, on a miss, a parse of the whole folder.
+ *
+ * The scan over-approximates (a name after "class" in a comment-free spot counts), which only costs a real
+ * lookup; it never misses a declaration. The index can be saved to a file (--typeIndex) and is then refreshed only
+ * for sources whose size or modification time changed.
+ */
+public final class SourceTypeIndex {
+
+    private static final int MAGIC = 0x53544958; // "STIX"
+    private static final int VERSION = 1;
+
+    private static final Set<String> DECLARING = new HashSet<String>(Arrays.asList("class", "interface", "enum", "record"));
+
+    private final Path root;
+    // by path relative to root, '/'-separated
+    private final Map<String, SourceFile> files = new HashMap<String, SourceFile>();
+    private volatile Map<String, Set<String>> namesByFolder = Collections.emptyMap();
+    private boolean loaded;
+    private Path savedTo;
+
+    SourceTypeIndex(Path root) {
+        this.root = root;
+    }
+
+    private static final class SourceFile {
+        final long size;
+        final long modified;
+        final List<String> names;
+
+        SourceFile(long size, long modified, List<String> names) {
+            this.size = size;
+            this.modified = modified;
+            this.names = names;
+        }
+    }
+
+    public Path getRoot() { return root; }
+
+    /** Number of type names indexed. */
+    public int size() {
+        int n = 0;
+        for (Set<String> names : namesByFolder.values()) n += names.size();
+        return n;
+    }
+
+    /** False when no source under the root can declare qualifiedName, so the solver need not look. */
+    public boolean mayDeclare(String qualifiedName) {
+        return mayDeclare(qualifiedName, null);
+    }
+
+    /**
+     * Like {@link #mayDeclare(String)}, passing every folder the answer was read from to folders (when not null),
+     * since a source added to or edited in one of them can change it.
+     */
+    public boolean mayDeclare(String qualifiedName, Consumer<Path> folders) {
+        Map<String, Set<String>> byFolder = namesByFolder;
+        String[] parts = qualifiedName.split("\\.");
+        StringBuilder folder = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (folders != null) folders.accept(folder.length() == 0 ? root : root.resolve(folder.toString()));
+            Set<String> names = byFolder.get(folder.toString());
+            if (names != null && names.contains(parts[i])) return true;
+            if (folder.length() > 0) folder.append('/');
+            folder.append(parts[i]);
+        }
+        return false;
+    }
+
+    /**
+     * Brings the index up to date with the sources under the root, starting from indexFile the first time (when
+     * it exists), and saves it back to indexFile (when given).
+     */
+    synchronized void refresh(Path indexFile) throws IOException {
+        if (!loaded && indexFile != null && Files.isRegularFile(indexFile)) {
+            load(indexFile);
+        }
+        loaded = true;
+
+        Set<String> seen = new HashSet<String>();
+        boolean changed = false;
+        List<Path> sources;
+        try (Stream<Path> walk = Files.walk(root)) {
+            sources = walk.filter(p -> p.toString().endsWith(".java")).collect(Collectors.toList());
+        }
+        for (Path source : sources) {
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(source, BasicFileAttributes.class);
+            } catch (IOException e) {
+                continue;
+            }
+            if (!attrs.isRegularFile()) continue;
+            String key = root.relativize(source).toString().replace('\\', '/');
+            seen.add(key);
+            SourceFile known = files.get(key);
+            long modified = attrs.lastModifiedTime().toMillis();
+            if (known != null && known.size == attrs.size() && known.modified == modified) continue;
+            List<String> names;
+            try {
+                names = declaredNames(new String(Files.readAllBytes(source), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                // the solver cannot read it either
+                names = Collections.emptyList();
+            }
+            files.put(key, new SourceFile(attrs.size(), modified, names));
+            changed = true;
+        }
+        changed |= files.keySet().retainAll(seen);
+
+        if (changed || namesByFolder.isEmpty()) {
+            Map<String, Set<String>> byFolder = new HashMap<String, Set<String>>();
+            for (Map.Entry<String, SourceFile> e : files.entrySet()) {
+                int slash = e.getKey().lastIndexOf('/');
+                String folder = slash < 0 ? "" : e.getKey().substring(0, slash);
+                Set<String> names = byFolder.get(folder);
+                if (names == null) byFolder.put(folder, names = new HashSet<String>());
+                names.addAll(e.getValue().names);
+            }
+            namesByFolder = byFolder;
+        }
+        if (indexFile != null && (changed || !indexFile.equals(savedTo))) {
+            save(indexFile);
+            savedTo = indexFile;
+        }
+    }
+
+    /** Names following class, interface, enum or record, outside comments and literals. */
+    static List<String> declaredNames(String src) {
+        List<String> out = new ArrayList<String>();
+        boolean afterKeyword = false;
+        int i = 0;
+        int n = src.length();
+        while (i < n) {
+            char c = src.charAt(i);
+            if (c == '/' && i + 1 < n && src.charAt(i + 1) == '/') {
+                while (i < n && src.charAt(i) != '\n') i++;
+            } else if (c == '/' && i + 1 < n && src.charAt(i + 1) == '*') {
+                int end = src.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+            } else if (c == '"' && src.startsWith("\"\"\"", i)) {
+                int end = src.indexOf("\"\"\"", i + 3);
+                while (end > 0 && src.charAt(end - 1) == '\\') end = src.indexOf("\"\"\"", end + 1);
+                i = end < 0 ? n : end + 3;
+                afterKeyword = false;
+            } else if (c == '"' || c == '\'') {
+                i++;
+                while (i < n && src.charAt(i) != c && src.charAt(i) != '\n') {
+                    if (src.charAt(i) == '\\') i++;
+                    i++;
+                }
+                i++;
+                afterKeyword = false;
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < n && Character.isJavaIdentifierPart(src.charAt(i))) i++;
+                String word = src.substring(start, i);
+                if (afterKeyword) out.add(word);
+                afterKeyword = DECLARING.contains(word);
+            } else {
+                if (!Character.isWhitespace(c)) afterKeyword = false;
+                i++;
+            }
+        }
+        return out;
+    }
+
+    private void load(Path indexFile) {
+        Map<String, SourceFile> read = new HashMap<String, SourceFile>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+            for (int count = in.readInt(); count > 0; count--) {
+                String key = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                List<String> names = new ArrayList<String>();
+                for (int k = in.readInt(); k > 0; k--) names.add(in.readUTF());
+                read.put(key, new SourceFile(size, modified, names));
+            }
+        } catch (IOException | RuntimeException e) {
+            // unreadable: rebuilt by the scan
+            return;
+        }
+        files.putAll(read);
+    }
+
+    private void save(Path indexFile) throws IOException {
+        Path dir = indexFile.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, indexFile.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(files.size());
+                for (Map.Entry<String, SourceFile> e : files.entrySet()) {
+                    out.writeUTF(e.getKey());
+                    out.writeLong(e.getValue().size);
+                    out.writeLong(e.getValue().modified);
+                    out.writeInt(e.getValue().names.size());
+                    for (String name : e.getValue().names) out.writeUTF(name);
+                }
+            }
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            tmp = null;
+        } finally {
+            if (tmp != null) Files.deleteIfExists(tmp);
+        }
+    }
+}
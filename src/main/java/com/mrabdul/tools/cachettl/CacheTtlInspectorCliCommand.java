@@ -2,6 +2,7 @@ package com.mrabdul.tools.cachettl;
 
 import com.mrabdul.cli.CliArgs;
 import com.mrabdul.tools.CliCommand;
+import com.mrabdul.tools.FindingsJsonWriter;
 import org.springframework.stereotype.Component;
 
 import java.io.InputStream;
@@ -42,6 +43,8 @@ public class CacheTtlInspectorCliCommand implements CliCommand {
         String sourceRoot = CliArgs.get(a, "sourceRoot", "");
         String configPath = CliArgs.get(a, "config", "");
         String jsonOut = CliArgs.get(a, "jsonOut", "");
+        String jsonFormat = CliArgs.get(a, "jsonFormat", "pretty").trim().toLowerCase();
+        String typeIndex = CliArgs.get(a, "typeIndex", "");
 
         if (sourceRoot == null || sourceRoot.trim().isEmpty()) {
             System.err.println("ERROR: Missing required arguments.");
@@ -49,11 +52,19 @@ public class CacheTtlInspectorCliCommand implements CliCommand {
             printHelp();
             return 2;
         }
+        try {
+            FindingsJsonWriter.Format.parse(jsonFormat);
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: --jsonFormat must be pretty, compact or ndjson");
+            return 2;
+        }
 
         CacheTtlInspectorRequest req = new CacheTtlInspectorRequest(
                 sourceRoot.trim(),
                 (configPath == null || configPath.trim().isEmpty()) ? null : configPath.trim(),
-                (jsonOut == null || jsonOut.trim().isEmpty()) ? null : jsonOut.trim()
+                (jsonOut == null || jsonOut.trim().isEmpty()) ? null : jsonOut.trim(),
+                jsonFormat,
+                typeIndex.trim().isEmpty() ? null : typeIndex.trim()
         );
         String configUsed = (configPath == null || configPath.trim().isEmpty())
                 ? "(built-in default: cachettl-default-config.json)"
@@ -114,6 +125,8 @@ public class CacheTtlInspectorCliCommand implements CliCommand {
         System.out.println("  --config <path>                Optional. If omitted, built-in default config is used");
         System.out.println("  --dump-default-config          Print the built-in default config JSON and exit");
         System.out.println("  --jsonOut <path>        Write JSON report to this path");
+        System.out.println("  --jsonFormat <pretty|compact|ndjson>  ndjson: report on the first line, then one finding per line");
+        System.out.println("  --typeIndex <path>      Keep the index of project type names in this file; only changed sources are rescanned");
         System.out.println("  --help, -h              Show this help");
         System.out.println();
         System.out.println("Exit codes:");
@@ -10,9 +10,9 @@ import com.github.javaparser.ast.expr.*;
 import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import com.github.javaparser.resolution.declarations.ResolvedMethodDeclaration;
 import com.github.javaparser.symbolsolver.JavaSymbolSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import com.mrabdul.tools.FindingsJsonWriter;
+import com.mrabdul.tools.SourceTypeCache;
+import com.mrabdul.tools.SourceTypeIndex;
 
 import java.io.File;
 import java.io.InputStream;
@@ -34,7 +34,7 @@ public class CacheTtlInspectorEngine {
 
         CacheTtlConfig cfg = loadConfigOrDefault(req.getConfigPath());
         // Setup symbol solver (best-effort). If it breaks on some repos, we still run on method-name-only.
-        setupSymbolSolverBestEffort(root);
+        setupSymbolSolverBestEffort(root, req.getTypeIndexPath());
 
         List<Path> javaFiles = Files.walk(root)
                 .filter(p -> p.toString().endsWith(".java"))
@@ -81,14 +81,16 @@ public class CacheTtlInspectorEngine {
         // Optional JSON write
         if (req.getJsonOutPath() != null && !req.getJsonOutPath().trim().isEmpty()) {
             Path out = Paths.get(req.getJsonOutPath()).toAbsolutePath().normalize();
-            if (out.getParent() != null) Files.createDirectories(out.getParent());
 
-            // wrap result in a single object for easier downstream use
-            Map<String, Object> wrapper = new LinkedHashMap<String, Object>();
-            wrapper.put("report", report);
-            wrapper.put("findings", findings);
+            // wrap result in a single object for easier downstream use; findings are streamed after the report
+            Map<String, Object> head = new LinkedHashMap<String, Object>();
+            head.put("report", report);
 
-            om.writeValue(out.toFile(), wrapper);
+            try (FindingsJsonWriter json = FindingsJsonWriter.open(out,
+                    FindingsJsonWriter.Format.parse(req.getJsonFormat()), "findings", head)) {
+                for (CacheTtlFinding f : findings) json.write(f);
+                json.finish();
+            }
         }
 
         return new CacheTtlInspectorResult(report, findings);
@@ -139,12 +141,12 @@ public class CacheTtlInspectorEngine {
         return false;
     }
 
-    private void setupSymbolSolverBestEffort(Path root) {
+    private void setupSymbolSolverBestEffort(Path root, String typeIndexPath) {
         try {
-            CombinedTypeSolver typeSolver = new CombinedTypeSolver();
-            typeSolver.add(new ReflectionTypeSolver());
-            typeSolver.add(new JavaParserTypeSolver(root.toFile()));
-            JavaSymbolSolver symbolSolver = new JavaSymbolSolver(typeSolver);
+            // project sources parsed by earlier scans in this process are reused
+            SourceTypeIndex index = SourceTypeCache.shared().index(root,
+                    typeIndexPath != null && !typeIndexPath.trim().isEmpty() ? Paths.get(typeIndexPath.trim()) : null);
+            JavaSymbolSolver symbolSolver = new JavaSymbolSolver(SourceTypeCache.shared().typeSolver(index));
             StaticJavaParser.getParserConfiguration().setSymbolResolver(symbolSolver);
         } catch (Exception ignore) {
             // run without symbol solving
@@ -4,16 +4,30 @@ public class CacheTtlInspectorRequest {
     private final String sourceRoot;
     private final String configPath;   // optional (null/empty => use default)
     private final String jsonOutPath;  // optional
+    private final String jsonFormat;   // optional: pretty (default), compact or ndjson
+    private final String typeIndexPath; // optional: type index kept between runs
 
-    public CacheTtlInspectorRequest(String sourceRoot, String configPath, String jsonOutPath) {
+    public CacheTtlInspectorRequest(String sourceRoot, String configPath, String jsonOutPath, String jsonFormat, String typeIndexPath) {
         this.sourceRoot = sourceRoot;
         this.configPath = configPath; // keep as-is, can be null
         this.jsonOutPath = jsonOutPath;
+        this.jsonFormat = jsonFormat;
+        this.typeIndexPath = typeIndexPath;
+    }
+
+    public CacheTtlInspectorRequest(String sourceRoot, String configPath, String jsonOutPath, String jsonFormat) {
+        this(sourceRoot, configPath, jsonOutPath, jsonFormat, null);
+    }
+
+    public CacheTtlInspectorRequest(String sourceRoot, String configPath, String jsonOutPath) {
+        this(sourceRoot, configPath, jsonOutPath, null);
     }
 
     public String getSourceRoot() { return sourceRoot; }
     public String getConfigPath() { return configPath; }
     public String getJsonOutPath() { return jsonOutPath; }
+    public String getJsonFormat() { return jsonFormat; }
+    public String getTypeIndexPath() { return typeIndexPath; }
 
     public boolean hasConfigPath() {
         return configPath != null && !configPath.trim().isEmpty();
@@ -0,0 +1,287 @@
+package com.mrabdul.tools.jdbcdetector;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Findings of earlier runs (--cacheDir), kept in one file per cache folder. An entry is reused when the file's
+ * content hash is unchanged and so is every project file or folder its types were resolved against (recorded by
+ * {@link SharedSourceCache}); a file that depends on an edited, added or removed source is analyzed again.
+ *
+ * Paths are stored relative to the source root, so a checkout in another folder can reuse the cache. Only the
+ * entries used or refreshed by a run are saved; a broken cache file or one written with other settings is
+ * treated as empty.
+ */
+final class AnalysisCache {
+
+    private static final int MAGIC = 0x4A444143; // "JDAC"
+    private static final int VERSION = 1; // bump when the analysis itself changes
+    private static final String FILE_NAME = "jdbcdetector.cache";
+
+    // fingerprint of a path that could not be read; never matches
+    private static final String UNREADABLE = "!";
+    private static final String ABSENT = "-";
+
+    private final Path dir;
+    private final Path root;
+    private final String settings;
+
+    // as saved by the last run, by path relative to root
+    private final Map<String, Entry> previous;
+    private final Map<String, String> previousFingerprints;
+
+    // entries reused or stored by this run, and the fingerprints seen
+    private final Map<String, Entry> current = new ConcurrentHashMap<String, Entry>();
+    private final Map<String, String> fingerprints = new ConcurrentHashMap<String, String>();
+
+    private AnalysisCache(Path dir, Path root, String settings, Map<String, Entry> previous, Map<String, String> previousFingerprints) {
+        this.dir = dir;
+        this.root = root;
+        this.settings = settings;
+        this.previous = previous;
+        this.previousFingerprints = previousFingerprints;
+    }
+
+    private static final class Entry {
+        final String contentHash;
+        final List<String> dependencies;
+        final List<Finding> findings;
+
+        Entry(String contentHash, List<String> dependencies, List<Finding> findings) {
+            this.contentHash = contentHash;
+            this.dependencies = dependencies;
+            this.findings = findings;
+        }
+    }
+
+    /** The analysis settings that shape findings; the JDK matters because JDK types are resolved by reflection. */
+    static String settings(JdbcDetectorRequest req) {
+        StringBuilder dao = new StringBuilder();
+        if (req.hasDaoFilter()) {
+            for (String base : req.getDaoBaseTypes()) {
+                if (base == null) continue;
+                if (dao.length() > 0) dao.append(',');
+                dao.append(base);
+            }
+        }
+        return "dao=" + dao + ";resolution=" + JdbcDetectorRequest.Resolution.parse(req.getResolution())
+                + ";java=" + System.getProperty("java.specification.version");
+    }
+
+    /** Opens the cache in dir for a scan of root; whatever cannot be read is dropped. */
+    static AnalysisCache open(Path dir, Path root, String settings) throws IOException {
+        Files.createDirectories(dir);
+        Map<String, Entry> entries = new HashMap<String, Entry>();
+        Map<String, String> fps = new HashMap<String, String>();
+        Path file = dir.resolve(FILE_NAME);
+        if (Files.isRegularFile(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024))) {
+                if (in.readInt() == MAGIC && in.readInt() == VERSION && settings.equals(readString(in))) {
+                    readEntries(in, entries, fps);
+                }
+            } catch (IOException | RuntimeException e) {
+                entries.clear();
+                fps.clear();
+            }
+        }
+        return new AnalysisCache(dir, root, settings, entries, fps);
+    }
+
+    /** SHA-256 of a file's content, in hex. */
+    static String hash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /** The cached findings for file, or null when it has to be analyzed. Safe for concurrent use. */
+    List<Finding> lookup(Path file, String contentHash) {
+        String key = relative(file);
+        Entry entry = previous.get(key);
+        if (entry == null || !entry.contentHash.equals(contentHash)) return null;
+        for (String dependency : entry.dependencies) {
+            String fp = fingerprint(dependency);
+            if (UNREADABLE.equals(fp) || !fp.equals(previousFingerprints.get(dependency))) return null;
+        }
+        current.put(key, entry);
+
+        List<Finding> out = new ArrayList<Finding>(entry.findings.size());
+        for (Finding f : entry.findings) {
+            out.add(new Finding(f.kind, file.toString(), f.line, f.method, f.resourceType, f.variable, f.message));
+        }
+        return out;
+    }
+
+    /** Records what analyzing file produced and which project paths it looked up. Safe for concurrent use. */
+    void store(Path file, String contentHash, List<Finding> findings, Set<Path> dependencies) {
+        List<String> deps = new ArrayList<String>(dependencies.size());
+        for (Path dependency : dependencies) {
+            String key = relative(dependency);
+            // a source we could not read now would look unchanged next time
+            if (UNREADABLE.equals(fingerprint(key))) return;
+            deps.add(key);
+        }
+        Collections.sort(deps);
+        current.put(relative(file), new Entry(contentHash, deps, new ArrayList<Finding>(findings)));
+    }
+
+    /** Replaces the cache file with this run's entries; failures only cost the next run a full scan. */
+    void save() {
+        Path file = dir.resolve(FILE_NAME);
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(dir, FILE_NAME, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, settings);
+                writeEntries(out);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch (IOException | RuntimeException e) {
+            // ignore; the cache is only an accelerator
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // nothing left to do
+                }
+            }
+        }
+    }
+
+    // Layout: path table (path, fingerprint), then per entry: file path id, content hash, dependency path ids,
+    // findings. Entries share the table, since most files resolve against the same few sources.
+    private void writeEntries(DataOutputStream out) throws IOException {
+        Map<String, Entry> entries = new TreeMap<String, Entry>(current);
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        List<String> paths = new ArrayList<String>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            idOf(e.getKey(), ids, paths);
+            for (String dependency : e.getValue().dependencies) idOf(dependency, ids, paths);
+        }
+
+        out.writeInt(paths.size());
+        for (String path : paths) {
+            writeString(out, path);
+            String fp = fingerprints.get(path);
+            writeString(out, fp == null ? UNREADABLE : fp);
+        }
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            out.writeInt(ids.get(e.getKey()));
+            writeString(out, entry.contentHash);
+            out.writeInt(entry.dependencies.size());
+            for (String dependency : entry.dependencies) out.writeInt(ids.get(dependency));
+            out.writeInt(entry.findings.size());
+            for (Finding f : entry.findings) {
+                writeString(out, f.kind);
+                out.writeInt(f.line);
+                writeString(out, f.method);
+                writeString(out, f.resourceType);
+                writeString(out, f.variable);
+                writeString(out, f.message);
+            }
+        }
+    }
+
+    private static void readEntries(DataInputStream in, Map<String, Entry> entries, Map<String, String> fps) throws IOException {
+        String[] paths = new String[in.readInt()];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = readString(in);
+            fps.put(paths[i], readString(in));
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String file = paths[in.readInt()];
+            String contentHash = readString(in);
+            List<String> deps = new ArrayList<String>();
+            for (int n = in.readInt(); n > 0; n--) deps.add(paths[in.readInt()]);
+            List<Finding> findings = new ArrayList<Finding>();
+            for (int n = in.readInt(); n > 0; n--) {
+                String kind = readString(in);
+                int line = in.readInt();
+                findings.add(new Finding(kind, null, line, readString(in), readString(in), readString(in), readString(in)));
+            }
+            entries.put(file, new Entry(contentHash, deps, findings));
+        }
+    }
+
+    private static void idOf(String path, Map<String, Integer> ids, List<String> paths) {
+        if (!ids.containsKey(path)) {
+            ids.put(path, paths.size());
+            paths.add(path);
+        }
+    }
+
+    /** What a dependency looks like now, computed once per run. */
+    private String fingerprint(String path) {
+        return fingerprints.computeIfAbsent(path, p -> fingerprintOf(root.resolve(p)));
+    }
+
+    // a file by content; a folder by the names and content of its sources, which the solver parses as a whole
+    private static String fingerprintOf(Path path) {
+        try {
+            if (Files.isRegularFile(path)) return hash(Files.readAllBytes(path));
+            if (!Files.isDirectory(path)) return ABSENT;
+            Map<String, String> sources = new TreeMap<String, String>();
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(path, "*.java")) {
+                for (Path child : children) {
+                    if (Files.isRegularFile(child)) sources.put(child.getFileName().toString(), hash(Files.readAllBytes(child)));
+                }
+            }
+            return "dir:" + hash(sources.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return UNREADABLE;
+        }
+    }
+
+    private String relative(Path path) {
+        Path p = path.toAbsolutePath().normalize();
+        return p.startsWith(root) ? root.relativize(p).toString() : p.toString();
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
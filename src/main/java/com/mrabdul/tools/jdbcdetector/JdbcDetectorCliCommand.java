@@ -2,6 +2,7 @@ package com.mrabdul.tools.jdbcdetector;
 
 import com.mrabdul.cli.CliArgs;
 import com.mrabdul.tools.CliCommand;
+import com.mrabdul.tools.FindingsJsonWriter;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
@@ -38,9 +39,22 @@ public class JdbcDetectorCliCommand implements CliCommand {
         String sourceRoot = CliArgs.get(a, "sourceRoot", "");
         String daoBaseTypesRaw = CliArgs.get(a, "daoBaseTypes", "");
         String jsonOut = CliArgs.get(a, "jsonOut", "");
+        String jsonFormat = CliArgs.get(a, "jsonFormat", "pretty").trim().toLowerCase();
+        String cacheDir = CliArgs.get(a, "cacheDir", "");
+        String typeIndex = CliArgs.get(a, "typeIndex", "");
+        String resolution = CliArgs.get(a, "resolution", "full").trim().toLowerCase();
 
         boolean includeWarnings = CliArgs.getBool(a, "includeWarnings", true);
         boolean includeParseErrors = CliArgs.getBool(a, "includeParseErrors", true);
+        boolean prefilterAudit = CliArgs.getBool(a, "prefilterAudit", false);
+
+        int threads;
+        try {
+            threads = Integer.parseInt(CliArgs.get(a, "threads", "0").trim());
+        } catch (NumberFormatException e) {
+            System.err.println("ERROR: --threads must be a number");
+            return 2;
+        }
 
         if (sourceRoot == null || sourceRoot.trim().isEmpty()) {
             System.err.println("ERROR: Missing required arguments.");
@@ -49,15 +63,34 @@ public class JdbcDetectorCliCommand implements CliCommand {
             return 2;
         }
 
+        try {
+            FindingsJsonWriter.Format.parse(jsonFormat);
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: --jsonFormat must be pretty, compact or ndjson");
+            return 2;
+        }
+
+        try {
+            JdbcDetectorRequest.Resolution.parse(resolution);
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: --resolution must be full, fast or hybrid");
+            return 2;
+        }
+
         List<String> daoTypes = DaoFilterParser.parseCommaSeparated(daoBaseTypesRaw);
 
-        JdbcDetectorRequest req = new JdbcDetectorRequest(
-                sourceRoot.trim(),
-                daoTypes,
-                includeWarnings,
-                includeParseErrors,
-                (jsonOut == null || jsonOut.trim().isEmpty()) ? null : jsonOut.trim()
-        );
+        JdbcDetectorRequest req = JdbcDetectorRequest.builder(sourceRoot.trim())
+                .daoBaseTypes(daoTypes)
+                .includeWarnings(includeWarnings)
+                .includeParseErrors(includeParseErrors)
+                .jsonOutputPath((jsonOut == null || jsonOut.trim().isEmpty()) ? null : jsonOut.trim())
+                .jsonFormat(jsonFormat)
+                .threads(threads)
+                .prefilterAudit(prefilterAudit)
+                .cacheDir(cacheDir.trim().isEmpty() ? null : cacheDir.trim())
+                .typeIndexPath(typeIndex.trim().isEmpty() ? null : typeIndex.trim())
+                .resolution(resolution)
+                .build();
 
         JdbcDetectorResult res = service.run(req);
 
@@ -101,8 +134,16 @@ public class JdbcDetectorCliCommand implements CliCommand {
         System.out.println("Optional options:");
         System.out.println("  --daoBaseTypes <A,B,com.x.Dao>   Only analyze classes extending any of these base types");
         System.out.println("  --jsonOut <path>                Write findings as JSON to this path");
+        System.out.println("  --jsonFormat <pretty|compact|ndjson> ndjson: one finding per line. Default: pretty");
         System.out.println("  --includeWarnings <true|false>  Default: true");
         System.out.println("  --includeParseErrors <true|false> Default: true");
+        System.out.println("  --threads <n>                   Files parsed and analyzed in parallel. Default: one per CPU core");
+        System.out.println("  --prefilterAudit <true|false>   Also analyze files the prefilter skips, to report its recall. Default: false");
+        System.out.println("  --cacheDir <path>               Keep findings here; files whose content and resolved sources are unchanged are not re-analyzed");
+        System.out.println("  --typeIndex <path>              Keep the index of project type names in this file; only changed sources are rescanned");
+        System.out.println("  --resolution <full|fast|hybrid>  full: symbol solver for every declaration; fast: imports only, no solver;");
+        System.out.println("                                  hybrid: solver only where imports leave it open. Default: full");
+        System.out.println("                                  An unresolved var takes the type of its open call (getConnection: Connection, ...)");
         System.out.println("  --help, -h                      Show this help");
         System.out.println();
         System.out.println("Exit codes:");
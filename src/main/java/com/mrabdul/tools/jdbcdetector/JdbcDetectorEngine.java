@@ -1,8 +1,9 @@
 package com.mrabdul.tools.jdbcdetector;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
@@ -15,15 +16,19 @@ import com.github.javaparser.ast.stmt.BlockStmt;
 import com.github.javaparser.ast.stmt.TryStmt;
 import com.github.javaparser.resolution.types.ResolvedType;
 import com.github.javaparser.symbolsolver.JavaSymbolSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import com.mrabdul.tools.FindingsJsonWriter;
+import com.mrabdul.tools.SourceTypeCache;
+import com.mrabdul.tools.SourceTypeIndex;
 
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 public class JdbcDetectorEngine {
@@ -35,6 +40,23 @@ public class JdbcDetectorEngine {
             "java.sql.ResultSet"
     ));
 
+    // calls that open a JDBC resource; a file without any of them cannot yield a finding
+    private static final Set<String> OPEN_CALLS = new HashSet<String>(Arrays.asList(
+            "getConnection",
+            "prepareStatement",
+            "createStatement",
+            "executeQuery"
+    ));
+
+    // what each open call returns, for `var` declarations the solver does not (or may not) resolve
+    private static final Map<String, String> OPEN_CALL_TYPES = new HashMap<String, String>();
+    static {
+        OPEN_CALL_TYPES.put("getConnection", "java.sql.Connection");
+        OPEN_CALL_TYPES.put("prepareStatement", "java.sql.PreparedStatement");
+        OPEN_CALL_TYPES.put("createStatement", "java.sql.Statement");
+        OPEN_CALL_TYPES.put("executeQuery", "java.sql.ResultSet");
+    }
+
     private static final Set<String> CLOSE_HELPERS = new HashSet<String>(Arrays.asList(
             "closeQuietly",
             "closeSilently",
@@ -42,89 +64,175 @@ public class JdbcDetectorEngine {
     ));
 
     public JdbcDetectorResult run(JdbcDetectorRequest req) throws Exception {
-        Path root = Paths.get(req.getSourceRootPath()).toAbsolutePath().normalize();
+        final Path root = Paths.get(req.getSourceRootPath()).toAbsolutePath().normalize();
         if (!Files.exists(root)) {
             throw new IllegalArgumentException("Path does not exist: " + root);
         }
 
-        // Symbol solver setup: reflection + parse types from the target project
-        CombinedTypeSolver typeSolver = new CombinedTypeSolver();
-        typeSolver.add(new ReflectionTypeSolver());
-        typeSolver.add(new JavaParserTypeSolver(root.toFile()));
-
-        JavaSymbolSolver symbolSolver = new JavaSymbolSolver(typeSolver);
-        StaticJavaParser.getParserConfiguration().setSymbolResolver(symbolSolver);
-
         List<Path> javaFiles = Files.walk(root)
                 .filter(p -> p.toString().endsWith(".java"))
                 .filter(p -> !p.toString().contains(File.separator + "target" + File.separator))
                 .collect(Collectors.toList());
 
-        List<Finding> allFindings = new ArrayList<Finding>();
-
-        for (Path file : javaFiles) {
-            try {
-                String content = new String(Files.readAllBytes(file), "UTF-8");
+        // Optional JSON output, written as findings are produced
+        String jsonPath = req.getJsonOutputPath();
+        Path jsonOut = jsonPath != null && !jsonPath.trim().isEmpty()
+                ? Paths.get(jsonPath.trim()).toAbsolutePath().normalize()
+                : null;
+
+        List<Finding> filtered = new ArrayList<Finding>();
+
+        // Optional findings of earlier runs, reused for files whose content and dependencies are unchanged
+        String cacheDir = req.getCacheDir();
+        final AnalysisCache cache = cacheDir != null && !cacheDir.trim().isEmpty()
+                ? AnalysisCache.open(Paths.get(cacheDir.trim()).toAbsolutePath().normalize(), root, AnalysisCache.settings(req))
+                : null;
+
+        // Parsers and symbol solvers are not thread-safe, so each pool thread gets its own; the project
+        // sources they parse while resolving are cached for the whole process.
+        String typeIndex = req.getTypeIndexPath();
+        SourceTypeIndex index = SourceTypeCache.shared().index(root,
+                typeIndex != null && !typeIndex.trim().isEmpty() ? Paths.get(typeIndex.trim()) : null);
+        final SharedSourceCache sources = new SharedSourceCache(index, cache != null);
+        final JdbcDetectorRequest.Resolution resolution = JdbcDetectorRequest.Resolution.parse(req.getResolution());
+        final ThreadLocal<JavaParser> parsers = ThreadLocal.withInitial(() -> newParser(sources, resolution));
+        final LexicalPrefilter prefilter = new LexicalPrefilter(OPEN_CALLS, req.getDaoBaseTypes());
+        long candidates = 0;
+        long candidatesWithFindings = 0;
+        long skippedWithFindings = 0;
+        long reused = 0;
+        long[] decisions = new long[4];
+        ExecutorService pool = new ForkJoinPool(req.getThreads() > 0 ? req.getThreads() : Runtime.getRuntime().availableProcessors());
+        try (FindingsJsonWriter json = FindingsJsonWriter.open(jsonOut, FindingsJsonWriter.Format.parse(req.getJsonFormat()))) {
+            List<Future<FileScan>> perFile = new ArrayList<Future<FileScan>>(javaFiles.size());
+            for (final Path file : javaFiles) {
+                perFile.add(pool.submit(() -> analyzeFile(file, req, prefilter, parsers.get(), sources, cache)));
+            }
 
-                // Optional fast cut: if filter exists and file doesn't even mention any base name, skip parsing
-                if (req.hasDaoFilter() && !contentMentionsAnyBase(content, req.getDaoBaseTypes())) {
-                    continue;
+            // merged in file order, so the output does not depend on the thread count
+            for (Future<FileScan> part : perFile) {
+                FileScan scan = await(part);
+                boolean found = scan.findings.stream().anyMatch(f -> !"PARSE_ERROR".equals(f.kind));
+                if (scan.candidate) {
+                    candidates++;
+                    if (found) candidatesWithFindings++;
+                } else if (found) {
+                    skippedWithFindings++;
+                }
+                if (scan.reused) reused++;
+                if (scan.types != null) scan.types.addTo(decisions);
+                // Apply include toggles
+                for (Finding f : scan.findings) {
+                    if (!isIncluded(f, req)) continue;
+                    filtered.add(f);
+                    json.write(f);
                 }
-
-                CompilationUnit cu = StaticJavaParser.parse(content);
-                allFindings.addAll(analyzeCompilationUnit(file, cu, req.getDaoBaseTypes()));
-
-            } catch (Exception parseOrSolveIssue) {
-                allFindings.add(Finding.parseError(
-                        file.toString(),
-                        parseOrSolveIssue.getClass().getSimpleName() + ": " + parseOrSolveIssue.getMessage()
-                ));
             }
+            json.finish();
+        } finally {
+            pool.shutdownNow();
         }
-
-        // Apply include toggles
-        List<Finding> filtered = allFindings.stream().filter(f -> {
-            if ("ISSUE".equals(f.kind)) return true;
-            if ("WARN".equals(f.kind)) return req.isIncludeWarnings();
-            if ("PARSE_ERROR".equals(f.kind)) return req.isIncludeParseErrors();
-            return false;
-        }).collect(Collectors.toList());
+        if (cache != null) cache.save();
 
         long issues = filtered.stream().filter(f -> "ISSUE".equals(f.kind)).count();
         long warns = filtered.stream().filter(f -> "WARN".equals(f.kind)).count();
         long parseErrors = filtered.stream().filter(f -> "PARSE_ERROR".equals(f.kind)).count();
 
-        String report = buildReportText(filtered, issues, warns, parseErrors);
+        JdbcDetectorResult.PrefilterStats prefilterStats = new JdbcDetectorResult.PrefilterStats(
+                javaFiles.size(), candidates, candidatesWithFindings, req.isPrefilterAudit() ? skippedWithFindings : -1);
+        JdbcDetectorResult.ResolutionStats resolutionStats = new JdbcDetectorResult.ResolutionStats(
+                resolution.name().toLowerCase(Locale.ROOT), decisions[0], decisions[1], decisions[2], decisions[3]);
+        String report = buildReportText(filtered, issues, warns, parseErrors, prefilterStats, resolutionStats, cache != null ? reused : -1);
 
-        // Optional JSON output
-        String jsonPath = req.getJsonOutputPath();
-        if (jsonPath != null && !jsonPath.trim().isEmpty()) {
-            Path jsonOut = Paths.get(jsonPath.trim()).toAbsolutePath().normalize();
-            ObjectMapper om = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
-            if (jsonOut.getParent() != null) Files.createDirectories(jsonOut.getParent());
-            om.writeValue(jsonOut.toFile(), filtered);
+        return new JdbcDetectorResult(filtered, issues, warns, parseErrors, report).withStats(prefilterStats, resolutionStats);
+    }
+
+    /**
+     * Prefilters, parses and analyzes one file; with --prefilterAudit, files the prefilter rejects are analyzed too.
+     * With a cache, a file whose findings are still valid is not parsed, and fresh findings are stored along with
+     * the project sources they were resolved against.
+     */
+    private FileScan analyzeFile(Path file, JdbcDetectorRequest req, LexicalPrefilter prefilter, JavaParser parser,
+                                 SharedSourceCache sources, AnalysisCache cache) {
+        boolean candidate = true;
+        TypeResolution types = new TypeResolution(JdbcDetectorRequest.Resolution.parse(req.getResolution()), sources);
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            candidate = prefilter.isCandidate(bytes);
+            if (!candidate && !req.isPrefilterAudit()) {
+                return new FileScan(false, false, Collections.<Finding>emptyList(), null);
+            }
+            if (cache == null) {
+                return new FileScan(candidate, false, analyzeContent(file, bytes, req, parser, types), types);
+            }
+
+            String contentHash = AnalysisCache.hash(bytes);
+            List<Finding> cached = cache.lookup(file, contentHash);
+            if (cached != null) {
+                return new FileScan(candidate, true, cached, null);
+            }
+            sources.startRecording();
+            List<Finding> findings = analyzeContent(file, bytes, req, parser, types);
+            cache.store(file, contentHash, findings, sources.stopRecording());
+            return new FileScan(candidate, false, findings, types);
+
+        } catch (Exception readIssue) {
+            return new FileScan(candidate, false, Collections.singletonList(parseError(file, readIssue)), types);
+        }
+    }
+
+    private List<Finding> analyzeContent(Path file, byte[] bytes, JdbcDetectorRequest req, JavaParser parser, TypeResolution types) {
+        try {
+            String content = new String(bytes, "UTF-8");
+
+            ParseResult<CompilationUnit> parsed = parser.parse(content);
+            if (!parsed.isSuccessful() || !parsed.getResult().isPresent()) {
+                throw new ParseProblemException(parsed.getProblems());
+            }
+            CompilationUnit cu = parsed.getResult().get();
+            types.startFile(cu);
+            return analyzeCompilationUnit(file, cu, req.getDaoBaseTypes(), types);
+
+        } catch (Exception parseOrSolveIssue) {
+            return Collections.singletonList(parseError(file, parseOrSolveIssue));
         }
+    }
+
+    private static Finding parseError(Path file, Exception e) {
+        return Finding.parseError(file.toString(), e.getClass().getSimpleName() + ": " + e.getMessage());
+    }
 
-        return new JdbcDetectorResult(filtered, issues, warns, parseErrors, report);
+    /** Symbol solver setup: reflection + parse types from the target project; none when it is never asked. */
+    private static JavaParser newParser(SharedSourceCache sources, JdbcDetectorRequest.Resolution resolution) {
+        if (resolution == JdbcDetectorRequest.Resolution.FAST) {
+            return new JavaParser(new ParserConfiguration());
+        }
+        return new JavaParser(new ParserConfiguration().setSymbolResolver(new JavaSymbolSolver(sources.typeSolver())));
     }
 
-    private boolean contentMentionsAnyBase(String content, List<String> baseTypes) {
-        if (baseTypes == null || baseTypes.isEmpty()) return true;
-        for (String base : baseTypes) {
-            if (base == null) continue;
-            String simple = DaoFilterParser.simpleName(base);
-            if (!simple.isEmpty() && content.contains(simple)) return true;
-            if (base.contains(".") && content.contains(base)) return true;
+    private static <T> T await(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) throw (Error) cause;
+            throw (Exception) cause;
         }
+    }
+
+    private boolean isIncluded(Finding f, JdbcDetectorRequest req) {
+        if ("ISSUE".equals(f.kind)) return true;
+        if ("WARN".equals(f.kind)) return req.isIncludeWarnings();
+        if ("PARSE_ERROR".equals(f.kind)) return req.isIncludeParseErrors();
         return false;
     }
 
-    private List<Finding> analyzeCompilationUnit(Path file, CompilationUnit cu, List<String> daoBaseTypes) {
+    private List<Finding> analyzeCompilationUnit(Path file, CompilationUnit cu, List<String> daoBaseTypes, TypeResolution types) {
         // If no filter: analyze everything in file
         if (daoBaseTypes == null || daoBaseTypes.isEmpty()) {
             List<Finding> out = new ArrayList<Finding>();
             for (MethodDeclaration m : cu.findAll(MethodDeclaration.class)) {
-                out.addAll(analyzeMethod(file, m));
+                out.addAll(analyzeMethod(file, m, types));
             }
             return out;
         }
@@ -139,7 +247,7 @@ public class JdbcDetectorEngine {
 
         List<Finding> out = new ArrayList<Finding>();
         for (ClassOrInterfaceDeclaration cls : targets) {
-            cls.getMethods().forEach(m -> out.addAll(analyzeMethod(file, m)));
+            cls.getMethods().forEach(m -> out.addAll(analyzeMethod(file, m, types)));
         }
         return out;
     }
@@ -168,7 +276,7 @@ public class JdbcDetectorEngine {
         });
     }
 
-    private List<Finding> analyzeMethod(Path file, MethodDeclaration method) {
+    private List<Finding> analyzeMethod(Path file, MethodDeclaration method, TypeResolution types) {
         List<Finding> out = new ArrayList<Finding>();
 
         method.getBody().ifPresent(body -> {
@@ -177,7 +285,10 @@ public class JdbcDetectorEngine {
 
             // 1) Variable declarations with initializer
             body.findAll(VariableDeclarator.class).forEach(vd -> {
-                Optional<String> fqnTypeOpt = resolveFqnTypeSafe(vd.getType());
+                Optional<String> fqnTypeOpt = resolveFqnTypeSafe(vd.getType(), types);
+                if (!fqnTypeOpt.isPresent() && vd.getType().isVarType()) {
+                    fqnTypeOpt = vd.getInitializer().flatMap(JdbcDetectorEngine::openCallType);
+                }
                 if (!fqnTypeOpt.isPresent()) return;
 
                 String var = vd.getNameAsString();
@@ -270,12 +381,7 @@ public class JdbcDetectorEngine {
     private boolean looksLikeOpen(Expression expr) {
         if (expr.isMethodCallExpr()) {
             MethodCallExpr mc = expr.asMethodCallExpr();
-            String name = mc.getNameAsString();
-
-            if ("getConnection".equals(name)) return true;
-            if ("prepareStatement".equals(name)) return true;
-            if ("createStatement".equals(name)) return true;
-            if ("executeQuery".equals(name)) return true;
+            if (OPEN_CALLS.contains(mc.getNameAsString())) return true;
         }
 
         if (expr.isCastExpr()) return looksLikeOpen(expr.asCastExpr().getExpression());
@@ -284,6 +390,13 @@ public class JdbcDetectorEngine {
         return false;
     }
 
+    /** The JDBC type an open call returns, e.g. Connection for ds.getConnection(); empty for anything else. */
+    private static Optional<String> openCallType(Expression expr) {
+        if (expr.isEnclosedExpr()) return openCallType(expr.asEnclosedExpr().getInner());
+        if (!expr.isMethodCallExpr()) return Optional.empty();
+        return Optional.ofNullable(OPEN_CALL_TYPES.get(expr.asMethodCallExpr().getNameAsString()));
+    }
+
     private Set<String> findVarsClosedIn(BlockStmt block) {
         Set<String> closed = new HashSet<String>();
 
@@ -308,14 +421,25 @@ public class JdbcDetectorEngine {
         return closed;
     }
 
-    private Optional<String> resolveFqnTypeSafe(com.github.javaparser.ast.type.Type t) {
+    private Optional<String> resolveFqnTypeSafe(com.github.javaparser.ast.type.Type t, TypeResolution types) {
+        // fast and hybrid: by name and imports; the solver only where that is a guess (hybrid)
+        if (types.mode != JdbcDetectorRequest.Resolution.FULL) {
+            TypeNameResolver.Decision d = types.names.resolve(t);
+            if (d.certain || types.mode == JdbcDetectorRequest.Resolution.FAST) {
+                if (d.certain) types.byName++;
+                else types.guessed++;
+                return Optional.ofNullable(d.qualifiedName);
+            }
+        }
         try {
             ResolvedType rt = t.resolve();
+            types.bySolver++;
             if (rt.isReferenceType()) {
                 return Optional.of(rt.asReferenceType().getQualifiedName());
             }
             return Optional.empty();
         } catch (Exception ignored) {
+            types.fallback++;
             // fallback to simple name
             String s = t.asString();
             if ("Connection".equals(s)) return Optional.of("java.sql.Connection");
@@ -326,12 +450,29 @@ public class JdbcDetectorEngine {
         }
     }
 
-    private String buildReportText(List<Finding> findings, long issues, long warns, long parseErrors) {
+    private String buildReportText(List<Finding> findings, long issues, long warns, long parseErrors,
+                                   JdbcDetectorResult.PrefilterStats prefilter,
+                                   JdbcDetectorResult.ResolutionStats resolution, long reused) {
         StringBuilder sb = new StringBuilder();
         sb.append("=== jdbcdetector ===\n");
         sb.append("Issues: ").append(issues).append("\n");
         sb.append("Warnings: ").append(warns).append("\n");
-        sb.append("Parse/analysis errors: ").append(parseErrors).append("\n");
+        sb.append("Parse/analysis errors: ").append(parseErrors);
+        long skipped = prefilter.getScannedFiles() - prefilter.getCandidateFiles();
+        if (!prefilter.isAudited() && skipped > 0) {
+            // files the prefilter skipped were never parsed, so their syntax errors are unknown
+            sb.append(" (parsed files only; ").append(skipped).append(" skipped by the prefilter)");
+        }
+        sb.append("\n");
+        sb.append("Prefilter: ").append(prefilter.getCandidateFiles()).append(" of ").append(prefilter.getScannedFiles())
+          .append(" files parsed, precision ").append(percent(prefilter.getPrecision()))
+          .append(", recall ").append(prefilter.isAudited() ? percent(prefilter.getRecall()) : "not audited").append("\n");
+        sb.append("Type resolution (").append(resolution.getMode()).append("): ")
+          .append(resolution.getByName()).append(" by name, ").append(resolution.getGuessed()).append(" guessed, ")
+          .append(resolution.getBySolver()).append(" by solver, ").append(resolution.getFallback()).append(" fallback\n");
+        if (reused >= 0) {
+            sb.append("Analysis cache: ").append(reused).append(" files reused\n");
+        }
 
         List<Finding> topIssues = findings.stream()
                 .filter(f -> "ISSUE".equals(f.kind))
@@ -375,6 +516,55 @@ public class JdbcDetectorEngine {
         return sb.toString();
     }
 
+    private static String percent(double ratio) {
+        return String.format(Locale.ROOT, "%.1f%%", ratio * 100);
+    }
+
+    /**
+     * What one file task produced, whether the prefilter passed the file, whether it came from the cache and how its
+     * types were resolved (null when it was not analyzed).
+     */
+    static final class FileScan {
+        final boolean candidate;
+        final boolean reused;
+        final List<Finding> findings;
+        final TypeResolution types;
+
+        FileScan(boolean candidate, boolean reused, List<Finding> findings, TypeResolution types) {
+            this.candidate = candidate;
+            this.reused = reused;
+            this.findings = findings;
+            this.types = types;
+        }
+    }
+
+    /** Declared types of one file, resolved as --resolution asks; counts how each was decided. */
+    static final class TypeResolution {
+        final JdbcDetectorRequest.Resolution mode;
+        final SharedSourceCache sources;
+        TypeNameResolver names;
+        long byName;
+        long guessed;
+        long bySolver;
+        long fallback;
+
+        TypeResolution(JdbcDetectorRequest.Resolution mode, SharedSourceCache sources) {
+            this.mode = mode;
+            this.sources = sources;
+        }
+
+        void startFile(CompilationUnit cu) {
+            if (mode != JdbcDetectorRequest.Resolution.FULL) names = new TypeNameResolver(cu, sources, JDBC_TYPES);
+        }
+
+        void addTo(long[] totals) {
+            totals[0] += byName;
+            totals[1] += guessed;
+            totals[2] += bySolver;
+            totals[3] += fallback;
+        }
+    }
+
     static class ResourceVar {
         final String name;
         final String typeFqn;
@@ -1,5 +1,6 @@
 package com.mrabdul.tools.jdbcdetector;
 
+import java.util.Collections;
 import java.util.List;
 
 public class JdbcDetectorRequest {
@@ -15,16 +16,72 @@ public class JdbcDetectorRequest {
     // Optional (null/empty means "no JSON")
     private final String jsonOutputPath;
 
+    // "pretty" (default), "compact" or "ndjson"
+    private final String jsonFormat;
+
+    // files analyzed in parallel; <= 0 means one per available core
+    private final int threads;
+
+    // also analyze the files the lexical prefilter skips, to measure its recall
+    private final boolean prefilterAudit;
+
+    // Optional folder keeping findings between runs (null/empty means no cache)
+    private final String cacheDir;
+
+    // Optional file keeping the project's type index between runs (null/empty means rebuilt in memory)
+    private final String typeIndexPath;
+
+    // "full" (default), "fast" or "hybrid"; see Resolution
+    private final String resolution;
+
+    /** How declared types are resolved (--resolution). */
+    public enum Resolution {
+        /** The symbol solver for every declaration, simple-name fallback when it fails. */
+        FULL,
+        /** Names, imports and the type index only; guesses where a project type might shadow a JDBC one. */
+        FAST,
+        /** Like FAST, but the symbol solver decides where FAST would guess. */
+        HYBRID;
+
+        /** Parses a --resolution value; null or empty means FULL. */
+        public static Resolution parse(String s) {
+            if (s == null || s.trim().isEmpty()) return FULL;
+            for (Resolution r : values()) {
+                if (r.name().equalsIgnoreCase(s.trim())) return r;
+            }
+            throw new IllegalArgumentException("Unknown resolution: " + s + " (expected full, fast or hybrid)");
+        }
+    }
+
     public JdbcDetectorRequest(String sourceRootPath,
                                List<String> daoBaseTypes,
                                boolean includeWarnings,
                                boolean includeParseErrors,
                                String jsonOutputPath) {
-        this.sourceRootPath = sourceRootPath;
-        this.daoBaseTypes = daoBaseTypes;
-        this.includeWarnings = includeWarnings;
-        this.includeParseErrors = includeParseErrors;
-        this.jsonOutputPath = jsonOutputPath;
+        this(builder(sourceRootPath)
+                .daoBaseTypes(daoBaseTypes)
+                .includeWarnings(includeWarnings)
+                .includeParseErrors(includeParseErrors)
+                .jsonOutputPath(jsonOutputPath));
+    }
+
+    private JdbcDetectorRequest(Builder b) {
+        this.sourceRootPath = b.sourceRootPath;
+        this.daoBaseTypes = b.daoBaseTypes;
+        this.includeWarnings = b.includeWarnings;
+        this.includeParseErrors = b.includeParseErrors;
+        this.jsonOutputPath = b.jsonOutputPath;
+        this.jsonFormat = b.jsonFormat;
+        this.threads = b.threads;
+        this.prefilterAudit = b.prefilterAudit;
+        this.cacheDir = b.cacheDir;
+        this.typeIndexPath = b.typeIndexPath;
+        this.resolution = b.resolution;
+    }
+
+    /** A request for the sources under sourceRootPath; every option left unset keeps its default. */
+    public static Builder builder(String sourceRootPath) {
+        return new Builder(sourceRootPath);
     }
 
     public String getSourceRootPath() { return sourceRootPath; }
@@ -32,8 +89,47 @@ public class JdbcDetectorRequest {
     public boolean isIncludeWarnings() { return includeWarnings; }
     public boolean isIncludeParseErrors() { return includeParseErrors; }
     public String getJsonOutputPath() { return jsonOutputPath; }
+    public String getJsonFormat() { return jsonFormat; }
+    public int getThreads() { return threads; }
+    public boolean isPrefilterAudit() { return prefilterAudit; }
+    public String getCacheDir() { return cacheDir; }
+    public String getTypeIndexPath() { return typeIndexPath; }
+    public String getResolution() { return resolution; }
 
     public boolean hasDaoFilter() {
         return daoBaseTypes != null && !daoBaseTypes.isEmpty();
     }
+
+    public static final class Builder {
+        private final String sourceRootPath;
+        private List<String> daoBaseTypes = Collections.emptyList();
+        private boolean includeWarnings = true;
+        private boolean includeParseErrors = true;
+        private String jsonOutputPath;
+        private String jsonFormat;
+        private int threads;
+        private boolean prefilterAudit;
+        private String cacheDir;
+        private String typeIndexPath;
+        private String resolution;
+
+        private Builder(String sourceRootPath) {
+            this.sourceRootPath = sourceRootPath;
+        }
+
+        public Builder daoBaseTypes(List<String> daoBaseTypes) { this.daoBaseTypes = daoBaseTypes; return this; }
+        public Builder includeWarnings(boolean includeWarnings) { this.includeWarnings = includeWarnings; return this; }
+        public Builder includeParseErrors(boolean includeParseErrors) { this.includeParseErrors = includeParseErrors; return this; }
+        public Builder jsonOutputPath(String jsonOutputPath) { this.jsonOutputPath = jsonOutputPath; return this; }
+        public Builder jsonFormat(String jsonFormat) { this.jsonFormat = jsonFormat; return this; }
+        public Builder threads(int threads) { this.threads = threads; return this; }
+        public Builder prefilterAudit(boolean prefilterAudit) { this.prefilterAudit = prefilterAudit; return this; }
+        public Builder cacheDir(String cacheDir) { this.cacheDir = cacheDir; return this; }
+        public Builder typeIndexPath(String typeIndexPath) { this.typeIndexPath = typeIndexPath; return this; }
+        public Builder resolution(String resolution) { this.resolution = resolution; return this; }
+
+        public JdbcDetectorRequest build() {
+            return new JdbcDetectorRequest(this);
+        }
+    }
 }
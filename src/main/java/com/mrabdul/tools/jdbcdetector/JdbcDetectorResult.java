@@ -8,17 +8,36 @@ public class JdbcDetectorResult {
     private final long warnCount;
     private final long parseErrorCount;
     private final String reportText;
+    private final PrefilterStats prefilterStats;
+    private final ResolutionStats resolutionStats;
 
     public JdbcDetectorResult(List<Finding> findings,
                               long issueCount,
                               long warnCount,
                               long parseErrorCount,
                               String reportText) {
+        this(findings, issueCount, warnCount, parseErrorCount, reportText, null, null);
+    }
+
+    private JdbcDetectorResult(List<Finding> findings,
+                               long issueCount,
+                               long warnCount,
+                               long parseErrorCount,
+                               String reportText,
+                               PrefilterStats prefilterStats,
+                               ResolutionStats resolutionStats) {
         this.findings = findings;
         this.issueCount = issueCount;
         this.warnCount = warnCount;
         this.parseErrorCount = parseErrorCount;
         this.reportText = reportText;
+        this.prefilterStats = prefilterStats;
+        this.resolutionStats = resolutionStats;
+    }
+
+    /** This result with the run's prefilter and resolution statistics; either may be null. */
+    public JdbcDetectorResult withStats(PrefilterStats prefilterStats, ResolutionStats resolutionStats) {
+        return new JdbcDetectorResult(findings, issueCount, warnCount, parseErrorCount, reportText, prefilterStats, resolutionStats);
     }
 
     public List<Finding> getFindings() { return findings; }
@@ -26,6 +45,72 @@ public class JdbcDetectorResult {
     public long getWarnCount() { return warnCount; }
     public long getParseErrorCount() { return parseErrorCount; }
     public String getReportText() { return reportText; }
+    public PrefilterStats getPrefilterStats() { return prefilterStats; }
+    public ResolutionStats getResolutionStats() { return resolutionStats; }
 
     public boolean isOk() { return issueCount == 0; }
+
+    /**
+     * How well the lexical prefilter picked the files to parse. A file "has findings" when its analysis yields an
+     * ISSUE or WARN. Precision is the share of parsed files that had findings; recall, the share of files with
+     * findings that were parsed, is only known when the skipped files were analyzed as well (--prefilterAudit).
+     */
+    public static class PrefilterStats {
+        private final long scannedFiles;
+        private final long candidateFiles;
+        private final long candidatesWithFindings;
+        private final long skippedWithFindings; // -1 when not audited
+
+        public PrefilterStats(long scannedFiles, long candidateFiles, long candidatesWithFindings, long skippedWithFindings) {
+            this.scannedFiles = scannedFiles;
+            this.candidateFiles = candidateFiles;
+            this.candidatesWithFindings = candidatesWithFindings;
+            this.skippedWithFindings = skippedWithFindings;
+        }
+
+        public long getScannedFiles() { return scannedFiles; }
+        public long getCandidateFiles() { return candidateFiles; }
+        public long getCandidatesWithFindings() { return candidatesWithFindings; }
+        public long getSkippedWithFindings() { return skippedWithFindings; }
+        public boolean isAudited() { return skippedWithFindings >= 0; }
+
+        public double getPrecision() {
+            return candidateFiles == 0 ? 1.0 : (double) candidatesWithFindings / candidateFiles;
+        }
+
+        /** NaN when not audited. */
+        public double getRecall() {
+            if (!isAudited()) return Double.NaN;
+            long withFindings = candidatesWithFindings + skippedWithFindings;
+            return withFindings == 0 ? 1.0 : (double) candidatesWithFindings / withFindings;
+        }
+    }
+
+    /**
+     * How the declared types of the analyzed files were resolved (--resolution): by name and imports, guessed by
+     * name where a project type might shadow a JDBC one, by the symbol solver, or by the simple-name fallback after
+     * the solver failed. Files reused from --cacheDir make no decisions.
+     */
+    public static class ResolutionStats {
+        private final String mode;
+        private final long byName;
+        private final long guessed;
+        private final long bySolver;
+        private final long fallback;
+
+        public ResolutionStats(String mode, long byName, long guessed, long bySolver, long fallback) {
+            this.mode = mode;
+            this.byName = byName;
+            this.guessed = guessed;
+            this.bySolver = bySolver;
+            this.fallback = fallback;
+        }
+
+        public String getMode() { return mode; }
+        public long getByName() { return byName; }
+        public long getGuessed() { return guessed; }
+        public long getBySolver() { return bySolver; }
+        public long getFallback() { return fallback; }
+        public long getTotal() { return byName + guessed + bySolver + fallback; }
+    }
 }
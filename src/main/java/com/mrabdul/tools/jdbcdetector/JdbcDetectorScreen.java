@@ -71,13 +71,12 @@ public class JdbcDetectorScreen implements ToolScreen {
 
                 final List<String> daoTypes = DaoFilterParser.parseCommaSeparated(daoRaw);
 
-                final JdbcDetectorRequest req = new JdbcDetectorRequest(
-                        sourceRoot,
-                        daoTypes,
-                        includeWarnings.isChecked(),
-                        includeParseErrors.isChecked(),
-                        jsonOut.isEmpty() ? null : jsonOut
-                );
+                final JdbcDetectorRequest req = JdbcDetectorRequest.builder(sourceRoot)
+                        .daoBaseTypes(daoTypes)
+                        .includeWarnings(includeWarnings.isChecked())
+                        .includeParseErrors(includeParseErrors.isChecked())
+                        .jsonOutputPath(jsonOut.isEmpty() ? null : jsonOut)
+                        .build();
 
                 if (runningTask != null) runningTask.cancel(true);
 
@@ -0,0 +1,115 @@
+package com.mrabdul.tools.jdbcdetector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Byte-level check run on every file before it is parsed. A file can only yield a finding if its text contains one
+ * of the calls that open a JDBC resource and, with a DAO filter, the simple name of one of the base types; files
+ * without both are skipped. All names are matched in one pass with an Aho-Corasick automaton over the raw UTF-8
+ * bytes, so a skipped file is never decoded or parsed.
+ */
+final class LexicalPrefilter {
+
+    private static final int OPEN_CALL = 1;
+    private static final int DAO_BASE = 2;
+
+    // state x byte -> next state, with failure links already folded in
+    private final int[][] next;
+    // per state: which groups (OPEN_CALL, DAO_BASE) end there
+    private final int[] groups;
+    private final int wanted;
+
+    LexicalPrefilter(Collection<String> openCalls, List<String> daoBaseTypes) {
+        List<byte[]> patterns = new ArrayList<byte[]>();
+        List<Integer> patternGroups = new ArrayList<Integer>();
+        for (String call : openCalls) {
+            patterns.add(call.getBytes(StandardCharsets.UTF_8));
+            patternGroups.add(OPEN_CALL);
+        }
+        int want = OPEN_CALL;
+        if (daoBaseTypes != null && !daoBaseTypes.isEmpty()) {
+            want |= DAO_BASE;
+            for (String base : daoBaseTypes) {
+                if (base == null) continue;
+                String simple = DaoFilterParser.simpleName(base);
+                if (simple.isEmpty()) continue;
+                patterns.add(simple.getBytes(StandardCharsets.UTF_8));
+                patternGroups.add(DAO_BASE);
+            }
+        }
+        this.wanted = want;
+
+        // trie
+        List<int[]> trie = new ArrayList<int[]>();
+        List<Integer> out = new ArrayList<Integer>();
+        trie.add(newRow());
+        out.add(0);
+        for (int p = 0; p < patterns.size(); p++) {
+            int state = 0;
+            for (byte b : patterns.get(p)) {
+                int c = b & 0xFF;
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newRow());
+                    out.add(0);
+                }
+                state = trie.get(state)[c];
+            }
+            out.set(state, out.get(state) | patternGroups.get(p));
+        }
+
+        // breadth-first: failure links, turned into a full transition table
+        int[] fail = new int[trie.size()];
+        Queue<Integer> queue = new ArrayDeque<Integer>();
+        for (int c = 0; c < 256; c++) {
+            int s = trie.get(0)[c];
+            if (s < 0) {
+                trie.get(0)[c] = 0;
+            } else {
+                fail[s] = 0;
+                queue.add(s);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int r = queue.remove();
+            out.set(r, out.get(r) | out.get(fail[r]));
+            for (int c = 0; c < 256; c++) {
+                int s = trie.get(r)[c];
+                if (s < 0) {
+                    trie.get(r)[c] = trie.get(fail[r])[c];
+                } else {
+                    fail[s] = trie.get(fail[r])[c];
+                    queue.add(s);
+                }
+            }
+        }
+
+        this.next = trie.toArray(new int[trie.size()][]);
+        this.groups = new int[out.size()];
+        for (int i = 0; i < groups.length; i++) groups[i] = out.get(i);
+    }
+
+    /** True when content may hold a finding and has to be parsed. */
+    boolean isCandidate(byte[] content) {
+        int state = 0;
+        int seen = 0;
+        for (byte b : content) {
+            state = next[state][b & 0xFF];
+            seen |= groups[state];
+            if (seen == wanted) return true;
+        }
+        return false;
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[256];
+        Arrays.fill(row, -1);
+        return row;
+    }
+}
@@ -0,0 +1,58 @@
+package com.mrabdul.tools.jdbcdetector;
+
+import com.github.javaparser.resolution.TypeSolver;
+import com.mrabdul.tools.SourceTypeCache;
+import com.mrabdul.tools.SourceTypeIndex;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The type solvers of one run's parse workers. Each worker needs its own solver (it parses with its own,
+ * non-thread-safe parser, and the types it finds are bound to its solver), but they all share the project sources
+ * parsed in {@link SourceTypeCache}, so a project file is parsed once per process rather than once per worker.
+ *
+ * With dependency tracking (needed by {@link AnalysisCache}), every project file or folder the solver looks up
+ * while a worker is recording is noted, whether it exists or not.
+ */
+final class SharedSourceCache {
+
+    private final ThreadLocal<Set<Path>> recording = new ThreadLocal<Set<Path>>();
+    private final SourceTypeIndex index;
+    private final boolean trackDependencies;
+
+    SharedSourceCache(SourceTypeIndex index, boolean trackDependencies) {
+        this.index = index;
+        this.trackDependencies = trackDependencies;
+    }
+
+    /** A new type solver for one worker: the JDK by reflection, then the project sources. */
+    TypeSolver typeSolver() {
+        return trackDependencies
+                ? SourceTypeCache.shared().typeSolver(index, this::touch)
+                : SourceTypeCache.shared().typeSolver(index);
+    }
+
+    /** Whether a project source may declare qualifiedName, by the type index; noted like a solver lookup. */
+    boolean mayDeclare(String qualifiedName) {
+        return index.mayDeclare(qualifiedName, trackDependencies ? this::touch : null);
+    }
+
+    /** Starts noting the project paths the calling thread's solver looks up. */
+    void startRecording() {
+        recording.set(new HashSet<Path>());
+    }
+
+    /** Stops recording on the calling thread and returns what it looked up. */
+    Set<Path> stopRecording() {
+        Set<Path> touched = recording.get();
+        recording.remove();
+        return touched == null ? new HashSet<Path>() : touched;
+    }
+
+    private void touch(Path path) {
+        Set<Path> touched = recording.get();
+        if (touched != null) touched.add(path);
+    }
+}
@@ -0,0 +1,110 @@
+package com.mrabdul.tools.jdbcdetector;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.Type;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the type of a declaration from the name it is written with, the file's imports and the project's type
+ * index, without the symbol solver (--resolution fast and hybrid). Only the simple names of the JDBC types need
+ * an answer, since no other simple name can denote one.
+ *
+ * An answer is certain when it is what the solver would say: the name is qualified, declared in the file or
+ * imported by name, or no project source in a package the name could come from declares it (JDK packages are
+ * checked by reflection, as the solver does). When the index says a project source may declare it (the same
+ * package or an on-demand import), the answer is a guess.
+ */
+final class TypeNameResolver {
+
+    // JDK names looked up by reflection, shared by all files
+    private static final Map<String, Boolean> JDK_TYPES = new ConcurrentHashMap<String, Boolean>();
+
+    private final Set<String> jdbcSimpleNames;
+    private final SharedSourceCache sources;
+    private final String packageName;
+    private final Map<String, String> imported = new HashMap<String, String>();
+    private final List<String> onDemand = new ArrayList<String>();
+    private final Set<String> declaredHere = new HashSet<String>();
+
+    TypeNameResolver(CompilationUnit cu, SharedSourceCache sources, Set<String> jdbcTypes) {
+        this.sources = sources;
+        this.jdbcSimpleNames = new HashSet<String>();
+        for (String fqn : jdbcTypes) jdbcSimpleNames.add(DaoFilterParser.simpleName(fqn));
+        this.packageName = cu.getPackageDeclaration().map(p -> p.getNameAsString()).orElse("");
+        for (ImportDeclaration imp : cu.getImports()) {
+            if (imp.isStatic()) continue;
+            String name = imp.getNameAsString();
+            if (imp.isAsterisk()) {
+                onDemand.add(name);
+            } else {
+                imported.put(DaoFilterParser.simpleName(name), name);
+            }
+        }
+        for (TypeDeclaration<?> td : cu.findAll(TypeDeclaration.class)) {
+            declaredHere.add(td.getNameAsString());
+        }
+    }
+
+    /** What one name resolved to; qualifiedName is null when t is not a class type that can be a JDBC type. */
+    static final class Decision {
+        final String qualifiedName;
+        final boolean certain;
+
+        Decision(String qualifiedName, boolean certain) {
+            this.qualifiedName = qualifiedName;
+            this.certain = certain;
+        }
+    }
+
+    Decision resolve(Type t) {
+        // var: only the solver knows what the initializer returns
+        if (t.isVarType()) return new Decision(null, false);
+        if (!t.isClassOrInterfaceType()) return new Decision(null, true);
+
+        ClassOrInterfaceType ct = t.asClassOrInterfaceType();
+        if (ct.getScope().isPresent()) return new Decision(ct.getNameWithScope(), true);
+        String simple = ct.getNameAsString();
+        if (!jdbcSimpleNames.contains(simple)) return new Decision(null, true);
+
+        // Java's order: declared in the file, single-type import, same package, on-demand imports
+        if (declaredHere.contains(simple)) return new Decision(qualify(packageName, simple), true);
+        String single = imported.get(simple);
+        if (single != null) return new Decision(single, true);
+        if (sources.mayDeclare(qualify(packageName, simple))) return new Decision(qualify(packageName, simple), false);
+
+        String jdk = null;
+        for (String pkg : onDemand) {
+            String candidate = qualify(pkg, simple);
+            if (sources.mayDeclare(candidate)) return new Decision(candidate, false);
+            if (jdk == null && isJdkType(candidate)) jdk = candidate;
+        }
+        // unresolved names fall back to JDBC, as after a failed resolve()
+        return new Decision(jdk != null ? jdk : "java.sql." + simple, true);
+    }
+
+    private static String qualify(String pkg, String simple) {
+        return pkg.isEmpty() ? simple : pkg + "." + simple;
+    }
+
+    private static boolean isJdkType(String qualifiedName) {
+        if (!qualifiedName.startsWith("java.") && !qualifiedName.startsWith("javax.")) return false;
+        return JDK_TYPES.computeIfAbsent(qualifiedName, n -> {
+            try {
+                Class.forName(n, false, ClassLoader.getSystemClassLoader());
+                return true;
+            } catch (ClassNotFoundException | LinkageError e) {
+                return false;
+            }
+        });
+    }
+}
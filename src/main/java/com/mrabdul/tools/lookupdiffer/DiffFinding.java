@@ -1,5 +1,8 @@
 package com.mrabdul.tools.lookupdiffer;
 
+import java.util.BitSet;
+import java.util.List;
+
 public class DiffFinding {
     // TABLE_MISSING, COLUMN_MISSING, ROW_MISSING, ROW_MISMATCH, PARSE_ERROR, WARN_NO_PK
     public String kind;
@@ -12,6 +15,13 @@ public class DiffFinding {
     // Optional payloads
     public String ddl;        // e.g. ALTER TABLE...
     public String insertSql;  // e.g. INSERT INTO... or UPDATE...
+    public List<String> changedColumns; // ROW_MISMATCH: the non-PK columns whose value differs
+
+    // ROW_MISSING/ROW_MISMATCH: the source row, its PK column positions and (ROW_MISMATCH) the positions of
+    // changedColumns, for batched patches (not serialized; cleared once the patch sink has the row)
+    transient SqlExportIndex.InsertRow sourceRow;
+    transient BitSet pkColumns;
+    transient BitSet changedPositions;
 
     public DiffFinding() {}
 
@@ -0,0 +1,311 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Sort-merge row matching for --mode external. Instead of a HashMap of every target key, the (key, row ordinal,
+ * row address) records of each side are spilled to sorted run files within a memory budget, merged, and joined
+ * in one streaming pass. Rows spilled by {@link RowSpill} are read back by address only when two rows share a key
+ * and for the rows that turn into findings. Findings are reported in source row order, exactly like the
+ * in-memory matcher (a duplicate target key keeps its last row).
+ *
+ * Run files live in a temporary directory per {@link #match} call, removed when the call returns.
+ * Not thread-safe.
+ */
+final class ExternalRowMatcher {
+
+    interface Listener {
+        void rowMissing(SqlExportIndex.InsertRow src) throws IOException;
+        void rowMismatch(SqlExportIndex.InsertRow src, SqlExportIndex.InsertRow tgt) throws IOException;
+    }
+
+    // runs merged at once; more runs than this are first merged in passes
+    private static final int MAX_FAN_IN = 64;
+    private static final int IO_BUFFER = 64 * 1024;
+    // rough heap cost of one buffered record on top of its key chars
+    private static final int RECORD_OVERHEAD = 72;
+
+    private final long budgetBytes;
+    private final LookupDifferProgress progress;
+    private Path spillDir;
+    private int fileSeq;
+
+    ExternalRowMatcher(long budgetBytes) {
+        this(budgetBytes, new LookupDifferProgress());
+    }
+
+    /** Checks progress for cancellation once per row sorted, merged or joined. */
+    ExternalRowMatcher(long budgetBytes, LookupDifferProgress progress) {
+        this.budgetBytes = budgetBytes;
+        this.progress = progress;
+    }
+
+    /** Matches by PK; a source row whose target row has other values is a mismatch. */
+    void match(List<SqlExportIndex.InsertRow> srcRows, List<SqlExportIndex.InsertRow> tgtRows,
+               PkIndex pkIndex, Listener listener) throws IOException {
+        match(srcRows, tgtRows, pkIndex::key, true, listener);
+    }
+
+    /** Matches tables without a PK by whole-row content; only missing rows are reported. */
+    void matchContent(List<SqlExportIndex.InsertRow> srcRows, List<SqlExportIndex.InsertRow> tgtRows,
+                      Listener listener) throws IOException {
+        match(srcRows, tgtRows, SqlExportIndex.InsertRow::contentKey, false, listener);
+    }
+
+    private void match(List<SqlExportIndex.InsertRow> srcRows, List<SqlExportIndex.InsertRow> tgtRows,
+                       Function<SqlExportIndex.InsertRow, String> key, boolean compare, Listener listener) throws IOException {
+        spillDir = Files.createTempDirectory("lookupdiffer-");
+        try (Source src = Source.of(srcRows);
+             Source tgt = Source.of(tgtRows == null ? Collections.<SqlExportIndex.InsertRow>emptyList() : tgtRows)) {
+            matchSpilled(src, tgt, key, compare, listener);
+        } finally {
+            try (Stream<Path> left = Files.list(spillDir)) {
+                for (Path p : (Iterable<Path>) left::iterator) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(spillDir);
+        }
+    }
+
+    private void matchSpilled(Source srcRows, Source tgtRows, Function<SqlExportIndex.InsertRow, String> key,
+                              boolean compare, Listener listener) throws IOException {
+        Path tgtSorted = sort(tgtRows, key);
+        Path srcSorted = sort(srcRows, key);
+
+        // (source ordinal, source address, target address or -1 when missing)
+        long[] hits = new long[48];
+        int hitCount = 0;
+
+        try (RunReader src = new RunReader(srcSorted); RunReader tgt = new RunReader(tgtSorted)) {
+            // current target group: its key and the address of its last row, read once it is compared
+            String groupKey = null;
+            long groupAddress = -1;
+            SqlExportIndex.InsertRow groupRow = null;
+            boolean tgtMore = tgt.advance();
+            while (src.advance()) {
+                progress.checkCancelled();
+                while ((groupKey == null || groupKey.compareTo(src.key) < 0) && tgtMore) {
+                    groupKey = tgt.key;
+                    groupAddress = tgt.address;
+                    groupRow = null;
+                    while ((tgtMore = tgt.advance()) && tgt.key.equals(groupKey)) {
+                        groupAddress = tgt.address;
+                    }
+                }
+
+                long tgtAddress;
+                if (groupKey != null && groupKey.equals(src.key)) {
+                    if (!compare) continue;
+                    if (groupRow == null) groupRow = tgtRows.read(groupAddress);
+                    if (srcRows.read(src.address).sameContent(groupRow)) continue;
+                    tgtAddress = groupAddress;
+                } else {
+                    tgtAddress = -1;
+                }
+                if (hitCount == hits.length) hits = Arrays.copyOf(hits, hitCount * 2);
+                hits[hitCount++] = src.ord;
+                hits[hitCount++] = src.address;
+                hits[hitCount++] = tgtAddress;
+            }
+        }
+
+        // back to source row order
+        Integer[] order = new Integer[hitCount / 3];
+        for (int i = 0; i < order.length; i++) order[i] = i * 3;
+        final long[] h = hits;
+        Arrays.sort(order, (x, y) -> Long.compare(h[x], h[y]));
+        for (int i : order) {
+            SqlExportIndex.InsertRow s = srcRows.read(hits[i + 1]);
+            if (hits[i + 2] < 0) listener.rowMissing(s);
+            else listener.rowMismatch(s, tgtRows.read(hits[i + 2]));
+        }
+    }
+
+    /** Writes (key, ordinal, address) of every row into one file sorted by key, then ordinal. */
+    private Path sort(Source rows, Function<SqlExportIndex.InsertRow, String> keyOf) throws IOException {
+        List<Path> runs = new ArrayList<Path>();
+        List<Record> buffer = new ArrayList<Record>();
+        long used = 0;
+        long ord = 0;
+        for (SqlExportIndex.InsertRow row = rows.next(); row != null; row = rows.next()) {
+            progress.checkCancelled();
+            String key = keyOf.apply(row);
+            buffer.add(new Record(key, ord++, rows.address()));
+            used += 2L * key.length() + RECORD_OVERHEAD;
+            if (used >= budgetBytes) {
+                runs.add(writeRun(buffer));
+                buffer.clear();
+                used = 0;
+            }
+        }
+        if (!buffer.isEmpty() || runs.isEmpty()) {
+            runs.add(writeRun(buffer));
+        }
+        buffer = null;
+
+        while (runs.size() > 1) {
+            List<Path> next = new ArrayList<Path>();
+            for (int i = 0; i < runs.size(); i += MAX_FAN_IN) {
+                next.add(mergeRuns(runs.subList(i, Math.min(runs.size(), i + MAX_FAN_IN))));
+            }
+            runs = next;
+        }
+        return runs.get(0);
+    }
+
+    private Path writeRun(List<Record> buffer) throws IOException {
+        Collections.sort(buffer);
+        Path run = newRunFile();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), IO_BUFFER))) {
+            for (Record r : buffer) {
+                write(out, r.key, r.ord, r.address);
+            }
+        }
+        return run;
+    }
+
+    private Path mergeRuns(List<Path> runs) throws IOException {
+        Path merged = newRunFile();
+        PriorityQueue<RunReader> heap = new PriorityQueue<RunReader>(runs.size());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(merged), IO_BUFFER))) {
+            for (Path run : runs) {
+                RunReader reader = new RunReader(run);
+                if (reader.advance()) heap.add(reader);
+                else reader.close();
+            }
+            while (!heap.isEmpty()) {
+                progress.checkCancelled();
+                RunReader top = heap.poll();
+                write(out, top.key, top.ord, top.address);
+                if (top.advance()) heap.add(top);
+                else top.close();
+            }
+        } finally {
+            for (RunReader r : heap) r.close();
+        }
+        for (Path run : runs) Files.deleteIfExists(run);
+        return merged;
+    }
+
+    private Path newRunFile() {
+        return spillDir.resolve("run-" + (fileSeq++) + ".bin");
+    }
+
+    private static void write(DataOutputStream out, String key, long ord, long address) throws IOException {
+        byte[] k = key.getBytes(SqlBytes.UTF8);
+        out.writeLong(ord);
+        out.writeLong(address);
+        out.writeInt(k.length);
+        out.write(k);
+    }
+
+    private static final class Record implements Comparable<Record> {
+        final String key;
+        final long ord;
+        final long address;
+
+        Record(String key, long ord, long address) {
+            this.key = key;
+            this.ord = ord;
+            this.address = address;
+        }
+
+        @Override
+        public int compareTo(Record o) {
+            int c = key.compareTo(o.key);
+            return c != 0 ? c : Long.compare(ord, o.ord);
+        }
+    }
+
+    /** Sequential reader over one run file; ordered by its current record. */
+    private static final class RunReader implements Closeable, Comparable<RunReader> {
+        private final DataInputStream in;
+        private byte[] buf = new byte[64];
+        String key;
+        long ord;
+        long address;
+
+        RunReader(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), IO_BUFFER));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                ord = in.readLong();
+            } catch (EOFException eof) {
+                key = null;
+                return false;
+            }
+            address = in.readLong();
+            int len = in.readInt();
+            if (len > buf.length) buf = new byte[Math.max(len, buf.length * 2)];
+            in.readFully(buf, 0, len);
+            key = new String(buf, 0, len, SqlBytes.UTF8);
+            return true;
+        }
+
+        @Override
+        public int compareTo(RunReader o) {
+            int c = key.compareTo(o.key);
+            return c != 0 ? c : Long.compare(ord, o.ord);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /** A side's rows: read in order to be sorted, then by address for comparisons and findings. */
+    private abstract static class Source implements Closeable {
+
+        /** The next row, or null after the last one. */
+        abstract SqlExportIndex.InsertRow next() throws IOException;
+
+        /** Address of the row next() returned last. */
+        abstract long address();
+
+        abstract SqlExportIndex.InsertRow read(long address) throws IOException;
+
+        static Source of(final List<SqlExportIndex.InsertRow> rows) {
+            if (rows instanceof RowSpill.Rows) {
+                final RowSpill.Rows.Cursor cursor = ((RowSpill.Rows) rows).cursor();
+                final RowSpill.Rows.Reader reader = ((RowSpill.Rows) rows).reader();
+                return new Source() {
+                    @Override SqlExportIndex.InsertRow next() throws IOException { return cursor.next(); }
+                    @Override long address() { return cursor.address(); }
+                    @Override SqlExportIndex.InsertRow read(long address) throws IOException { return reader.read(address); }
+                    @Override public void close() throws IOException {
+                        try {
+                            cursor.close();
+                        } finally {
+                            reader.close();
+                        }
+                    }
+                };
+            }
+            // rows on the heap: the address is the index
+            return new Source() {
+                private int next;
+                @Override SqlExportIndex.InsertRow next() { return next < rows.size() ? rows.get(next++) : null; }
+                @Override long address() { return next - 1; }
+                @Override SqlExportIndex.InsertRow read(long address) { return rows.get((int) address); }
+                @Override public void close() { }
+            };
+        }
+    }
+}
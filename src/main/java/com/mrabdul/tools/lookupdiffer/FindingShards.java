@@ -0,0 +1,100 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes one table's findings for the HTML report as data shards of at most {@link #SHARD_SIZE} findings each,
+ * split by kind, so a table page only carries a small manifest and the viewer loads the rows it shows.
+ *
+ * A shard is a script, data/{stem}_{kind}_{n}.js, that hands its rows to lookupDifferShard(name, rows). Script
+ * tags (unlike fetch) also work when the report is opened straight from disk.
+ */
+final class FindingShards {
+
+    static final int SHARD_SIZE = 1000;
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private FindingShards() {}
+
+    /**
+     * Writes the shards of findings (all of one table) under dataDir and returns the manifest as a JSON object:
+     * {"table", "stem", "shardSize", "kinds": [{"kind", "count", "shards"}]}, kinds in order of first finding.
+     */
+    static String write(Path dataDir, String stem, String tableName, List<DiffFinding> findings) throws IOException {
+        Map<String, List<DiffFinding>> byKind = new LinkedHashMap<String, List<DiffFinding>>();
+        for (DiffFinding f : findings) {
+            List<DiffFinding> list = byKind.get(f.kind);
+            if (list == null) {
+                list = new ArrayList<DiffFinding>();
+                byKind.put(f.kind, list);
+            }
+            list.add(f);
+        }
+
+        StringWriter manifest = new StringWriter();
+        try (JsonGenerator m = JSON.createGenerator(manifest)) {
+            m.writeStartObject();
+            m.writeStringField("table", tableName);
+            m.writeStringField("stem", stem);
+            m.writeNumberField("shardSize", SHARD_SIZE);
+            m.writeArrayFieldStart("kinds");
+            for (Map.Entry<String, List<DiffFinding>> e : byKind.entrySet()) {
+                List<DiffFinding> list = e.getValue();
+                int shards = (list.size() + SHARD_SIZE - 1) / SHARD_SIZE;
+                for (int n = 0; n < shards; n++) {
+                    String name = shardName(stem, e.getKey(), n);
+                    writeShard(dataDir.resolve(name + ".js"), name,
+                            list.subList(n * SHARD_SIZE, Math.min(list.size(), (n + 1) * SHARD_SIZE)));
+                }
+                m.writeStartObject();
+                m.writeStringField("kind", e.getKey());
+                m.writeNumberField("count", list.size());
+                m.writeNumberField("shards", shards);
+                m.writeEndObject();
+            }
+            m.writeEndArray();
+            m.writeEndObject();
+        }
+        return manifest.toString();
+    }
+
+    static String shardName(String stem, String kind, int n) {
+        return stem + "_" + String.valueOf(kind).toLowerCase(Locale.ROOT) + "_" + n;
+    }
+
+    private static void writeShard(Path file, String name, List<DiffFinding> rows) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(("lookupDifferShard(\"" + name + "\", ").getBytes(StandardCharsets.UTF_8));
+            JsonGenerator g = JSON.createGenerator(out, JsonEncoding.UTF8);
+            g.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            g.writeStartArray();
+            for (DiffFinding f : rows) {
+                g.writeStartObject();
+                g.writeStringField("file", f.file);
+                g.writeNumberField("line", f.line);
+                g.writeStringField("message", f.message);
+                if (f.ddl != null && !f.ddl.isEmpty()) g.writeStringField("ddl", f.ddl);
+                if (f.insertSql != null && !f.insertSql.isEmpty()) g.writeStringField("insertSql", f.insertSql);
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            g.close();
+            out.write(");\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
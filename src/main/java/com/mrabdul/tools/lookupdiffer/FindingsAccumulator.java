@@ -0,0 +1,109 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import com.mrabdul.tools.FindingsJsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects findings in order and counts them per kind and per table as they are added, so the result,
+ * the text report and the HTML dashboard never have to re-scan the list. Also keeps the first
+ * {@link #SAMPLE_SIZE} findings of each kind for the text report. Each finding is also handed to the
+ * --jsonOut writer the moment it is added.
+ */
+final class FindingsAccumulator {
+
+    enum Kind { TABLE_MISSING, COLUMN_MISSING, PK_MISSING, ROW_MISSING, ROW_MISMATCH, WARN_NO_PK, PARSE_ERROR }
+
+    static final int SAMPLE_SIZE = 50;
+
+    private static final Map<String, Kind> KINDS = new HashMap<String, Kind>();
+    static {
+        for (Kind k : Kind.values()) KINDS.put(k.name(), k);
+    }
+
+    private final List<DiffFinding> findings = new ArrayList<DiffFinding>();
+    private final long[] totals = new long[Kind.values().length];
+    private final EnumMap<Kind, List<DiffFinding>> samples = new EnumMap<Kind, List<DiffFinding>>(Kind.class);
+    private final List<DiffFinding> rowSamples = new ArrayList<DiffFinding>();
+
+    // upper-cased table -> per-kind counts, with the count of all its findings in the last slot
+    private final Map<String, long[]> byTable = new HashMap<String, long[]>();
+
+    private final FindingsJsonWriter json;
+
+    FindingsAccumulator() {
+        this(null);
+    }
+
+    FindingsAccumulator(FindingsJsonWriter json) {
+        this.json = json;
+    }
+
+    void add(DiffFinding f) throws IOException {
+        findings.add(f);
+        if (json != null) json.write(f);
+        Kind kind = KINDS.get(f.kind);
+        if (kind != null) {
+            totals[kind.ordinal()]++;
+            List<DiffFinding> sample = samples.get(kind);
+            if (sample == null) {
+                sample = new ArrayList<DiffFinding>();
+                samples.put(kind, sample);
+            }
+            if (sample.size() < SAMPLE_SIZE) sample.add(f);
+            if ((kind == Kind.ROW_MISSING || kind == Kind.ROW_MISMATCH) && rowSamples.size() < SAMPLE_SIZE) {
+                rowSamples.add(f);
+            }
+        }
+        if (f.table != null && !f.table.isEmpty()) {
+            String key = f.table.toUpperCase();
+            long[] counts = byTable.get(key);
+            if (counts == null) {
+                counts = new long[totals.length + 1];
+                byTable.put(key, counts);
+            }
+            if (kind != null) counts[kind.ordinal()]++;
+            counts[totals.length]++;
+        }
+    }
+
+    List<DiffFinding> list() {
+        return findings;
+    }
+
+    long count(Kind kind) {
+        return totals[kind.ordinal()];
+    }
+
+    /** First findings of this kind, at most {@link #SAMPLE_SIZE}. */
+    List<DiffFinding> sample(Kind kind) {
+        List<DiffFinding> sample = samples.get(kind);
+        return sample != null ? sample : new ArrayList<DiffFinding>();
+    }
+
+    /** First ROW_MISSING/ROW_MISMATCH findings in order, at most {@link #SAMPLE_SIZE}. */
+    List<DiffFinding> rowSample() {
+        return rowSamples;
+    }
+
+    /** Upper-cased names of all tables with findings. */
+    Set<String> tables() {
+        return byTable.keySet();
+    }
+
+    long tableCount(String tableKey) {
+        long[] counts = byTable.get(tableKey);
+        return counts == null ? 0 : counts[totals.length];
+    }
+
+    long tableCount(String tableKey, Kind kind) {
+        long[] counts = byTable.get(tableKey);
+        return counts == null ? 0 : counts[kind.ordinal()];
+    }
+}
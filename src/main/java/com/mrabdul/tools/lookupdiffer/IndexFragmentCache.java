@@ -0,0 +1,129 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * On-disk cache of per-file index fragments (--cacheDir). One entry per export file, named after a hash of its
+ * path. An entry is only used when the file's path and size, and the parse settings that shape the index (case
+ * sensitivity, table filter, row hashes), match what was stored. An unchanged mtime then settles it; only a file
+ * whose mtime moved is hashed, and reused (with its entry re-stamped) when its content hash still matches.
+ *
+ * Only memory-mapped files are cached, because cached rows are offsets into the file. Safe for concurrent use;
+ * a broken or stale entry is treated as a miss and rewritten.
+ */
+final class IndexFragmentCache {
+
+    private static final int MAGIC = 0x4C444643; // "LDFC"
+    private static final int VERSION = 1;
+
+    private final Path dir;
+
+    IndexFragmentCache(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+    }
+
+    /** What an entry must match to be reused. */
+    static final class Key {
+        final String file;
+        final long size;
+        final long mtime;
+        final String settings;
+        private final MappedSqlFile mapped;
+        private RowFingerprint content;
+
+        Key(String file, long size, long mtime, String settings, MappedSqlFile mapped) {
+            this.file = file;
+            this.size = size;
+            this.mtime = mtime;
+            this.settings = settings;
+            this.mapped = mapped;
+        }
+
+        /** Hash of the file's bytes, computed on first use: when the mtime moved, or when the entry is stored. */
+        RowFingerprint content() {
+            if (content == null) content = mapped.hashContent(new RowFingerprint().reset()).finish();
+            return content;
+        }
+    }
+
+    static Key key(Path file, MappedSqlFile mapped, LookupDifferRequest req) throws IOException {
+        return new Key(file.toString(), mapped.length(), Files.getLastModifiedTime(file).toMillis(), settings(req), mapped);
+    }
+
+    /** The parse settings that shape an index; also checked when an {@link IndexSnapshot} is loaded. */
+    static String settings(LookupDifferRequest req) {
+        String filter = req.getTableNameContains() == null ? "" : req.getTableNameContains().trim();
+        return "ci=" + req.isCaseInsensitive() + ";filter=" + filter + ";rowHashes=" + req.isRowHashes();
+    }
+
+    /** The cached fragment for key, with rows pointing into mapped, or null on a miss. */
+    SqlExportIndex load(Key key, MappedSqlFile mapped) {
+        Path entry = entryFor(key.file);
+        if (!Files.isRegularFile(entry)) return null;
+        SqlExportIndex idx;
+        boolean touched;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry), 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            if (!key.file.equals(IndexFragmentCodec.readString(in))) return null;
+            long size = in.readLong();
+            long mtime = in.readLong();
+            long hashHigh = in.readLong();
+            long hashLow = in.readLong();
+            if (size != key.size || !key.settings.equals(IndexFragmentCodec.readString(in))) return null;
+            // same size and mtime: trusted without reading the file
+            touched = mtime != key.mtime;
+            if (touched && (key.content().high() != hashHigh || key.content().low() != hashLow)) return null;
+            idx = IndexFragmentCodec.read(in, mapped, key.file);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+        // a touched but unchanged file gets the new mtime, so the next run skips the hash again
+        if (touched) store(key, idx);
+        return idx;
+    }
+
+    /** Stores a freshly parsed fragment; failures only cost the next run a re-parse. */
+    void store(Key key, SqlExportIndex idx) {
+        Path entry = entryFor(key.file);
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(dir, entry.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                IndexFragmentCodec.writeString(out, key.file);
+                out.writeLong(key.size);
+                out.writeLong(key.mtime);
+                out.writeLong(key.content().high());
+                out.writeLong(key.content().low());
+                IndexFragmentCodec.writeString(out, key.settings);
+                IndexFragmentCodec.write(out, idx);
+            }
+            Files.move(tmp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+        } catch (IOException | RuntimeException e) {
+            // ignore; the cache is only an accelerator
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // nothing left to do
+                }
+            }
+        }
+    }
+
+    private Path entryFor(String file) {
+        RowFingerprint name = new RowFingerprint().reset().putBytes(file.getBytes(SqlBytes.UTF8)).finish();
+        return dir.resolve(String.format("%016x%016x.idx", name.high(), name.low()));
+    }
+}
@@ -0,0 +1,260 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of a per-file {@link SqlExportIndex}: the DDL log, PKs, and rows as offsets into the
+ * file's bytes. Strings repeated across rows (table names, column layouts) are written once and referenced by
+ * id, and row offsets and line numbers are stored as variable-length deltas.
+ *
+ * Reading replays the DDL log through {@link SqlExportIndex#addDdl}, so a decoded fragment merges exactly
+ * like the freshly parsed one.
+ *
+ * The relocated form stores a whole merged index for {@link IndexSnapshot}: every DDL and row keeps its own file
+ * name, and rows point into a copy of their statements laid back to back in table and row order.
+ */
+final class IndexFragmentCodec {
+
+    private IndexFragmentCodec() {}
+
+    /** Writes a fragment whose rows all point into one file's bytes. */
+    static void write(DataOutput out, SqlExportIndex idx) throws IOException {
+        write(out, idx, false);
+    }
+
+    /** Writes idx in the relocated form; the statements go to the snapshot's text in the same order. */
+    static void writeRelocated(DataOutput out, SqlExportIndex idx) throws IOException {
+        write(out, idx, true);
+    }
+
+    /** Reads a fragment written by {@link #write}; rows point into text and report file as their file. */
+    static SqlExportIndex read(DataInput in, SqlBytes text, String file) throws IOException {
+        return read(in, text, file, false, 0L);
+    }
+
+    /** Reads an index written by {@link #writeRelocated}; its statements start at textBase in text. */
+    static SqlExportIndex readRelocated(DataInput in, SqlBytes text, long textBase) throws IOException {
+        return read(in, text, null, true, textBase);
+    }
+
+    private static void write(DataOutput out, SqlExportIndex idx, boolean relocated) throws IOException {
+        List<Map.Entry<String, SqlExportIndex.TableDdl>> log = idx.ddlLog();
+        writeVarLong(out, log.size());
+        for (Map.Entry<String, SqlExportIndex.TableDdl> e : log) {
+            SqlExportIndex.TableDdl ddl = e.getValue();
+            writeString(out, e.getKey());
+            writeString(out, ddl.tableName);
+            if (relocated) writeNullableString(out, ddl.file);
+            writeVarLong(out, ddl.line);
+            writeNullableString(out, ddl.fullSql);
+            writeVarLong(out, ddl.columnsByKey.size());
+            for (Map.Entry<String, SqlExportIndex.ColumnDef> c : ddl.columnsByKey.entrySet()) {
+                writeString(out, c.getKey());
+                writeString(out, c.getValue().columnName);
+                writeString(out, c.getValue().columnSqlDef);
+                writeVarLong(out, c.getValue().line);
+            }
+        }
+
+        writeVarLong(out, idx.pksByTableKey.size());
+        for (Map.Entry<String, List<String>> e : idx.pksByTableKey.entrySet()) {
+            writeString(out, e.getKey());
+            writeStrings(out, e.getValue());
+        }
+        writeVarLong(out, idx.pkDdlsByTableKey.size());
+        for (Map.Entry<String, String> e : idx.pkDdlsByTableKey.entrySet()) {
+            writeString(out, e.getKey());
+            writeNullableString(out, e.getValue());
+        }
+
+        Map<List<String>, Integer> layoutIds = new IdentityHashMap<List<String>, Integer>();
+        long textPos = 0;
+        String lastFile = null;
+        writeVarLong(out, idx.rowsByTableKey.size());
+        for (Map.Entry<String, List<SqlExportIndex.InsertRow>> e : idx.rowsByTableKey.entrySet()) {
+            writeString(out, e.getKey());
+            writeVarLong(out, e.getValue().size());
+            String lastName = null;
+            long lastEnd = textPos;
+            int lastLine = 0;
+            for (SqlExportIndex.InsertRow r : e.getValue()) {
+                // flags: 1 = table name changed, 2 = new layout, 4 = hashed, 8 = file changed (relocated only)
+                Integer layoutId = layoutIds.get(r.columns);
+                int flags = (r.tableName.equals(lastName) ? 0 : 1) | (layoutId == null ? 2 : 0) | (r.hashed ? 4 : 0)
+                        | (relocated && !r.file.equals(lastFile) ? 8 : 0);
+                out.writeByte(flags);
+                if ((flags & 1) != 0) {
+                    writeString(out, r.tableName);
+                    lastName = r.tableName;
+                }
+                if ((flags & 8) != 0) {
+                    writeString(out, r.file);
+                    lastFile = r.file;
+                }
+                if (layoutId == null) {
+                    layoutId = layoutIds.size();
+                    layoutIds.put(r.columns, layoutId);
+                    writeStrings(out, r.columns);
+                } else {
+                    writeVarLong(out, layoutId);
+                }
+                long start = relocated ? textPos : r.start;
+                writeVarLong(out, zigZag(r.line - lastLine));
+                writeVarLong(out, zigZag(start - lastEnd));
+                writeVarLong(out, r.end - r.start);
+                writeVarLong(out, r.valuesStart - r.start);
+                writeVarLong(out, r.valuesEnd - r.valuesStart);
+                if (r.hashed) {
+                    out.writeLong(r.hashHigh);
+                    out.writeLong(r.hashLow);
+                }
+                lastLine = r.line;
+                lastEnd = start + (r.end - r.start);
+                if (relocated) textPos = lastEnd;
+            }
+        }
+    }
+
+    private static SqlExportIndex read(DataInput in, SqlBytes text, String file, boolean relocated, long textBase)
+            throws IOException {
+        SqlExportIndex idx = new SqlExportIndex();
+
+        long ddlCount = readVarLong(in);
+        for (long i = 0; i < ddlCount; i++) {
+            String tableKey = readString(in);
+            String tableName = readString(in);
+            String ddlFile = relocated ? readNullableString(in) : file;
+            int line = (int) readVarLong(in);
+            String fullSql = readNullableString(in);
+            int cols = (int) readVarLong(in);
+            Map<String, SqlExportIndex.ColumnDef> columns = new LinkedHashMap<String, SqlExportIndex.ColumnDef>();
+            for (int c = 0; c < cols; c++) {
+                String key = readString(in);
+                columns.put(key, new SqlExportIndex.ColumnDef(readString(in), readString(in), (int) readVarLong(in)));
+            }
+            SqlExportIndex.TableDdl ddl = new SqlExportIndex.TableDdl(tableName, ddlFile, line, columns);
+            ddl.fullSql = fullSql;
+            idx.addDdl(tableKey, ddl);
+        }
+
+        long pkCount = readVarLong(in);
+        for (long i = 0; i < pkCount; i++) {
+            String key = readString(in);
+            idx.pksByTableKey.put(key, readStrings(in));
+        }
+        long pkDdlCount = readVarLong(in);
+        for (long i = 0; i < pkDdlCount; i++) {
+            String key = readString(in);
+            idx.pkDdlsByTableKey.put(key, readNullableString(in));
+        }
+
+        List<List<String>> layouts = new ArrayList<List<String>>();
+        long textPos = textBase;
+        String rowFile = file;
+        long tableCount = readVarLong(in);
+        for (long t = 0; t < tableCount; t++) {
+            String tableKey = readString(in);
+            int rowCount = (int) readVarLong(in);
+            List<SqlExportIndex.InsertRow> rows = new ArrayList<SqlExportIndex.InsertRow>(rowCount);
+            String name = null;
+            long lastEnd = textPos;
+            int lastLine = 0;
+            for (int r = 0; r < rowCount; r++) {
+                int flags = in.readUnsignedByte();
+                if ((flags & 1) != 0) name = readString(in);
+                if ((flags & 8) != 0) rowFile = readString(in);
+                List<String> columns;
+                if ((flags & 2) != 0) {
+                    columns = Collections.unmodifiableList(readStrings(in));
+                    layouts.add(columns);
+                } else {
+                    columns = layouts.get((int) readVarLong(in));
+                }
+                int line = lastLine + (int) unZigZag(readVarLong(in));
+                long start = lastEnd + unZigZag(readVarLong(in));
+                long end = start + readVarLong(in);
+                long valuesStart = start + readVarLong(in);
+                long valuesEnd = valuesStart + readVarLong(in);
+                boolean hashed = (flags & 4) != 0;
+                long hashHigh = hashed ? in.readLong() : 0L;
+                long hashLow = hashed ? in.readLong() : 0L;
+                rows.add(new SqlExportIndex.InsertRow(name, rowFile, line, columns,
+                        text, start, end, valuesStart, valuesEnd, hashed, hashHigh, hashLow));
+                lastLine = line;
+                lastEnd = end;
+            }
+            if (relocated) textPos = lastEnd;
+            idx.rowsByTableKey.put(tableKey, rows);
+        }
+        return idx;
+    }
+
+    // ---- primitives ----
+
+    static void writeVarLong(DataOutput out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static void writeString(DataOutput out, String s) throws IOException {
+        byte[] b = s.getBytes(SqlBytes.UTF8);
+        writeVarLong(out, b.length);
+        out.write(b);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] b = new byte[(int) readVarLong(in)];
+        in.readFully(b);
+        return new String(b, SqlBytes.UTF8);
+    }
+
+    static void writeNullableString(DataOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) writeString(out, s);
+    }
+
+    static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+
+    private static void writeStrings(DataOutput out, List<String> list) throws IOException {
+        writeVarLong(out, list.size());
+        for (String s : list) writeString(out, s);
+    }
+
+    private static List<String> readStrings(DataInput in) throws IOException {
+        int n = (int) readVarLong(in);
+        List<String> list = new ArrayList<String>(n);
+        for (int i = 0; i < n; i++) list.add(readString(in));
+        return list;
+    }
+
+    private static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
@@ -0,0 +1,94 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * A parsed export folder saved as one file (--saveSourceSnapshot / --saveTargetSnapshot), accepted by --sourceDir
+ * and --targetDir in place of the folder, so an export compared against several environments is parsed once.
+ *
+ * Layout: a fixed header (magic, version, index offset, text length), the INSERT statements of all rows back to
+ * back, then the parse settings and the index in the relocated form of {@link IndexFragmentCodec}. Loading maps
+ * the file and points the rows into it, so only the index part is read onto the heap.
+ */
+final class IndexSnapshot {
+
+    private static final int MAGIC = 0x4C44534E; // "LDSN"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+
+    private IndexSnapshot() {}
+
+    /** Writes idx, parsed with settings, to file (replacing it once complete). */
+    static void write(Path file, SqlExportIndex idx, String settings) throws IOException {
+        long textLength = 0;
+        for (List<SqlExportIndex.InsertRow> rows : idx.rowsByTableKey.values()) {
+            for (SqlExportIndex.InsertRow r : rows) textLength += r.end - r.start;
+        }
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(HEADER_BYTES + textLength);
+                out.writeLong(textLength);
+                byte[] buf = new byte[64 * 1024];
+                for (List<SqlExportIndex.InsertRow> rows : idx.rowsByTableKey.values()) {
+                    for (SqlExportIndex.InsertRow r : rows) copy(r.text, r.start, r.end, out, buf);
+                }
+                IndexFragmentCodec.writeString(out, settings);
+                IndexFragmentCodec.writeRelocated(out, idx);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            tmp = null;
+        } finally {
+            if (tmp != null) Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Loads a snapshot; it must have been parsed with the same settings as this run. */
+    static SqlExportIndex load(Path file, String settings) throws IOException {
+        MappedSqlFile mapped = MappedSqlFile.map(file);
+        try (SeekableByteChannel ch = Files.newByteChannel(file)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch), 64 * 1024));
+            if (mapped.length() < HEADER_BYTES || in.readInt() != MAGIC) {
+                throw new IllegalArgumentException("Not a lookupdiffer snapshot: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported lookupdiffer snapshot version " + version + ": " + file);
+            }
+            long indexOffset = in.readLong();
+            ch.position(indexOffset);
+            in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(ch), 64 * 1024));
+            String stored = IndexFragmentCodec.readString(in);
+            if (!stored.equals(settings)) {
+                throw new IllegalArgumentException("Snapshot " + file + " was parsed with " + stored + ", this run uses " + settings);
+            }
+            return IndexFragmentCodec.readRelocated(in, mapped, HEADER_BYTES);
+        }
+    }
+
+    private static void copy(SqlBytes text, long start, long end, DataOutputStream out, byte[] buf) throws IOException {
+        int n = 0;
+        for (long pos = start; pos < end; pos++) {
+            if (n == buf.length) {
+                out.write(buf, 0, n);
+                n = 0;
+            }
+            buf[n++] = text.byteAt(pos);
+        }
+        out.write(buf, 0, n);
+    }
+}
@@ -0,0 +1,163 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses {@code INSERT INTO <table> (<cols>) VALUES (<vals>)} by scanning bytes. Nothing is upper-cased,
+ * split or copied per row: the table name and column list are only decoded when they differ from the
+ * previous row of the same file (exports write a table's rows back to back), and values stay as offsets.
+ *
+ * With row hashes on, each row's values are fingerprinted once here so the diff never reads them again.
+ * With a {@link ValueDictionary}, each row's values are interned into it and kept as ids.
+ *
+ * One instance per file; not thread-safe.
+ */
+final class InsertRowParser {
+
+    private final String file;
+    private final boolean ci;
+    private final String tableFilter;
+    private final boolean hashRows;
+    private final ValueTupleCursor cursor = new ValueTupleCursor();
+    private final RowFingerprint fingerprint = new RowFingerprint();
+    private final ValueDictionary dictionary;
+
+    private SqlBytes lastTableText;
+    private long lastTableStart;
+    private long lastTableEnd;
+    private String lastTableName;
+    private String lastTableKey;
+    private boolean lastTableAccepted;
+
+    private SqlBytes lastColsText;
+    private long lastColsStart;
+    private long lastColsEnd;
+    private List<String> lastColumns;
+    private final Map<List<String>, List<String>> layouts = new HashMap<List<String>, List<String>>();
+
+    private String lastDictTableKey;
+    private List<String> lastDictColumns;
+    private ValueDictionary.Column[] lastValueColumns;
+
+    InsertRowParser(String file, boolean ci, String tableFilter) {
+        this(file, ci, tableFilter, false);
+    }
+
+    InsertRowParser(String file, boolean ci, String tableFilter, boolean hashRows) {
+        this(file, ci, tableFilter, hashRows, null);
+    }
+
+    InsertRowParser(String file, boolean ci, String tableFilter, boolean hashRows, ValueDictionary dictionary) {
+        this.file = file;
+        this.dictionary = dictionary;
+        this.hashRows = hashRows;
+        this.ci = ci;
+        this.tableFilter = tableFilter == null || tableFilter.trim().isEmpty() ? null : tableFilter.trim();
+    }
+
+    /** Statement starts with the INSERT keyword (callers skip leading whitespace/comments). */
+    static boolean isInsert(SqlBytes b, long start, long end) {
+        return SqlByteScanner.matchKeyword(b, start, end, "INSERT");
+    }
+
+    /** Parses one INSERT statement into idx; malformed or filtered-out statements are skipped. */
+    void parse(SqlBytes b, long start, long end, int line, SqlExportIndex idx) {
+        long p = start + "INSERT".length();
+        long q = SqlByteScanner.skipInsignificant(b, p, end);
+        if (q == p || !SqlByteScanner.matchKeyword(b, q, end, "INTO")) return;
+        p = q + "INTO".length();
+
+        long open = SqlByteScanner.indexOf(b, '(', p, end);
+        if (open < 0) return;
+        if (!resolveTable(b, p, open)) return;
+
+        long colsClose = SqlByteScanner.closingParen(b, open, end);
+        if (colsClose < 0) return;
+
+        p = SqlByteScanner.skipInsignificant(b, colsClose + 1, end);
+        if (!SqlByteScanner.matchKeyword(b, p, end, "VALUES")) return;
+        p = SqlByteScanner.skipInsignificant(b, p + "VALUES".length(), end);
+        if (p >= end || b.byteAt(p) != '(') return;
+        long valsClose = SqlByteScanner.closingParen(b, p, end);
+        if (valsClose < 0) return;
+
+        List<String> columns = resolveColumns(b, open + 1, colsClose);
+        if (dictionary != null) {
+            ValueDictionary.Column[] valueColumns = valueColumns(columns);
+            int[] ids = dictionary.encode(valueColumns, cursor.reset(b, p + 1, valsClose));
+            if (hashRows) fingerprint.reset().putTokens(cursor.reset(b, p + 1, valsClose)).finish();
+            idx.addRow(lastTableKey, new SqlExportIndex.InsertRow(lastTableName, file, line, columns,
+                    b, start, end, p + 1, valsClose, hashRows,
+                    hashRows ? fingerprint.high() : 0L, hashRows ? fingerprint.low() : 0L, valueColumns, ids));
+        } else if (hashRows) {
+            fingerprint.reset().putTokens(cursor.reset(b, p + 1, valsClose)).finish();
+            idx.addRow(lastTableKey, new SqlExportIndex.InsertRow(lastTableName, file, line, columns,
+                    b, start, end, p + 1, valsClose, true, fingerprint.high(), fingerprint.low()));
+        } else {
+            idx.addRow(lastTableKey, new SqlExportIndex.InsertRow(
+                    lastTableName, file, line, columns, b, start, end, p + 1, valsClose));
+        }
+    }
+
+    /**
+     * The table name followed by the column names of the INSERT in b[start, end) as they are written: schema
+     * qualifier, quotes and case kept, where the index holds them cleaned. Empty when the statement is malformed.
+     */
+    static List<String> writtenNames(SqlBytes b, long start, long end) {
+        long p = SqlByteScanner.skipInsignificant(b, start + "INSERT".length(), end) + "INTO".length();
+        long open = SqlByteScanner.indexOf(b, '(', p, end);
+        long close = open < 0 ? -1 : SqlByteScanner.closingParen(b, open, end);
+        if (close < 0) return Collections.emptyList();
+        List<String> names = new ArrayList<String>();
+        names.add(SqlParsers.normalizeSql(b.decode(p, open)).trim());
+        names.addAll(SqlParsers.splitTopLevelComma(SqlParsers.normalizeSql(b.decode(open + 1, close))));
+        return names;
+    }
+
+    private ValueDictionary.Column[] valueColumns(List<String> columns) {
+        if (!lastTableKey.equals(lastDictTableKey) || columns != lastDictColumns) {
+            lastValueColumns = dictionary.columns(lastTableKey, columns);
+            lastDictTableKey = lastTableKey;
+            lastDictColumns = columns;
+        }
+        return lastValueColumns;
+    }
+
+    private boolean resolveTable(SqlBytes b, long start, long end) {
+        if (lastTableText == null || !SqlBytes.regionEquals(b, start, end, lastTableText, lastTableStart, lastTableEnd)) {
+            String tableName = SqlParsers.cleanIdentifier(SqlParsers.normalizeSql(b.decode(start, end)));
+            lastTableText = b;
+            lastTableStart = start;
+            lastTableEnd = end;
+            lastTableName = tableName;
+            lastTableKey = ci ? tableName.toUpperCase() : tableName;
+            lastTableAccepted = tableFilter == null
+                    || (ci ? tableName.toLowerCase().contains(tableFilter.toLowerCase()) : tableName.contains(tableFilter));
+        }
+        return lastTableAccepted;
+    }
+
+    private List<String> resolveColumns(SqlBytes b, long start, long end) {
+        if (lastColsText == null || !SqlBytes.regionEquals(b, start, end, lastColsText, lastColsStart, lastColsEnd)) {
+            List<String> cols = new ArrayList<String>();
+            for (String c : SqlParsers.splitTopLevelComma(SqlParsers.normalizeSql(b.decode(start, end)))) {
+                String clean = SqlParsers.cleanIdentifier(c);
+                cols.add(ci ? clean.toUpperCase() : clean);
+            }
+            List<String> layout = layouts.get(cols);
+            if (layout == null) {
+                layout = Collections.unmodifiableList(cols);
+                layouts.put(cols, layout);
+            }
+            lastColsText = b;
+            lastColsStart = start;
+            lastColsEnd = end;
+            lastColumns = layout;
+        }
+        return lastColumns;
+    }
+}
@@ -2,8 +2,10 @@ package com.mrabdul.tools.lookupdiffer;
 
 import com.mrabdul.cli.CliArgs;
 import com.mrabdul.tools.CliCommand;
+import com.mrabdul.tools.FindingsJsonWriter;
 import org.springframework.stereotype.Component;
 
+import java.io.Closeable;
 import java.util.Map;
 
 @Component
@@ -40,8 +42,65 @@ public class LookupDifferCliCommand implements CliCommand {
         String jsonOut = CliArgs.get(a, "jsonOut", "");
         String htmlOut = CliArgs.get(a, "htmlOut", "");
         String tableContains = CliArgs.get(a, "tableContains", "");
+        String cacheDir = CliArgs.get(a, "cacheDir", "");
+        String saveSourceSnapshot = CliArgs.get(a, "saveSourceSnapshot", "");
+        String saveTargetSnapshot = CliArgs.get(a, "saveTargetSnapshot", "");
 
         boolean caseInsensitive = CliArgs.getBool(a, "caseInsensitive", true);
+        boolean rowHashes = CliArgs.getBool(a, "rowHashes", false);
+        boolean dictionary = CliArgs.getBool(a, "dictionary", false);
+
+        int threads;
+        try {
+            threads = Integer.parseInt(CliArgs.get(a, "threads", "0").trim());
+        } catch (NumberFormatException e) {
+            System.err.println("ERROR: --threads must be a number");
+            return 2;
+        }
+
+        String mode = CliArgs.get(a, "mode", "memory").trim().toLowerCase();
+        if (!"memory".equals(mode) && !"external".equals(mode)) {
+            System.err.println("ERROR: --mode must be memory or external");
+            return 2;
+        }
+        if ("external".equals(mode) && (dictionary || !cacheDir.trim().isEmpty())) {
+            System.err.println("ERROR: --mode external cannot be combined with --dictionary or --cacheDir");
+            return 2;
+        }
+
+        int memoryBudgetMb;
+        try {
+            memoryBudgetMb = Integer.parseInt(CliArgs.get(a, "memoryBudgetMb", "0").trim());
+        } catch (NumberFormatException e) {
+            System.err.println("ERROR: --memoryBudgetMb must be a number");
+            return 2;
+        }
+
+        int progressSeconds;
+        try {
+            progressSeconds = Integer.parseInt(CliArgs.get(a, "progressSeconds", "10").trim());
+        } catch (NumberFormatException e) {
+            System.err.println("ERROR: --progressSeconds must be a number");
+            return 2;
+        }
+
+        int patchBatch;
+        int commitEvery;
+        try {
+            patchBatch = Integer.parseInt(CliArgs.get(a, "patchBatch", "1").trim());
+            commitEvery = Integer.parseInt(CliArgs.get(a, "commitEvery", "0").trim());
+        } catch (NumberFormatException e) {
+            System.err.println("ERROR: --patchBatch and --commitEvery must be numbers");
+            return 2;
+        }
+
+        String jsonFormat = CliArgs.get(a, "jsonFormat", "pretty").trim().toLowerCase();
+        try {
+            FindingsJsonWriter.Format.parse(jsonFormat);
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: --jsonFormat must be pretty, compact or ndjson");
+            return 2;
+        }
 
         if (sourceDir.trim().isEmpty() || targetDir.trim().isEmpty()) {
             System.err.println("ERROR: Missing required args: --sourceDir and --targetDir");
@@ -50,17 +109,36 @@ public class LookupDifferCliCommand implements CliCommand {
             return 2;
         }
 
-        LookupDifferRequest req = new LookupDifferRequest(
-                sourceDir.trim(),
-                targetDir.trim(),
-                caseInsensitive,
-                tableContains.trim().isEmpty() ? null : tableContains.trim(),
-                outDir.trim().isEmpty() ? null : outDir.trim(),
-                jsonOut.trim().isEmpty() ? null : jsonOut.trim(),
-                htmlOut.trim().isEmpty() ? null : htmlOut.trim()
-        );
-
-        LookupDifferResult res = service.run(req);
+        LookupDifferRequest req = LookupDifferRequest.builder(sourceDir.trim(), targetDir.trim())
+                .caseInsensitive(caseInsensitive)
+                .tableNameContains(tableContains.trim().isEmpty() ? null : tableContains.trim())
+                .outDir(outDir.trim().isEmpty() ? null : outDir.trim())
+                .jsonOut(jsonOut.trim().isEmpty() ? null : jsonOut.trim())
+                .htmlOut(htmlOut.trim().isEmpty() ? null : htmlOut.trim())
+                .threads(threads)
+                .rowHashes(rowHashes)
+                .mode(mode)
+                .memoryBudgetMb(memoryBudgetMb)
+                .cacheDir(cacheDir.trim().isEmpty() ? null : cacheDir.trim())
+                .jsonFormat(jsonFormat)
+                .patchBatchRows(patchBatch)
+                .commitEvery(commitEvery)
+                .valueDictionary(dictionary)
+                .sourceSnapshotOut(saveSourceSnapshot.trim().isEmpty() ? null : saveSourceSnapshot.trim())
+                .targetSnapshotOut(saveTargetSnapshot.trim().isEmpty() ? null : saveTargetSnapshot.trim())
+                .build();
+
+        LookupDifferResult res;
+        LookupDifferProgress progress = new LookupDifferProgress();
+        // progress lines go to stderr, so stdout stays just the report
+        Closeable reporter = progressSeconds > 0
+                ? progress.reportEvery(progressSeconds * 1000L, line -> System.err.println("[lookupdiffer] " + line))
+                : null;
+        try {
+            res = service.run(req, progress);
+        } finally {
+            if (reporter != null) reporter.close();
+        }
         System.out.println(res.getReportText());
 
         if (res.getHtmlReportPath() != null) {
@@ -94,14 +172,28 @@ public class LookupDifferCliCommand implements CliCommand {
         System.out.println("Required:");
         System.out.println("  --sourceDir <path>        Folder containing SOURCE exports (e.g., PROD)");
         System.out.println("  --targetDir <path>        Folder containing TARGET exports (e.g., UAT)");
+        System.out.println("                            (*.sql, *.sql.gz, and *.sql entries of *.zip files),");
+        System.out.println("                            or a snapshot file saved by --saveSourceSnapshot/--saveTargetSnapshot");
         System.out.println();
         System.out.println("Optional:");
         System.out.println("  --outDir <path>           Writes: schema_patch.sql, insert_patch.sql, update_patch.sql, missing_tables.sql,");
         System.out.println("                            created_tables.txt, and {table}_insert.sql/{table}_update.sql files.");
+        System.out.println("  --patchBatch <n>          Group up to n rows per INSERT ALL / MERGE in the --outDir data patches. Default: 1 (one statement per row)");
+        System.out.println("  --commitEvery <n>         With --patchBatch > 1: COMMIT every n rows and after each table. Default: " + SqlPatchSink.DEFAULT_COMMIT_EVERY);
         System.out.println("  --jsonOut <path>          Write findings list as JSON");
+        System.out.println("  --jsonFormat <pretty|compact|ndjson>  ndjson: one finding per line. Default: pretty");
         System.out.println("  --htmlOut <dir>           Write multi-page HTML report into this directory (index.html + per-table pages)");
         System.out.println("  --tableContains <text>    Only consider tables whose name contains this text");
         System.out.println("  --caseInsensitive <true|false>  Default: true");
+        System.out.println("  --threads <n>             Files parsed and tables compared in parallel. Default: one per CPU core");
+        System.out.println("  --rowHashes <true|false>  Compare rows by 128-bit value fingerprint. Default: false");
+        System.out.println("  --dictionary <true|false> Keep short row values as per-column dictionary ids and compare rows by id. Default: false");
+        System.out.println("  --mode <memory|external>  external: keep parsed rows in temp files and match them by sorting. Default: memory");
+        System.out.println("  --memoryBudgetMb <n>      Sort buffer in external mode, shared by the tables compared at once. Default: " + LookupDifferEngine.DEFAULT_MEMORY_BUDGET_MB);
+        System.out.println("  --cacheDir <path>         Cache parsed files here; unchanged files are not re-parsed on the next run");
+        System.out.println("  --saveSourceSnapshot <file>  Save the parsed SOURCE as a snapshot, to pass as --sourceDir/--targetDir later");
+        System.out.println("  --saveTargetSnapshot <file>  Save the parsed TARGET as a snapshot");
+        System.out.println("  --progressSeconds <n>     Print phase, files, statements/s and rows compared to stderr every n seconds (0: off). Default: 10");
         System.out.println("  --help, -h");
         System.out.println();
         System.out.println("Notes:");
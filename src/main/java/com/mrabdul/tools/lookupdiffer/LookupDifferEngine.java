@@ -1,357 +1,438 @@
 package com.mrabdul.tools.lookupdiffer;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mrabdul.tools.FindingsJsonWriter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import static com.mrabdul.tools.lookupdiffer.SqlParsers.*;
 
 public class LookupDifferEngine {
 
-    public LookupDifferResult run(LookupDifferRequest req) throws Exception {
-        Path src = Paths.get(req.getSourceDir()).toAbsolutePath().normalize();
-        Path tgt = Paths.get(req.getTargetDir()).toAbsolutePath().normalize();
-
-        if (!Files.isDirectory(src)) throw new IllegalArgumentException("Source dir not found: " + src);
-        if (!Files.isDirectory(tgt)) throw new IllegalArgumentException("Target dir not found: " + tgt);
+    // spill budget for --mode external when none is given
+    static final int DEFAULT_MEMORY_BUDGET_MB = 256;
 
-        SqlExportIndex sourceIndex = indexDirectory(src, req);
-        SqlExportIndex targetIndex = indexDirectory(tgt, req);
+    // .sql.gz files and .zip entries at least this big are inflated on their own thread while being parsed
+    static final long PIPELINE_MIN_COMPRESSED_BYTES = 1024 * 1024;
 
-        List<DiffFinding> findings = new ArrayList<DiffFinding>();
-
-        // 1) tables missing
-        Set<String> allSourceTables = new LinkedHashSet<String>();
-        allSourceTables.addAll(sourceIndex.ddlsByTableKey.keySet());
-        allSourceTables.addAll(sourceIndex.rowsByTableKey.keySet());
-        allSourceTables.addAll(sourceIndex.pksByTableKey.keySet());
-
-        for (String tableKey : allSourceTables) {
-            if (!targetIndex.ddlsByTableKey.containsKey(tableKey) &&
-                !targetIndex.rowsByTableKey.containsKey(tableKey)) {
-                
-                SqlExportIndex.TableDdl ddl = sourceIndex.ddlsByTableKey.get(tableKey);
-                String tName = ddl != null ? ddl.tableName : tableKey;
-                String fName = "";
-                int lNum = -1;
-                if (ddl != null) {
-                    fName = ddl.file;
-                    lNum = ddl.line;
-                } else if (sourceIndex.rowsByTableKey.containsKey(tableKey)) {
-                    List<SqlExportIndex.InsertRow> rows = sourceIndex.rowsByTableKey.get(tableKey);
-                    if (!rows.isEmpty()) {
-                        fName = rows.get(0).file;
-                        lNum = rows.get(0).line;
-                    }
-                }
+    public LookupDifferResult run(LookupDifferRequest req) throws Exception {
+        return run(req, new LookupDifferProgress());
+    }
 
-                DiffFinding f = new DiffFinding("TABLE_MISSING", tName, fName, lNum,
-                        "Table exists in SOURCE but not in TARGET.");
-                if (ddl != null) f.ddl = ddl.fullSql;
-                findings.add(f);
-            }
+    /**
+     * Runs the diff, publishing its counters to progress. Cancelling progress or interrupting the calling thread
+     * stops every worker of the run and makes this throw CancellationException (or InterruptedException).
+     */
+    public LookupDifferResult run(LookupDifferRequest req, LookupDifferProgress progress) throws Exception {
+        try {
+            LookupDifferResult result = diff(req, progress);
+            progress.phase(LookupDifferProgress.Phase.DONE);
+            return result;
+        } catch (Exception | Error e) {
+            // a failed or interrupted run stops the workers still going
+            progress.stop();
+            throw e;
         }
+    }
 
-        // 2) columns missing
-        List<String> commonTables = sourceIndex.ddlsByTableKey.keySet().stream()
-                .filter(targetIndex.ddlsByTableKey::containsKey)
-                .collect(Collectors.toList());
-
-        List<String> alterStatements = new ArrayList<String>();
+    private LookupDifferResult diff(LookupDifferRequest req, LookupDifferProgress progress) throws Exception {
+        Path src = Paths.get(req.getSourceDir()).toAbsolutePath().normalize();
+        Path tgt = Paths.get(req.getTargetDir()).toAbsolutePath().normalize();
 
-        for (String tableKey : commonTables) {
-            SqlExportIndex.TableDdl sddl = sourceIndex.ddlsByTableKey.get(tableKey);
-            SqlExportIndex.TableDdl tddl = targetIndex.ddlsByTableKey.get(tableKey);
+        // a regular file is a snapshot saved by an earlier run
+        if (!Files.isDirectory(src) && !Files.isRegularFile(src)) throw new IllegalArgumentException("Source dir not found: " + src);
+        if (!Files.isDirectory(tgt) && !Files.isRegularFile(tgt)) throw new IllegalArgumentException("Target dir not found: " + tgt);
 
-            for (Map.Entry<String, SqlExportIndex.ColumnDef> e : sddl.columnsByKey.entrySet()) {
-                String colKey = e.getKey();
-                if (!tddl.columnsByKey.containsKey(colKey)) {
-                    SqlExportIndex.ColumnDef col = e.getValue();
-                    String alter = "ALTER TABLE " + sddl.tableName + " ADD (" + col.columnSqlDef + ");";
-                    alterStatements.add(alter);
+        if (!"external".equalsIgnoreCase(req.getMode())) return diff(req, progress, src, tgt, null);
+        // external rows are spilled as they are parsed; options that hold or rebuild every row in memory do not apply
+        if (req.isValueDictionary()) throw new IllegalArgumentException("--dictionary cannot be used with --mode external");
+        if (req.getCacheDir() != null && !req.getCacheDir().trim().isEmpty()) {
+            throw new IllegalArgumentException("--cacheDir cannot be used with --mode external");
+        }
+        if (Files.isRegularFile(src) || Files.isRegularFile(tgt)) {
+            throw new IllegalArgumentException("A snapshot cannot be compared with --mode external; give the export folder");
+        }
+        try (RowSpill spill = new RowSpill()) {
+            return diff(req, progress, src, tgt, spill);
+        }
+    }
 
-                    DiffFinding f = new DiffFinding("COLUMN_MISSING", sddl.tableName, colKeyFile(sddl, col), col.line,
-                            "Column exists in SOURCE but not in TARGET: " + col.columnName);
-                    f.ddl = alter;
-                    findings.add(f);
-                }
-            }
+    /** The diff itself; with a spill, every parsed row is written to it instead of kept on the heap. */
+    private LookupDifferResult diff(LookupDifferRequest req, LookupDifferProgress progress, Path src, Path tgt,
+                                    RowSpill spill) throws Exception {
+        SqlExportIndex sourceIndex;
+        SqlExportIndex targetIndex;
+        IndexFragmentCache cache = req.getCacheDir() != null && !req.getCacheDir().trim().isEmpty()
+                ? new IndexFragmentCache(Paths.get(req.getCacheDir().trim()).toAbsolutePath().normalize())
+                : null;
+        // one dictionary for both folders, so equal values get equal ids on either side
+        ValueDictionary dictionary = req.isValueDictionary() ? new ValueDictionary(ValueDictionary.DEFAULT_BUDGET_BYTES) : null;
+        ExecutorService pool = new ForkJoinPool(req.getThreads() > 0 ? req.getThreads() : Runtime.getRuntime().availableProcessors());
+        try {
+            progress.phase(LookupDifferProgress.Phase.INDEXING);
+            // both folders are queued before either is merged, so their files are parsed side by side
+            List<Future<SqlExportIndex>> sourceParts = Files.isRegularFile(src)
+                    ? submitSnapshot(pool, src, req, dictionary, progress)
+                    : submitIndexing(pool, src, req, cache, dictionary, spill, progress);
+            List<Future<SqlExportIndex>> targetParts = Files.isRegularFile(tgt)
+                    ? submitSnapshot(pool, tgt, req, dictionary, progress)
+                    : submitIndexing(pool, tgt, req, cache, dictionary, spill, progress);
+            sourceIndex = mergeIndexes(sourceParts, progress);
+            targetIndex = mergeIndexes(targetParts, progress);
+            saveSnapshot(req.getSourceSnapshotOut(), sourceIndex, req);
+            saveSnapshot(req.getTargetSnapshotOut(), targetIndex, req);
+        } finally {
+            pool.shutdownNow();
         }
 
-        // 2.1) PKs missing
-        for (String tableKey : commonTables) {
-            if (sourceIndex.pksByTableKey.containsKey(tableKey) && !targetIndex.pksByTableKey.containsKey(tableKey)) {
-                String pkSql = sourceIndex.pkDdlsByTableKey.get(tableKey);
-                if (pkSql != null) {
-                    alterStatements.add(pkSql);
-                    DiffFinding f = new DiffFinding("PK_MISSING", tableKey, "", -1,
-                            "Primary Key/Unique Index exists in SOURCE but not in TARGET.");
-                    f.ddl = pkSql;
+        // patch files and --jsonOut are written as findings are produced
+        String outDir = req.getOutDir() != null && !req.getOutDir().trim().isEmpty() ? req.getOutDir().trim() : null;
+        String jsonOut = req.getJsonOut() != null && !req.getJsonOut().trim().isEmpty() ? req.getJsonOut().trim() : null;
+        final FindingsAccumulator findings;
+        try (FindingsJsonWriter json = FindingsJsonWriter.open(
+                     jsonOut == null ? null : Paths.get(jsonOut).toAbsolutePath().normalize(),
+                     FindingsJsonWriter.Format.parse(req.getJsonFormat()));
+             final SqlPatchSink patches = new SqlPatchSink(outDir == null ? null : Paths.get(outDir).toAbsolutePath().normalize(),
+                     req.getPatchBatchRows(), req.getCommitEvery())) {
+            findings = new FindingsAccumulator(json);
+            progress.phase(LookupDifferProgress.Phase.SCHEMA);
+
+            // 1) tables missing
+            Set<String> allSourceTables = new LinkedHashSet<String>();
+            allSourceTables.addAll(sourceIndex.ddlsByTableKey.keySet());
+            allSourceTables.addAll(sourceIndex.rowsByTableKey.keySet());
+            allSourceTables.addAll(sourceIndex.pksByTableKey.keySet());
+
+            for (String tableKey : allSourceTables) {
+                if (!targetIndex.ddlsByTableKey.containsKey(tableKey) &&
+                    !targetIndex.rowsByTableKey.containsKey(tableKey)) {
+                
+                    SqlExportIndex.TableDdl ddl = sourceIndex.ddlsByTableKey.get(tableKey);
+                    String tName = ddl != null ? ddl.tableName : tableKey;
+                    String fName = "";
+                    int lNum = -1;
+                    if (ddl != null) {
+                        fName = ddl.file;
+                        lNum = ddl.line;
+                    } else if (sourceIndex.rowsByTableKey.containsKey(tableKey)) {
+                        List<SqlExportIndex.InsertRow> rows = sourceIndex.rowsByTableKey.get(tableKey);
+                        if (!rows.isEmpty()) {
+                            fName = rows.get(0).file;
+                            lNum = rows.get(0).line;
+                        }
+                    }
+
+                    DiffFinding f = new DiffFinding("TABLE_MISSING", tName, fName, lNum,
+                            "Table exists in SOURCE but not in TARGET.");
+                    if (ddl != null) f.ddl = ddl.fullSql;
                     findings.add(f);
+                    patches.tableMissing(f);
                 }
             }
-        }
-
-        // 3) missing data rows & updates
-        List<String> insertStatements = new ArrayList<String>();
-        List<String> updateStatements = new ArrayList<String>();
 
-        for (Map.Entry<String, List<SqlExportIndex.InsertRow>> e : sourceIndex.rowsByTableKey.entrySet()) {
-            String tableKey = e.getKey();
-            List<SqlExportIndex.InsertRow> srcRows = e.getValue();
-            List<SqlExportIndex.InsertRow> tgtRows = targetIndex.rowsByTableKey.get(tableKey);
-
-            List<String> pkCols = sourceIndex.pksByTableKey.get(tableKey);
-            if (pkCols == null) pkCols = targetIndex.pksByTableKey.get(tableKey);
+            // 2) columns missing
+            List<String> commonTables = sourceIndex.ddlsByTableKey.keySet().stream()
+                    .filter(targetIndex.ddlsByTableKey::containsKey)
+                    .collect(Collectors.toList());
 
-            if (pkCols == null || pkCols.isEmpty()) {
-                // Warning logic from v0.1: Fall back to exact row match if PK isn't found
-                SqlExportIndex.TableDdl ddl = sourceIndex.ddlsByTableKey.get(tableKey);
-                String tName = ddl != null ? ddl.tableName : tableKey;
-                String fName = ddl != null ? ddl.file : (srcRows.isEmpty() ? "" : srcRows.get(0).file);
-                int lNum = ddl != null ? ddl.line : (srcRows.isEmpty() ? -1 : srcRows.get(0).line);
+            for (String tableKey : commonTables) {
+                SqlExportIndex.TableDdl sddl = sourceIndex.ddlsByTableKey.get(tableKey);
+                SqlExportIndex.TableDdl tddl = targetIndex.ddlsByTableKey.get(tableKey);
 
-                findings.add(new DiffFinding("WARN_NO_PK", tName, fName, lNum,
-                        "No PK detected for table; updates are skipped for this table in v0.1."));
+                for (Map.Entry<String, SqlExportIndex.ColumnDef> e : sddl.columnsByKey.entrySet()) {
+                    String colKey = e.getKey();
+                    if (!tddl.columnsByKey.containsKey(colKey)) {
+                        SqlExportIndex.ColumnDef col = e.getValue();
+                        String alter = "ALTER TABLE " + sddl.tableName + " ADD (" + col.columnSqlDef + ");";
+                        patches.schemaChange(alter);
 
-                Set<String> tgtKeys = new HashSet<String>();
-                if (tgtRows != null) {
-                    for (SqlExportIndex.InsertRow r : tgtRows) tgtKeys.add(r.normalizedKey);
-                }
-                for (SqlExportIndex.InsertRow r : srcRows) {
-                    if (!tgtKeys.contains(r.normalizedKey)) {
-                        DiffFinding f = new DiffFinding("ROW_MISSING", r.tableName, r.file, r.line,
-                                "Row exists in SOURCE but not in TARGET.");
-                        f.insertSql = r.originalSql.endsWith(";") ? r.originalSql : (r.originalSql + ";");
+                        DiffFinding f = new DiffFinding("COLUMN_MISSING", sddl.tableName, colKeyFile(sddl, col), col.line,
+                                "Column exists in SOURCE but not in TARGET: " + col.columnName);
+                        f.ddl = alter;
                         findings.add(f);
-                        insertStatements.add(f.insertSql);
                     }
                 }
-            } else {
-                // PK Found! Match rows correctly.
-                Map<String, SqlExportIndex.InsertRow> tgtByPk = new HashMap<>();
-                if (tgtRows != null) {
-                    for (SqlExportIndex.InsertRow r : tgtRows) {
-                        tgtByPk.put(r.getPkKey(pkCols, req.isCaseInsensitive()), r);
+            }
+
+            // 2.1) PKs missing
+            for (String tableKey : commonTables) {
+                if (sourceIndex.pksByTableKey.containsKey(tableKey) && !targetIndex.pksByTableKey.containsKey(tableKey)) {
+                    String pkSql = sourceIndex.pkDdlsByTableKey.get(tableKey);
+                    if (pkSql != null) {
+                        patches.schemaChange(pkSql);
+                        DiffFinding f = new DiffFinding("PK_MISSING", tableKey, "", -1,
+                                "Primary Key/Unique Index exists in SOURCE but not in TARGET.");
+                        f.ddl = pkSql;
+                        findings.add(f);
                     }
                 }
+            }
 
-                for (SqlExportIndex.InsertRow sRow : srcRows) {
-                    String pkKey = sRow.getPkKey(pkCols, req.isCaseInsensitive());
-                    SqlExportIndex.InsertRow tRow = tgtByPk.get(pkKey);
-
-                    if (tRow == null) {
-                        DiffFinding f = new DiffFinding("ROW_MISSING", sRow.tableName, sRow.file, sRow.line,
-                                "Row exists in SOURCE but not in TARGET.");
-                        f.insertSql = sRow.originalSql.endsWith(";") ? sRow.originalSql : (sRow.originalSql + ";");
-                        findings.add(f);
-                        insertStatements.add(f.insertSql);
-                    } else if (!sRow.normalizedKey.equals(tRow.normalizedKey)) {
-                        DiffFinding f = new DiffFinding("ROW_MISMATCH", sRow.tableName, sRow.file, sRow.line,
-                                "Row exists in both but values differ (UPDATE needed).");
-                        f.insertSql = buildUpdateSql(sRow, pkCols, req.isCaseInsensitive());
+            // 3) missing data rows & updates: tables are independent, so they are compared in parallel
+            // (largest first) and their findings drained in the original table order
+            List<Map.Entry<String, List<SqlExportIndex.InsertRow>>> tables =
+                    new ArrayList<Map.Entry<String, List<SqlExportIndex.InsertRow>>>(sourceIndex.rowsByTableKey.entrySet());
+            int parallelism = req.getThreads() > 0 ? req.getThreads() : Runtime.getRuntime().availableProcessors();
+            progress.phase(LookupDifferProgress.Phase.ROWS);
+            progress.tablesQueued(tables.size());
+            ExecutorService diffPool = new ForkJoinPool(parallelism);
+            try {
+                List<Future<List<DiffFinding>>> perTable = submitTableDiffs(diffPool, tables, sourceIndex, targetIndex, req, parallelism, progress);
+                for (Future<List<DiffFinding>> part : perTable) {
+                    List<DiffFinding> tableFindings = await(part);
+                    progress.checkCancelled();
+                    for (DiffFinding f : tableFindings) {
                         findings.add(f);
-                        updateStatements.add(f.insertSql);
+                        if ("ROW_MISSING".equals(f.kind)) patches.rowMissing(f);
+                        else if ("ROW_MISMATCH".equals(f.kind)) patches.rowMismatch(f);
+                        // the result must not pin the parsed exports
+                        f.sourceRow = null;
+                        f.pkColumns = null;
+                        f.changedPositions = null;
                     }
                 }
+            } finally {
+                diffPool.shutdownNow();
             }
+            patches.finish();
+            json.finish();
         }
 
-        long missingTables = findings.stream().filter(x -> "TABLE_MISSING".equals(x.kind)).count();
-        long missingColumns = findings.stream().filter(x -> "COLUMN_MISSING".equals(x.kind)).count();
-        long missingRows = findings.stream().filter(x -> "ROW_MISSING".equals(x.kind)).count();
-        long mismatchedRows = findings.stream().filter(x -> "ROW_MISMATCH".equals(x.kind)).count();
-        long missingPks = findings.stream().filter(x -> "PK_MISSING".equals(x.kind)).count();
-        long warnings = findings.stream().filter(x -> "WARN_NO_PK".equals(x.kind)).count();
-        long parseErrors = findings.stream().filter(x -> "PARSE_ERROR".equals(x.kind)).count();
+        long missingTables = findings.count(FindingsAccumulator.Kind.TABLE_MISSING);
+        long missingColumns = findings.count(FindingsAccumulator.Kind.COLUMN_MISSING);
+        long missingRows = findings.count(FindingsAccumulator.Kind.ROW_MISSING);
+        long mismatchedRows = findings.count(FindingsAccumulator.Kind.ROW_MISMATCH);
+        long missingPks = findings.count(FindingsAccumulator.Kind.PK_MISSING);
+        long warnings = findings.count(FindingsAccumulator.Kind.WARN_NO_PK);
+        long parseErrors = findings.count(FindingsAccumulator.Kind.PARSE_ERROR);
 
-        String report = buildReport(findings, missingTables, missingColumns, missingPks, missingRows, mismatchedRows, warnings, parseErrors);
+        progress.phase(LookupDifferProgress.Phase.REPORT);
+        String report = buildReport(findings);
         String htmlReportPath = null;
 
         if (req.getHtmlOut() != null && !req.getHtmlOut().trim().isEmpty()) {
             Path htmlDir = Paths.get(req.getHtmlOut().trim()).toAbsolutePath().normalize();
             Files.createDirectories(htmlDir);
-            generateMultipageHtmlReport(htmlDir, findings, missingTables, missingColumns, missingPks, missingRows, mismatchedRows, warnings, parseErrors);
+            generateMultipageHtmlReport(htmlDir, findings, progress);
             htmlReportPath = htmlDir.resolve("index.html").toString();
         }
 
-        if (req.getOutDir() != null && !req.getOutDir().trim().isEmpty()) {
-            Path out = Paths.get(req.getOutDir().trim()).toAbsolutePath().normalize();
-            Files.createDirectories(out);
+        // Now correctly passes all 10 arguments!
+        return new LookupDifferResult(findings.list(), missingTables, missingColumns, missingRows, mismatchedRows, missingPks, warnings, parseErrors, report, htmlReportPath);
+    }
 
-            Set<String> missingTableSet = findings.stream()
-                    .filter(f -> "TABLE_MISSING".equals(f.kind))
-                    .map(f -> f.table.toUpperCase())
-                    .collect(Collectors.toSet());
+    /** One task per table, submitted largest first; the returned futures are in table order. */
+    private List<Future<List<DiffFinding>>> submitTableDiffs(ExecutorService pool,
+                                                             final List<Map.Entry<String, List<SqlExportIndex.InsertRow>>> tables,
+                                                             final SqlExportIndex sourceIndex, final SqlExportIndex targetIndex,
+                                                             final LookupDifferRequest req, int parallelism,
+                                                             final LookupDifferProgress progress) {
+        final boolean external = "external".equalsIgnoreCase(req.getMode());
+        // the spill budget is shared by the tables sorted at the same time
+        long budgetBytes = (req.getMemoryBudgetMb() > 0 ? req.getMemoryBudgetMb() : DEFAULT_MEMORY_BUDGET_MB) * 1024L * 1024L;
+        final long tableBudgetBytes = Math.max(budgetBytes / parallelism, 64 * 1024L);
+
+        Integer[] order = new Integer[tables.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (x, y) -> Long.compare(tableSize(tables.get(y), targetIndex), tableSize(tables.get(x), targetIndex)));
+
+        List<Future<List<DiffFinding>>> futures = new ArrayList<Future<List<DiffFinding>>>(Collections.<Future<List<DiffFinding>>>nCopies(tables.size(), null));
+        for (final int i : order) {
+            futures.set(i, pool.submit(new Callable<List<DiffFinding>>() {
+                @Override
+                public List<DiffFinding> call() throws Exception {
+                    Map.Entry<String, List<SqlExportIndex.InsertRow>> e = tables.get(i);
+                    List<DiffFinding> out = diffTableRows(e.getKey(), e.getValue(), sourceIndex, targetIndex, req, external,
+                            tableBudgetBytes, progress);
+                    progress.tableCompared(e.getKey(), tableSize(e, targetIndex));
+                    return out;
+                }
+            }));
+        }
+        return futures;
+    }
 
-            writeSql(out.resolve("missing_tables.sql"), buildMissingTablesSql(findings));
-            writeSql(out.resolve("schema_patch.sql"), buildSchemaPatchSql(alterStatements));
-            writeSql(out.resolve("insert_patch.sql"), buildInsertPatchSql(findings, missingTableSet));
-            writeSql(out.resolve("update_patch.sql"), buildUpdatePatchSql(findings));
+    private long tableSize(Map.Entry<String, List<SqlExportIndex.InsertRow>> table, SqlExportIndex targetIndex) {
+        List<SqlExportIndex.InsertRow> tgtRows = targetIndex.rowsByTableKey.get(table.getKey());
+        return (long) table.getValue().size() + (tgtRows == null ? 0 : tgtRows.size());
+    }
 
-            // Split files per table for inserts
-            Map<String, List<DiffFinding>> insertsByTable = findings.stream()
-                    .filter(f -> "ROW_MISSING".equals(f.kind) && f.insertSql != null)
-                    .collect(Collectors.groupingBy(f -> f.table));
-            for (Map.Entry<String, List<DiffFinding>> entry : insertsByTable.entrySet()) {
-                String tableName = entry.getKey().toLowerCase();
-                writeSql(out.resolve(tableName + "_insert.sql"), buildInsertPatchSql(entry.getValue(), missingTableSet));
+    /** Row findings of one table, in source row order. */
+    private List<DiffFinding> diffTableRows(String tableKey, List<SqlExportIndex.InsertRow> srcRows,
+                                            SqlExportIndex sourceIndex, SqlExportIndex targetIndex,
+                                            LookupDifferRequest req, boolean external, long budgetBytes,
+                                            LookupDifferProgress progress) throws IOException {
+        final List<DiffFinding> out = new ArrayList<DiffFinding>();
+        List<SqlExportIndex.InsertRow> tgtRows = targetIndex.rowsByTableKey.get(tableKey);
+
+        List<String> pkCols = sourceIndex.pksByTableKey.get(tableKey);
+        if (pkCols == null) pkCols = targetIndex.pksByTableKey.get(tableKey);
+
+        if (pkCols == null || pkCols.isEmpty()) {
+            // Warning logic from v0.1: Fall back to exact row match if PK isn't found
+            SqlExportIndex.TableDdl ddl = sourceIndex.ddlsByTableKey.get(tableKey);
+            String tName = ddl != null ? ddl.tableName : tableKey;
+            String fName = ddl != null ? ddl.file : (srcRows.isEmpty() ? "" : srcRows.get(0).file);
+            int lNum = ddl != null ? ddl.line : (srcRows.isEmpty() ? -1 : srcRows.get(0).line);
+
+            out.add(new DiffFinding("WARN_NO_PK", tName, fName, lNum,
+                    "No PK detected for table; updates are skipped for this table in v0.1."));
+
+            if (external) {
+                // sorted by whole-row content instead of a HashSet of every target row
+                new ExternalRowMatcher(budgetBytes, progress).matchContent(srcRows, tgtRows, new ExternalRowMatcher.Listener() {
+                    @Override public void rowMissing(SqlExportIndex.InsertRow src) {
+                        out.add(LookupDifferEngine.this.rowMissing(src));
+                    }
+                    @Override public void rowMismatch(SqlExportIndex.InsertRow src, SqlExportIndex.InsertRow tgt) {
+                        throw new IllegalStateException("content matching reports no mismatches");
+                    }
+                });
+                return out;
             }
 
-            // Split files per table for updates
-            Map<String, List<DiffFinding>> updatesByTable = findings.stream()
-                    .filter(f -> "ROW_MISMATCH".equals(f.kind) && f.insertSql != null)
-                    .collect(Collectors.groupingBy(f -> f.table));
-            for (Map.Entry<String, List<DiffFinding>> entry : updatesByTable.entrySet()) {
-                String tableName = entry.getKey().toLowerCase();
-                writeSql(out.resolve(tableName + "_update.sql"), buildUpdatePatchSql(entry.getValue()));
+            Set<SqlExportIndex.RowContent> tgtKeys = new HashSet<SqlExportIndex.RowContent>();
+            if (tgtRows != null) {
+                for (SqlExportIndex.InsertRow r : tgtRows) {
+                    progress.checkCancelled();
+                    tgtKeys.add(new SqlExportIndex.RowContent(r));
+                }
             }
-
-            // Created tables list
-            List<String> createdTables = findings.stream()
-                    .filter(f -> "TABLE_MISSING".equals(f.kind))
-                    .map(f -> f.table)
-                    .distinct()
-                    .collect(Collectors.toList());
-            if (!createdTables.isEmpty()) {
-                writeSql(out.resolve("created_tables.txt"), String.join("\n", createdTables) + "\n");
+            for (SqlExportIndex.InsertRow r : srcRows) {
+                progress.checkCancelled();
+                if (!tgtKeys.contains(new SqlExportIndex.RowContent(r))) {
+                    out.add(rowMissing(r));
+                }
+            }
+        } else if (external) {
+            // sorted runs on disk instead of a HashMap of every target row
+            final PkIndex pkIndex = new PkIndex(pkCols, req.isCaseInsensitive());
+            new ExternalRowMatcher(budgetBytes, progress).match(srcRows, tgtRows, pkIndex, new ExternalRowMatcher.Listener() {
+                @Override public void rowMissing(SqlExportIndex.InsertRow src) {
+                    out.add(LookupDifferEngine.this.rowMissing(src));
+                }
+                @Override public void rowMismatch(SqlExportIndex.InsertRow src, SqlExportIndex.InsertRow tgt) {
+                    out.add(LookupDifferEngine.this.rowMismatch(src, tgt, pkIndex));
+                }
+            });
+        } else {
+            // PK Found! Match rows correctly.
+            PkIndex pkIndex = new PkIndex(pkCols, req.isCaseInsensitive());
+            Map<String, SqlExportIndex.InsertRow> tgtByPk = new HashMap<>();
+            if (tgtRows != null) {
+                for (SqlExportIndex.InsertRow r : tgtRows) {
+                    progress.checkCancelled();
+                    tgtByPk.put(pkIndex.key(r), r);
+                }
             }
-        }
-
-        if (req.getJsonOut() != null && !req.getJsonOut().trim().isEmpty()) {
-            Path jsonOut = Paths.get(req.getJsonOut().trim()).toAbsolutePath().normalize();
-            if (jsonOut.getParent() != null) Files.createDirectories(jsonOut.getParent());
-            ObjectMapper om = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
-            om.writeValue(jsonOut.toFile(), findings);
-        }
-
-        // Now correctly passes all 10 arguments!
-        return new LookupDifferResult(findings, missingTables, missingColumns, missingRows, mismatchedRows, missingPks, warnings, parseErrors, report, htmlReportPath);
-    }
-
-    private String colKeyFile(SqlExportIndex.TableDdl ddl, SqlExportIndex.ColumnDef col) {
-        return ddl.file != null ? ddl.file : "";
-    }
 
-    private void writeSql(Path path, String content) throws Exception {
-        Files.write(path, content.getBytes(Charset.forName("UTF-8")));
-    }
+            for (SqlExportIndex.InsertRow sRow : srcRows) {
+                progress.checkCancelled();
+                String pkKey = pkIndex.key(sRow);
+                SqlExportIndex.InsertRow tRow = tgtByPk.get(pkKey);
 
-    private String buildMissingTablesSql(List<DiffFinding> findings) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("-- Tables present in SOURCE but missing in TARGET\n");
-        for (DiffFinding f : findings) {
-            if ("TABLE_MISSING".equals(f.kind)) {
-                if (f.ddl != null) {
-                    sb.append(f.ddl).append("\n");
-                } else {
-                    sb.append("-- ").append(f.table).append("\n");
+                if (tRow == null) {
+                    out.add(rowMissing(sRow));
+                } else if (!sRow.sameContent(tRow)) {
+                    out.add(rowMismatch(sRow, tRow, pkIndex));
                 }
             }
         }
-        return sb.toString();
+        return out;
     }
 
-    private String buildSchemaPatchSql(List<String> alters) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("-- Schema patch: add missing columns (SOURCE -> TARGET)\n");
-        for (String a : alters) {
-            sb.append(a).append("\n");
-        }
-        return sb.toString();
+    private DiffFinding rowMissing(SqlExportIndex.InsertRow r) {
+        DiffFinding f = new DiffFinding("ROW_MISSING", r.tableName, r.file, r.line,
+                "Row exists in SOURCE but not in TARGET.");
+        f.insertSql = r.getOriginalSql();
+        f.sourceRow = r;
+        return f;
     }
 
-    private String buildInsertPatchSql(List<DiffFinding> findings, Set<String> missingTables) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("-- Data patch: insert missing rows (SOURCE -> TARGET)\n");
-
-        String lastTable = null;
-        for (DiffFinding f : findings) {
-            if ("ROW_MISSING".equals(f.kind) && f.insertSql != null) {
-                if (lastTable == null || !lastTable.equals(f.table)) {
-                    lastTable = f.table;
-                    sb.append("\n-- Table: ").append(f.table);
-                    if (missingTables != null && missingTables.contains(f.table.toUpperCase())) {
-                        sb.append(" (MISSING IN TARGET)");
-                    }
-                    sb.append("\n");
-                }
-                sb.append(f.insertSql);
-                if (!f.insertSql.endsWith("\n")) sb.append("\n");
-            }
+    private DiffFinding rowMismatch(SqlExportIndex.InsertRow r, SqlExportIndex.InsertRow target, PkIndex pkIndex) {
+        BitSet pkColumns = pkIndex.pkColumns(r.columns);
+        BitSet changed = r.changedColumns(target, pkIndex.isCaseInsensitive());
+        changed.andNot(pkColumns);
+        List<String> changedNames = new ArrayList<String>(changed.cardinality());
+        for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+            changedNames.add(r.columns.get(i));
         }
-        return sb.toString();
+        String message = "Row exists in both but values differ (UPDATE needed).";
+        if (!changedNames.isEmpty()) message += " Changed: " + String.join(", ", changedNames);
+        DiffFinding f = new DiffFinding("ROW_MISMATCH", r.tableName, r.file, r.line, message);
+        f.insertSql = buildUpdateSql(r, pkColumns, changed);
+        f.changedColumns = changedNames;
+        f.sourceRow = r;
+        f.pkColumns = pkColumns;
+        f.changedPositions = changed;
+        return f;
     }
 
-    private String buildUpdatePatchSql(List<DiffFinding> findings) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("-- Data patch: update mismatched rows (SOURCE -> TARGET)\n");
-
-        String lastTable = null;
-        for (DiffFinding f : findings) {
-            if ("ROW_MISMATCH".equals(f.kind) && f.insertSql != null) {
-                if (lastTable == null || !lastTable.equals(f.table)) {
-                    lastTable = f.table;
-                    sb.append("\n-- Table: ").append(f.table).append("\n");
-                }
-                sb.append(f.insertSql);
-                if (!f.insertSql.endsWith("\n")) sb.append("\n");
-            }
+    private static <T> T await(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) throw (Error) cause;
+            throw (Exception) cause;
         }
-        return sb.toString();
     }
 
-    private String buildUpdateSql(SqlExportIndex.InsertRow r, List<String> pkCols, boolean ci) {
+    private String colKeyFile(SqlExportIndex.TableDdl ddl, SqlExportIndex.ColumnDef col) {
+        return ddl.file != null ? ddl.file : "";
+    }
+
+    /** UPDATE setting only the changed columns, keyed by the PK columns. */
+    private String buildUpdateSql(SqlExportIndex.InsertRow r, BitSet pkColumns, BitSet changed) {
         StringBuilder sb = new StringBuilder("UPDATE ").append(r.tableName).append(" SET ");
         List<String> sets = new ArrayList<>();
         List<String> wheres = new ArrayList<>();
+        List<String> values = r.getValues();
 
-        for (int i = 0; i < r.columns.size(); i++) {
+        for (int i = 0; i < r.columns.size() && i < values.size(); i++) {
             String col = r.columns.get(i);
-            String val = r.values.get(i);
-            boolean isPk = false;
-            for (String pk : pkCols) {
-                if ((ci && col.equalsIgnoreCase(pk)) || (!ci && col.equals(pk))) {
-                    isPk = true; break;
-                }
-            }
-            if (isPk) {
+            String val = values.get(i);
+            if (pkColumns.get(i)) {
                 wheres.add(col + " = " + val);
-            } else {
+            } else if (changed.get(i)) {
                 sets.add(col + " = " + val);
             }
         }
 
-        if (sets.isEmpty()) return "-- UPDATE not needed: " + r.originalSql;
+        if (sets.isEmpty()) return "-- UPDATE not needed: " + r.getOriginalSql();
 
         sb.append(String.join(", ", sets));
         sb.append(" WHERE ").append(String.join(" AND ", wheres)).append(";");
         return sb.toString();
     }
 
-    private String buildReport(List<DiffFinding> findings,
-                               long missingTables,
-                               long missingColumns,
-                               long missingPks,
-                               long missingRows,
-                               long mismatchedRows,
-                               long warnings,
-                               long parseErrors) {
+    private String buildReport(FindingsAccumulator findings) {
         StringBuilder sb = new StringBuilder();
         sb.append("=== lookupdiffer ===\n");
-        sb.append("Missing tables: ").append(missingTables).append("\n");
-        sb.append("Missing columns: ").append(missingColumns).append("\n");
-        sb.append("Missing PKs/Indexes: ").append(missingPks).append("\n");
-        sb.append("Missing rows: ").append(missingRows).append("\n");
-        sb.append("Mismatched rows (Updates): ").append(mismatchedRows).append("\n");
-        sb.append("Warnings (No PK found): ").append(warnings).append("\n");
-        sb.append("Parse/analysis errors: ").append(parseErrors).append("\n");
-
-        List<DiffFinding> topTables = findings.stream().filter(f -> "TABLE_MISSING".equals(f.kind)).limit(50).collect(Collectors.toList());
+        sb.append("Missing tables: ").append(findings.count(FindingsAccumulator.Kind.TABLE_MISSING)).append("\n");
+        sb.append("Missing columns: ").append(findings.count(FindingsAccumulator.Kind.COLUMN_MISSING)).append("\n");
+        sb.append("Missing PKs/Indexes: ").append(findings.count(FindingsAccumulator.Kind.PK_MISSING)).append("\n");
+        sb.append("Missing rows: ").append(findings.count(FindingsAccumulator.Kind.ROW_MISSING)).append("\n");
+        sb.append("Mismatched rows (Updates): ").append(findings.count(FindingsAccumulator.Kind.ROW_MISMATCH)).append("\n");
+        sb.append("Warnings (No PK found): ").append(findings.count(FindingsAccumulator.Kind.WARN_NO_PK)).append("\n");
+        sb.append("Parse/analysis errors: ").append(findings.count(FindingsAccumulator.Kind.PARSE_ERROR)).append("\n");
+
+        List<DiffFinding> topTables = findings.sample(FindingsAccumulator.Kind.TABLE_MISSING);
         if (!topTables.isEmpty()) {
             sb.append("\nTables missing in target:\n");
             for (DiffFinding f : topTables) {
@@ -359,7 +440,7 @@ public class LookupDifferEngine {
             }
         }
 
-        List<DiffFinding> topCols = findings.stream().filter(f -> "COLUMN_MISSING".equals(f.kind)).limit(50).collect(Collectors.toList());
+        List<DiffFinding> topCols = findings.sample(FindingsAccumulator.Kind.COLUMN_MISSING);
         if (!topCols.isEmpty()) {
             sb.append("\nColumns missing in target (top 50):\n");
             for (DiffFinding f : topCols) {
@@ -368,7 +449,7 @@ public class LookupDifferEngine {
             }
         }
 
-        List<DiffFinding> topPks = findings.stream().filter(f -> "PK_MISSING".equals(f.kind)).limit(50).collect(Collectors.toList());
+        List<DiffFinding> topPks = findings.sample(FindingsAccumulator.Kind.PK_MISSING);
         if (!topPks.isEmpty()) {
             sb.append("\nPKs/Indexes missing in target:\n");
             for (DiffFinding f : topPks) {
@@ -377,7 +458,7 @@ public class LookupDifferEngine {
             }
         }
 
-        List<DiffFinding> topRows = findings.stream().filter(f -> "ROW_MISSING".equals(f.kind) || "ROW_MISMATCH".equals(f.kind)).limit(50).collect(Collectors.toList());
+        List<DiffFinding> topRows = findings.rowSample();
         if (!topRows.isEmpty()) {
             sb.append("\nMissing/Mismatched rows (top 50):\n");
             for (DiffFinding f : topRows) {
@@ -481,35 +562,43 @@ public class LookupDifferEngine {
         return sb.toString();
     }
 
-    private void generateMultipageHtmlReport(Path outDir, List<DiffFinding> findings, long mt, long mc, long mp, long mr, long mm, long w, long pe) throws Exception {
+    private void generateMultipageHtmlReport(Path outDir, FindingsAccumulator acc, LookupDifferProgress progress) throws Exception {
+        List<DiffFinding> findings = acc.list();
         Path assetsDir = outDir.resolve("assets");
+        Path dataDir = outDir.resolve("data");
         Files.createDirectories(assetsDir);
+        Files.createDirectories(dataDir);
         Files.write(assetsDir.resolve("style.css"), getCss().getBytes(Charset.forName("UTF-8")));
         Files.write(assetsDir.resolve("script.js"), getJs().getBytes(Charset.forName("UTF-8")));
+        Files.write(assetsDir.resolve("viewer.js"), getViewerJs().getBytes(Charset.forName("UTF-8")));
 
         Map<String, List<DiffFinding>> grouped = findings.stream()
                 .filter(f -> f.table != null && !f.table.isEmpty())
                 .collect(Collectors.groupingBy(f -> f.table.toUpperCase()));
 
-        String indexHtml = buildIndexHtml(grouped, mt, mc, mp, mr, mm, w, pe);
+        String indexHtml = buildIndexHtml(acc);
         Files.write(outDir.resolve("index.html"), indexHtml.getBytes(Charset.forName("UTF-8")));
 
+        // table pages only carry a manifest; the findings go to data shards the viewer loads on demand
         for (Map.Entry<String, List<DiffFinding>> entry : grouped.entrySet()) {
+            progress.checkCancelled();
             String tableName = entry.getKey();
-            String tableHtml = buildTableDetailHtml(tableName, entry.getValue());
-            Files.write(outDir.resolve("table_" + tableName.toLowerCase() + ".html"), tableHtml.getBytes(Charset.forName("UTF-8")));
+            // the index page links here, so both use the same locale-independent lower case
+            String stem = tableName.toLowerCase(Locale.ROOT);
+            String manifest = FindingShards.write(dataDir, stem, tableName, entry.getValue());
+            Files.write(outDir.resolve("table_" + stem + ".html"), buildTableDetailHtml(tableName, manifest).getBytes(Charset.forName("UTF-8")));
         }
 
         List<DiffFinding> orphans = findings.stream()
                 .filter(f -> f.table == null || f.table.isEmpty())
                 .collect(Collectors.toList());
         if (!orphans.isEmpty()) {
-            String orphanHtml = buildTableDetailHtml("OTHER", orphans);
-            Files.write(outDir.resolve("table_other.html"), orphanHtml.getBytes(Charset.forName("UTF-8")));
+            String manifest = FindingShards.write(dataDir, "other", "OTHER", orphans);
+            Files.write(outDir.resolve("table_other.html"), buildTableDetailHtml("OTHER", manifest).getBytes(Charset.forName("UTF-8")));
         }
     }
 
-    private String buildIndexHtml(Map<String, List<DiffFinding>> grouped, long mt, long mc, long mp, long mr, long mm, long w, long pe) {
+    private String buildIndexHtml(FindingsAccumulator acc) {
         StringBuilder sb = new StringBuilder();
         sb.append("<!DOCTYPE html>\n<html>\n<head>\n");
         sb.append("<meta charset=\"UTF-8\">\n");
@@ -519,13 +608,13 @@ public class LookupDifferEngine {
         sb.append("<div class=\"container\">\n");
         sb.append("<h1>LookupDiffer Dashboard</h1>\n");
         sb.append("<div class=\"summary\">\n");
-        sb.append("<div class=\"card\" id=\"card-mt\"><h3>Missing Tables</h3><p>").append(mt).append("</p></div>\n");
-        sb.append("<div class=\"card\" id=\"card-mc\"><h3>Missing Columns</h3><p>").append(mc).append("</p></div>\n");
-        sb.append("<div class=\"card\" id=\"card-mp\"><h3>Missing PKs</h3><p>").append(mp).append("</p></div>\n");
-        sb.append("<div class=\"card\" id=\"card-mr\"><h3>Missing Rows</h3><p>").append(mr).append("</p></div>\n");
-        sb.append("<div class=\"card\" id=\"card-mm\"><h3>Mismatched Rows</h3><p>").append(mm).append("</p></div>\n");
-        sb.append("<div class=\"card warning\" id=\"card-w\"><h3>Warnings</h3><p>").append(w).append("</p></div>\n");
-        sb.append("<div class=\"card error\" id=\"card-pe\"><h3>Parse Errors</h3><p>").append(pe).append("</p></div>\n");
+        sb.append("<div class=\"card\" id=\"card-mt\"><h3>Missing Tables</h3><p>").append(acc.count(FindingsAccumulator.Kind.TABLE_MISSING)).append("</p></div>\n");
+        sb.append("<div class=\"card\" id=\"card-mc\"><h3>Missing Columns</h3><p>").append(acc.count(FindingsAccumulator.Kind.COLUMN_MISSING)).append("</p></div>\n");
+        sb.append("<div class=\"card\" id=\"card-mp\"><h3>Missing PKs</h3><p>").append(acc.count(FindingsAccumulator.Kind.PK_MISSING)).append("</p></div>\n");
+        sb.append("<div class=\"card\" id=\"card-mr\"><h3>Missing Rows</h3><p>").append(acc.count(FindingsAccumulator.Kind.ROW_MISSING)).append("</p></div>\n");
+        sb.append("<div class=\"card\" id=\"card-mm\"><h3>Mismatched Rows</h3><p>").append(acc.count(FindingsAccumulator.Kind.ROW_MISMATCH)).append("</p></div>\n");
+        sb.append("<div class=\"card warning\" id=\"card-w\"><h3>Warnings</h3><p>").append(acc.count(FindingsAccumulator.Kind.WARN_NO_PK)).append("</p></div>\n");
+        sb.append("<div class=\"card error\" id=\"card-pe\"><h3>Parse Errors</h3><p>").append(acc.count(FindingsAccumulator.Kind.PARSE_ERROR)).append("</p></div>\n");
         sb.append("</div>\n");
         sb.append("<div class=\"actions\">\n");
         sb.append("<input type=\"text\" id=\"tableSearch\" placeholder=\"Search tables...\" onkeyup=\"filterTables()\">\n");
@@ -535,18 +624,17 @@ public class LookupDifferEngine {
         sb.append("<table id=\"tableList\">\n");
         sb.append("<thead><tr><th><input type=\"checkbox\" id=\"checkAll\" onclick=\"toggleAll(this.checked)\" checked></th><th>Table</th><th>Findings</th><th>Details</th></tr></thead>\n");
         sb.append("<tbody>\n");
-        List<String> tableNames = new ArrayList<>(grouped.keySet());
+        List<String> tableNames = new ArrayList<>(acc.tables());
         Collections.sort(tableNames);
         for (String tableName : tableNames) {
-            List<DiffFinding> tableFindings = grouped.get(tableName);
-            long count = tableFindings.size();
-            long l_mt = tableFindings.stream().filter(f -> "TABLE_MISSING".equals(f.kind)).count();
-            long l_mc = tableFindings.stream().filter(f -> "COLUMN_MISSING".equals(f.kind)).count();
-            long l_mp = tableFindings.stream().filter(f -> "PK_MISSING".equals(f.kind)).count();
-            long l_mr = tableFindings.stream().filter(f -> "ROW_MISSING".equals(f.kind)).count();
-            long l_mm = tableFindings.stream().filter(f -> "ROW_MISMATCH".equals(f.kind)).count();
-            long l_w  = tableFindings.stream().filter(f -> "WARN_NO_PK".equals(f.kind)).count();
-            long l_pe = tableFindings.stream().filter(f -> "PARSE_ERROR".equals(f.kind)).count();
+            long count = acc.tableCount(tableName);
+            long l_mt = acc.tableCount(tableName, FindingsAccumulator.Kind.TABLE_MISSING);
+            long l_mc = acc.tableCount(tableName, FindingsAccumulator.Kind.COLUMN_MISSING);
+            long l_mp = acc.tableCount(tableName, FindingsAccumulator.Kind.PK_MISSING);
+            long l_mr = acc.tableCount(tableName, FindingsAccumulator.Kind.ROW_MISSING);
+            long l_mm = acc.tableCount(tableName, FindingsAccumulator.Kind.ROW_MISMATCH);
+            long l_w  = acc.tableCount(tableName, FindingsAccumulator.Kind.WARN_NO_PK);
+            long l_pe = acc.tableCount(tableName, FindingsAccumulator.Kind.PARSE_ERROR);
             sb.append("<tr data-table=\"").append(tableName).append("\" ")
               .append("data-mt=\"").append(l_mt).append("\" ")
               .append("data-mc=\"").append(l_mc).append("\" ")
@@ -558,37 +646,34 @@ public class LookupDifferEngine {
             sb.append("<td><input type=\"checkbox\" class=\"table-check\" checked onclick=\"updateSummary()\"></td>\n");
             sb.append("<td>").append(tableName).append("</td>\n");
             sb.append("<td>").append(count).append("</td>\n");
-            sb.append("<td><a href=\"table_").append(tableName.toLowerCase()).append(".html\">View Details</a></td>\n");
+            sb.append("<td><a href=\"table_").append(tableName.toLowerCase(Locale.ROOT)).append(".html\">View Details</a></td>\n");
             sb.append("</tr>\n");
         }
         sb.append("</tbody>\n</table>\n</div>\n<script src=\"assets/script.js\"></script>\n</body>\n</html>");
         return sb.toString();
     }
 
-    private String buildTableDetailHtml(String tableName, List<DiffFinding> findings) {
+    private String buildTableDetailHtml(String tableName, String manifestJson) {
         StringBuilder sb = new StringBuilder();
         sb.append("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"UTF-8\">\n");
         sb.append("<title>Findings for ").append(tableName).append("</title>\n");
         sb.append("<link rel=\"stylesheet\" href=\"assets/style.css\">\n");
-        sb.append("</head>\n<body>\n<div class=\"container\">\n");
+        sb.append("</head>\n<body onload=\"initViewer()\">\n<div class=\"container\">\n");
         sb.append("<nav><a href=\"index.html\">&larr; Back to Dashboard</a></nav>\n");
         sb.append("<h1>Table: ").append(tableName).append("</h1>\n");
-        Map<String, List<DiffFinding>> byKind = findings.stream().collect(Collectors.groupingBy(f -> f.kind));
-        for (Map.Entry<String, List<DiffFinding>> entry : byKind.entrySet()) {
-            String kind = entry.getKey();
-            List<DiffFinding> list = entry.getValue();
-            sb.append("<h2 class=\"kind-header\">").append(kind).append(" (").append(list.size()).append(")</h2>\n");
-            sb.append("<table>\n<thead><tr><th>File:Line</th><th>Message</th></tr></thead>\n<tbody>\n");
-            for (DiffFinding f : list) {
-                sb.append("<tr><td>").append(f.file).append(":").append(f.line).append("</td>\n");
-                sb.append("<td>").append(f.message);
-                if (f.ddl != null && !f.ddl.isEmpty()) sb.append("<pre>").append(f.ddl.replace("<", "&lt;").replace(">", "&gt;")).append("</pre>");
-                if (f.insertSql != null && !f.insertSql.isEmpty()) sb.append("<pre>").append(f.insertSql.replace("<", "&lt;").replace(">", "&gt;")).append("</pre>");
-                sb.append("</td></tr>\n");
-            }
-            sb.append("</tbody>\n</table>\n");
-        }
-        sb.append("</div>\n</body>\n</html>");
+        sb.append("<div id=\"kindCounts\"></div>\n");
+        sb.append("<div class=\"actions\">\n");
+        sb.append("<select id=\"kindFilter\" onchange=\"firstPage()\"><option value=\"\">All kinds</option></select>\n");
+        sb.append("<input type=\"text\" id=\"textFilter\" placeholder=\"Filter by file, message or SQL...\" oninput=\"firstPage()\">\n");
+        sb.append("<button id=\"prevPage\" onclick=\"movePage(-1)\">Previous</button>\n");
+        sb.append("<span id=\"pageInfo\"></span>\n");
+        sb.append("<button id=\"nextPage\" onclick=\"movePage(1)\">Next</button>\n");
+        sb.append("</div>\n");
+        sb.append("<table>\n<thead><tr><th>Kind</th><th>File:Line</th><th>Message</th></tr></thead>\n<tbody id=\"findingRows\"></tbody>\n</table>\n");
+        sb.append("</div>\n");
+        sb.append("<script>var MANIFEST = ").append(manifestJson.replace("</", "<\\/")).append(";</script>\n");
+        sb.append("<script src=\"assets/viewer.js\"></script>\n");
+        sb.append("</body>\n</html>");
         return sb.toString();
     }
 
@@ -615,7 +700,12 @@ public class LookupDifferEngine {
                "a:hover { text-decoration: underline; }\n" +
                "pre { background: #212529; color: #f8f9fa; padding: 15px; border-radius: 5px; overflow-x: auto; font-size: 13px; margin-top: 10px; white-space: pre-wrap; word-break: break-all; }\n" +
                "nav { margin-bottom: 20px; }\n" +
-               ".kind-header { background: #e9ecef; padding: 10px 15px; border-radius: 5px; font-size: 18px; margin-top: 20px; }\n";
+               ".kind-header { background: #e9ecef; padding: 10px 15px; border-radius: 5px; font-size: 18px; margin-top: 20px; }\n" +
+               "#textFilter, #kindFilter { padding: 10px; border: 1px solid #ced4da; border-radius: 5px; }\n" +
+               "#textFilter { flex-grow: 1; }\n" +
+               "#kindCounts { margin-bottom: 15px; color: #495057; }\n" +
+               "button:disabled { background: #ced4da; cursor: default; }\n" +
+               ".kind { font-weight: bold; padding: 4px 8px; border-radius: 4px; font-size: 12px; background: #e9ecef; white-space: nowrap; }\n";
     }
 
     private String getJs() {
@@ -655,65 +745,308 @@ public class LookupDifferEngine {
                "}\n";
     }
 
-    private SqlExportIndex indexDirectory(Path dir, LookupDifferRequest req) throws Exception {
+    /**
+     * Table page viewer: pages through the data shards listed in MANIFEST, loading only the shards a page
+     * needs. Without a text filter, shards before the page are skipped by their known sizes; with one, shards
+     * are scanned in order until the page (plus one row, to know if there is a next page) is filled.
+     */
+    private String getViewerJs() {
+        return "var LD = { page: 0, pageSize: 100, cache: {}, waiting: {}, generation: 0 };\n" +
+               "function lookupDifferShard(name, rows) {\n" +
+               "  LD.cache[name] = rows; var cbs = LD.waiting[name] || []; delete LD.waiting[name];\n" +
+               "  cbs.forEach(function (cb) { cb(rows); });\n" +
+               "}\n" +
+               "function loadShard(name, cb) {\n" +
+               "  if (LD.cache[name]) { cb(LD.cache[name]); return; }\n" +
+               "  if (LD.waiting[name]) { LD.waiting[name].push(cb); return; }\n" +
+               "  LD.waiting[name] = [cb];\n" +
+               "  var s = document.createElement('script'); s.src = 'data/' + encodeURIComponent(name) + '.js'; document.head.appendChild(s);\n" +
+               "}\n" +
+               "function initViewer() {\n" +
+               "  var sel = document.getElementById('kindFilter'), parts = [];\n" +
+               "  MANIFEST.kinds.forEach(function (k) {\n" +
+               "    var o = document.createElement('option'); o.value = k.kind; o.textContent = k.kind + ' (' + k.count + ')'; sel.appendChild(o);\n" +
+               "    parts.push(k.kind + ': ' + k.count);\n" +
+               "  });\n" +
+               "  document.getElementById('kindCounts').textContent = parts.join(' | ');\n" +
+               "  render();\n" +
+               "}\n" +
+               "function firstPage() { LD.page = 0; render(); }\n" +
+               "function movePage(d) { LD.page = Math.max(0, LD.page + d); render(); }\n" +
+               "function render() {\n" +
+               "  var gen = ++LD.generation, kind = document.getElementById('kindFilter').value;\n" +
+               "  var text = document.getElementById('textFilter').value.toUpperCase();\n" +
+               "  var shards = [], total = 0;\n" +
+               "  MANIFEST.kinds.forEach(function (k) {\n" +
+               "    if (kind && k.kind !== kind) return;\n" +
+               "    total += k.count;\n" +
+               "    for (var n = 0; n < k.shards; n++) {\n" +
+               "      shards.push({ kind: k.kind, name: MANIFEST.stem + '_' + k.kind.toLowerCase() + '_' + n, size: Math.min(MANIFEST.shardSize, k.count - n * MANIFEST.shardSize) });\n" +
+               "    }\n" +
+               "  });\n" +
+               "  var from = LD.page * LD.pageSize, seen = 0, rows = [];\n" +
+               "  document.getElementById('pageInfo').textContent = 'Loading...';\n" +
+               "  (function scan(i) {\n" +
+               "    if (gen !== LD.generation) return;\n" +
+               "    if (i >= shards.length || rows.length > LD.pageSize) { show(rows, text ? -1 : total); return; }\n" +
+               "    var sh = shards[i];\n" +
+               "    if (!text && seen + sh.size <= from) { seen += sh.size; scan(i + 1); return; }\n" +
+               "    loadShard(sh.name, function (data) {\n" +
+               "      data.forEach(function (f) {\n" +
+               "        if (text && ((f.file || '') + ' ' + (f.message || '') + ' ' + (f.ddl || '') + ' ' + (f.insertSql || '')).toUpperCase().indexOf(text) < 0) return;\n" +
+               "        if (seen++ >= from && rows.length <= LD.pageSize) rows.push({ kind: sh.kind, f: f });\n" +
+               "      });\n" +
+               "      scan(i + 1);\n" +
+               "    });\n" +
+               "  })(0);\n" +
+               "}\n" +
+               "function show(rows, total) {\n" +
+               "  var more = rows.length > LD.pageSize, body = document.getElementById('findingRows');\n" +
+               "  body.innerHTML = '';\n" +
+               "  rows.slice(0, LD.pageSize).forEach(function (r) {\n" +
+               "    var tr = document.createElement('tr'), k = document.createElement('td'), loc = document.createElement('td'), msg = document.createElement('td');\n" +
+               "    var badge = document.createElement('span'); badge.className = 'kind'; badge.textContent = r.kind; k.appendChild(badge);\n" +
+               "    loc.textContent = r.f.file + ':' + r.f.line;\n" +
+               "    msg.appendChild(document.createTextNode(r.f.message || ''));\n" +
+               "    [r.f.ddl, r.f.insertSql].forEach(function (sql) {\n" +
+               "      if (sql) { var pre = document.createElement('pre'); pre.textContent = sql; msg.appendChild(pre); }\n" +
+               "    });\n" +
+               "    tr.appendChild(k); tr.appendChild(loc); tr.appendChild(msg); body.appendChild(tr);\n" +
+               "  });\n" +
+               "  var info = 'Page ' + (LD.page + 1);\n" +
+               "  if (total >= 0) info += ' of ' + Math.max(1, Math.ceil(total / LD.pageSize)) + ' (' + total + ' findings)';\n" +
+               "  else info += ' (' + Math.min(rows.length, LD.pageSize) + ' matches)';\n" +
+               "  document.getElementById('pageInfo').textContent = info;\n" +
+               "  document.getElementById('prevPage').disabled = LD.page === 0;\n" +
+               "  document.getElementById('nextPage').disabled = !more;\n" +
+               "}\n";
+    }
+
+    /** Queues one parse task per .sql file; each task builds its own per-file index. */
+    private List<Future<SqlExportIndex>> submitIndexing(ExecutorService pool, Path dir, final LookupDifferRequest req,
+                                                        final IndexFragmentCache cache, final ValueDictionary dictionary,
+                                                        final RowSpill spill, final LookupDifferProgress progress) throws Exception {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            files = walk.filter(p -> isExportFile(p.toString()) || p.toString().toLowerCase().endsWith(".zip"))
+                    .collect(Collectors.toList());
+        }
+
+        List<Future<SqlExportIndex>> parts = new ArrayList<Future<SqlExportIndex>>(files.size());
+        for (final Path p : files) {
+            if (p.toString().toLowerCase().endsWith(".zip")) {
+                // one task per export entry, in entry order
+                try (ZipFile zip = new ZipFile(p.toFile())) {
+                    for (final ZipEntry entry : Collections.list(zip.entries())) {
+                        if (entry.isDirectory() || !isExportFile(entry.getName())) continue;
+                        parts.add(pool.submit(new Callable<SqlExportIndex>() {
+                            @Override public SqlExportIndex call() {
+                                return indexZipEntry(p, entry.getName(), req, dictionary, spill, progress);
+                            }
+                        }));
+                    }
+                } catch (IOException unreadableZip) {
+                    // skipped like an unreadable .sql file
+                }
+                continue;
+            }
+            parts.add(pool.submit(new Callable<SqlExportIndex>() {
+                @Override public SqlExportIndex call() {
+                    return indexFile(p, req, cache, dictionary, spill, progress);
+                }
+            }));
+        }
+        progress.filesQueued(parts.size());
+        return parts;
+    }
+
+    /** Queues loading a snapshot given as --sourceDir/--targetDir, in place of parsing a folder. */
+    private List<Future<SqlExportIndex>> submitSnapshot(ExecutorService pool, final Path file, final LookupDifferRequest req,
+                                                        final ValueDictionary dictionary, final LookupDifferProgress progress) {
+        progress.filesQueued(1);
+        return Collections.singletonList(pool.submit(new Callable<SqlExportIndex>() {
+            @Override public SqlExportIndex call() throws IOException {
+                progress.checkCancelled();
+                SqlExportIndex idx = IndexSnapshot.load(file, IndexFragmentCache.settings(req));
+                if (dictionary != null) dictionary.encodeRows(idx);
+                progress.fileIndexed(Files.size(file));
+                return idx;
+            }
+        }));
+    }
+
+    private static void saveSnapshot(String out, SqlExportIndex idx, LookupDifferRequest req) throws IOException {
+        if (out == null || out.trim().isEmpty()) return;
+        IndexSnapshot.write(Paths.get(out.trim()).toAbsolutePath().normalize(), idx, IndexFragmentCache.settings(req));
+    }
+
+    private static boolean isExportFile(String name) {
+        String n = name.toLowerCase();
+        return n.endsWith(".sql") || n.endsWith(".sql.gz");
+    }
+
+    /** Merges per-file indexes in file order, so the result is identical to a serial scan. */
+    private SqlExportIndex mergeIndexes(List<Future<SqlExportIndex>> parts, LookupDifferProgress progress) throws Exception {
         SqlExportIndex idx = new SqlExportIndex();
-        List<Path> files = Files.walk(dir)
-                .filter(p -> p.toString().toLowerCase().endsWith(".sql"))
-                .collect(Collectors.toList());
+        for (Future<SqlExportIndex> part : parts) {
+            SqlExportIndex fileIdx = await(part);
+            // a cancelled file task reads as an unreadable file, so check before merging its (partial) index
+            progress.checkCancelled();
+            if (fileIdx != null) idx.mergeFrom(fileIdx);
+        }
+        return idx;
+    }
+
+    private SqlExportIndex indexFile(Path p, LookupDifferRequest req, IndexFragmentCache cache, ValueDictionary dictionary,
+                                     RowSpill spill, LookupDifferProgress progress) {
+        SqlExportIndex idx = spill != null ? spill.newIndex() : new SqlExportIndex();
+        try {
+            progress.checkCancelled();
+            if (p.toString().toLowerCase().endsWith(".gz")) {
+                InputStream in = new GZIPInputStream(Files.newInputStream(p), 64 * 1024);
+                parseCompressed(p.toString(), in, Files.size(p), idx, req, dictionary, progress);
+                progress.fileIndexed(Files.size(p));
+                return finished(idx);
+            }
 
-        for (Path p : files) {
+            MappedSqlFile mapped;
             try {
-                List<String> lines = Files.readAllLines(p, Charset.forName("UTF-8"));
-                parseFile(p, lines, idx, req);
-            } catch (Exception ex) {
-                // Ignore gracefully like before
+                mapped = MappedSqlFile.map(p);
+            } catch (IOException | UnsupportedOperationException mapFailed) {
+                mapped = null;
             }
+            if (mapped != null && cache != null) {
+                IndexFragmentCache.Key key = IndexFragmentCache.key(p, mapped, req);
+                SqlExportIndex cached = cache.load(key, mapped);
+                if (cached != null) {
+                    // cached fragments hold no value ids
+                    if (dictionary != null) dictionary.encodeRows(cached);
+                    progress.fileIndexed(Files.size(p));
+                    return cached;
+                }
+                parseMapped(p, mapped, idx, req, dictionary, progress);
+                cache.store(key, idx);
+            } else if (mapped != null) {
+                parseMapped(p, mapped, idx, req, dictionary, progress);
+            } else {
+                try (SqlStatementReader reader = new SqlStatementReader(Files.newBufferedReader(p, Charset.forName("UTF-8")))) {
+                    parseFile(p.toString(), reader, idx, req, dictionary, progress);
+                }
+            }
+            progress.fileIndexed(Files.size(p));
+            return finished(idx);
+        } catch (CancellationException | RowSpill.Failure stopped) {
+            discard(idx);
+            throw stopped;
+        } catch (Exception ex) {
+            // Ignore gracefully like before
+            discard(idx);
+            return null;
+        }
+    }
+
+    /** An export entry of a .zip, reported as archive.zip!/entry.sql; a .sql.gz entry is inflated twice. */
+    private SqlExportIndex indexZipEntry(Path zipPath, String entryName, LookupDifferRequest req, ValueDictionary dictionary,
+                                         RowSpill spill, LookupDifferProgress progress) {
+        SqlExportIndex idx = spill != null ? spill.newIndex() : new SqlExportIndex();
+        try (ZipFile zip = new ZipFile(zipPath.toFile())) {
+            progress.checkCancelled();
+            ZipEntry entry = zip.getEntry(entryName);
+            InputStream in = zip.getInputStream(entry);
+            if (entryName.toLowerCase().endsWith(".gz")) in = new GZIPInputStream(in, 64 * 1024);
+            parseCompressed(zipPath + "!/" + entryName, in, entry.getCompressedSize(), idx, req, dictionary, progress);
+            progress.fileIndexed(Math.max(entry.getCompressedSize(), 0));
+            return finished(idx);
+        } catch (CancellationException | RowSpill.Failure stopped) {
+            discard(idx);
+            throw stopped;
+        } catch (Exception ex) {
+            // Ignore gracefully like the plain files
+            discard(idx);
+            return null;
+        }
+    }
+
+    /** Ends a file task's spilled rows; a spill that cannot be written fails the run instead of dropping the file. */
+    private static SqlExportIndex finished(SqlExportIndex idx) {
+        try {
+            idx.finishRows();
+        } catch (IOException e) {
+            throw new RowSpill.Failure(e);
         }
         return idx;
     }
 
-    private void parseFile(Path file, List<String> lines, SqlExportIndex idx, LookupDifferRequest req) {
+    /** Releases the spill files of an index that will not be merged; its rows go with the spill. */
+    private static void discard(SqlExportIndex idx) {
+        try {
+            idx.finishRows();
+        } catch (IOException ignored) {
+            // nothing reads them
+        }
+    }
+
+    /** Parses a decompressing stream as text; big inputs are inflated on a separate thread, ahead of the parser. */
+    private void parseCompressed(String filePath, InputStream in, long compressedSize, SqlExportIndex idx, LookupDifferRequest req,
+                                 ValueDictionary dictionary, LookupDifferProgress progress) throws IOException {
+        if (compressedSize < 0 || compressedSize >= PIPELINE_MIN_COMPRESSED_BYTES) {
+            in = new PipelinedInputStream(in, filePath);
+        }
+        try (SqlStatementReader reader = new SqlStatementReader(new InputStreamReader(in, Charset.forName("UTF-8")))) {
+            parseFile(filePath, reader, idx, req, dictionary, progress);
+        } finally {
+            in.close();
+        }
+    }
+
+    /** INSERTs are parsed straight from the mapped bytes; everything else (DDL) is decoded and parsed as text. */
+    private void parseMapped(Path file, MappedSqlFile mapped, SqlExportIndex idx, LookupDifferRequest req,
+                             ValueDictionary dictionary, LookupDifferProgress progress) {
         String filePath = file.toString();
         String tableFilter = req.getTableNameContains();
         boolean ci = req.isCaseInsensitive();
-
-        String fullSql = String.join("\n", lines);
-        processStmt(fullSql, filePath, 1, idx, ci, tableFilter);
+        InsertRowParser inserts = new InsertRowParser(filePath, ci, tableFilter, req.isRowHashes(), dictionary);
+
+        SqlByteScanner scanner = new SqlByteScanner(mapped);
+        while (scanner.next()) {
+            progress.checkCancelled();
+            progress.statementParsed();
+            if (InsertRowParser.isInsert(mapped, scanner.start(), scanner.end())) {
+                inserts.parse(mapped, scanner.start(), scanner.end(), scanner.line(), idx);
+            } else {
+                String sql = normalizeSql(mapped.decode(scanner.start(), scanner.end()));
+                processStmt(sql, filePath, scanner.line(), idx, ci, tableFilter, inserts);
+            }
+        }
     }
 
-    private void processStmt(String rawSql, String filePath, int stmtStartLine, SqlExportIndex idx, boolean ci, String tableFilter) {
-        List<String> statements = splitStatements(rawSql);
-        int currentLine = stmtStartLine;
-        for (String raw : statements) {
-            String sql = flattenSqlLine(raw);
-            if (sql.isEmpty()) {
-                currentLine += countNewlines(raw);
-                continue;
-            }
+    private void parseFile(String filePath, SqlStatementReader reader, SqlExportIndex idx, LookupDifferRequest req,
+                           ValueDictionary dictionary, LookupDifferProgress progress) throws IOException {
+        String tableFilter = req.getTableNameContains();
+        boolean ci = req.isCaseInsensitive();
+        InsertRowParser inserts = new InsertRowParser(filePath, ci, tableFilter, req.isRowHashes(), dictionary);
 
-            if (startsWithIgnoreCase(sql, "CREATE TABLE")) {
-                parseCreateTable(sql, filePath, currentLine, idx, ci, tableFilter);
-            } else if (startsWithIgnoreCase(sql, "INSERT INTO")) {
-                parseInsert(sql, filePath, currentLine, idx, ci, tableFilter);
-            } else if (startsWithIgnoreCase(sql, "CREATE UNIQUE INDEX")) {
-                parseCreateIndex(sql, filePath, currentLine, idx, ci, tableFilter);
-            } else if (startsWithIgnoreCase(sql, "ALTER TABLE") && indexOfIgnoreCase(sql, "PRIMARY KEY") > 0) {
-                parseAlterTablePk(sql, filePath, currentLine, idx, ci, tableFilter);
-            } else if (startsWithIgnoreCase(sql, "ALTER TABLE") && indexOfIgnoreCase(sql, " ADD ") > 0) {
-                parseAlterTableAdd(sql, filePath, currentLine, idx, ci, tableFilter);
-            }
-            
-            currentLine += countNewlines(raw);
+        String sql;
+        while ((sql = reader.next()) != null) {
+            progress.checkCancelled();
+            progress.statementParsed();
+            processStmt(sql, filePath, reader.getStatementLine(), idx, ci, tableFilter, inserts);
         }
     }
 
-    private int countNewlines(String s) {
-        if (s == null) return 0;
-        int count = 0;
-        for (int i = 0; i < s.length(); i++) {
-            if (s.charAt(i) == '\n') count++;
+    private void processStmt(String sql, String filePath, int line, SqlExportIndex idx, boolean ci, String tableFilter, InsertRowParser inserts) {
+        if (startsWithIgnoreCase(sql, "CREATE TABLE")) {
+            parseCreateTable(sql, filePath, line, idx, ci, tableFilter);
+        } else if (startsWithIgnoreCase(sql, "INSERT INTO")) {
+            SqlBytes text = SqlBytes.of(sql);
+            inserts.parse(text, 0, text.length(), line, idx);
+        } else if (startsWithIgnoreCase(sql, "CREATE UNIQUE INDEX")) {
+            parseCreateIndex(sql, filePath, line, idx, ci, tableFilter);
+        } else if (startsWithIgnoreCase(sql, "ALTER TABLE") && indexOfIgnoreCase(sql, "PRIMARY KEY") > 0) {
+            parseAlterTablePk(sql, filePath, line, idx, ci, tableFilter);
+        } else if (startsWithIgnoreCase(sql, "ALTER TABLE") && indexOfIgnoreCase(sql, " ADD ") > 0) {
+            parseAlterTableAdd(sql, filePath, line, idx, ci, tableFilter);
         }
-        return count;
     }
 
     private void parseAlterTableAdd(String sql, String file, int line, SqlExportIndex idx, boolean ci, String tableFilter) {
@@ -745,14 +1078,8 @@ public class LookupDifferEngine {
         List<String> colLines = splitTopLevelComma(colsRaw);
         String tableKey = ci ? tableName.toUpperCase() : tableName;
 
-        // We need the TableDdl to add columns to. If it doesn't exist, we might want to create a stub?
-        // Actually, if we saw an ALTER TABLE but no CREATE TABLE, we still want to know the columns.
-        SqlExportIndex.TableDdl ddl = idx.ddlsByTableKey.get(tableKey);
-        if (ddl == null) {
-            ddl = new SqlExportIndex.TableDdl(tableName, file, line, new LinkedHashMap<String, SqlExportIndex.ColumnDef>());
-            idx.ddlsByTableKey.put(tableKey, ddl);
-        }
-
+        // If we saw an ALTER TABLE but no CREATE TABLE yet, this still leaves a stub holding the columns.
+        Map<String, SqlExportIndex.ColumnDef> colsByKey = new LinkedHashMap<String, SqlExportIndex.ColumnDef>();
         for (String c : colLines) {
             String colDef = c.trim();
             if (colDef.isEmpty()) continue;
@@ -766,10 +1093,12 @@ public class LookupDifferEngine {
             if (colName.isEmpty()) continue;
 
             String colKey = ci ? colName.toUpperCase() : colName;
-            if (!ddl.columnsByKey.containsKey(colKey)) {
-                ddl.columnsByKey.put(colKey, new SqlExportIndex.ColumnDef(colName, colDef, line));
+            if (!colsByKey.containsKey(colKey)) {
+                colsByKey.put(colKey, new SqlExportIndex.ColumnDef(colName, colDef, line));
             }
         }
+
+        idx.addDdl(tableKey, new SqlExportIndex.TableDdl(tableName, file, line, colsByKey));
     }
 
     private void parseCreateTable(String sql, String file, int line, SqlExportIndex idx, boolean ci, String tableFilter) {
@@ -813,89 +1142,9 @@ public class LookupDifferEngine {
         }
 
         String tableKey = ci ? tableName.toUpperCase() : tableName;
-        SqlExportIndex.TableDdl ddl = idx.ddlsByTableKey.get(tableKey);
-        if (ddl == null) {
-            ddl = new SqlExportIndex.TableDdl(tableName, file, line, colsByKey);
-            ddl.fullSql = sql.endsWith(";") ? sql : (sql + ";");
-            idx.ddlsByTableKey.put(tableKey, ddl);
-        } else {
-            // Merge with existing stub or another DDL
-            if (ddl.fullSql == null) {
-                // It was a stub. Create a new one to properly set file/line/fullSql if desired,
-                // or just update fullSql. Since TableDdl fields are final, we replace it.
-                SqlExportIndex.TableDdl newDdl = new SqlExportIndex.TableDdl(tableName, file, line, colsByKey);
-                newDdl.fullSql = sql.endsWith(";") ? sql : (sql + ";");
-                // Carry over columns from the stub (e.g. from ALTER TABLE ADD)
-                for (Map.Entry<String, SqlExportIndex.ColumnDef> entry : ddl.columnsByKey.entrySet()) {
-                    if (!newDdl.columnsByKey.containsKey(entry.getKey())) {
-                        newDdl.columnsByKey.put(entry.getKey(), entry.getValue());
-                    }
-                }
-                idx.ddlsByTableKey.put(tableKey, newDdl);
-            } else {
-                // Already have a full DDL, just merge extra columns
-                for (Map.Entry<String, SqlExportIndex.ColumnDef> entry : colsByKey.entrySet()) {
-                    if (!ddl.columnsByKey.containsKey(entry.getKey())) {
-                        ddl.columnsByKey.put(entry.getKey(), entry.getValue());
-                    }
-                }
-            }
-        }
-    }
-
-    private void parseInsert(String sql, String file, int line, SqlExportIndex idx, boolean ci, String tableFilter) {
-        String s = sql.trim();
-        int intoIdx = indexOfIgnoreCase(s, "INSERT INTO");
-        if (intoIdx < 0) return;
-
-        String after = s.substring(intoIdx + "INSERT INTO".length()).trim();
-        int parenCols = after.indexOf('(');
-        if (parenCols < 0) return;
-
-        String tableName = SqlParsers.cleanIdentifier(after.substring(0, parenCols));
-
-        if (tableFilter != null && !tableFilter.trim().isEmpty()) {
-            String tf = tableFilter.trim();
-            String tcmp = ci ? tableName.toLowerCase() : tableName;
-            String fcmp = ci ? tf.toLowerCase() : tf;
-            if (!tcmp.contains(fcmp)) return;
-        }
-
-        String colsRaw = firstBalanced(after, '(', ')');
-        if (colsRaw == null) return;
-
-        int valuesIdx = indexOfIgnoreCase(after, "VALUES");
-        if (valuesIdx < 0) return;
-
-        String afterValues = after.substring(valuesIdx + "VALUES".length()).trim();
-        String valsRaw = firstBalanced(afterValues, '(', ')');
-        if (valsRaw == null) return;
-
-        List<String> cols = splitTopLevelComma(colsRaw).stream().map(SqlParsers::normToken).collect(Collectors.toList());
-        List<String> vals = splitTopLevelComma(valsRaw).stream().map(SqlParsers::normToken).collect(Collectors.toList());
-
-        List<String> colsKey = new ArrayList<String>();
-        for (String c : cols) {
-            String clean = SqlParsers.cleanIdentifier(c);
-            colsKey.add(ci ? clean.toUpperCase() : clean);
-        }
-
-        List<String> valsKey = new ArrayList<String>();
-        for (String v : vals) valsKey.add(v);
-
-        String tableKey = ci ? tableName.toUpperCase() : tableName;
-        String normalizedKey = tableKey + "|" + String.join(",", colsKey) + "|" + String.join(",", valsKey);
-
-        SqlExportIndex.InsertRow row = new SqlExportIndex.InsertRow(
-                tableName, file, line, colsKey, valsKey, normalizedKey, sql.endsWith(";") ? sql : (sql + ";")
-        );
-
-        List<SqlExportIndex.InsertRow> list = idx.rowsByTableKey.get(tableKey);
-        if (list == null) {
-            list = new ArrayList<SqlExportIndex.InsertRow>();
-            idx.rowsByTableKey.put(tableKey, list);
-        }
-        list.add(row);
+        SqlExportIndex.TableDdl ddl = new SqlExportIndex.TableDdl(tableName, file, line, colsByKey);
+        ddl.fullSql = sql.endsWith(";") ? sql : (sql + ";");
+        idx.addDdl(tableKey, ddl);
     }
 
     private void parseCreateIndex(String sql, String file, int line, SqlExportIndex idx, boolean ci, String tableFilter) {
@@ -0,0 +1,190 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Live counters of one {@link LookupDifferEngine} run, safe to read from any thread while the run is going, and
+ * its cancellation switch. The engine checks {@link #checkCancelled()} once per statement while indexing and once
+ * per row while comparing, so a cancelled run stops within one statement or row per worker thread.
+ */
+public final class LookupDifferProgress {
+
+    public enum Phase { STARTING, INDEXING, SCHEMA, ROWS, REPORT, DONE }
+
+    private final long startNanos = System.nanoTime();
+    private volatile Phase phase = Phase.STARTING;
+    private volatile boolean cancelled;
+    // set when the run gives up for any reason (cancelled, interrupted or failed), so all its workers stop
+    private volatile boolean stopped;
+
+    private final AtomicInteger filesTotal = new AtomicInteger();
+    private final AtomicInteger filesIndexed = new AtomicInteger();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+    private final AtomicInteger tablesTotal = new AtomicInteger();
+    private final AtomicInteger tablesDone = new AtomicInteger();
+    private final LongAdder rowsCompared = new LongAdder();
+    private final Map<String, Long> rowsByTable = new ConcurrentHashMap<String, Long>();
+    // called on the updating thread after every file, statement and table, to act at a set point of a run
+    private volatile Runnable listener;
+
+    /** Stops the run: worker threads give up at their next check and {@link LookupDifferEngine#run} throws. */
+    public void cancel() {
+        cancelled = true;
+        stopped = true;
+    }
+
+    /** True only after {@link #cancel()}; a run that failed on its own is not cancelled. */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void stop() {
+        stopped = true;
+    }
+
+    /** Throws CancellationException once the run is stopped or the calling thread is interrupted. */
+    void checkCancelled() {
+        if (stopped || Thread.currentThread().isInterrupted()) {
+            stopped = true;
+            throw new CancellationException("lookupdiffer run cancelled");
+        }
+    }
+
+    /** Runs listener on the worker thread after each file indexed, statement parsed and table compared. */
+    void onUpdate(Runnable listener) {
+        this.listener = listener;
+    }
+
+    private void updated() {
+        Runnable l = listener;
+        if (l != null) l.run();
+    }
+
+    void phase(Phase phase) {
+        this.phase = phase;
+    }
+
+    void filesQueued(int count) {
+        filesTotal.addAndGet(count);
+    }
+
+    void fileIndexed(long bytes) {
+        filesIndexed.incrementAndGet();
+        bytesRead.add(bytes);
+        updated();
+    }
+
+    void statementParsed() {
+        statements.increment();
+        updated();
+    }
+
+    void tablesQueued(int count) {
+        tablesTotal.addAndGet(count);
+    }
+
+    /** rows: source plus target rows of the table. */
+    void tableCompared(String tableKey, long rows) {
+        rowsByTable.put(tableKey, rows);
+        rowsCompared.add(rows);
+        tablesDone.incrementAndGet();
+        updated();
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public int getFilesTotal() {
+        return filesTotal.get();
+    }
+
+    public int getFilesIndexed() {
+        return filesIndexed.get();
+    }
+
+    /** Size of the export files indexed so far; .sql.gz files and .zip entries count their compressed size. */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long getStatements() {
+        return statements.sum();
+    }
+
+    public int getTablesTotal() {
+        return tablesTotal.get();
+    }
+
+    public int getTablesDone() {
+        return tablesDone.get();
+    }
+
+    public long getRowsCompared() {
+        return rowsCompared.sum();
+    }
+
+    /** Rows (source plus target) of each table compared so far, by table key. */
+    public Map<String, Long> getRowsByTable() {
+        return Collections.unmodifiableMap(new TreeMap<String, Long>(rowsByTable));
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    public long getStatementsPerSecond() {
+        long millis = getElapsedMillis();
+        return millis <= 0 ? 0 : getStatements() * 1000 / millis;
+    }
+
+    /** One line for a status bar or a CLI progress line. */
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(cancelled ? "CANCELLED" : stopped ? "STOPPED" : phase.name());
+        sb.append(" | files ").append(getFilesIndexed()).append('/').append(getFilesTotal());
+        sb.append(" | ").append(getBytesRead() / (1024 * 1024)).append(" MB");
+        sb.append(" | ").append(getStatements()).append(" stmts (").append(getStatementsPerSecond()).append("/s)");
+        sb.append(" | tables ").append(getTablesDone()).append('/').append(getTablesTotal());
+        sb.append(" | rows ").append(getRowsCompared());
+        sb.append(" | ").append(getElapsedMillis() / 1000).append('s');
+        return sb.toString();
+    }
+
+    /**
+     * Hands {@link #summary()} to sink every periodMillis from a daemon thread, first after one period; closing
+     * the returned handle stops it.
+     */
+    public Closeable reportEvery(long periodMillis, final Consumer<String> sink) {
+        final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "lookupdiffer-progress");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        timer.scheduleAtFixedRate(new Runnable() {
+            @Override public void run() {
+                sink.accept(summary());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        return new Closeable() {
+            @Override public void close() {
+                timer.shutdownNow();
+            }
+        };
+    }
+}
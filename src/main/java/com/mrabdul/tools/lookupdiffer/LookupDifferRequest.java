@@ -11,6 +11,23 @@ public class LookupDifferRequest {
     private final String jsonOut;  // optional
     private final String htmlOut;  // optional output directory for multi-page HTML report
 
+    private final int threads;     // parse workers; <= 0 means one per available core
+    private final boolean rowHashes; // compare rows by 128-bit fingerprint instead of by value text
+
+    private final String mode;       // "memory" (default) or "external" (sort-merge through temp files)
+    private final int memoryBudgetMb; // external mode spill budget; <= 0 means the engine default
+
+    private final String cacheDir;   // optional per-file index cache
+    private final String jsonFormat; // "pretty" (default), "compact" or "ndjson"
+
+    private final int patchBatchRows; // rows per INSERT ALL / MERGE in --outDir patches; <= 1 means one statement per row
+    private final int commitEvery;    // batched patches: rows between COMMITs; <= 0 means the engine default
+
+    private final boolean valueDictionary; // keep row values as per-column dictionary ids
+
+    private final String sourceSnapshotOut; // optional: save the parsed source here as a snapshot
+    private final String targetSnapshotOut; // optional: save the parsed target here as a snapshot
+
     public LookupDifferRequest(String sourceDir,
                                String targetDir,
                                boolean caseInsensitive,
@@ -18,13 +35,38 @@ public class LookupDifferRequest {
                                String outDir,
                                String jsonOut,
                                String htmlOut) {
-        this.sourceDir = sourceDir;
-        this.targetDir = targetDir;
-        this.caseInsensitive = caseInsensitive;
-        this.tableNameContains = tableNameContains;
-        this.outDir = outDir;
-        this.jsonOut = jsonOut;
-        this.htmlOut = htmlOut;
+        this(builder(sourceDir, targetDir)
+                .caseInsensitive(caseInsensitive)
+                .tableNameContains(tableNameContains)
+                .outDir(outDir)
+                .jsonOut(jsonOut)
+                .htmlOut(htmlOut));
+    }
+
+    private LookupDifferRequest(Builder b) {
+        this.sourceDir = b.sourceDir;
+        this.targetDir = b.targetDir;
+        this.caseInsensitive = b.caseInsensitive;
+        this.tableNameContains = b.tableNameContains;
+        this.outDir = b.outDir;
+        this.jsonOut = b.jsonOut;
+        this.htmlOut = b.htmlOut;
+        this.threads = b.threads;
+        this.rowHashes = b.rowHashes;
+        this.mode = b.mode;
+        this.memoryBudgetMb = b.memoryBudgetMb;
+        this.cacheDir = b.cacheDir;
+        this.jsonFormat = b.jsonFormat;
+        this.patchBatchRows = b.patchBatchRows;
+        this.commitEvery = b.commitEvery;
+        this.valueDictionary = b.valueDictionary;
+        this.sourceSnapshotOut = b.sourceSnapshotOut;
+        this.targetSnapshotOut = b.targetSnapshotOut;
+    }
+
+    /** A request for the two folders (or snapshots); every option left unset keeps its default. */
+    public static Builder builder(String sourceDir, String targetDir) {
+        return new Builder(sourceDir, targetDir);
     }
 
     public String getSourceDir() { return sourceDir; }
@@ -34,4 +76,62 @@ public class LookupDifferRequest {
     public String getOutDir() { return outDir; }
     public String getJsonOut() { return jsonOut; }
     public String getHtmlOut() { return htmlOut; }
-}
\ No newline at end of file
+    public int getThreads() { return threads; }
+    public boolean isRowHashes() { return rowHashes; }
+    public String getMode() { return mode; }
+    public int getMemoryBudgetMb() { return memoryBudgetMb; }
+    public String getCacheDir() { return cacheDir; }
+    public String getJsonFormat() { return jsonFormat; }
+    public int getPatchBatchRows() { return patchBatchRows; }
+    public int getCommitEvery() { return commitEvery; }
+    public boolean isValueDictionary() { return valueDictionary; }
+    public String getSourceSnapshotOut() { return sourceSnapshotOut; }
+    public String getTargetSnapshotOut() { return targetSnapshotOut; }
+
+    public static final class Builder {
+        private final String sourceDir;
+        private final String targetDir;
+        private boolean caseInsensitive = true;
+        private String tableNameContains;
+        private String outDir;
+        private String jsonOut;
+        private String htmlOut;
+        private int threads;
+        private boolean rowHashes;
+        private String mode = "memory";
+        private int memoryBudgetMb;
+        private String cacheDir;
+        private String jsonFormat;
+        private int patchBatchRows;
+        private int commitEvery;
+        private boolean valueDictionary;
+        private String sourceSnapshotOut;
+        private String targetSnapshotOut;
+
+        private Builder(String sourceDir, String targetDir) {
+            this.sourceDir = sourceDir;
+            this.targetDir = targetDir;
+        }
+
+        public Builder caseInsensitive(boolean caseInsensitive) { this.caseInsensitive = caseInsensitive; return this; }
+        public Builder tableNameContains(String tableNameContains) { this.tableNameContains = tableNameContains; return this; }
+        public Builder outDir(String outDir) { this.outDir = outDir; return this; }
+        public Builder jsonOut(String jsonOut) { this.jsonOut = jsonOut; return this; }
+        public Builder htmlOut(String htmlOut) { this.htmlOut = htmlOut; return this; }
+        public Builder threads(int threads) { this.threads = threads; return this; }
+        public Builder rowHashes(boolean rowHashes) { this.rowHashes = rowHashes; return this; }
+        public Builder mode(String mode) { this.mode = mode; return this; }
+        public Builder memoryBudgetMb(int memoryBudgetMb) { this.memoryBudgetMb = memoryBudgetMb; return this; }
+        public Builder cacheDir(String cacheDir) { this.cacheDir = cacheDir; return this; }
+        public Builder jsonFormat(String jsonFormat) { this.jsonFormat = jsonFormat; return this; }
+        public Builder patchBatchRows(int patchBatchRows) { this.patchBatchRows = patchBatchRows; return this; }
+        public Builder commitEvery(int commitEvery) { this.commitEvery = commitEvery; return this; }
+        public Builder valueDictionary(boolean valueDictionary) { this.valueDictionary = valueDictionary; return this; }
+        public Builder sourceSnapshotOut(String sourceSnapshotOut) { this.sourceSnapshotOut = sourceSnapshotOut; return this; }
+        public Builder targetSnapshotOut(String targetSnapshotOut) { this.targetSnapshotOut = targetSnapshotOut; return this; }
+
+        public LookupDifferRequest build() {
+            return new LookupDifferRequest(this);
+        }
+    }
+}
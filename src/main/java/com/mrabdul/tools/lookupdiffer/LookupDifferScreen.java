@@ -7,8 +7,11 @@ import com.mrabdul.tui.StatusBar;
 import com.mrabdul.tui.TaskRunner;
 import com.mrabdul.tui.UiSizes;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 import static com.mrabdul.tui.UiForms.*;
 
@@ -16,6 +19,7 @@ public class LookupDifferScreen implements ToolScreen {
 
     private final LookupDifferService service;
     private Future<?> runningTask;
+    private LookupDifferProgress runningProgress;
     private TextBox outputBox;
 
     public LookupDifferScreen(LookupDifferService service) {
@@ -66,34 +70,44 @@ public class LookupDifferScreen implements ToolScreen {
                     statusBar.setError("sourceDir/targetDir is empty.");
                     return;
                 }
-                if (!new File(s).isDirectory()) {
+                if (!new File(s).isDirectory() && !new File(s).isFile()) {
                     statusBar.setError("Invalid sourceDir: " + s);
                     return;
                 }
-                if (!new File(t).isDirectory()) {
+                if (!new File(t).isDirectory() && !new File(t).isFile()) {
                     statusBar.setError("Invalid targetDir: " + t);
                     return;
                 }
 
-                LookupDifferRequest req = new LookupDifferRequest(
-                        s,
-                        t,
-                        caseInsensitive.isChecked(),
-                        safe(tableContains.getText()).isEmpty() ? null : safe(tableContains.getText()),
-                        safe(outDir.getText()).isEmpty() ? null : safe(outDir.getText()),
-                        safe(jsonOut.getText()).isEmpty() ? null : safe(jsonOut.getText()),
-                        safe(htmlOut.getText()).isEmpty() ? null : safe(htmlOut.getText())
-                );
+                LookupDifferRequest req = LookupDifferRequest.builder(s, t)
+                        .caseInsensitive(caseInsensitive.isChecked())
+                        .tableNameContains(safe(tableContains.getText()).isEmpty() ? null : safe(tableContains.getText()))
+                        .outDir(safe(outDir.getText()).isEmpty() ? null : safe(outDir.getText()))
+                        .jsonOut(safe(jsonOut.getText()).isEmpty() ? null : safe(jsonOut.getText()))
+                        .htmlOut(safe(htmlOut.getText()).isEmpty() ? null : safe(htmlOut.getText()))
+                        .build();
 
-                if (runningTask != null) runningTask.cancel(true);
+                cancelRun();
 
                 statusBar.setInfo("Diffing folders...");
                 if (outputBox != null) outputBox.setText("Running diff...\n");
 
+                final LookupDifferProgress progress = new LookupDifferProgress();
+                runningProgress = progress;
                 runningTask = taskRunner.submit(new Runnable() {
                     @Override public void run() {
+                        Closeable reporter = progress.reportEvery(1000, new Consumer<String>() {
+                            @Override public void accept(String line) {
+                                statusBar.setProgress(line);
+                            }
+                        });
                         try {
-                            LookupDifferResult res = service.run(req);
+                            LookupDifferResult res;
+                            try {
+                                res = service.run(req, progress);
+                            } finally {
+                                closeQuietly(reporter);
+                            }
                             if (outputBox != null) {
                                 String text = res.getReportText();
                                 if (res.getHtmlReportPath() != null) {
@@ -112,6 +126,8 @@ public class LookupDifferScreen implements ToolScreen {
                                         + " updates=" + res.getMismatchedRows());
                             }
                         } catch (Exception e) {
+                            // a cancelled run was already reported by whoever cancelled it
+                            if (progress.isCancelled()) return;
                             if (outputBox != null) outputBox.setText("Diff failed:\n" + e.toString());
                             statusBar.setError("Diff failed: " + e.getMessage());
                         }
@@ -120,6 +136,19 @@ public class LookupDifferScreen implements ToolScreen {
             }
         });
 
+        Button cancelBtn = new Button("Cancel", new Runnable() {
+            @Override public void run() {
+                if (runningTask == null || runningTask.isDone()) {
+                    statusBar.setInfo("No diff running.");
+                    return;
+                }
+                String at = runningProgress.summary();
+                cancelRun();
+                if (outputBox != null) outputBox.setText("Diff cancelled at: " + at + "\n");
+                statusBar.setWarn("Diff cancelled.");
+            }
+        });
+
         Button clearBtn = new Button("Clear output", new Runnable() {
             @Override public void run() {
                 if (outputBox != null) outputBox.setText("");
@@ -127,7 +156,7 @@ public class LookupDifferScreen implements ToolScreen {
             }
         });
 
-        root.addComponent(actionsRow(runBtn, clearBtn));
+        root.addComponent(actionsRow(runBtn, cancelBtn, clearBtn));
 
         outputBox = UiSizes.reportBox();
         root.addComponent(outputBox.withBorder(Borders.singleLine("Report")));
@@ -143,13 +172,26 @@ public class LookupDifferScreen implements ToolScreen {
 
     @Override
     public void onHide(StatusBar statusBar) {
-        if (runningTask != null) {
-            runningTask.cancel(true);
-            runningTask = null;
-        }
+        cancelRun();
         statusBar.setInfo("Leaving Lookup Differ.");
     }
 
+    /** Stops the engine's workers through the progress switch and interrupts the task waiting on them. */
+    private void cancelRun() {
+        if (runningProgress != null) runningProgress.cancel();
+        if (runningTask != null) runningTask.cancel(true);
+        runningTask = null;
+        runningProgress = null;
+    }
+
+    private static void closeQuietly(Closeable c) {
+        try {
+            c.close();
+        } catch (IOException ignored) {
+            // only stops the progress timer
+        }
+    }
+
     private static String safe(String s) {
         return s == null ? "" : s.trim();
     }
@@ -9,4 +9,8 @@ public class LookupDifferService {
     public LookupDifferResult run(LookupDifferRequest req) throws Exception {
         return engine.run(req);
     }
+
+    public LookupDifferResult run(LookupDifferRequest req, LookupDifferProgress progress) throws Exception {
+        return engine.run(req, progress);
+    }
 }
\ No newline at end of file
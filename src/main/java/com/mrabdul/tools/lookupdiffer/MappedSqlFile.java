@@ -0,0 +1,83 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An export file mapped read-only into memory. Files larger than 2 GB are mapped as several 1 GB regions
+ * addressed by a long offset. The mapping stays valid after the channel is closed and is released by GC
+ * once no row points into it anymore.
+ */
+final class MappedSqlFile extends SqlBytes {
+
+    private static final int REGION_SHIFT = 30;
+    private static final long REGION_SIZE = 1L << REGION_SHIFT;
+    private static final long REGION_MASK = REGION_SIZE - 1;
+
+    private final MappedByteBuffer[] regions;
+    private final long size;
+
+    private MappedSqlFile(MappedByteBuffer[] regions, long size) {
+        this.regions = regions;
+        this.size = size;
+    }
+
+    static MappedSqlFile map(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            int count = (int) ((size + REGION_MASK) >>> REGION_SHIFT);
+            MappedByteBuffer[] regions = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long offset = (long) i << REGION_SHIFT;
+                regions[i] = ch.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(REGION_SIZE, size - offset));
+            }
+            return new MappedSqlFile(regions, size);
+        }
+    }
+
+    @Override
+    long length() {
+        return size;
+    }
+
+    @Override
+    byte byteAt(long pos) {
+        return regions[(int) (pos >>> REGION_SHIFT)].get((int) (pos & REGION_MASK));
+    }
+
+    /** Feeds the whole file into fp, 16 bytes at a time (regions are a multiple of 16 bytes long). */
+    RowFingerprint hashContent(RowFingerprint fp) {
+        for (MappedByteBuffer r : regions) {
+            ByteBuffer region = r.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            while (region.remaining() >= 16) {
+                fp.putBlock(region.getLong(), region.getLong());
+            }
+            while (region.hasRemaining()) {
+                fp.put(region.get() & 0xFF);
+            }
+        }
+        return fp;
+    }
+
+    @Override
+    byte[] copy(long start, long end) {
+        byte[] out = new byte[(int) (end - start)];
+        int done = 0;
+        while (done < out.length) {
+            long pos = start + done;
+            // duplicate() so concurrent readers never share a buffer position
+            ByteBuffer region = regions[(int) (pos >>> REGION_SHIFT)].duplicate();
+            ((Buffer) region).position((int) (pos & REGION_MASK)); // Buffer overload keeps Java 8 compatible
+            int n = Math.min(region.remaining(), out.length - done);
+            region.get(out, done, n);
+            done += n;
+        }
+        return out;
+    }
+}
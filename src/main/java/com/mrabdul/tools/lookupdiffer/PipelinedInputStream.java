@@ -0,0 +1,118 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads a (decompressing) stream on its own thread, a few chunks ahead of the consumer, so inflating a large
+ * .sql.gz or .zip entry overlaps with parsing it instead of alternating with it.
+ *
+ * The source is closed by the reading thread when it is done. Closing this stream stops that thread.
+ */
+final class PipelinedInputStream extends InputStream {
+
+    private static final int CHUNK = 64 * 1024;
+    private static final int CHUNKS_AHEAD = 8;
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<byte[]>(CHUNKS_AHEAD);
+    private final Thread reader;
+    private volatile Throwable failure;
+
+    private byte[] current = new byte[0];
+    private int pos;
+    private boolean ended;
+
+    PipelinedInputStream(final InputStream source, String name) {
+        reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    byte[] buf = new byte[CHUNK];
+                    int n;
+                    while ((n = fill(source, buf)) > 0) {
+                        chunks.put(Arrays.copyOf(buf, n));
+                    }
+                } catch (InterruptedException e) {
+                    // closed by the consumer
+                } catch (Throwable t) {
+                    // not only I/O errors: whatever stops this thread must reach the consumer waiting for END
+                    failure = t;
+                } finally {
+                    try {
+                        source.close();
+                    } catch (IOException | RuntimeException ignored) {
+                        // nothing left to read anyway
+                    }
+                    try {
+                        chunks.put(END);
+                    } catch (InterruptedException ignored) {
+                        // closed by the consumer
+                    }
+                }
+            }
+        }, "lookupdiffer-inflate-" + name);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData()) return -1;
+        return current[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!ensureData()) return -1;
+        int n = Math.min(len, current.length - pos);
+        System.arraycopy(current, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public void close() {
+        ended = true;
+        reader.interrupt();
+        chunks.clear();
+    }
+
+    private boolean ensureData() throws IOException {
+        while (pos == current.length) {
+            if (ended) return false;
+            try {
+                current = chunks.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for decompressed data");
+            }
+            pos = 0;
+            if (current == END) {
+                ended = true;
+                Throwable f = failure;
+                if (f instanceof IOException) throw (IOException) f;
+                if (f instanceof RuntimeException) throw (RuntimeException) f;
+                if (f instanceof Error) throw (Error) f;
+                if (f != null) throw new IOException(f);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Reads until buf is full or the source ends; 0 means the end. */
+    private static int fill(InputStream in, byte[] buf) throws IOException {
+        int n = 0;
+        int r;
+        while (n < buf.length && (r = in.read(buf, n, buf.length - n)) > 0) {
+            n += r;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,130 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PK column positions for one table, resolved once per column layout (rows of a file share one layout
+ * instance, so lookups are by identity). Builds the "v1|v2|" PK key straight from the row bytes.
+ *
+ * One instance per table; not thread-safe.
+ */
+final class PkIndex {
+
+    private final List<String> pkCols;
+    private final boolean ci;
+    private final Map<List<String>, Layout> layouts = new IdentityHashMap<List<String>, Layout>();
+
+    private final ValueTupleCursor cursor = new ValueTupleCursor();
+    private byte[] scratch = new byte[64];
+    private byte[] out = new byte[64];
+    private int[] slotStart;
+    private int[] slotEnd;
+
+    PkIndex(List<String> pkCols, boolean ci) {
+        this.pkCols = pkCols;
+        this.ci = ci;
+        this.slotStart = new int[pkCols.size()];
+        this.slotEnd = new int[pkCols.size()];
+    }
+
+    /** Whether column names are matched ignoring case, as for the PK columns. */
+    boolean isCaseInsensitive() {
+        return ci;
+    }
+
+    private static final class Layout {
+        // column index -> PK slot, or -1
+        final int[] slotOfColumn;
+        // highest column index holding a PK value; scanning stops after it
+        final int lastPkColumn;
+        // columns matched by a PK column, as used for the UPDATE WHERE clause
+        final BitSet pkColumns;
+
+        Layout(int[] slotOfColumn, int lastPkColumn, BitSet pkColumns) {
+            this.slotOfColumn = slotOfColumn;
+            this.lastPkColumn = lastPkColumn;
+            this.pkColumns = pkColumns;
+        }
+    }
+
+    private Layout layout(List<String> columns) {
+        Layout l = layouts.get(columns);
+        if (l != null) return l;
+
+        int[] slotOfColumn = new int[columns.size()];
+        Arrays.fill(slotOfColumn, -1);
+        int lastPkColumn = -1;
+        for (int k = 0; k < pkCols.size(); k++) {
+            String search = ci ? pkCols.get(k).toUpperCase() : pkCols.get(k);
+            for (int i = 0; i < columns.size(); i++) {
+                String colCmp = ci ? columns.get(i).toUpperCase() : columns.get(i);
+                if (colCmp.equals(search)) {
+                    // a column listed twice as PK only fills the first slot
+                    if (slotOfColumn[i] < 0) slotOfColumn[i] = k;
+                    lastPkColumn = Math.max(lastPkColumn, i);
+                    break;
+                }
+            }
+        }
+
+        BitSet pkColumns = new BitSet(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            for (String pk : pkCols) {
+                if ((ci && columns.get(i).equalsIgnoreCase(pk)) || (!ci && columns.get(i).equals(pk))) {
+                    pkColumns.set(i);
+                    break;
+                }
+            }
+        }
+
+        l = new Layout(slotOfColumn, lastPkColumn, pkColumns);
+        layouts.put(columns, l);
+        return l;
+    }
+
+    /** Columns of this layout that belong to the PK. The returned set must not be modified. */
+    BitSet pkColumns(List<String> columns) {
+        return layout(columns).pkColumns;
+    }
+
+    /** PK values in PK column order, each followed by '|'; "NULL" for a PK column the row does not have. */
+    String key(SqlExportIndex.InsertRow row) {
+        Layout l = layout(row.columns);
+        Arrays.fill(slotStart, -1);
+
+        int n = 0;
+        row.values(cursor);
+        for (int i = 0; i <= l.lastPkColumn && cursor.nextToken(); i++) {
+            int slot = l.slotOfColumn[i];
+            if (slot < 0) continue;
+            slotStart[slot] = n;
+            int c;
+            while ((c = cursor.nextByte()) >= 0) {
+                if (n == scratch.length) scratch = Arrays.copyOf(scratch, n * 2);
+                scratch[n++] = (byte) c;
+            }
+            slotEnd[slot] = n;
+        }
+
+        int m = 0;
+        for (int k = 0; k < slotStart.length; k++) {
+            int len = slotStart[k] < 0 ? 4 : slotEnd[k] - slotStart[k];
+            if (m + len + 1 > out.length) out = Arrays.copyOf(out, Math.max(out.length * 2, m + len + 1));
+            if (slotStart[k] < 0) {
+                out[m++] = 'N';
+                out[m++] = 'U';
+                out[m++] = 'L';
+                out[m++] = 'L';
+            } else {
+                System.arraycopy(scratch, slotStart[k], out, m, len);
+                m += len;
+            }
+            out[m++] = '|';
+        }
+        return new String(out, 0, m, SqlBytes.UTF8);
+    }
+}
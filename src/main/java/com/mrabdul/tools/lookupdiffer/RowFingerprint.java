@@ -0,0 +1,130 @@
+package com.mrabdul.tools.lookupdiffer;
+
+/**
+ * Streaming MurmurHash3 (x64, 128-bit) over the normalized bytes of a VALUES tuple.
+ * Each token is followed by its length, so token boundaries are part of the hash.
+ * Also used over raw bytes, e.g. to fingerprint a whole export file.
+ *
+ * Reusable via {@link #reset()}; not thread-safe.
+ */
+final class RowFingerprint {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private long h1;
+    private long h2;
+    private long k1;
+    private long k2;
+    private long length;
+
+    RowFingerprint reset() {
+        h1 = 0;
+        h2 = 0;
+        k1 = 0;
+        k2 = 0;
+        length = 0;
+        return this;
+    }
+
+    /** Hashes every remaining token of the cursor. */
+    RowFingerprint putTokens(ValueTupleCursor cursor) {
+        while (cursor.nextToken()) {
+            int n = 0;
+            int c;
+            while ((c = cursor.nextByte()) >= 0) {
+                put(c);
+                n++;
+            }
+            put(n & 0xFF);
+            put((n >>> 8) & 0xFF);
+            put((n >>> 16) & 0xFF);
+            put(n >>> 24);
+        }
+        return this;
+    }
+
+    /** Hashes 16 bytes given as two little-endian longs; only valid on a 16-byte boundary. */
+    RowFingerprint putBlock(long lo, long hi) {
+        if ((length & 15) != 0) throw new IllegalStateException("not on a block boundary");
+        k1 = lo;
+        k2 = hi;
+        length += 16;
+        mixBlock();
+        return this;
+    }
+
+    RowFingerprint putBytes(byte[] b) {
+        for (byte x : b) put(x & 0xFF);
+        return this;
+    }
+
+    void put(int b) {
+        int i = (int) (length & 15);
+        if (i < 8) k1 |= (long) b << (i << 3);
+        else k2 |= (long) b << ((i - 8) << 3);
+        length++;
+        if (i == 15) {
+            mixBlock();
+        }
+    }
+
+    private void mixBlock() {
+        h1 ^= mixK1(k1);
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        h2 ^= mixK2(k2);
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+
+        k1 = 0;
+        k2 = 0;
+    }
+
+    /** Finishes the hash; the result is read with {@link #high()} and {@link #low()}. */
+    RowFingerprint finish() {
+        if ((length & 15) != 0) {
+            h1 ^= mixK1(k1);
+            h2 ^= mixK2(k2);
+            k1 = 0;
+            k2 = 0;
+        }
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        return this;
+    }
+
+    long high() { return h1; }
+
+    long low() { return h2; }
+
+    private static long mixK1(long k) {
+        k *= C1;
+        k = Long.rotateLeft(k, 31);
+        return k * C2;
+    }
+
+    private static long mixK2(long k) {
+        k *= C2;
+        k = Long.rotateLeft(k, 33);
+        return k * C1;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
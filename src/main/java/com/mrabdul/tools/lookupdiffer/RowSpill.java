@@ -0,0 +1,379 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * The INSERT rows of a --mode external run, kept in files instead of on the heap. Each file task appends the
+ * rows it parses to one segment file per table; merging the per-file indexes only chains segments, so a table's
+ * rows are its segments in file order. They are read back sequentially to be sorted, and by address for the few
+ * rows a comparison or finding needs.
+ *
+ * A segment record carries the row's whole INSERT statement, so rows read back the same way whether they came
+ * from a mapped, compressed or zipped export. Table, file and column names are kept once per segment.
+ *
+ * Segment files live in one temporary directory, removed by {@link #close()}.
+ */
+final class RowSpill implements Closeable {
+
+    // segment files a file task keeps open; an export writes a table's rows back to back, so few are needed
+    private static final int OPEN_SEGMENTS = 16;
+    private static final int IO_BUFFER = 64 * 1024;
+    // addresses are (segment << OFFSET_BITS) | byte offset in the segment
+    private static final int OFFSET_BITS = 40;
+
+    private final Path dir;
+    private final AtomicInteger fileSeq = new AtomicInteger();
+
+    RowSpill() throws IOException {
+        this.dir = Files.createTempDirectory("lookupdiffer-rows-");
+    }
+
+    /** An empty index whose rows go to this spill; {@link SqlExportIndex#finishRows()} ends its writing. */
+    SqlExportIndex newIndex() {
+        return new SqlExportIndex(new Writer());
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (Stream<Path> left = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) left::iterator) Files.deleteIfExists(p);
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    /** A row that could not be written to or read back from the spill; fails the run instead of skipping a file. */
+    static final class Failure extends UncheckedIOException {
+        Failure(IOException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    /** Appends the rows of one file task; used by that task's thread only. */
+    final class Writer implements Closeable {
+        private final LinkedHashMap<Segment, OutputStream> open = new LinkedHashMap<Segment, OutputStream>(16, 0.75f, true);
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+        private final DataOutputStream recordOut = new DataOutputStream(record);
+
+        Rows newRows() {
+            Rows rows = new Rows(this);
+            rows.segments.add(new Segment(dir.resolve("rows-" + fileSeq.getAndIncrement() + ".bin")));
+            return rows;
+        }
+
+        void append(Segment segment, SqlExportIndex.InsertRow row) throws IOException {
+            OutputStream out = open.get(segment);
+            if (out == null) {
+                if (open.size() == OPEN_SEGMENTS) {
+                    Iterator<OutputStream> eldest = open.values().iterator();
+                    eldest.next().close();
+                    eldest.remove();
+                }
+                out = new BufferedOutputStream(Files.newOutputStream(segment.path,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND), IO_BUFFER);
+                open.put(segment, out);
+            }
+            record.reset();
+            segment.encode(recordOut, row);
+            int len = record.size();
+            out.write(len >>> 24);
+            out.write(len >>> 16);
+            out.write(len >>> 8);
+            out.write(len);
+            record.writeTo(out);
+            segment.count++;
+            segment.length += 4 + len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (OutputStream out : open.values()) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    if (failure == null) failure = e;
+                }
+            }
+            open.clear();
+            if (failure != null) throw failure;
+        }
+    }
+
+    /** One file task's rows of one table; names and column lists are interned per segment. */
+    private static final class Segment {
+        final Path path;
+        int count;
+        long length;
+
+        private final List<String> names = new ArrayList<String>();
+        private final Map<String, Integer> nameIds = new HashMap<String, Integer>();
+        private final List<List<String>> layouts = new ArrayList<List<String>>();
+        private final Map<List<String>, Integer> layoutIds = new IdentityHashMap<List<String>, Integer>();
+
+        Segment(Path path) {
+            this.path = path;
+        }
+
+        void encode(DataOutputStream out, SqlExportIndex.InsertRow r) throws IOException {
+            IndexFragmentCodec.writeVarLong(out, nameId(r.tableName));
+            IndexFragmentCodec.writeVarLong(out, nameId(r.file));
+            IndexFragmentCodec.writeVarLong(out, layoutId(r.columns));
+            IndexFragmentCodec.writeVarLong(out, r.line);
+            IndexFragmentCodec.writeVarLong(out, r.valuesStart - r.start);
+            IndexFragmentCodec.writeVarLong(out, r.valuesEnd - r.start);
+            out.writeBoolean(r.hashed);
+            if (r.hashed) {
+                out.writeLong(r.hashHigh);
+                out.writeLong(r.hashLow);
+            }
+            // the statement takes the rest of the record
+            out.write(r.text.copy(r.start, r.end));
+        }
+
+        SqlExportIndex.InsertRow decode(byte[] record, int len) throws IOException {
+            ByteArrayInputStream bytes = new ByteArrayInputStream(record, 0, len);
+            DataInputStream in = new DataInputStream(bytes);
+            String tableName = names.get((int) IndexFragmentCodec.readVarLong(in));
+            String file = names.get((int) IndexFragmentCodec.readVarLong(in));
+            List<String> columns = layouts.get((int) IndexFragmentCodec.readVarLong(in));
+            int line = (int) IndexFragmentCodec.readVarLong(in);
+            long valuesStart = IndexFragmentCodec.readVarLong(in);
+            long valuesEnd = IndexFragmentCodec.readVarLong(in);
+            boolean hashed = in.readBoolean();
+            long hashHigh = hashed ? in.readLong() : 0L;
+            long hashLow = hashed ? in.readLong() : 0L;
+            int stmtLen = bytes.available();
+            byte[] stmt = new byte[stmtLen];
+            System.arraycopy(record, len - stmtLen, stmt, 0, stmtLen);
+            return new SqlExportIndex.InsertRow(tableName, file, line, columns, SqlBytes.of(stmt), 0, stmtLen,
+                    valuesStart, valuesEnd, hashed, hashHigh, hashLow);
+        }
+
+        private int nameId(String name) {
+            Integer id = nameIds.get(name);
+            if (id == null) {
+                id = names.size();
+                names.add(name);
+                nameIds.put(name, id);
+            }
+            return id;
+        }
+
+        private int layoutId(List<String> columns) {
+            Integer id = layoutIds.get(columns);
+            if (id == null) {
+                id = layouts.size();
+                layouts.add(columns);
+                layoutIds.put(columns, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * A table's spilled rows. Iteration reads the segments in order; get(i) scans to the row, so callers that
+     * need more than the first row use {@link #cursor()} and {@link #reader()} instead.
+     */
+    static final class Rows extends AbstractList<SqlExportIndex.InsertRow> {
+        // null once the rows belong to a merged index, which only chains segments
+        private final Writer writer;
+        private final List<Segment> segments = new ArrayList<Segment>();
+        private int size;
+
+        private Rows(Writer writer) {
+            this.writer = writer;
+        }
+
+        /** Rows of a merged index: the segments of others are appended with {@link #addSegments}. */
+        static Rows merged() {
+            return new Rows(null);
+        }
+
+        void addSegments(Rows other) {
+            segments.addAll(other.segments);
+            size += other.size;
+        }
+
+        @Override
+        public boolean add(SqlExportIndex.InsertRow row) {
+            if (writer == null) throw new UnsupportedOperationException("merged rows only take whole segments");
+            try {
+                writer.append(segments.get(0), row);
+            } catch (IOException e) {
+                throw new Failure(e);
+            }
+            size++;
+            return true;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public SqlExportIndex.InsertRow get(int index) {
+            if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            int seg = 0;
+            while (index >= segments.get(seg).count) {
+                index -= segments.get(seg).count;
+                seg++;
+            }
+            Segment segment = segments.get(seg);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.path), IO_BUFFER))) {
+                for (int i = 0; i < index; i++) {
+                    in.skipBytes(in.readInt());
+                }
+                int len = in.readInt();
+                byte[] record = new byte[len];
+                in.readFully(record);
+                return segment.decode(record, len);
+            } catch (IOException e) {
+                throw new Failure(e);
+            }
+        }
+
+        @Override
+        public Iterator<SqlExportIndex.InsertRow> iterator() {
+            final Cursor cursor = cursor();
+            return new Iterator<SqlExportIndex.InsertRow>() {
+                private SqlExportIndex.InsertRow next = advance();
+
+                private SqlExportIndex.InsertRow advance() {
+                    try {
+                        SqlExportIndex.InsertRow r = cursor.next();
+                        if (r == null) cursor.close();
+                        return r;
+                    } catch (IOException e) {
+                        throw new Failure(e);
+                    }
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public SqlExportIndex.InsertRow next() {
+                    if (next == null) throw new NoSuchElementException();
+                    SqlExportIndex.InsertRow r = next;
+                    next = advance();
+                    return r;
+                }
+            };
+        }
+
+        /** Reads the rows in order; {@link Cursor#address()} locates the row last returned, for {@link Reader#read}. */
+        Cursor cursor() {
+            return new Cursor();
+        }
+
+        /** Reads single rows by address. */
+        Reader reader() {
+            return new Reader();
+        }
+
+        final class Cursor implements Closeable {
+            private int seg = -1;
+            private int left;
+            private long offset;
+            private long address;
+            private DataInputStream in;
+            private byte[] buf = new byte[256];
+
+            /** The next row, or null after the last one. */
+            SqlExportIndex.InsertRow next() throws IOException {
+                while (left == 0) {
+                    close();
+                    if (++seg == segments.size()) return null;
+                    Segment segment = segments.get(seg);
+                    left = segment.count;
+                    offset = 0;
+                    if (left > 0) in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment.path), IO_BUFFER));
+                }
+                address = ((long) seg << OFFSET_BITS) | offset;
+                int len = in.readInt();
+                if (len > buf.length) buf = new byte[Math.max(len, buf.length * 2)];
+                in.readFully(buf, 0, len);
+                offset += 4 + len;
+                left--;
+                return segments.get(seg).decode(buf, len);
+            }
+
+            long address() {
+                return address;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (in != null) {
+                    in.close();
+                    in = null;
+                }
+            }
+        }
+
+        final class Reader implements Closeable {
+            private final FileChannel[] channels = new FileChannel[segments.size()];
+            private final ByteBuffer length = ByteBuffer.allocate(4);
+
+            SqlExportIndex.InsertRow read(long address) throws IOException {
+                int seg = (int) (address >>> OFFSET_BITS);
+                long offset = address & ((1L << OFFSET_BITS) - 1);
+                Segment segment = segments.get(seg);
+                FileChannel ch = channels[seg];
+                if (ch == null) {
+                    ch = channels[seg] = FileChannel.open(segment.path, StandardOpenOption.READ);
+                }
+                length.clear();
+                readFully(ch, segment.path, length, offset);
+                int len = length.getInt(0);
+                ByteBuffer record = ByteBuffer.allocate(len);
+                readFully(ch, segment.path, record, offset + 4);
+                return segment.decode(record.array(), len);
+            }
+
+            private void readFully(FileChannel ch, Path path, ByteBuffer buf, long pos) throws IOException {
+                while (buf.hasRemaining()) {
+                    int n = ch.read(buf, pos);
+                    if (n < 0) throw new EOFException("Row spill truncated: " + path);
+                    pos += n;
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                for (FileChannel ch : channels) {
+                    if (ch != null) ch.close();
+                }
+            }
+        }
+    }
+}
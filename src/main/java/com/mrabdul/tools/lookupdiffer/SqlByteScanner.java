@@ -0,0 +1,182 @@
+package com.mrabdul.tools.lookupdiffer;
+
+/**
+ * Byte-level statement scanner over {@link SqlBytes}. Splits on top-level ';' with the same quote and comment
+ * rules as {@link SqlStatementReader}, but only reports offsets: nothing is decoded or copied.
+ *
+ * Scanning bytes is safe for UTF-8 input because every byte of a multi-byte sequence is >= 0x80,
+ * so it can never be mistaken for a quote, comment marker, paren or separator.
+ */
+final class SqlByteScanner {
+
+    private final SqlBytes b;
+    private final long limit;
+    private long pos;
+    private int line = 1;
+
+    private long start;
+    private long end;
+    private int startLine;
+
+    SqlByteScanner(SqlBytes b) {
+        this.b = b;
+        this.limit = b.length();
+    }
+
+    /** Advances to the next statement; false once only whitespace and comments remain. */
+    boolean next() {
+        while (pos < limit) {
+            byte c = b.byteAt(pos);
+            if (c == '\n') {
+                line++;
+                pos++;
+            } else if (isWhitespace(c)) {
+                pos++;
+            } else if (c == '-' && peek(pos + 1) == '-') {
+                pos = skipLineComment(pos + 2);
+            } else if (c == '/' && peek(pos + 1) == '*') {
+                pos = skipBlockComment(pos + 2);
+            } else {
+                break;
+            }
+        }
+        if (pos >= limit) return false;
+
+        start = pos;
+        startLine = line;
+        boolean inSingle = false;
+        boolean inDouble = false;
+        while (pos < limit) {
+            byte c = b.byteAt(pos++);
+            if (c == '\n') line++;
+
+            if (inSingle) {
+                if (c == '\'') inSingle = false;
+            } else if (inDouble) {
+                if (c == '"') inDouble = false;
+            } else if (c == '\'') {
+                inSingle = true;
+            } else if (c == '"') {
+                inDouble = true;
+            } else if (c == '-' && peek(pos) == '-') {
+                pos = skipLineComment(pos + 1);
+            } else if (c == '/' && peek(pos) == '*') {
+                pos = skipBlockComment(pos + 1);
+            } else if (c == ';') {
+                end = pos;
+                return true;
+            }
+        }
+        end = limit;
+        return true;
+    }
+
+    /** Offset of the first significant byte of the current statement. */
+    long start() { return start; }
+
+    /** Offset just past the current statement (past its ';' when it has one). */
+    long end() { return end; }
+
+    /** 1-based line of {@link #start()}. */
+    int line() { return startLine; }
+
+    private int peek(long p) {
+        return p < limit ? b.byteAt(p) : -1;
+    }
+
+    private long skipLineComment(long p) {
+        while (p < limit) {
+            byte c = b.byteAt(p);
+            if (c == '\n' || c == '\r') break;
+            p++;
+        }
+        return p;
+    }
+
+    private long skipBlockComment(long p) {
+        while (p < limit) {
+            byte c = b.byteAt(p);
+            if (c == '\n') line++;
+            if (c == '*' && peek(p + 1) == '/') return p + 2;
+            p++;
+        }
+        return p;
+    }
+
+    // ---- lexical helpers shared by the INSERT parser and value cursors ----
+
+    /** Same set as Character.isWhitespace for the ASCII range. */
+    static boolean isWhitespace(int c) {
+        return c == ' ' || (c >= 9 && c <= 13) || (c >= 28 && c <= 31);
+    }
+
+    /** Skips whitespace and comments starting at p; returns the first significant offset (or end). */
+    static long skipInsignificant(SqlBytes b, long p, long end) {
+        while (p < end) {
+            byte c = b.byteAt(p);
+            if (isWhitespace(c)) {
+                p++;
+            } else if (c == '-' && p + 1 < end && b.byteAt(p + 1) == '-') {
+                p += 2;
+                while (p < end && b.byteAt(p) != '\n' && b.byteAt(p) != '\r') p++;
+            } else if (c == '/' && p + 1 < end && b.byteAt(p + 1) == '*') {
+                p += 2;
+                while (p < end && !(b.byteAt(p) == '*' && p + 1 < end && b.byteAt(p + 1) == '/')) p++;
+                p = Math.min(end, p + 2);
+            } else {
+                break;
+            }
+        }
+        return p;
+    }
+
+    /** Case-insensitive match of an upper-case ASCII keyword at p. */
+    static boolean matchKeyword(SqlBytes b, long p, long end, String keyword) {
+        if (end - p < keyword.length()) return false;
+        for (int i = 0; i < keyword.length(); i++) {
+            int c = b.byteAt(p + i);
+            if (c >= 'a' && c <= 'z') c -= 32;
+            if (c != keyword.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /** First unquoted occurrence of ch in [p, end), or -1. */
+    static long indexOf(SqlBytes b, char ch, long p, long end) {
+        boolean inSingle = false;
+        boolean inDouble = false;
+        for (; p < end; p++) {
+            byte c = b.byteAt(p);
+            if (c == '\'' && !inDouble) inSingle = !inSingle;
+            else if (c == '"' && !inSingle) inDouble = !inDouble;
+            else if (c == ch && !inSingle && !inDouble) return p;
+        }
+        return -1;
+    }
+
+    /** Given the offset of a '(', returns the offset of its matching ')' or -1. Quote and comment aware. */
+    static long closingParen(SqlBytes b, long open, long end) {
+        boolean inSingle = false;
+        boolean inDouble = false;
+        int depth = 0;
+        for (long p = open; p < end; p++) {
+            byte c = b.byteAt(p);
+            if (inSingle) {
+                if (c == '\'') inSingle = false;
+            } else if (inDouble) {
+                if (c == '"') inDouble = false;
+            } else if (c == '\'') {
+                inSingle = true;
+            } else if (c == '"') {
+                inDouble = true;
+            } else if ((c == '-' || c == '/') && p + 1 < end && b.byteAt(p + 1) == (c == '-' ? '-' : '*')) {
+                p = skipInsignificant(b, p, end) - 1;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                if (--depth == 0) return p;
+            }
+        }
+        return -1;
+    }
+}
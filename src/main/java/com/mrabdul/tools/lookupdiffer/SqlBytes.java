@@ -0,0 +1,69 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Read-only UTF-8 text that parsed rows keep offsets into: either a memory-mapped export file
+ * ({@link MappedSqlFile}) or a single statement held on the heap.
+ */
+abstract class SqlBytes {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    abstract long length();
+
+    abstract byte byteAt(long pos);
+
+    /** The bytes of [start, end). */
+    byte[] copy(long start, long end) {
+        byte[] out = new byte[(int) (end - start)];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = byteAt(start + i);
+        }
+        return out;
+    }
+
+    /** Decodes [start, end) as UTF-8. */
+    String decode(long start, long end) {
+        return new String(copy(start, end), UTF8);
+    }
+
+    static SqlBytes of(String s) {
+        return new Heap(s.getBytes(UTF8));
+    }
+
+    static SqlBytes of(byte[] bytes) {
+        return new Heap(bytes);
+    }
+
+    /** Byte-for-byte compare of two regions, which may live in different sources. */
+    static boolean regionEquals(SqlBytes a, long aStart, long aEnd, SqlBytes b, long bStart, long bEnd) {
+        if (aEnd - aStart != bEnd - bStart) return false;
+        if (a == b && aStart == bStart) return true;
+        for (long i = 0; i < aEnd - aStart; i++) {
+            if (a.byteAt(aStart + i) != b.byteAt(bStart + i)) return false;
+        }
+        return true;
+    }
+
+    private static final class Heap extends SqlBytes {
+        private final byte[] bytes;
+
+        Heap(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override long length() { return bytes.length; }
+
+        @Override byte byteAt(long pos) { return bytes[(int) pos]; }
+
+        @Override byte[] copy(long start, long end) {
+            return Arrays.copyOfRange(bytes, (int) start, (int) end);
+        }
+
+        @Override String decode(long start, long end) {
+            return new String(bytes, (int) start, (int) (end - start), UTF8);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.mrabdul.tools.lookupdiffer;
 
+import java.io.IOException;
 import java.util.*;
 
 public class SqlExportIndex {
@@ -16,6 +17,98 @@ public class SqlExportIndex {
     // tableKey -> PK DDL (ALTER TABLE ... ADD PRIMARY KEY ... or CREATE UNIQUE INDEX ...)
     public final Map<String, String> pkDdlsByTableKey = new LinkedHashMap<String, String>();
 
+    // CREATE TABLE / ALTER TABLE ADD statements in the order they were read; replayed by mergeFrom()
+    private final List<Map.Entry<String, TableDdl>> ddlLog = new ArrayList<Map.Entry<String, TableDdl>>();
+
+    // --mode external: where this index's rows are written instead of kept; null keeps them on the heap
+    private final RowSpill.Writer spill;
+
+    public SqlExportIndex() {
+        this(null);
+    }
+
+    SqlExportIndex(RowSpill.Writer spill) {
+        this.spill = spill;
+    }
+
+    /**
+     * Records a CREATE TABLE (fullSql set) or ALTER TABLE ... ADD (fullSql null) statement and folds it into ddlsByTableKey.
+     * An ALTER seen before its CREATE leaves a stub that the CREATE later replaces, keeping the stub's extra columns.
+     */
+    public void addDdl(String tableKey, TableDdl stmt) {
+        ddlLog.add(new AbstractMap.SimpleImmutableEntry<String, TableDdl>(tableKey, stmt));
+
+        TableDdl existing = ddlsByTableKey.get(tableKey);
+        if (stmt.fullSql == null) {
+            if (existing == null) {
+                existing = new TableDdl(stmt.tableName, stmt.file, stmt.line, new LinkedHashMap<String, ColumnDef>());
+                ddlsByTableKey.put(tableKey, existing);
+            }
+            addMissingColumns(existing, stmt);
+        } else if (existing == null || existing.fullSql == null) {
+            TableDdl ddl = new TableDdl(stmt.tableName, stmt.file, stmt.line, new LinkedHashMap<String, ColumnDef>(stmt.columnsByKey));
+            ddl.fullSql = stmt.fullSql;
+            if (existing != null) addMissingColumns(ddl, existing);
+            ddlsByTableKey.put(tableKey, ddl);
+        } else {
+            addMissingColumns(existing, stmt);
+        }
+    }
+
+    public void addRow(String tableKey, InsertRow row) {
+        List<InsertRow> list = rowsByTableKey.get(tableKey);
+        if (list == null) {
+            list = spill != null ? spill.newRows() : new ArrayList<InsertRow>();
+            rowsByTableKey.put(tableKey, list);
+        }
+        list.add(row);
+    }
+
+    /** Ends writing the spilled rows of a file task's index, making them readable; a no-op on the heap. */
+    void finishRows() throws IOException {
+        if (spill != null) spill.close();
+    }
+
+    /**
+     * Appends an index built from a later file. Merging per-file indexes in file order gives the same
+     * result as reading those files one after the other into a single index. Spilled rows stay on disk: the
+     * merged table only chains the segments of the finished per-file indexes.
+     */
+    public void mergeFrom(SqlExportIndex other) {
+        for (Map.Entry<String, TableDdl> e : other.ddlLog) {
+            addDdl(e.getKey(), e.getValue());
+        }
+        for (Map.Entry<String, List<InsertRow>> e : other.rowsByTableKey.entrySet()) {
+            List<InsertRow> list = rowsByTableKey.get(e.getKey());
+            if (e.getValue() instanceof RowSpill.Rows) {
+                if (list == null) {
+                    list = RowSpill.Rows.merged();
+                    rowsByTableKey.put(e.getKey(), list);
+                }
+                ((RowSpill.Rows) list).addSegments((RowSpill.Rows) e.getValue());
+            } else if (list == null) {
+                rowsByTableKey.put(e.getKey(), new ArrayList<InsertRow>(e.getValue()));
+            } else {
+                list.addAll(e.getValue());
+            }
+        }
+        pksByTableKey.putAll(other.pksByTableKey);
+        pkDdlsByTableKey.putAll(other.pkDdlsByTableKey);
+    }
+
+    /** CREATE TABLE / ALTER TABLE ADD statements in read order. */
+    List<Map.Entry<String, TableDdl>> ddlLog() {
+        return ddlLog;
+    }
+
+    private static void addMissingColumns(TableDdl into, TableDdl from) {
+        for (Map.Entry<String, ColumnDef> e : from.columnsByKey.entrySet()) {
+            if (!into.columnsByKey.containsKey(e.getKey())) {
+                into.columnsByKey.put(e.getKey(), e.getValue());
+            }
+        }
+    }
+
     public static class TableDdl {
         public final String tableName;
         public final String file;
@@ -43,41 +136,188 @@ public class SqlExportIndex {
         }
     }
 
+    /**
+     * One INSERT row. Only offsets into the statement's {@link SqlBytes} are kept (normally the memory-mapped
+     * export file); values and SQL text are materialized on demand, typically just for rows that become findings.
+     * With row hashes enabled, a 128-bit fingerprint of the normalized values is taken at parse time and rows
+     * are compared by fingerprint instead of by re-reading their bytes. With a {@link ValueDictionary}, each value
+     * is also held as an id, and rows are compared (and their values read) through the ids.
+     */
     public static class InsertRow {
         public final String tableName;
         public final String file;
         public final int line;
 
+        // shared by every row of the table that uses the same column list
         public final List<String> columns;
-        public final List<String> values;
-        public final String normalizedKey;
-        public final String originalSql;
 
-        public InsertRow(String tableName, String file, int line, List<String> columns, List<String> values, String normalizedKey, String originalSql) {
+        // package-private for IndexFragmentCodec
+        final SqlBytes text;
+        final long start;
+        final long end;
+        final long valuesStart;
+        final long valuesEnd;
+
+        final boolean hashed;
+        final long hashHigh;
+        final long hashLow;
+
+        // --dictionary: the row's value ids, per column of valueColumns; null when not encoded
+        final ValueDictionary.Column[] valueColumns;
+        final int[] valueIds;
+
+        InsertRow(String tableName, String file, int line, List<String> columns,
+                  SqlBytes text, long start, long end, long valuesStart, long valuesEnd) {
+            this(tableName, file, line, columns, text, start, end, valuesStart, valuesEnd, false, 0L, 0L);
+        }
+
+        InsertRow(String tableName, String file, int line, List<String> columns,
+                  SqlBytes text, long start, long end, long valuesStart, long valuesEnd,
+                  boolean hashed, long hashHigh, long hashLow) {
+            this(tableName, file, line, columns, text, start, end, valuesStart, valuesEnd, hashed, hashHigh, hashLow, null, null);
+        }
+
+        InsertRow(String tableName, String file, int line, List<String> columns,
+                  SqlBytes text, long start, long end, long valuesStart, long valuesEnd,
+                  boolean hashed, long hashHigh, long hashLow,
+                  ValueDictionary.Column[] valueColumns, int[] valueIds) {
             this.tableName = tableName;
             this.file = file;
             this.line = line;
             this.columns = columns;
-            this.values = values;
-            this.normalizedKey = normalizedKey;
-            this.originalSql = originalSql;
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.valuesStart = valuesStart;
+            this.valuesEnd = valuesEnd;
+            this.hashed = hashed;
+            this.hashHigh = hashHigh;
+            this.hashLow = hashLow;
+            this.valueColumns = valueIds == null ? null : valueColumns;
+            this.valueIds = valueIds;
+        }
+
+        InsertRow withValueIds(ValueDictionary.Column[] valueColumns, int[] valueIds) {
+            return new InsertRow(tableName, file, line, columns, text, start, end, valuesStart, valuesEnd,
+                    hashed, hashHigh, hashLow, valueColumns, valueIds);
+        }
+
+        /** Normalized values, in column order. */
+        public List<String> getValues() {
+            String[] encoded = valueIds == null ? null : ValueDictionary.values(valueColumns, valueIds);
+            if (encoded != null) return new ArrayList<String>(Arrays.asList(encoded));
+            return ValueTupleCursor.materialize(text, valuesStart, valuesEnd);
+        }
+
+        /** The normalized INSERT statement, always terminated by ';'. */
+        public String getOriginalSql() {
+            String sql = SqlParsers.normalizeSql(text.decode(start, end));
+            return sql.endsWith(";") ? sql : (sql + ";");
+        }
+
+        /**
+         * The table name, then the column names, as the INSERT writes them (schema and quotes kept); patch
+         * statements must target exactly these, {@link #tableName} and {@link #columns} are cleaned for matching.
+         */
+        List<String> getWrittenNames() {
+            return InsertRowParser.writtenNames(text, start, end);
         }
 
+        /** PK key of this row; the diff uses one {@link PkIndex} per table instead of calling this per row. */
         public String getPkKey(List<String> pkCols, boolean caseInsensitive) {
-            StringBuilder sb = new StringBuilder();
-            for (String pkCol : pkCols) {
-                String search = caseInsensitive ? pkCol.toUpperCase() : pkCol;
-                int idx = -1;
-                for (int i = 0; i < columns.size(); i++) {
-                    String colCmp = caseInsensitive ? columns.get(i).toUpperCase() : columns.get(i);
-                    if (colCmp.equals(search)) {
-                        idx = i;
-                        break;
-                    }
+            return new PkIndex(pkCols, caseInsensitive).key(this);
+        }
+
+        /** Points the cursor at this row's VALUES tuple. */
+        ValueTupleCursor values(ValueTupleCursor cursor) {
+            return cursor.reset(text, valuesStart, valuesEnd);
+        }
+
+        /** Same column list and same normalized values, i.e. identical rows for diff purposes. */
+        public boolean sameContent(InsertRow other) {
+            if (columns != other.columns && !columns.equals(other.columns)) return false;
+            if (valueIds != null && other.valueIds != null && valueColumns == other.valueColumns) {
+                int same = ValueDictionary.sameIds(valueIds, other.valueIds);
+                if (same != ValueDictionary.UNDECIDED) return same == ValueDictionary.SAME;
+            }
+            if (hashed && other.hashed) {
+                return hashHigh == other.hashHigh && hashLow == other.hashLow;
+            }
+            return ValueTupleCursor.sameTokens(
+                    new ValueTupleCursor().reset(text, valuesStart, valuesEnd),
+                    new ValueTupleCursor().reset(other.text, other.valuesStart, other.valuesEnd));
+        }
+
+        /**
+         * Positions of this row's columns whose normalized value differs in other. Columns are matched by name,
+         * ignoring case when the diff does (ci), so a column other does not have counts as changed.
+         */
+        BitSet changedColumns(InsertRow other, boolean ci) {
+            BitSet changed = new BitSet(columns.size());
+            boolean sameLayout = columns == other.columns || columns.equals(other.columns);
+            boolean byIds = sameLayout && valueIds != null && other.valueIds != null && valueColumns == other.valueColumns;
+            Map<String, Integer> otherPos = null;
+            if (!sameLayout) {
+                otherPos = new HashMap<String, Integer>();
+                for (int j = 0; j < other.columns.size(); j++) otherPos.put(ci ? other.columns.get(j).toUpperCase() : other.columns.get(j), j);
+            }
+            List<String> values = null;
+            List<String> otherValues = null;
+            for (int i = 0; i < columns.size(); i++) {
+                if (byIds && valueIds[i] != ValueDictionary.NOT_ENCODED && other.valueIds[i] != ValueDictionary.NOT_ENCODED) {
+                    if (valueIds[i] != other.valueIds[i]) changed.set(i);
+                    continue;
+                }
+                if (values == null) {
+                    values = getValues();
+                    otherValues = other.getValues();
                 }
-                sb.append(idx >= 0 ? values.get(idx) : "NULL").append("|");
+                if (i >= values.size()) break;
+                Integer j = sameLayout ? Integer.valueOf(i) : otherPos.get(ci ? columns.get(i).toUpperCase() : columns.get(i));
+                if (j == null || j >= otherValues.size() || !values.get(i).equals(otherValues.get(j))) changed.set(i);
+            }
+            return changed;
+        }
+
+        /** Column list and normalized values (or their fingerprint) as text; equal for rows of equal content. */
+        String contentKey() {
+            StringBuilder key = new StringBuilder(columns.toString()).append('\u0000');
+            if (hashed) return key.append(hashHigh).append(':').append(hashLow).toString();
+            for (String v : getValues()) key.append(v).append('\u0001');
+            return key.toString();
+        }
+
+        int contentHash() {
+            int h = columns.hashCode();
+            if (hashed) {
+                return 31 * h + (int) (hashHigh ^ (hashHigh >>> 32));
+            }
+            ValueTupleCursor cursor = new ValueTupleCursor().reset(text, valuesStart, valuesEnd);
+            while (cursor.nextToken()) {
+                h = cursor.hashToken(h);
             }
-            return sb.toString();
+            return h;
+        }
+    }
+
+    /** Hash-set key that compares rows by content, used when a table has no PK. */
+    static final class RowContent {
+        final InsertRow row;
+        private final int hash;
+
+        RowContent(InsertRow row) {
+            this.row = row;
+            this.hash = row.contentHash();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RowContent && hash == ((RowContent) o).hash && row.sameContent(((RowContent) o).row);
         }
     }
-}
\ No newline at end of file
+}
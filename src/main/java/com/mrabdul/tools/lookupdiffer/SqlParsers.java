@@ -1,6 +1,7 @@
 package com.mrabdul.tools.lookupdiffer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public final class SqlParsers {
@@ -9,11 +10,58 @@ public final class SqlParsers {
     /** Normalize identifier token: trim + collapse spaces if NOT a string literal */
     public static String normToken(String s) {
         if (s == null) return "";
-        String t = s.trim();
-        if (t.startsWith("'") && t.endsWith("'") && t.length() >= 2) {
-            return t;
+        return normToken(s, 0, s.length());
+    }
+
+    /**
+     * {@link #normToken(String)} of s[start, end) without materializing the raw slice. Only a token that contains
+     * a whitespace run (anything but a single ' ') is rebuilt; otherwise the trimmed slice is returned, and s
+     * itself when nothing was trimmed.
+     */
+    public static String normToken(CharSequence s, int start, int end) {
+        // same trim as String.trim()
+        while (start < end && s.charAt(start) <= ' ') start++;
+        while (end > start && s.charAt(end - 1) <= ' ') end--;
+
+        if (end - start >= 2 && s.charAt(start) == '\'' && s.charAt(end - 1) == '\'') {
+            return slice(s, start, end);
         }
-        return t.replaceAll("\\s+", " ");
+
+        int run = -1;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (isSpace(c) && (c != ' ' || (i + 1 < end && isSpace(s.charAt(i + 1))))) {
+                run = i;
+                break;
+            }
+        }
+        if (run < 0) return slice(s, start, end);
+
+        // collapse each run of \s into one space, as replaceAll("\\s+", " ") did
+        StringBuilder sb = new StringBuilder(end - start);
+        sb.append(s, start, run);
+        boolean inRun = false;
+        for (int i = run; i < end; i++) {
+            char c = s.charAt(i);
+            if (isSpace(c)) {
+                if (!inRun) sb.append(' ');
+                inRun = true;
+            } else {
+                sb.append(c);
+                inRun = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    /** The characters matched by regex \s. */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static String slice(CharSequence s, int start, int end) {
+        if (start == 0 && end == s.length() && s instanceof String) return (String) s;
+        return s.subSequence(start, end).toString();
     }
 
     /** Extracts clean table/column name, stripping schema prefixes and quotes.
@@ -37,26 +85,42 @@ public final class SqlParsers {
         List<String> out = new ArrayList<String>();
         if (raw == null) return out;
 
-        String s = raw.trim();
-        if (s.isEmpty()) return out;
+        int[] bounds = topLevelCommaBounds(raw, 0, raw.length());
+        for (int i = 0; i < bounds.length; i += 2) {
+            String token = normToken(raw, bounds[i], bounds[i + 1]);
+            // a trailing empty token is dropped
+            if (i + 2 < bounds.length || !token.isEmpty()) out.add(token);
+        }
+        return out;
+    }
 
-        StringBuilder cur = new StringBuilder();
+    /**
+     * Bounds of the top-level comma-separated tokens of s[start, end), as start/end index pairs into s. Commas
+     * inside quotes or parentheses do not split. Tokens are not trimmed; callers that need text pass the bounds
+     * to {@link #normToken(CharSequence, int, int)}. A blank input has no tokens.
+     */
+    public static int[] topLevelCommaBounds(CharSequence s, int start, int end) {
+        while (start < end && s.charAt(start) <= ' ') start++;
+        while (end > start && s.charAt(end - 1) <= ' ') end--;
+        if (start == end) return new int[0];
+
+        int[] bounds = new int[16];
+        int n = 0;
+        int tokenStart = start;
         boolean inSingle = false;
         boolean inDouble = false;
         int paren = 0;
 
-        for (int i = 0; i < s.length(); i++) {
+        for (int i = start; i < end; i++) {
             char c = s.charAt(i);
 
             // handle quote toggle
             if (c == '\'' && !inDouble) {
                 inSingle = !inSingle;
-                cur.append(c);
                 continue;
             }
             if (c == '"' && !inSingle) {
                 inDouble = !inDouble;
-                cur.append(c);
                 continue;
             }
 
@@ -65,18 +129,17 @@ public final class SqlParsers {
                 if (c == ')') paren = Math.max(0, paren - 1);
 
                 if (c == ',' && paren == 0) {
-                    out.add(normToken(cur.toString()));
-                    cur.setLength(0);
-                    continue;
+                    if (n + 2 > bounds.length) bounds = Arrays.copyOf(bounds, n * 2);
+                    bounds[n++] = tokenStart;
+                    bounds[n++] = i;
+                    tokenStart = i + 1;
                 }
             }
-            cur.append(c);
         }
-
-        String last = normToken(cur.toString());
-        if (!last.isEmpty()) out.add(last);
-
-        return out;
+        if (n + 2 > bounds.length) bounds = Arrays.copyOf(bounds, n * 2);
+        bounds[n++] = tokenStart;
+        bounds[n++] = end;
+        return n == bounds.length ? bounds : Arrays.copyOf(bounds, n);
     }
 
     /** Find substring between first occurrence of openChar and its matching closeChar. Returns null if not found. */
@@ -114,7 +177,7 @@ public final class SqlParsers {
         return normalizeSql(s);
     }
 
-    /** Strips comments and collapses whitespace outside of quotes, preserving everything inside quotes. */
+    /** Strips comments (as whitespace) and collapses whitespace outside of quotes, preserving everything inside quotes. */
     public static String normalizeSql(String sql) {
         if (sql == null) return "";
         StringBuilder sb = new StringBuilder();
@@ -128,14 +191,19 @@ public final class SqlParsers {
             char c = sql.charAt(i);
             char next = (i + 1 < sql.length()) ? sql.charAt(i + 1) : '\0';
 
+            // a comment separates tokens like whitespace does
             if (inSingleLineComment) {
-                if (c == '\n' || c == '\r') inSingleLineComment = false;
-                continue;
+                if (c != '\n' && c != '\r') continue;
+                inSingleLineComment = false;
             }
             if (inMultiLineComment) {
                 if (c == '*' && next == '/') {
                     inMultiLineComment = false;
                     i++;
+                    if (!lastWasWhitespace) {
+                        sb.append(' ');
+                        lastWasWhitespace = true;
+                    }
                 }
                 continue;
             }
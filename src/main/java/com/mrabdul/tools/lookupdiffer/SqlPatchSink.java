@@ -0,0 +1,391 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes the --outDir patch files while the diff runs: every statement is appended to the global patch file
+ * and to its per-table file as the finding is produced. Rows of a table are diffed back to back, so only the
+ * current table's files are open at a time.
+ *
+ * With a batch size above 1, the row findings of a table are grouped instead: missing rows into Oracle
+ * INSERT ALL ... SELECT 1 FROM DUAL blocks, mismatched rows into MERGE statements over a UNION ALL of
+ * SELECT ... FROM DUAL rows (one MERGE per set of changed columns), with a COMMIT every commitEvery rows
+ * and at the end of every table. Such findings must carry their {@link DiffFinding#sourceRow}.
+ *
+ * The files only stand once {@link #finish()} was called: closing an unfinished sink (a cancelled or failed
+ * run) ends no batch and deletes every file it wrote, so no truncated patch set is left to be applied.
+ *
+ * A sink without an output directory ignores everything.
+ */
+final class SqlPatchSink implements Closeable {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String INSERT_HEADER = "-- Data patch: insert missing rows (SOURCE -> TARGET)\n";
+    private static final String UPDATE_HEADER = "-- Data patch: update mismatched rows (SOURCE -> TARGET)\n";
+    // Oracle rejects an INSERT ALL with more than 1000 columns in total (ORA-24335)
+    static final int INSERT_ALL_MAX_COLUMNS = 999;
+    static final int DEFAULT_COMMIT_EVERY = 10000;
+
+    private final Path out;
+    private Writer missingTables;
+    private Writer schemaPatch;
+    private Writer insertPatch;
+    private Writer updatePatch;
+
+    // upper-cased names of missing tables, to flag their inserts
+    private final Set<String> missingTableSet = new HashSet<String>();
+    private final Set<String> createdTables = new LinkedHashSet<String>();
+
+    private final TableFile tableInserts = new TableFile("_insert.sql", INSERT_HEADER);
+    private final TableFile tableUpdates = new TableFile("_update.sql", UPDATE_HEADER);
+    private String lastInsertTable;
+    private String lastUpdateTable;
+
+    private final int batchRows;
+    private final int commitEvery;
+    private final Batch inserts = new Batch();
+    private final Batch updates = new Batch();
+    // every file written, deleted again when the sink is closed unfinished
+    private final Set<Path> files = new LinkedHashSet<Path>();
+    private boolean finished;
+
+    SqlPatchSink(Path out) throws IOException {
+        this(out, 1, 0);
+    }
+
+    /** batchRows <= 1 writes one statement per row; commitEvery <= 0 means {@link #DEFAULT_COMMIT_EVERY}. */
+    SqlPatchSink(Path out, int batchRows, int commitEvery) throws IOException {
+        this.out = out;
+        this.batchRows = batchRows;
+        this.commitEvery = commitEvery > 0 ? commitEvery : DEFAULT_COMMIT_EVERY;
+        if (out == null) return;
+        Files.createDirectories(out);
+        try {
+            missingTables = open(out.resolve("missing_tables.sql"), false);
+            missingTables.write("-- Tables present in SOURCE but missing in TARGET\n");
+            schemaPatch = open(out.resolve("schema_patch.sql"), false);
+            schemaPatch.write("-- Schema patch: add missing columns (SOURCE -> TARGET)\n");
+            insertPatch = open(out.resolve("insert_patch.sql"), false);
+            insertPatch.write(INSERT_HEADER);
+            updatePatch = open(out.resolve("update_patch.sql"), false);
+            updatePatch.write(UPDATE_HEADER);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /** TABLE_MISSING; these all arrive before any row finding. */
+    void tableMissing(DiffFinding f) throws IOException {
+        if (out == null) return;
+        if (f.ddl != null) {
+            missingTables.write(f.ddl);
+        } else {
+            missingTables.write("-- " + f.table);
+        }
+        missingTables.write("\n");
+        missingTableSet.add(f.table.toUpperCase());
+        createdTables.add(f.table);
+    }
+
+    /** ALTER TABLE ... ADD column or PK statement. */
+    void schemaChange(String sql) throws IOException {
+        if (out == null) return;
+        schemaPatch.write(sql);
+        schemaPatch.write("\n");
+    }
+
+    void rowMissing(DiffFinding f) throws IOException {
+        if (out == null || f.insertSql == null) return;
+        String marker = missingTableSet.contains(f.table.toUpperCase()) ? " (MISSING IN TARGET)" : "";
+        if (lastInsertTable == null || !lastInsertTable.equals(f.table)) {
+            if (batchRows > 1) endTable(inserts, insertPatch, tableInserts);
+            lastInsertTable = f.table;
+            insertPatch.write("\n-- Table: " + f.table + marker + "\n");
+        }
+        Writer tableFile = tableInserts.writerFor(f.table, marker);
+        if (batchRows <= 1) {
+            writeStatement(insertPatch, f.insertSql);
+            writeStatement(tableFile, f.insertSql);
+            return;
+        }
+        SqlExportIndex.InsertRow row = f.sourceRow;
+        List<String> values = row.getValues();
+        int cols = Math.min(row.columns.size(), values.size());
+        if (inserts.rows.size() == batchRows || (!inserts.rows.isEmpty() && inserts.columns + cols > INSERT_ALL_MAX_COLUMNS)) {
+            flushInserts();
+        }
+        inserts.add(row, values);
+        inserts.columns += cols;
+    }
+
+    void rowMismatch(DiffFinding f) throws IOException {
+        if (out == null || f.insertSql == null) return;
+        if (lastUpdateTable == null || !lastUpdateTable.equals(f.table)) {
+            if (batchRows > 1) endTable(updates, updatePatch, tableUpdates);
+            lastUpdateTable = f.table;
+            updatePatch.write("\n-- Table: " + f.table + "\n");
+        }
+        Writer tableFile = tableUpdates.writerFor(f.table, "");
+        SqlExportIndex.InsertRow row = f.sourceRow;
+        List<String> values = batchRows > 1 ? row.getValues() : null;
+        BitSet setColumns = values == null ? null : setColumns(row, values, f);
+        if (setColumns == null || setColumns.isEmpty()) {
+            // single-row mode, or nothing to update (the statement is just a comment)
+            flushUpdates();
+            writeStatement(updatePatch, f.insertSql);
+            writeStatement(tableFile, f.insertSql);
+            return;
+        }
+        // one MERGE needs one column layout and SET list, and a target row may only be matched once (ORA-30926)
+        String shape = row.columns + "|" + values.size() + "|" + f.pkColumns + "|" + setColumns;
+        String pkKey = pkKey(values, f.pkColumns);
+        if (updates.rows.size() == batchRows || !shape.equals(updates.shape) || updates.keys.contains(pkKey)) {
+            flushUpdates();
+        }
+        updates.shape = shape;
+        updates.pkColumns = f.pkColumns;
+        updates.setColumns = setColumns;
+        updates.add(row, values);
+        updates.keys.add(pkKey);
+    }
+
+    /** Marks the patch set complete; only then does {@link #close()} commit the last batches and keep the files. */
+    void finish() {
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (out == null) return;
+        IOException failure = null;
+        try {
+            if (finished && batchRows > 1) {
+                endTable(inserts, insertPatch, tableInserts);
+                endTable(updates, updatePatch, tableUpdates);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        for (Closeable c : new Closeable[] {missingTables, schemaPatch, insertPatch, updatePatch, tableInserts, tableUpdates}) {
+            try {
+                if (c != null) c.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+        if (!finished) {
+            files.add(out.resolve("created_tables.txt"));
+            for (Path file : files) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    if (failure == null) failure = e;
+                }
+            }
+        }
+        if (failure != null) throw failure;
+        if (finished && !createdTables.isEmpty()) {
+            try (Writer w = open(out.resolve("created_tables.txt"), false)) {
+                w.write(String.join("\n", createdTables) + "\n");
+            }
+        }
+    }
+
+    private void flushInserts() throws IOException {
+        if (inserts.rows.isEmpty()) return;
+        StringBuilder sb = new StringBuilder("INSERT ALL\n");
+        for (int r = 0; r < inserts.rows.size(); r++) {
+            SqlExportIndex.InsertRow row = inserts.rows.get(r);
+            List<String> values = inserts.values.get(r);
+            List<String> names = written(row);
+            int cols = Math.min(row.columns.size(), values.size());
+            sb.append("  INTO ").append(names.get(0))
+              .append(" (").append(String.join(", ", names.subList(1, cols + 1))).append(")")
+              .append(" VALUES (").append(String.join(", ", values.subList(0, cols))).append(")\n");
+        }
+        sb.append("SELECT 1 FROM DUAL;\n");
+        writeBatch(inserts, insertPatch, tableInserts, sb.toString());
+    }
+
+    private void flushUpdates() throws IOException {
+        if (updates.rows.isEmpty()) return;
+        SqlExportIndex.InsertRow first = updates.rows.get(0);
+        List<String> names = written(first);
+        int cols = Math.min(first.columns.size(), updates.values.get(0).size());
+        StringBuilder sb = new StringBuilder("MERGE INTO ").append(names.get(0)).append(" tgt\nUSING (\n");
+        for (int r = 0; r < updates.rows.size(); r++) {
+            List<String> values = updates.values.get(r);
+            sb.append(r == 0 ? "  SELECT " : "  UNION ALL SELECT ");
+            boolean firstCol = true;
+            for (int i = 0; i < cols; i++) {
+                if (!updates.pkColumns.get(i) && !updates.setColumns.get(i)) continue;
+                if (!firstCol) sb.append(", ");
+                sb.append(values.get(i)).append(" AS ").append(names.get(i + 1));
+                firstCol = false;
+            }
+            sb.append(" FROM DUAL\n");
+        }
+        sb.append(") src\nON (");
+        List<String> sets = new ArrayList<String>();
+        boolean firstOn = true;
+        for (int i = 0; i < cols; i++) {
+            String col = names.get(i + 1);
+            if (updates.pkColumns.get(i)) {
+                if (!firstOn) sb.append(" AND ");
+                sb.append("tgt.").append(col).append(" = src.").append(col);
+                firstOn = false;
+            } else if (updates.setColumns.get(i)) {
+                sets.add("tgt." + col + " = src." + col);
+            }
+        }
+        sb.append(")\nWHEN MATCHED THEN UPDATE SET ").append(String.join(", ", sets)).append(";\n");
+        writeBatch(updates, updatePatch, tableUpdates, sb.toString());
+    }
+
+    /** Writes one batch statement to the global and the table file, with a COMMIT once commitEvery rows are due. */
+    private void writeBatch(Batch batch, Writer global, TableFile table, String sql) throws IOException {
+        Writer tableFile = table.writer;
+        global.write(sql);
+        tableFile.write(sql);
+        batch.uncommitted += batch.rows.size();
+        batch.rows.clear();
+        batch.values.clear();
+        batch.keys.clear();
+        batch.columns = 0;
+        if (batch.uncommitted >= commitEvery) {
+            global.write("COMMIT;\n");
+            tableFile.write("COMMIT;\n");
+            batch.uncommitted = 0;
+        }
+    }
+
+    /** Flushes the table's last batch and commits what is left of it. */
+    private void endTable(Batch batch, Writer global, TableFile table) throws IOException {
+        if (batch == inserts) flushInserts();
+        else flushUpdates();
+        if (batch.uncommitted > 0) {
+            global.write("COMMIT;\n");
+            table.writer.write("COMMIT;\n");
+            batch.uncommitted = 0;
+        }
+    }
+
+    /** Positions the UPDATE sets: the finding's changed columns, or else every non-PK column. */
+    private static BitSet setColumns(SqlExportIndex.InsertRow row, List<String> values, DiffFinding f) {
+        int cols = Math.min(row.columns.size(), values.size());
+        BitSet sets;
+        if (f.changedPositions != null) {
+            sets = (BitSet) f.changedPositions.clone();
+        } else {
+            sets = new BitSet(cols);
+            sets.set(0, cols);
+        }
+        sets.andNot(f.pkColumns);
+        sets.clear(cols, Math.max(cols, sets.length()));
+        return sets;
+    }
+
+    /** Table and column names as the row's INSERT writes them, or the cleaned ones if it cannot be read again. */
+    private static List<String> written(SqlExportIndex.InsertRow row) {
+        List<String> names = row.getWrittenNames();
+        if (names.size() == row.columns.size() + 1) return names;
+        List<String> cleaned = new ArrayList<String>();
+        cleaned.add(row.tableName);
+        cleaned.addAll(row.columns);
+        return cleaned;
+    }
+
+    private static String pkKey(List<String> values, BitSet pkColumns) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = pkColumns.nextSetBit(0); i >= 0 && i < values.size(); i = pkColumns.nextSetBit(i + 1)) {
+            sb.append(values.get(i)).append('\u0000');
+        }
+        return sb.toString();
+    }
+
+    private static void writeStatement(Writer w, String sql) throws IOException {
+        w.write(sql);
+        if (!sql.endsWith("\n")) w.write("\n");
+    }
+
+    private Writer open(Path path, boolean append) throws IOException {
+        files.add(path);
+        return append
+                ? Files.newBufferedWriter(path, UTF8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+                : Files.newBufferedWriter(path, UTF8);
+    }
+
+    /** Rows of the current table waiting for their INSERT ALL or MERGE. */
+    private static final class Batch {
+        final List<SqlExportIndex.InsertRow> rows = new ArrayList<SqlExportIndex.InsertRow>();
+        final List<List<String>> values = new ArrayList<List<String>>();
+        final Set<String> keys = new HashSet<String>();
+        int columns;
+        int uncommitted;
+        String shape;
+        BitSet pkColumns;
+        BitSet setColumns;
+
+        void add(SqlExportIndex.InsertRow row, List<String> rowValues) {
+            rows.add(row);
+            values.add(rowValues);
+        }
+    }
+
+    /** The {table}_insert.sql or {table}_update.sql file of the table currently being diffed. */
+    private final class TableFile implements Closeable {
+        private final String suffix;
+        private final String header;
+        private final Set<String> written = new HashSet<String>();
+        private String fileName;
+        private String table;
+        private BufferedWriter writer;
+
+        TableFile(String suffix, String header) {
+            this.suffix = suffix;
+            this.header = header;
+        }
+
+        Writer writerFor(String tableName, String marker) throws IOException {
+            String name = tableName.toLowerCase() + suffix;
+            if (!name.equals(fileName)) {
+                close();
+                // table names differing only in case share a file; a second visit appends
+                boolean append = !written.add(name);
+                writer = (BufferedWriter) open(out.resolve(name), append);
+                if (!append) writer.write(header);
+                fileName = name;
+                table = null;
+            }
+            if (!tableName.equals(table)) {
+                table = tableName;
+                writer.write("\n-- Table: " + tableName + marker + "\n");
+            }
+            return writer;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (writer != null) {
+                BufferedWriter w = writer;
+                writer = null;
+                fileName = null;
+                w.close();
+            }
+        }
+    }
+}
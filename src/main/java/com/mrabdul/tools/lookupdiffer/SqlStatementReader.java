@@ -0,0 +1,142 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming equivalent of {@link SqlParsers#splitStatements(String)} followed by {@link SqlParsers#normalizeSql(String)}.
+ * Statements are read one at a time from a {@link Reader}, so memory is bounded by the largest single statement
+ * instead of the whole export file.
+ *
+ * Each returned statement is already normalized: comments stripped, whitespace collapsed outside quotes,
+ * trailing ';' kept. {@link #getStatementLine()} is the 1-based line of its first significant character.
+ */
+public final class SqlStatementReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader in;
+    private final char[] buf = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+
+    private final StringBuilder cur = new StringBuilder(256);
+    private int line = 1;
+    private int statementLine = -1;
+
+    public SqlStatementReader(Reader in) {
+        this.in = in;
+    }
+
+    /** Returns the next normalized statement, or null once the input is exhausted. */
+    public String next() throws IOException {
+        cur.setLength(0);
+        statementLine = -1;
+
+        boolean inSingle = false;
+        boolean inDouble = false;
+        boolean inLineComment = false;
+        boolean inBlockComment = false;
+        boolean lastWasWhitespace = false;
+
+        int r;
+        while ((r = read()) >= 0) {
+            char c = (char) r;
+            int charLine = line;
+            if (c == '\n') line++;
+
+            if (inLineComment) {
+                if (c == '\n' || c == '\r') {
+                    inLineComment = false;
+                    lastWasWhitespace = appendWhitespace(lastWasWhitespace);
+                }
+                continue;
+            }
+            if (inBlockComment) {
+                if (c == '*' && peek() == '/') {
+                    read();
+                    inBlockComment = false;
+                    lastWasWhitespace = appendWhitespace(lastWasWhitespace);
+                }
+                continue;
+            }
+
+            if (c == '\'' && !inDouble) {
+                inSingle = !inSingle;
+            } else if (c == '"' && !inSingle) {
+                inDouble = !inDouble;
+            } else if (!inSingle && !inDouble) {
+                if (c == '-' && peek() == '-') {
+                    read();
+                    inLineComment = true;
+                    continue;
+                }
+                if (c == '/' && peek() == '*') {
+                    read();
+                    inBlockComment = true;
+                    continue;
+                }
+                if (Character.isWhitespace(c)) {
+                    lastWasWhitespace = appendWhitespace(lastWasWhitespace);
+                    continue;
+                }
+            }
+
+            if (statementLine < 0) statementLine = charLine;
+            cur.append(c);
+            lastWasWhitespace = false;
+
+            if (c == ';' && !inSingle && !inDouble) {
+                return cur.toString();
+            }
+        }
+
+        String last = cur.toString().trim();
+        return last.isEmpty() ? null : last;
+    }
+
+    /** Line (1-based) where the statement last returned by {@link #next()} starts. */
+    public int getStatementLine() {
+        return statementLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean appendWhitespace(boolean lastWasWhitespace) {
+        // leading whitespace is dropped, runs are collapsed to one space
+        if (!lastWasWhitespace && cur.length() > 0) {
+            cur.append(' ');
+            return true;
+        }
+        return lastWasWhitespace;
+    }
+
+    private int read() throws IOException {
+        if (pos >= limit && !fill()) return -1;
+        return buf[pos++];
+    }
+
+    private int peek() throws IOException {
+        if (pos >= limit && !fill()) return -1;
+        return buf[pos];
+    }
+
+    private boolean fill() throws IOException {
+        int n;
+        do {
+            n = in.read(buf, 0, buf.length);
+        } while (n == 0);
+        if (n < 0) {
+            limit = 0;
+            pos = 0;
+            return false;
+        }
+        pos = 0;
+        limit = n;
+        return true;
+    }
+}
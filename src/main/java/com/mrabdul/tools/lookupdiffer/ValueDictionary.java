@@ -0,0 +1,145 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-run dictionary of normalized column values for --dictionary. Each (table, column) gets its own id space,
+ * shared by the source and target exports and by every parse thread, so two rows of a table hold the same value
+ * in a column exactly when they hold the same id there. Rows are stored as an int[] of ids and compared as such.
+ *
+ * Only short values are interned, a column stops taking new values after {@link #MAX_DISTINCT_PER_COLUMN}, and
+ * all columns together stop at the byte budget; a value that is not interned is stored as {@link #NOT_ENCODED}
+ * and compared by its bytes. Lookup columns (codes, flags, dates, FK ids) stay fully encoded; unique keys and
+ * long texts fall back without costing heap.
+ */
+final class ValueDictionary {
+
+    static final int NOT_ENCODED = -1;
+    static final long DEFAULT_BUDGET_BYTES = 64L * 1024 * 1024;
+    static final int MAX_VALUE_BYTES = 64;
+    static final int MAX_DISTINCT_PER_COLUMN = 1 << 16;
+    // rough heap cost of one interned value on top of its chars
+    private static final int ENTRY_OVERHEAD = 80;
+
+    // results of sameIds
+    static final int DIFFERENT = 0;
+    static final int SAME = 1;
+    static final int UNDECIDED = 2;
+
+    private final AtomicLong budgetLeft;
+    private final ConcurrentHashMap<String, Column> columns = new ConcurrentHashMap<String, Column>();
+    private final ConcurrentHashMap<String, Column[]> layouts = new ConcurrentHashMap<String, Column[]>();
+
+    ValueDictionary(long budgetBytes) {
+        this.budgetLeft = new AtomicLong(budgetBytes);
+    }
+
+    /** The columns of a table's column list; the same array for every row with that table and list. */
+    Column[] columns(String tableKey, List<String> layout) {
+        String key = tableKey + '\u0000' + layout;
+        Column[] cols = layouts.get(key);
+        if (cols == null) {
+            cols = new Column[layout.size()];
+            for (int i = 0; i < cols.length; i++) {
+                String colKey = tableKey + '\u0000' + layout.get(i);
+                Column c = columns.get(colKey);
+                if (c == null) {
+                    Column created = new Column();
+                    c = columns.putIfAbsent(colKey, created);
+                    if (c == null) c = created;
+                }
+                cols[i] = c;
+            }
+            Column[] raced = layouts.putIfAbsent(key, cols);
+            if (raced != null) cols = raced;
+        }
+        return cols;
+    }
+
+    /** Ids of the cursor's remaining tokens, or null when their count does not match the columns. */
+    int[] encode(Column[] cols, ValueTupleCursor cursor) {
+        int[] ids = new int[cols.length];
+        int n = 0;
+        while (cursor.nextToken()) {
+            if (n == cols.length) return null;
+            // decided on the normalized value, so equal values always get the same answer
+            String value = cursor.tokenString(MAX_VALUE_BYTES);
+            ids[n] = value == null ? NOT_ENCODED : cols[n].intern(value);
+            n++;
+        }
+        return n == cols.length ? ids : null;
+    }
+
+    /** Replaces the rows of idx by ones carrying value ids, e.g. for an index loaded from the fragment cache. */
+    void encodeRows(SqlExportIndex idx) {
+        ValueTupleCursor cursor = new ValueTupleCursor();
+        for (Map.Entry<String, List<SqlExportIndex.InsertRow>> e : idx.rowsByTableKey.entrySet()) {
+            List<SqlExportIndex.InsertRow> rows = e.getValue();
+            for (int i = 0; i < rows.size(); i++) {
+                SqlExportIndex.InsertRow r = rows.get(i);
+                Column[] cols = columns(e.getKey(), r.columns);
+                rows.set(i, r.withValueIds(cols, encode(cols, r.values(cursor))));
+            }
+        }
+    }
+
+    /**
+     * Compares two rows' ids over the same columns. Equal ids and unequal ids are conclusive; a column
+     * that is not encoded on both sides leaves the answer to the row bytes.
+     */
+    static int sameIds(int[] a, int[] b) {
+        if (a.length != b.length) return DIFFERENT;
+        int result = SAME;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) return DIFFERENT;
+            if (a[i] == NOT_ENCODED) result = UNDECIDED;
+        }
+        return result;
+    }
+
+    /** The values behind ids, or null when one of them is not encoded. */
+    static String[] values(Column[] cols, int[] ids) {
+        String[] out = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == NOT_ENCODED) return null;
+            out[i] = cols[i].value(ids[i]);
+        }
+        return out;
+    }
+
+    /** Id space of one table column. */
+    final class Column {
+        private final Map<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+        private volatile String[] values = new String[16];
+        private int size;
+
+        /**
+         * Id of value, adding it while there is room. Adding is serialized per column, so a value is either
+         * in the dictionary for every row that asks after it was added, or for none that asked before.
+         */
+        int intern(String value) {
+            Integer id = ids.get(value);
+            if (id != null) return id;
+            synchronized (this) {
+                id = ids.get(value);
+                if (id != null) return id;
+                long cost = 2L * value.length() + ENTRY_OVERHEAD;
+                if (size == MAX_DISTINCT_PER_COLUMN || budgetLeft.addAndGet(-cost) < 0) {
+                    return NOT_ENCODED;
+                }
+                if (size == values.length) values = Arrays.copyOf(values, size * 2);
+                values[size] = value;
+                ids.put(value, size);
+                return size++;
+            }
+        }
+
+        String value(int id) {
+            return values[id];
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Walks the top-level, comma-separated tokens of a VALUES tuple directly in {@link SqlBytes} and emits each
+ * token in normalized form one byte at a time, so rows can be compared and hashed without building Strings.
+ *
+ * The normalized form is exactly {@code SqlParsers.normToken(SqlParsers.normalizeSql(token))}: comments dropped,
+ * trimmed, whitespace runs outside quotes collapsed to one space, and for anything that is not a plain
+ * 'literal' also whitespace runs inside quotes. A trailing empty token is dropped, as in splitTopLevelComma.
+ */
+final class ValueTupleCursor {
+
+    private SqlBytes b;
+    private long pos;
+    private long end;
+    private boolean exhausted;
+
+    // current token: significant range [cur, last] and emit state
+    private long cur;
+    private long last;
+    private boolean literal;
+    private boolean inSingle;
+    private boolean inDouble;
+
+    private byte[] buf; // only allocated when a token is materialized
+
+    ValueTupleCursor reset(SqlBytes b, long start, long end) {
+        this.b = b;
+        this.pos = start;
+        this.end = end;
+        this.exhausted = false;
+        this.cur = 0;
+        this.last = -1;
+        return this;
+    }
+
+    /** Moves to the next token; false once the tuple is exhausted. */
+    boolean nextToken() {
+        if (exhausted) return false;
+
+        long first = -1;
+        long lastSig = -1;
+        boolean sq = false;
+        boolean dq = false;
+        int paren = 0;
+        long p = pos;
+        boolean sawComma = false;
+
+        while (p < end) {
+            byte c = b.byteAt(p);
+            if (sq || dq) {
+                if (sq && c == '\'') sq = false;
+                else if (dq && c == '"') dq = false;
+                lastSig = p;
+                p++;
+                continue;
+            }
+            if (SqlByteScanner.isWhitespace(c) || ((c == '-' || c == '/') && p + 1 < end && b.byteAt(p + 1) == (c == '-' ? '-' : '*'))) {
+                p = SqlByteScanner.skipInsignificant(b, p, end);
+                continue;
+            }
+            if (c == ',' && paren == 0) {
+                sawComma = true;
+                break;
+            }
+            if (c == '\'') sq = true;
+            else if (c == '"') dq = true;
+            else if (c == '(') paren++;
+            else if (c == ')') paren = Math.max(0, paren - 1);
+            if (first < 0) first = p;
+            lastSig = p;
+            p++;
+        }
+
+        if (sawComma) {
+            pos = p + 1;
+        } else {
+            exhausted = true;
+            if (first < 0) return false;
+        }
+
+        if (first < 0) {
+            cur = 0;
+            last = -1;
+            literal = false;
+        } else {
+            cur = first;
+            last = lastSig;
+            literal = last > cur && b.byteAt(cur) == '\'' && b.byteAt(last) == '\'';
+        }
+        inSingle = false;
+        inDouble = false;
+        return true;
+    }
+
+    /** Next normalized byte of the current token, or -1 at its end. */
+    int nextByte() {
+        if (cur > last) return -1;
+        int c = b.byteAt(cur) & 0xFF;
+
+        if (inSingle || inDouble) {
+            if (inSingle && c == '\'') inSingle = false;
+            else if (inDouble && c == '"') inDouble = false;
+            else if (!literal && SqlByteScanner.isWhitespace(c)) {
+                while (cur <= last && SqlByteScanner.isWhitespace(b.byteAt(cur))) cur++;
+                return ' ';
+            }
+            cur++;
+            return c;
+        }
+
+        if (SqlByteScanner.isWhitespace(c) || ((c == '-' || c == '/') && cur < last && b.byteAt(cur + 1) == (c == '-' ? '-' : '*'))) {
+            // the token's last byte is significant, so a run here always has something after it
+            cur = SqlByteScanner.skipInsignificant(b, cur, last + 1);
+            return ' ';
+        }
+        if (c == '\'') inSingle = true;
+        else if (c == '"') inDouble = true;
+        cur++;
+        return c;
+    }
+
+    /** Current token as a String. */
+    String tokenString() {
+        return tokenString(Integer.MAX_VALUE);
+    }
+
+    /** Current token as a String, or null (with the token partly consumed) when it is longer than maxBytes. */
+    String tokenString(int maxBytes) {
+        if (buf == null) buf = new byte[64];
+        int n = 0;
+        int c;
+        while ((c = nextByte()) >= 0) {
+            if (n == maxBytes) return null;
+            if (n == buf.length) buf = Arrays.copyOf(buf, n * 2);
+            buf[n++] = (byte) c;
+        }
+        return new String(buf, 0, n, SqlBytes.UTF8);
+    }
+
+    /** Feeds the current token into a running hash. */
+    int hashToken(int h) {
+        int c;
+        while ((c = nextByte()) >= 0) {
+            h = 31 * h + c;
+        }
+        return 31 * h + ',';
+    }
+
+    static List<String> materialize(SqlBytes b, long start, long end) {
+        ValueTupleCursor cursor = new ValueTupleCursor().reset(b, start, end);
+        List<String> out = new ArrayList<String>();
+        while (cursor.nextToken()) {
+            out.add(cursor.tokenString());
+        }
+        return out;
+    }
+
+    /** True when both tuples have the same normalized tokens. */
+    static boolean sameTokens(ValueTupleCursor x, ValueTupleCursor y) {
+        while (true) {
+            boolean hx = x.nextToken();
+            boolean hy = y.nextToken();
+            if (hx != hy) return false;
+            if (!hx) return true;
+            int cx;
+            int cy;
+            do {
+                cx = x.nextByte();
+                cy = y.nextByte();
+                if (cx != cy) return false;
+            } while (cx >= 0);
+        }
+    }
+}
@@ -28,7 +28,12 @@ public class StatusBar {
         push("ERROR", message);
     }
 
-    private void push(String level, String message) {
+    /** Replaces the shown line with a frequently refreshed one (e.g. live progress) without adding it to the history. */
+    public synchronized void setProgress(String message) {
+        label.setText(fmt.format(new Date()) + " [RUN] " + message);
+    }
+
+    private synchronized void push(String level, String message) {
         String ts = fmt.format(new Date());
         String full = ts + " [" + level + "] " + message;
 
@@ -40,7 +45,7 @@ public class StatusBar {
         label.setText(full);
     }
 
-    public String historyText() {
+    public synchronized String historyText() {
         StringBuilder sb = new StringBuilder();
         for (String msg : lastMessages) {
             sb.append(msg).append("\n");
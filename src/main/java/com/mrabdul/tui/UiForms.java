@@ -45,12 +45,16 @@ public final class UiForms {
         form.addComponent(component);
     }
 
-    /** Standard action row: [primary] [space] [secondary] */
-    public static Panel actionsRow(Button primary, Button secondary) {
+    /** Standard action row: [primary] [space] [secondary] ([space] [more]...) */
+    public static Panel actionsRow(Button primary, Button secondary, Button... more) {
         Panel actions = new Panel(new LinearLayout(Direction.HORIZONTAL));
         actions.addComponent(primary);
         actions.addComponent(new EmptySpace(new TerminalSize(1, 1)));
         actions.addComponent(secondary);
+        for (Button b : more) {
+            actions.addComponent(new EmptySpace(new TerminalSize(1, 1)));
+            actions.addComponent(b);
+        }
         return actions;
     }
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package com.mrabdul.tools;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FindingsJsonWriterTest {
+
+    public static class Item {
+        public String kind;
+        public int line;
+
+        public Item() {}
+
+        Item(String kind, int line) {
+            this.kind = kind;
+            this.line = line;
+        }
+    }
+
+    private final List<Item> items = Arrays.asList(new Item("ISSUE", 3), new Item("WARN", 7));
+    private final ObjectMapper indent = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    @Test
+    void testPrettyMatchesObjectMapperOutput(@TempDir Path tempDir) throws Exception {
+        Path out = tempDir.resolve("a/findings.json");
+        try (FindingsJsonWriter w = FindingsJsonWriter.open(out, FindingsJsonWriter.Format.PRETTY)) {
+            for (Item i : items) w.write(i);
+            w.finish();
+        }
+        assertEquals(indent.writeValueAsString(items), read(out));
+
+        Map<String, Object> wrapper = new LinkedHashMap<String, Object>();
+        wrapper.put("report", new Item("REPORT", 0));
+        wrapper.put("findings", items);
+        Map<String, Object> head = new LinkedHashMap<String, Object>();
+        head.put("report", new Item("REPORT", 0));
+        Path wrapped = tempDir.resolve("wrapped.json");
+        try (FindingsJsonWriter w = FindingsJsonWriter.open(wrapped, FindingsJsonWriter.Format.PRETTY, "findings", head)) {
+            for (Item i : items) w.write(i);
+            w.finish();
+        }
+        assertEquals(indent.writeValueAsString(wrapper), read(wrapped));
+    }
+
+    @Test
+    void testCompactAndNdjson(@TempDir Path tempDir) throws Exception {
+        Path compact = tempDir.resolve("compact.json");
+        try (FindingsJsonWriter w = FindingsJsonWriter.open(compact, FindingsJsonWriter.Format.parse("compact"))) {
+            for (Item i : items) w.write(i);
+            w.finish();
+        }
+        assertEquals(new ObjectMapper().writeValueAsString(items), read(compact));
+
+        Path ndjson = tempDir.resolve("findings.ndjson");
+        Map<String, Object> head = new LinkedHashMap<String, Object>();
+        head.put("report", new Item("REPORT", 0));
+        try (FindingsJsonWriter w = FindingsJsonWriter.open(ndjson, FindingsJsonWriter.Format.parse("NDJSON"), "findings", head)) {
+            for (Item i : items) w.write(i);
+            w.finish();
+        }
+        String[] lines = read(ndjson).split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("REPORT", indent.readTree(lines[0]).get("report").get("kind").asText());
+        JsonNode second = indent.readTree(lines[2]);
+        assertEquals("WARN", second.get("kind").asText());
+        assertEquals(7, second.get("line").asInt());
+        assertTrue(read(ndjson).endsWith("}\n"));
+
+        Path empty = tempDir.resolve("empty.ndjson");
+        try (FindingsJsonWriter w = FindingsJsonWriter.open(empty, FindingsJsonWriter.Format.NDJSON)) {
+            w.finish();
+        }
+        assertEquals("", read(empty));
+
+        assertThrows(IllegalArgumentException.class, () -> FindingsJsonWriter.Format.parse("xml"));
+    }
+
+    @Test
+    void testUnfinishedWriterKeepsThePreviousFile(@TempDir Path tempDir) throws Exception {
+        Path out = tempDir.resolve("findings.json");
+        Files.write(out, "previous".getBytes(StandardCharsets.UTF_8));
+        try (FindingsJsonWriter w = FindingsJsonWriter.open(out, FindingsJsonWriter.Format.PRETTY)) {
+            w.write(items.get(0));
+        }
+        assertEquals("previous", read(out));
+
+        Path fresh = tempDir.resolve("fresh.json");
+        try (FindingsJsonWriter w = FindingsJsonWriter.open(fresh, FindingsJsonWriter.Format.NDJSON)) {
+            w.write(items.get(0));
+        }
+        assertFalse(Files.exists(fresh));
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    private static String read(Path p) throws Exception {
+        return new String(Files.readAllBytes(p), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,68 @@
+package com.mrabdul.tools;
+
+import com.github.javaparser.resolution.TypeSolver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+class SourceTypeCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testDeclaredNamesSkipCommentsAndLiterals() {
+        String src = "package a;\n// class NotInComment\n/* interface NorHere */\n"
+                + "public class Outer<T> {\n  String s = \"enum NotInString\";\n  Class<?> c = Outer.class;\n"
+                + "  static /* x */ class Inner {}\n  record Point(int x) {}\n  @interface Marker {}\n}\nenum Kind { A }\n";
+        assertEquals(Arrays.asList("Outer", "Inner", "Point", "Marker", "Kind"), SourceTypeIndex.declaredNames(src));
+    }
+
+    @Test
+    void testIndexAnswersPerFolderAndIsSaved() throws Exception {
+        Path root = tempDir.resolve("src");
+        write(root.resolve("com/x/Outer.java"), "package com.x;\npublic class Outer { static class Inner {} }\nclass Helper {}\n");
+        Path indexFile = tempDir.resolve("types.idx");
+
+        SourceTypeIndex index = new SourceTypeCache(10000).index(root, indexFile);
+        assertTrue(index.mayDeclare("com.x.Outer"));
+        assertTrue(index.mayDeclare("com.x.Outer.Inner"));
+        assertTrue(index.mayDeclare("com.x.Helper"), "non-public types are found in their folder");
+        assertFalse(index.mayDeclare("com.x.Missing"));
+        assertFalse(index.mayDeclare("java.sql.Connection"));
+        assertTrue(Files.isRegularFile(indexFile));
+
+        // a fresh process starts from the saved index
+        SourceTypeIndex reloaded = new SourceTypeCache(10000).index(root, indexFile);
+        assertEquals(index.size(), reloaded.size());
+        assertTrue(reloaded.mayDeclare("com.x.Helper"));
+    }
+
+    @Test
+    void testEditedSourcesAreReadAgain() throws Exception {
+        Path root = tempDir.resolve("edit");
+        Path a = root.resolve("com/x/A.java");
+        write(a, "package com.x;\npublic class A { }\n");
+        SourceTypeCache cache = new SourceTypeCache(10000);
+
+        TypeSolver first = cache.typeSolver(cache.index(root, null));
+        assertTrue(first.hasType("com.x.A"));
+        assertFalse(first.hasType("com.x.B"));
+
+        write(a, "package com.x;\npublic class A { }\nclass B { }\n");
+        Files.setLastModifiedTime(a, FileTime.fromMillis(Files.getLastModifiedTime(a).toMillis() + 5000));
+        TypeSolver second = cache.typeSolver(cache.index(root, null));
+        assertTrue(second.hasType("com.x.B"));
+    }
+
+    private static void write(Path file, String content) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
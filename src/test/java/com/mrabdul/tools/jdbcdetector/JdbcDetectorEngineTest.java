@@ -1,10 +1,18 @@
 package com.mrabdul.tools.jdbcdetector;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
 
 class JdbcDetectorEngineTest {
+
+    @TempDir
+    Path tempDir;
+
     @Test
     void smokeRunDoesNotCrash() throws Exception {
         JdbcDetectorEngine engine = new JdbcDetectorEngine();
@@ -19,4 +27,167 @@ class JdbcDetectorEngineTest {
         assertNotNull(result);
         assertNotNull(result.getFindings());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testParallelScanMatchesSingleThread() throws Exception {
+        Path pkg = tempDir.resolve("src/com/x");
+        Files.createDirectories(pkg);
+        for (int i = 0; i < 12; i++) {
+            Files.write(pkg.resolve("Dao" + i + ".java"), (
+                    "package com.x;\nimport java.sql.*;\n" +
+                    "public class Dao" + i + " {\n" +
+                    "    void leak(Source ds) throws Exception {\n" +
+                    "        Connection c = ds.getConnection();\n" +
+                    "        ResultSet rs = c.createStatement().executeQuery(\"select 1\");\n" +
+                    "        rs.close();\n" +
+                    "    }\n" +
+                    "    void ok(Source ds) throws Exception {\n" +
+                    "        try (Connection c = ds.getConnection()) { c.createStatement(); }\n" +
+                    "    }\n" +
+                    "}\n").getBytes(StandardCharsets.UTF_8));
+        }
+        Files.write(pkg.resolve("Source.java"), "package com.x;\ninterface Source { java.sql.Connection getConnection(); }\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(pkg.resolve("Broken.java"), "class Broken { void x( { getConnection(); }\n".getBytes(StandardCharsets.UTF_8));
+
+        JdbcDetectorEngine engine = new JdbcDetectorEngine();
+        JdbcDetectorResult serial = engine.run(JdbcDetectorRequest.builder(tempDir.toString())
+                .threads(1)
+                .build());
+        JdbcDetectorResult parallel = engine.run(JdbcDetectorRequest.builder(tempDir.toString())
+                .threads(4)
+                .build());
+
+        assertEquals(12, serial.getIssueCount());
+        assertEquals(12, serial.getWarnCount());
+        assertEquals(1, serial.getParseErrorCount());
+        assertEquals(serial.getFindings().size(), parallel.getFindings().size());
+        for (int i = 0; i < serial.getFindings().size(); i++) {
+            Finding a = serial.getFindings().get(i);
+            Finding b = parallel.getFindings().get(i);
+            assertEquals(a.kind + a.file + a.line + a.variable, b.kind + b.file + b.line + b.variable);
+        }
+    }
+
+    @Test
+    void testPrefilterSkipsFilesWithoutOpenCalls() throws Exception {
+        Path pkg = tempDir.resolve("pre/com/x");
+        Files.createDirectories(pkg);
+        Files.write(pkg.resolve("Leak.java"), ("package com.x;\nimport java.sql.*;\nclass Leak extends BaseDao {\n"
+                + "    void m(javax.sql.DataSource ds) throws Exception { Connection c = ds.getConnection(); }\n}\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(pkg.resolve("Closed.java"), ("package com.x;\nimport java.sql.*;\nclass Closed extends BaseDao {\n"
+                + "    void m(javax.sql.DataSource ds) throws Exception { try (Connection c = ds.getConnection()) { } }\n}\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(pkg.resolve("OtherBase.java"), ("package com.x;\nimport java.sql.*;\nclass OtherBase {\n"
+                + "    void m(javax.sql.DataSource ds) throws Exception { Connection c = ds.getConnection(); }\n}\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(pkg.resolve("Plain.java"), "package com.x;\nclass Plain extends BaseDao { void m( { } }\n".getBytes(StandardCharsets.UTF_8));
+
+        JdbcDetectorRequest req = JdbcDetectorRequest.builder(tempDir.resolve("pre").toString())
+                .daoBaseTypes(Collections.singletonList("com.x.BaseDao"))
+                .threads(2)
+                .build();
+        JdbcDetectorResult res = new JdbcDetectorEngine().run(req);
+        JdbcDetectorResult.PrefilterStats stats = res.getPrefilterStats();
+        assertEquals(1, res.getIssueCount());
+        assertEquals(0, res.getParseErrorCount(), "Plain.java is never parsed");
+        assertEquals(4, stats.getScannedFiles());
+        assertEquals(2, stats.getCandidateFiles());
+        assertEquals(0.5, stats.getPrecision(), 1e-9);
+        assertFalse(stats.isAudited());
+        assertTrue(res.getReportText().contains("Prefilter: 2 of 4 files parsed, precision 50.0%, recall not audited"));
+        assertTrue(res.getReportText().contains("Parse/analysis errors: 0 (parsed files only; 2 skipped by the prefilter)"));
+
+        JdbcDetectorResult audited = new JdbcDetectorEngine().run(JdbcDetectorRequest.builder(tempDir.resolve("pre").toString())
+                .daoBaseTypes(Collections.singletonList("com.x.BaseDao"))
+                .threads(2)
+                .prefilterAudit(true)
+                .build());
+        assertEquals(0, audited.getPrefilterStats().getSkippedWithFindings());
+        assertEquals(1.0, audited.getPrefilterStats().getRecall(), 1e-9);
+        assertTrue(audited.getReportText().contains("Parse/analysis errors: 1\n"), "audited runs parse every file");
+        assertEquals(1, audited.getParseErrorCount());
+    }
+
+    @Test
+    void testCacheReusesFindingsUntilAResolvedSourceChanges() throws Exception {
+        Path pkg = tempDir.resolve("inc/com/x");
+        Files.createDirectories(pkg);
+        Files.write(pkg.resolve("Leak.java"), ("package com.x;\nimport java.sql.*;\nclass Leak {\n"
+                + "    void m(javax.sql.DataSource ds) throws Exception { Connection c = ds.getConnection(); }\n}\n").getBytes(StandardCharsets.UTF_8));
+        Files.createDirectories(pkg.resolveSibling("y"));
+        Files.write(pkg.resolveSibling("y").resolve("Qualified.java"), ("package com.y;\nclass Qualified {\n"
+                + "    void m(javax.sql.DataSource ds) throws Exception { java.sql.Connection c = ds.getConnection(); }\n}\n").getBytes(StandardCharsets.UTF_8));
+        JdbcDetectorRequest req = JdbcDetectorRequest.builder(tempDir.resolve("inc").toString())
+                .threads(2)
+                .cacheDir(tempDir.resolve("cache").toString())
+                .build();
+
+        JdbcDetectorResult first = new JdbcDetectorEngine().run(req);
+        assertEquals(2, first.getIssueCount());
+        assertTrue(first.getReportText().contains("Analysis cache: 0 files reused"));
+        assertTrue(Files.isRegularFile(tempDir.resolve("cache/jdbcdetector.cache")));
+
+        JdbcDetectorResult second = new JdbcDetectorEngine().run(req);
+        assertEquals(2, second.getIssueCount());
+        assertTrue(second.getReportText().contains("Analysis cache: 2 files reused"));
+        assertEquals(pkg.resolve("Leak.java").toAbsolutePath().toString(), second.getFindings().get(0).file);
+
+        // a same-package Connection now shadows java.sql.*, so Leak has to be resolved again
+        Files.write(pkg.resolve("Connection.java"), "package com.x;\ninterface Connection { }\n".getBytes(StandardCharsets.UTF_8));
+        JdbcDetectorResult third = new JdbcDetectorEngine().run(req);
+        assertEquals(1, third.getIssueCount());
+        assertTrue(third.getFindings().get(0).file.endsWith("Qualified.java"));
+        assertTrue(third.getReportText().contains("Analysis cache: 1 files reused"));
+    }
+
+    @Test
+    void testResolutionModesAgreeAndFastNeverCallsTheSolver() throws Exception {
+        Path root = tempDir.resolve("res");
+        Files.createDirectories(root.resolve("com/x"));
+        Files.createDirectories(root.resolve("com/z"));
+        Files.write(root.resolve("com/x/Leak.java"), ("package com.x;\nimport java.sql.*;\nclass Leak {\n"
+                + "    void m(javax.sql.DataSource ds) throws Exception { Connection c = ds.getConnection(); String s = null; }\n}\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("com/x/Imported.java"), ("package com.x;\nimport java.sql.Connection;\nclass Imported {\n"
+                + "    void m(javax.sql.DataSource ds) throws Exception { Connection c = ds.getConnection(); }\n}\n").getBytes(StandardCharsets.UTF_8));
+        // var: fast has no declared type and falls back to the open call
+        Files.write(root.resolve("com/x/Inferred.java"), ("package com.x;\nclass Inferred {\n"
+                + "    void m(javax.sql.DataSource ds) throws Exception { var c = ds.getConnection(); var s = \"\"; }\n}\n").getBytes(StandardCharsets.UTF_8));
+        // a same-package Connection: fast can only guess, hybrid asks the solver
+        Files.write(root.resolve("com/z/Connection.java"), "package com.z;\ninterface Connection { }\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("com/z/Shadowed.java"), ("package com.z;\nimport java.sql.*;\nclass Shadowed {\n"
+                + "    void m(javax.sql.DataSource ds) throws Exception { ds.getConnection().close(); Connection c = null; }\n}\n").getBytes(StandardCharsets.UTF_8));
+
+        JdbcDetectorResult full = run(root, "full");
+        JdbcDetectorResult fast = run(root, "fast");
+        JdbcDetectorResult hybrid = run(root, "hybrid");
+        assertEquals(3, full.getIssueCount());
+        assertEquals(full.getIssueCount(), fast.getIssueCount());
+        assertEquals(full.getIssueCount(), hybrid.getIssueCount());
+        assertTrue(fast.getFindings().stream().anyMatch(f -> f.file.endsWith("Inferred.java") && "java.sql.Connection".equals(f.resourceType)));
+
+        assertEquals(0, full.getResolutionStats().getByName());
+        assertTrue(full.getResolutionStats().getBySolver() > 0);
+        assertEquals(0, fast.getResolutionStats().getBySolver());
+        assertEquals(3, fast.getResolutionStats().getGuessed());
+        assertEquals(3, hybrid.getResolutionStats().getBySolver());
+        assertEquals(full.getResolutionStats().getTotal(), hybrid.getResolutionStats().getTotal());
+        assertTrue(fast.getReportText().contains("Type resolution (fast): "));
+    }
+
+    private static JdbcDetectorResult run(Path root, String resolution) throws Exception {
+        return new JdbcDetectorEngine().run(JdbcDetectorRequest.builder(root.toString())
+                .threads(2)
+                .resolution(resolution)
+                .build());
+    }
+
+    @Test
+    void testLexicalPrefilterMatchesAcrossOverlaps() {
+        LexicalPrefilter any = new LexicalPrefilter(java.util.Arrays.asList("getConnection", "executeQuery"), null);
+        assertTrue(any.isCandidate("x.getgetConnection()".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(any.isCandidate("executeQuery".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(any.isCandidate("getConnectio executeQuer".getBytes(StandardCharsets.UTF_8)));
+
+        LexicalPrefilter dao = new LexicalPrefilter(java.util.Arrays.asList("getConnection"), java.util.Arrays.asList("a.b.CorpDAO"));
+        assertFalse(dao.isCandidate("getConnection()".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(dao.isCandidate("extends CorpDAO { getConnection(); }".getBytes(StandardCharsets.UTF_8)));
+    }
+}
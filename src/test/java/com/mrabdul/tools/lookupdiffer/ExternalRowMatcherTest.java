@@ -0,0 +1,136 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+class ExternalRowMatcherTest {
+
+    @Test
+    void testMatchesInMemoryMatchingAcrossManyRuns() throws Exception {
+        Random rnd = new Random(7);
+        SqlExportIndex src = new SqlExportIndex();
+        SqlExportIndex tgt = new SqlExportIndex();
+        InsertRowParser srcParser = new InsertRowParser("s.sql", true, null);
+        InsertRowParser tgtParser = new InsertRowParser("t.sql", true, null);
+        for (int i = 0; i < 3000; i++) {
+            // duplicate keys on both sides; the target keeps its last row per key
+            add(srcParser, src, rnd.nextInt(2000), rnd.nextInt(3));
+            add(tgtParser, tgt, rnd.nextInt(2000), rnd.nextInt(3));
+        }
+        List<SqlExportIndex.InsertRow> srcRows = src.rowsByTableKey.get("T");
+        List<SqlExportIndex.InsertRow> tgtRows = tgt.rowsByTableKey.get("T");
+        PkIndex pk = new PkIndex(Arrays.asList("ID"), true);
+
+        List<String> expected = new ArrayList<String>();
+        Map<String, SqlExportIndex.InsertRow> tgtByPk = new HashMap<String, SqlExportIndex.InsertRow>();
+        for (SqlExportIndex.InsertRow r : tgtRows) tgtByPk.put(pk.key(r), r);
+        for (SqlExportIndex.InsertRow s : srcRows) {
+            SqlExportIndex.InsertRow t = tgtByPk.get(pk.key(s));
+            if (t == null) expected.add("MISSING " + s.getOriginalSql());
+            else if (!s.sameContent(t)) expected.add("MISMATCH " + s.getOriginalSql() + " / " + t.getOriginalSql());
+        }
+
+        final List<String> actual = new ArrayList<String>();
+        // a tiny budget forces hundreds of runs and therefore multi-pass merging
+        new ExternalRowMatcher(1000).match(srcRows, tgtRows, pk, new ExternalRowMatcher.Listener() {
+            @Override public void rowMissing(SqlExportIndex.InsertRow s) {
+                actual.add("MISSING " + s.getOriginalSql());
+            }
+            @Override public void rowMismatch(SqlExportIndex.InsertRow s, SqlExportIndex.InsertRow t) {
+                actual.add("MISMATCH " + s.getOriginalSql() + " / " + t.getOriginalSql());
+            }
+        });
+
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testSpilledRowsMatchLikeRowsOnTheHeap() throws Exception {
+        Random rnd = new Random(11);
+        SqlExportIndex heapSrc = new SqlExportIndex();
+        SqlExportIndex heapTgt = new SqlExportIndex();
+        InsertRowParser parser = new InsertRowParser("s.sql", false, null);
+        try (RowSpill spill = new RowSpill()) {
+            // several file tasks per side, merged in order like the engine does
+            SqlExportIndex spilledSrc = new SqlExportIndex();
+            SqlExportIndex spilledTgt = new SqlExportIndex();
+            for (int file = 0; file < 3; file++) {
+                SqlExportIndex srcPart = spill.newIndex();
+                SqlExportIndex tgtPart = spill.newIndex();
+                for (int i = 0; i < 400; i++) {
+                    int id = rnd.nextInt(600);
+                    int val = rnd.nextInt(3);
+                    add(parser, heapSrc, id, val);
+                    add(parser, srcPart, id, val);
+                    id = rnd.nextInt(600);
+                    val = rnd.nextInt(3);
+                    add(parser, heapTgt, id, val);
+                    add(parser, tgtPart, id, val);
+                }
+                srcPart.finishRows();
+                tgtPart.finishRows();
+                spilledSrc.mergeFrom(srcPart);
+                spilledTgt.mergeFrom(tgtPart);
+            }
+            List<SqlExportIndex.InsertRow> srcRows = spilledSrc.rowsByTableKey.get("T");
+            assertTrue(srcRows instanceof RowSpill.Rows);
+            assertEquals(1200, srcRows.size());
+            assertEquals(heapSrc.rowsByTableKey.get("T").get(700).getOriginalSql(), srcRows.get(700).getOriginalSql());
+
+            PkIndex pk = new PkIndex(Arrays.asList("ID"), true);
+            assertEquals(matches(heapSrc.rowsByTableKey.get("T"), heapTgt.rowsByTableKey.get("T"), pk),
+                    matches(srcRows, spilledTgt.rowsByTableKey.get("T"), pk));
+            assertEquals(matches(heapSrc.rowsByTableKey.get("T"), heapTgt.rowsByTableKey.get("T"), null),
+                    matches(srcRows, spilledTgt.rowsByTableKey.get("T"), null));
+        }
+    }
+
+    @Test
+    void testNoTargetRows() throws Exception {
+        SqlExportIndex src = new SqlExportIndex();
+        InsertRowParser parser = new InsertRowParser("s.sql", true, null);
+        add(parser, src, 1, 0);
+        add(parser, src, 2, 0);
+        final List<String> missing = new ArrayList<String>();
+        new ExternalRowMatcher(1 << 20).match(src.rowsByTableKey.get("T"), null, new PkIndex(Arrays.asList("ID"), true),
+                new ExternalRowMatcher.Listener() {
+                    @Override public void rowMissing(SqlExportIndex.InsertRow s) {
+                        missing.add(s.getValues().get(0));
+                    }
+                    @Override public void rowMismatch(SqlExportIndex.InsertRow s, SqlExportIndex.InsertRow t) {
+                        fail("no target rows");
+                    }
+                });
+        assertEquals(Arrays.asList("1", "2"), missing);
+    }
+
+    /** Findings of matching by pk, or by row content when pk is null. */
+    private static List<String> matches(List<SqlExportIndex.InsertRow> srcRows, List<SqlExportIndex.InsertRow> tgtRows,
+                                        PkIndex pk) throws Exception {
+        final List<String> out = new ArrayList<String>();
+        ExternalRowMatcher.Listener listener = new ExternalRowMatcher.Listener() {
+            @Override public void rowMissing(SqlExportIndex.InsertRow s) {
+                out.add("MISSING " + s.line + " " + s.getOriginalSql());
+            }
+            @Override public void rowMismatch(SqlExportIndex.InsertRow s, SqlExportIndex.InsertRow t) {
+                out.add("MISMATCH " + s.getOriginalSql() + " / " + t.getOriginalSql());
+            }
+        };
+        if (pk != null) new ExternalRowMatcher(2000).match(srcRows, tgtRows, pk, listener);
+        else new ExternalRowMatcher(2000).matchContent(srcRows, tgtRows, listener);
+        return out;
+    }
+
+    private static void add(InsertRowParser parser, SqlExportIndex idx, int id, int val) {
+        SqlBytes text = SqlBytes.of("INSERT INTO T (ID, V) VALUES (" + id + ", 'v" + val + "');");
+        parser.parse(text, 0, text.length(), 1, idx);
+    }
+}
@@ -0,0 +1,38 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FindingsAccumulatorTest {
+
+    @Test
+    void testCountsPerKindAndTable() throws Exception {
+        FindingsAccumulator acc = new FindingsAccumulator();
+        acc.add(new DiffFinding("TABLE_MISSING", "t1", "a.sql", 1, ""));
+        for (int i = 0; i < 60; i++) {
+            acc.add(new DiffFinding(i % 2 == 0 ? "ROW_MISSING" : "ROW_MISMATCH", i < 30 ? "T1" : "T2", "a.sql", i, ""));
+        }
+        acc.add(DiffFinding.parseError("b.sql", "bad"));
+        acc.add(new DiffFinding("SOMETHING_ELSE", "T2", "c.sql", 1, ""));
+
+        assertEquals(63, acc.list().size());
+        assertEquals(1, acc.count(FindingsAccumulator.Kind.TABLE_MISSING));
+        assertEquals(30, acc.count(FindingsAccumulator.Kind.ROW_MISSING));
+        assertEquals(30, acc.count(FindingsAccumulator.Kind.ROW_MISMATCH));
+        assertEquals(1, acc.count(FindingsAccumulator.Kind.PARSE_ERROR));
+        assertEquals(0, acc.count(FindingsAccumulator.Kind.WARN_NO_PK));
+
+        // tables are grouped case-insensitively; findings without a table are not grouped
+        assertEquals(2, acc.tables().size());
+        assertEquals(31, acc.tableCount("T1"));
+        assertEquals(1, acc.tableCount("T1", FindingsAccumulator.Kind.TABLE_MISSING));
+        assertEquals(15, acc.tableCount("T1", FindingsAccumulator.Kind.ROW_MISSING));
+        assertEquals(31, acc.tableCount("T2"));
+        assertEquals(0, acc.tableCount("T3"));
+
+        assertEquals(FindingsAccumulator.SAMPLE_SIZE, acc.rowSample().size());
+        assertEquals(0, acc.rowSample().get(0).line);
+        assertEquals(30, acc.sample(FindingsAccumulator.Kind.ROW_MISSING).size());
+        assertTrue(acc.sample(FindingsAccumulator.Kind.PK_MISSING).isEmpty());
+    }
+}
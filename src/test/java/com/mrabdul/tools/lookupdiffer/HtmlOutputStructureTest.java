@@ -52,4 +52,37 @@ class HtmlOutputStructureTest {
         // or just as the file name if it's the full path.
         // Let's see what happens.
     }
+
+    @Test
+    void testTablePagesLoadFindingsFromShards() throws Exception {
+        Path source = tempDir.resolve("source");
+        Path target = tempDir.resolve("target");
+        Path htmlOutDir = tempDir.resolve("html_report");
+        Files.createDirectories(source);
+        Files.createDirectories(target);
+
+        StringBuilder rows = new StringBuilder("CREATE TABLE T1 (ID NUMBER, V VARCHAR2(10));\n" +
+                "ALTER TABLE T1 ADD CONSTRAINT PK_T1 PRIMARY KEY (ID);\n");
+        int n = FindingShards.SHARD_SIZE + 5;
+        for (int i = 0; i < n; i++) {
+            rows.append("INSERT INTO T1 (ID, V) VALUES (").append(i).append(", 'v").append(i).append("');\n");
+        }
+        Files.write(source.resolve("t1.sql"), rows.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(target.resolve("t1.sql"), (
+            "CREATE TABLE T1 (ID NUMBER, V VARCHAR2(10));\n"
+        ).getBytes(StandardCharsets.UTF_8));
+
+        new LookupDifferEngine().run(new LookupDifferRequest(
+                source.toString(), target.toString(), true, null, null, null, htmlOutDir.toString()));
+
+        String page = new String(Files.readAllBytes(htmlOutDir.resolve("table_t1.html")), StandardCharsets.UTF_8);
+        assertTrue(page.contains("\"kind\":\"ROW_MISSING\",\"count\":" + n + ",\"shards\":2"));
+        assertFalse(page.contains("INSERT INTO"), "table page should not inline findings");
+        assertTrue(Files.exists(htmlOutDir.resolve("assets/viewer.js")));
+
+        String last = new String(Files.readAllBytes(htmlOutDir.resolve("data/t1_row_missing_1.js")), StandardCharsets.UTF_8);
+        assertTrue(last.startsWith("lookupDifferShard(\"t1_row_missing_1\", ["));
+        assertTrue(last.contains("VALUES (" + (n - 1) + ", 'v" + (n - 1) + "')"));
+        assertTrue(last.endsWith(");\n"));
+    }
 }
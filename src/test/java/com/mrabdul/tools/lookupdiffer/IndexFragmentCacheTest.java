@@ -0,0 +1,125 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+class IndexFragmentCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testCodecRoundTrip() throws Exception {
+        String sql = "ALTER TABLE T1 ADD (EXTRA NUMBER);\n" +
+                "CREATE TABLE T1 (ID NUMBER, V VARCHAR2(10));\n" +
+                "ALTER TABLE T1 ADD CONSTRAINT PK1 PRIMARY KEY (ID);\n" +
+                "INSERT INTO T1 (ID, V) VALUES (1, 'a');\n" +
+                "insert into t1 (ID, V) values (2, 'b');\n" +
+                "INSERT INTO T1 (V, ID) VALUES ('c', 3);\n";
+        Path file = tempDir.resolve("T1.sql");
+        Files.write(file, sql.getBytes(StandardCharsets.UTF_8));
+        MappedSqlFile mapped = MappedSqlFile.map(file);
+
+        SqlExportIndex parsed = new SqlExportIndex();
+        InsertRowParser parser = new InsertRowParser(file.toString(), true, null, true);
+        SqlByteScanner scanner = new SqlByteScanner(mapped);
+        while (scanner.next()) {
+            if (InsertRowParser.isInsert(mapped, scanner.start(), scanner.end())) {
+                parser.parse(mapped, scanner.start(), scanner.end(), scanner.line(), parsed);
+            }
+        }
+        parsed.addDdl("T1", new SqlExportIndex.TableDdl("T1", file.toString(), 1, new LinkedHashMap<String, SqlExportIndex.ColumnDef>()));
+        parsed.pksByTableKey.put("T1", Arrays.asList("ID"));
+        parsed.pkDdlsByTableKey.put("T1", "ALTER TABLE T1 ADD CONSTRAINT PK1 PRIMARY KEY (ID);");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        IndexFragmentCodec.write(new DataOutputStream(bytes), parsed);
+        SqlExportIndex read = IndexFragmentCodec.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), mapped, file.toString());
+
+        assertEquals(parsed.pksByTableKey, read.pksByTableKey);
+        assertEquals(parsed.pkDdlsByTableKey, read.pkDdlsByTableKey);
+        assertEquals(parsed.ddlsByTableKey.keySet(), read.ddlsByTableKey.keySet());
+        List<SqlExportIndex.InsertRow> a = parsed.rowsByTableKey.get("T1");
+        List<SqlExportIndex.InsertRow> b = read.rowsByTableKey.get("T1");
+        assertEquals(3, b.size());
+        for (int i = 0; i < a.size(); i++) {
+            assertEquals(a.get(i).tableName, b.get(i).tableName);
+            assertEquals(a.get(i).line, b.get(i).line);
+            assertEquals(a.get(i).columns, b.get(i).columns);
+            assertEquals(a.get(i).getOriginalSql(), b.get(i).getOriginalSql());
+            assertEquals(a.get(i).getValues(), b.get(i).getValues());
+            assertTrue(a.get(i).sameContent(b.get(i)));
+        }
+        // layouts stay shared after decoding
+        assertSame(b.get(0).columns, b.get(1).columns);
+        assertNotSame(b.get(0).columns, b.get(2).columns);
+    }
+
+    @Test
+    void testRerunUsesCacheAndPicksUpChanges() throws Exception {
+        Path source = tempDir.resolve("src");
+        Path target = tempDir.resolve("tgt");
+        Path cache = tempDir.resolve("cache");
+        Files.createDirectories(source);
+        Files.createDirectories(target);
+        String ddl = "CREATE TABLE T (ID NUMBER, V VARCHAR2(10));\nALTER TABLE T ADD PRIMARY KEY (ID);\n";
+        Files.write(source.resolve("T.sql"), (ddl + "INSERT INTO T (ID, V) VALUES (1, 'a');\nINSERT INTO T (ID, V) VALUES (2, 'b');\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(target.resolve("T.sql"), (ddl + "INSERT INTO T (ID, V) VALUES (1, 'x');\n").getBytes(StandardCharsets.UTF_8));
+
+        LookupDifferEngine engine = new LookupDifferEngine();
+        LookupDifferRequest req = LookupDifferRequest.builder(source.toString(), target.toString())
+                .cacheDir(cache.toString())
+                .build();
+        LookupDifferResult first = engine.run(req);
+        Map<Path, FileTime> written = new LinkedHashMap<Path, FileTime>();
+        try (Stream<Path> entries = Files.list(cache)) {
+            for (Path e : (Iterable<Path>) entries::iterator) written.put(e, Files.getLastModifiedTime(e));
+        }
+        assertEquals(2, written.size());
+
+        // back-date the entries so a rewrite on the second run would be visible
+        for (Path e : written.keySet()) Files.setLastModifiedTime(e, FileTime.fromMillis(1000L));
+        LookupDifferResult second = engine.run(req);
+        for (Path e : written.keySet()) assertEquals(1000L, Files.getLastModifiedTime(e).toMillis(), "cache hit expected");
+        assertEquals(first.getReportText(), second.getReportText());
+        assertEquals(1, second.getMissingRows());
+        assertEquals(1, second.getMismatchedRows());
+
+        // a touched file with the same content is a hit, re-stamped with its new mtime
+        Files.setLastModifiedTime(target.resolve("T.sql"), FileTime.fromMillis(Files.getLastModifiedTime(target.resolve("T.sql")).toMillis() + 60000));
+        LookupDifferResult touched = engine.run(req);
+        assertEquals(first.getReportText(), touched.getReportText());
+        for (Path e : written.keySet()) {
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(e))) {
+                in.readInt();
+                in.readInt();
+                String file = IndexFragmentCodec.readString(in);
+                in.readLong();
+                assertEquals(Files.getLastModifiedTime(Paths.get(file)).toMillis(), in.readLong(), file);
+            }
+        }
+
+        // a changed file of the same size is detected by its new mtime and content hash
+        Files.write(target.resolve("T.sql"), (ddl + "INSERT INTO T (ID, V) VALUES (1, 'a');\n").getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(target.resolve("T.sql"), FileTime.fromMillis(Files.getLastModifiedTime(target.resolve("T.sql")).toMillis() + 120000));
+        LookupDifferResult third = engine.run(req);
+        assertEquals(1, third.getMissingRows());
+        assertEquals(0, third.getMismatchedRows());
+    }
+}
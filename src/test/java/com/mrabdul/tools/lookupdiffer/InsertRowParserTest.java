@@ -0,0 +1,111 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+class InsertRowParserTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testParsesMappedRowsLazily() throws Exception {
+        Path file = tempDir.resolve("T1.sql");
+        Files.write(file, (
+                "REM INSERTING into T1\n" +
+                "SET DEFINE OFF;\n" +
+                "Insert into \"APP\".\"T1\" (ID, \"NAME\", D)\n" +
+                "  values (1, 'a  b', to_date('01-JAN-20  10:00', 'DD-MON-RR'));\n" +
+                "INSERT INTO T1 (ID, NAME, D) VALUES (2 /* two */, 'it''s; fine', NULL); -- tail\n" +
+                "INSERT INTO T1 (ID,NAME,D) VALUES (3, 'x',);\n"
+        ).getBytes(StandardCharsets.UTF_8));
+
+        MappedSqlFile mapped = MappedSqlFile.map(file);
+        InsertRowParser parser = new InsertRowParser(file.toString(), true, null);
+        SqlExportIndex idx = new SqlExportIndex();
+        SqlByteScanner scanner = new SqlByteScanner(mapped);
+        while (scanner.next()) {
+            if (InsertRowParser.isInsert(mapped, scanner.start(), scanner.end())) {
+                parser.parse(mapped, scanner.start(), scanner.end(), scanner.line(), idx);
+            }
+        }
+
+        List<SqlExportIndex.InsertRow> rows = idx.rowsByTableKey.get("T1");
+        assertEquals(3, rows.size());
+
+        SqlExportIndex.InsertRow r1 = rows.get(0);
+        assertEquals(3, r1.line);
+        assertEquals(Arrays.asList("ID", "NAME", "D"), r1.columns);
+        assertEquals(Arrays.asList("1", "'a  b'", "to_date('01-JAN-20 10:00', 'DD-MON-RR')"), r1.getValues());
+        assertEquals("Insert into \"APP\".\"T1\" (ID, \"NAME\", D) values (1, 'a  b', to_date('01-JAN-20  10:00', 'DD-MON-RR'));",
+                r1.getOriginalSql());
+
+        SqlExportIndex.InsertRow r2 = rows.get(1);
+        assertEquals(Arrays.asList("2", "'it''s; fine'", "NULL"), r2.getValues());
+        assertEquals("2|", r2.getPkKey(Arrays.asList("id"), true));
+
+        // trailing empty value is dropped, as splitTopLevelComma does
+        assertEquals(Arrays.asList("3", "'x'"), rows.get(2).getValues());
+
+        // rows of one table share a single column list instance even when spelled differently
+        assertSame(r1.columns, r2.columns);
+        assertSame(r1.columns, rows.get(2).columns);
+    }
+
+    @Test
+    void testSameContentIgnoresFormatting() throws Exception {
+        SqlExportIndex idx = new SqlExportIndex();
+        InsertRowParser parser = new InsertRowParser("f.sql", true, null);
+        for (String sql : new String[] {
+                "INSERT INTO T1 (ID, V) VALUES (1,   'a b');",
+                "insert  into T1 (id,v)\nvalues (1, /* c */ 'a b');",
+                "INSERT INTO T1 (ID, V) VALUES (1, 'a  b');"}) {
+            SqlBytes text = SqlBytes.of(sql);
+            parser.parse(text, 0, text.length(), 1, idx);
+        }
+
+        List<SqlExportIndex.InsertRow> rows = idx.rowsByTableKey.get("T1");
+        assertTrue(rows.get(0).sameContent(rows.get(1)));
+        assertEquals(new SqlExportIndex.RowContent(rows.get(0)), new SqlExportIndex.RowContent(rows.get(1)));
+        assertFalse(rows.get(0).sameContent(rows.get(2)));
+    }
+
+    @Test
+    void testHashedRowsCompareLikeExactRows() throws Exception {
+        String[] stmts = {
+                "INSERT INTO T1 (ID, V) VALUES (1,   'a b');",
+                "insert  into T1 (id,v)\nvalues (1, /* c */ 'a b');",
+                "INSERT INTO T1 (ID, V) VALUES (1, 'a  b');",
+                "INSERT INTO T1 (ID, V) VALUES ('1,', 'a b');",
+                "INSERT INTO T1 (ID, V) VALUES ('1', ', a b');"};
+        SqlExportIndex exact = new SqlExportIndex();
+        SqlExportIndex hashed = new SqlExportIndex();
+        InsertRowParser exactParser = new InsertRowParser("f.sql", true, null, false);
+        InsertRowParser hashParser = new InsertRowParser("f.sql", true, null, true);
+        for (String sql : stmts) {
+            SqlBytes text = SqlBytes.of(sql);
+            exactParser.parse(text, 0, text.length(), 1, exact);
+            hashParser.parse(text, 0, text.length(), 1, hashed);
+        }
+
+        List<SqlExportIndex.InsertRow> e = exact.rowsByTableKey.get("T1");
+        List<SqlExportIndex.InsertRow> h = hashed.rowsByTableKey.get("T1");
+        for (int i = 0; i < stmts.length; i++) {
+            for (int j = 0; j < stmts.length; j++) {
+                assertEquals(e.get(i).sameContent(e.get(j)), h.get(i).sameContent(h.get(j)), i + "/" + j);
+            }
+        }
+        assertEquals(new SqlExportIndex.RowContent(h.get(0)), new SqlExportIndex.RowContent(h.get(1)));
+
+        // text is still re-derived from the offsets when a finding needs it
+        assertEquals(e.get(3).getOriginalSql(), h.get(3).getOriginalSql());
+        assertEquals(Arrays.asList("'1,'", "'a b'"), h.get(3).getValues());
+    }
+}
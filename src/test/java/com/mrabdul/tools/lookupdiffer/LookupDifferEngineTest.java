@@ -4,9 +4,25 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 class LookupDifferEngineTest {
 
@@ -291,4 +307,560 @@ class LookupDifferEngineTest {
         assertTrue(result.getMissingTables() > 0, "Should detect missing table T1");
         assertTrue(result.getMissingRows() >= 2, "Should detect missing rows for T1");
     }
+
+    @Test
+    void testParallelIndexingMatchesSerial() throws Exception {
+        Path source = tempDir.resolve("src_par");
+        Path target = tempDir.resolve("tgt_par");
+        Files.createDirectories(source);
+        Files.createDirectories(target);
+
+        // ALTER before CREATE across files exercises the stub merge
+        Files.write(source.resolve("A_ALTER.sql"), "ALTER TABLE T0 ADD (C9 NUMBER);\n".getBytes(StandardCharsets.UTF_8));
+        for (int t = 0; t < 20; t++) {
+            StringBuilder src = new StringBuilder();
+            StringBuilder tgt = new StringBuilder();
+            src.append("CREATE TABLE T").append(t).append(" (ID NUMBER, VAL VARCHAR2(100), EXTRA NUMBER);\n");
+            src.append("ALTER TABLE T").append(t).append(" ADD PRIMARY KEY (ID);\n");
+            tgt.append("CREATE TABLE T").append(t).append(" (ID NUMBER, VAL VARCHAR2(100));\n");
+            for (int r = 0; r < 50; r++) {
+                src.append("INSERT INTO T").append(t).append(" (ID, VAL) VALUES (").append(r).append(", 'v").append(r).append("');\n");
+                if (r % 3 != 0) {
+                    tgt.append("INSERT INTO T").append(t).append(" (ID, VAL) VALUES (").append(r).append(", '")
+                       .append(r % 5 == 0 ? "changed" : "v" + r).append("');\n");
+                }
+            }
+            Files.write(source.resolve("T" + t + ".sql"), src.toString().getBytes(StandardCharsets.UTF_8));
+            Files.write(target.resolve("T" + t + ".sql"), tgt.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        Path serialOut = tempDir.resolve("out_serial");
+        Path parallelOut = tempDir.resolve("out_parallel");
+        LookupDifferEngine engine = new LookupDifferEngine();
+        LookupDifferResult serial = engine.run(LookupDifferRequest.builder(source.toString(), target.toString())
+                .outDir(serialOut.toString())
+                .threads(1)
+                .build());
+        LookupDifferResult parallel = engine.run(LookupDifferRequest.builder(source.toString(), target.toString())
+                .outDir(parallelOut.toString())
+                .threads(8)
+                .build());
+
+        assertEquals(serial.getReportText(), parallel.getReportText());
+        assertEquals(serial.getFindings().size(), parallel.getFindings().size());
+        for (int i = 0; i < serial.getFindings().size(); i++) {
+            DiffFinding a = serial.getFindings().get(i);
+            DiffFinding b = parallel.getFindings().get(i);
+            assertEquals(a.kind + a.table + a.file + a.line + a.message + a.ddl + a.insertSql,
+                         b.kind + b.table + b.file + b.line + b.message + b.ddl + b.insertSql);
+        }
+        for (String name : new String[] {"schema_patch.sql", "insert_patch.sql", "update_patch.sql", "t3_insert.sql", "t3_update.sql"}) {
+            assertArrayEquals(Files.readAllBytes(serialOut.resolve(name)), Files.readAllBytes(parallelOut.resolve(name)), name);
+        }
+    }
+
+    @Test
+    void testRowHashesGiveSameFindings() throws Exception {
+        Path source = tempDir.resolve("src_hash");
+        Path target = tempDir.resolve("tgt_hash");
+        Files.createDirectories(source);
+        Files.createDirectories(target);
+
+        Files.write(source.resolve("T_PK.sql"), "ALTER TABLE T ADD PRIMARY KEY (ID);\n".getBytes(StandardCharsets.UTF_8));
+        StringBuilder src = new StringBuilder("CREATE TABLE T (ID NUMBER, VAL VARCHAR2(100));\nCREATE TABLE N (A NUMBER, B VARCHAR2(10));\n");
+        StringBuilder tgt = new StringBuilder("CREATE TABLE T (ID NUMBER, VAL VARCHAR2(100));\nCREATE TABLE N (A NUMBER, B VARCHAR2(10));\n");
+        for (int r = 0; r < 40; r++) {
+            src.append("INSERT INTO T (ID, VAL) VALUES (").append(r).append(", 'v").append(r).append("');\n");
+            src.append("INSERT INTO N (A, B) VALUES (").append(r).append(", 'b").append(r).append("');\n");
+            if (r % 4 != 0) {
+                tgt.append("insert into T (id, val) values (").append(r).append(",  '").append(r % 3 == 0 ? "x" : "v" + r).append("');\n");
+                tgt.append("INSERT INTO N (A, B) VALUES (").append(r).append(", 'b").append(r % 5 == 0 ? "!" : "").append(r).append("');\n");
+            }
+        }
+        Files.write(source.resolve("DATA.sql"), src.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(target.resolve("DATA.sql"), tgt.toString().getBytes(StandardCharsets.UTF_8));
+
+        LookupDifferEngine engine = new LookupDifferEngine();
+        LookupDifferResult exact = engine.run(LookupDifferRequest.builder(source.toString(), target.toString()).build());
+        LookupDifferResult hashed = engine.run(LookupDifferRequest.builder(source.toString(), target.toString())
+                .rowHashes(true)
+                .build());
+
+        assertEquals(exact.getReportText(), hashed.getReportText());
+        assertEquals(exact.getFindings().size(), hashed.getFindings().size());
+        for (int i = 0; i < exact.getFindings().size(); i++) {
+            DiffFinding a = exact.getFindings().get(i);
+            DiffFinding b = hashed.getFindings().get(i);
+            assertEquals(a.kind + a.table + a.line + a.insertSql, b.kind + b.table + b.line + b.insertSql);
+        }
+    }
+
+    @Test
+    void testExternalModeGivesSameFindings() throws Exception {
+        Path source = tempDir.resolve("src_ext");
+        Path target = tempDir.resolve("tgt_ext");
+        Path memOut = tempDir.resolve("out_mem");
+        Path extOut = tempDir.resolve("out_ext");
+        Files.createDirectories(source);
+        Files.createDirectories(target);
+
+        Files.write(source.resolve("T_PK.sql"), "ALTER TABLE T ADD PRIMARY KEY (ID, CODE);\n".getBytes(StandardCharsets.UTF_8));
+        StringBuilder src = new StringBuilder("CREATE TABLE T (ID NUMBER, CODE VARCHAR2(5), VAL VARCHAR2(100));\n");
+        StringBuilder tgt = new StringBuilder("CREATE TABLE T (ID NUMBER, CODE VARCHAR2(5), VAL VARCHAR2(100));\n");
+        for (int r = 60; r >= 0; r--) {
+            src.append("INSERT INTO T (ID, CODE, VAL) VALUES (").append(r).append(", 'c").append(r % 3).append("', 'v").append(r).append("');\n");
+            if (r % 4 != 0) {
+                tgt.append("INSERT INTO T (ID, CODE, VAL) VALUES (").append(r).append(", 'c").append(r % 3).append("', '")
+                   .append(r % 5 == 0 ? "x" : "v" + r).append("');\n");
+            }
+        }
+        Files.write(source.resolve("DATA.sql"), src.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(target.resolve("DATA.sql"), tgt.toString().getBytes(StandardCharsets.UTF_8));
+        // a table without PK, split over a plain and a compressed file on the source side
+        StringBuilder noPk = new StringBuilder();
+        StringBuilder noPkTgt = new StringBuilder();
+        for (int r = 0; r < 30; r++) {
+            noPk.append("INSERT INTO N (A, B) VALUES (").append(r).append(", 'b").append(r % 7).append("');\n");
+            if (r % 3 != 0) noPkTgt.append("INSERT INTO N (A, B) VALUES (").append(r).append(", 'b").append(r % 7).append("');\n");
+        }
+        Files.write(source.resolve("N_1.sql"), noPk.substring(0, noPk.length() / 2).getBytes(StandardCharsets.UTF_8));
+        try (OutputStream gz = new GZIPOutputStream(Files.newOutputStream(source.resolve("N_2.sql.gz")))) {
+            gz.write(noPk.substring(noPk.length() / 2).getBytes(StandardCharsets.UTF_8));
+        }
+        Files.write(target.resolve("N.sql"), noPkTgt.toString().getBytes(StandardCharsets.UTF_8));
+
+        LookupDifferEngine engine = new LookupDifferEngine();
+        LookupDifferResult mem = engine.run(LookupDifferRequest.builder(source.toString(), target.toString())
+                .outDir(memOut.toString())
+                .build());
+        LookupDifferResult ext = engine.run(LookupDifferRequest.builder(source.toString(), target.toString())
+                .outDir(extOut.toString())
+                .mode("external")
+                .memoryBudgetMb(1)
+                .build());
+
+        assertEquals(mem.getReportText(), ext.getReportText());
+        assertTrue(mem.getFindings().stream().anyMatch(f -> "ROW_MISMATCH".equals(f.kind)));
+        assertTrue(mem.getFindings().stream().anyMatch(f -> "ROW_MISSING".equals(f.kind) && "N".equals(f.table)));
+        assertEquals(mem.getFindings().size(), ext.getFindings().size());
+        for (int i = 0; i < mem.getFindings().size(); i++) {
+            DiffFinding a = mem.getFindings().get(i);
+            DiffFinding b = ext.getFindings().get(i);
+            assertEquals(a.kind + a.table + a.file + a.line + a.insertSql, b.kind + b.table + b.file + b.line + b.insertSql);
+        }
+        for (String name : new String[] {"insert_patch.sql", "update_patch.sql"}) {
+            assertArrayEquals(Files.readAllBytes(memOut.resolve(name)), Files.readAllBytes(extOut.resolve(name)), name);
+        }
+    }
+
+    @Test
+    void testExternalModeRejectsInMemoryOptions() throws Exception {
+        Path source = tempDir.resolve("src_ext_opts");
+        Path target = tempDir.resolve("tgt_ext_opts");
+        Files.createDirectories(source);
+        Files.createDirectories(target);
+        LookupDifferRequest withDictionary = LookupDifferRequest.builder(source.toString(), target.toString())
+                .mode("external")
+                .valueDictionary(true)
+                .build();
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new LookupDifferEngine().run(withDictionary));
+        assertTrue(e.getMessage().contains("--dictionary"), e.getMessage());
+    }
+
+    @Test
+    void testParallelTableDiffKeepsTableOrder() throws Exception {
+        Path source = tempDir.resolve("src_par");
+        Path target = tempDir.resolve("tgt_par");
+        Path serialOut = tempDir.resolve("out_serial");
+        Path parallelOut = tempDir.resolve("out_parallel");
+        Files.createDirectories(source);
+        Files.createDirectories(target);
+
+        // one big table among many small ones, with and without PKs
+        for (int t = 0; t < 12; t++) {
+            String table = "T" + t;
+            int rows = t == 5 ? 400 : 3 + t;
+            StringBuilder src = new StringBuilder("CREATE TABLE " + table + " (ID NUMBER, VAL VARCHAR2(20));\n");
+            StringBuilder tgt = new StringBuilder(src);
+            if (t % 3 != 0) src.append("ALTER TABLE ").append(table).append(" ADD PRIMARY KEY (ID);\n");
+            for (int r = 0; r < rows; r++) {
+                src.append("INSERT INTO ").append(table).append(" (ID, VAL) VALUES (").append(r).append(", 'v").append(r).append("');\n");
+                if (r % 3 != 0) {
+                    tgt.append("INSERT INTO ").append(table).append(" (ID, VAL) VALUES (").append(r).append(", '")
+                       .append(r % 4 == 0 ? "x" : "v" + r).append("');\n");
+                }
+            }
+            Files.write(source.resolve(table + ".sql"), src.toString().getBytes(StandardCharsets.UTF_8));
+            Files.write(target.resolve(table + ".sql"), tgt.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        LookupDifferEngine engine = new LookupDifferEngine();
+        LookupDifferResult serial = engine.run(LookupDifferRequest.builder(source.toString(), target.toString())
+                .outDir(serialOut.toString())
+                .threads(1)
+                .build());
+        LookupDifferResult parallel = engine.run(LookupDifferRequest.builder(source.toString(), target.toString())
+                .outDir(parallelOut.toString())
+                .threads(4)
+                .build());
+
+        assertEquals(serial.getFindings().size(), parallel.getFindings().size());
+        for (int i = 0; i < serial.getFindings().size(); i++) {
+            DiffFinding a = serial.getFindings().get(i);
+            DiffFinding b = parallel.getFindings().get(i);
+            assertEquals(a.kind + a.table + a.line + a.insertSql, b.kind + b.table + b.line + b.insertSql);
+        }
+        assertEquals(serial.getReportText(), parallel.getReportText());
+        for (String name : new String[] {"insert_patch.sql", "update_patch.sql", "t5_insert.sql"}) {
+            assertArrayEquals(Files.readAllBytes(serialOut.resolve(name)), Files.readAllBytes(parallelOut.resolve(name)), name);
+        }
+    }
+
+    @Test
+    void testCompressedAndZippedExportsGiveSameFindings() throws Exception {
+        Path source = tempDir.resolve("src_plain");
+        Path plain = tempDir.resolve("tgt_plain");
+        Path packed = tempDir.resolve("tgt_packed");
+        Files.createDirectories(source);
+        Files.createDirectories(plain);
+        Files.createDirectories(packed);
+
+        String schema = "CREATE TABLE T (ID NUMBER, VAL VARCHAR2(20));\nALTER TABLE T ADD PRIMARY KEY (ID);\n";
+        StringBuilder src = new StringBuilder(schema);
+        StringBuilder tgt = new StringBuilder();
+        for (int r = 0; r < 50; r++) {
+            src.append("INSERT INTO T (ID, VAL) VALUES (").append(r).append(", 'v").append(r).append("');\n");
+            if (r % 3 != 0) tgt.append("INSERT INTO T (ID, VAL) VALUES (").append(r).append(", '").append(r % 4 == 0 ? "x" : "v" + r).append("');\n");
+        }
+        Files.write(source.resolve("T.sql"), src.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve("U.sql"), "CREATE TABLE U (ID NUMBER);\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(plain.resolve("A_schema.sql"), schema.getBytes(StandardCharsets.UTF_8));
+        Files.write(plain.resolve("B_rows.sql"), tgt.toString().getBytes(StandardCharsets.UTF_8));
+
+        try (OutputStream gz = new GZIPOutputStream(Files.newOutputStream(packed.resolve("A_schema.sql.gz")))) {
+            gz.write(schema.getBytes(StandardCharsets.UTF_8));
+        }
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(packed.resolve("B_export.zip")))) {
+            zip.putNextEntry(new ZipEntry("rows/B_rows.sql"));
+            zip.write(tgt.toString().getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+            zip.putNextEntry(new ZipEntry("README.txt"));
+            zip.write("not an export".getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+
+        LookupDifferEngine engine = new LookupDifferEngine();
+        LookupDifferResult fromPlain = engine.run(new LookupDifferRequest(source.toString(), plain.toString(), true, null, null, null, null));
+        LookupDifferResult fromPacked = engine.run(new LookupDifferRequest(source.toString(), packed.toString(), true, null, null, null, null));
+
+        assertEquals(fromPlain.getReportText(), fromPacked.getReportText());
+        assertTrue(fromPlain.getFindings().stream().anyMatch(f -> "ROW_MISMATCH".equals(f.kind)));
+        assertTrue(fromPacked.getFindings().stream().noneMatch(f -> "TABLE_MISSING".equals(f.kind) && "T".equals(f.table)));
+    }
+
+    @Test
+    void testDictionaryGivesSameFindings() throws Exception {
+        Path source = tempDir.resolve("src_dict");
+        Path target = tempDir.resolve("tgt_dict");
+        Path plainOut = tempDir.resolve("out_plain");
+        Path dictOut = tempDir.resolve("out_dict");
+        Files.createDirectories(source);
+        Files.createDirectories(target);
+
+        String schema = "CREATE TABLE T (ID NUMBER, FLAG CHAR(1), NOTE VARCHAR2(200));\nALTER TABLE T ADD PRIMARY KEY (ID);\n"
+                + "CREATE TABLE N (A VARCHAR2(10), B VARCHAR2(200));\n";
+        StringBuilder src = new StringBuilder(schema);
+        StringBuilder tgt = new StringBuilder(schema);
+        String longNote = "NVL('0123456789012345678901234567890123456789012345678901234567890123456789', 'x')";
+        for (int r = 0; r < 60; r++) {
+            String note = r % 7 == 0 ? longNote : "'n" + (r % 3) + "'";
+            src.append("INSERT INTO T (ID, FLAG, NOTE) VALUES (").append(r).append(", '").append(r % 2 == 0 ? "Y" : "N").append("', ").append(note).append(");\n");
+            src.append("INSERT INTO N (A, B) VALUES ('a").append(r % 4).append("', ").append(note).append(");\n");
+            if (r % 5 == 0) continue;
+            String tNote = r % 11 == 0 ? "'changed'" : note.replace(", 'x'", ",    'x'");
+            tgt.append("INSERT INTO T (ID, FLAG, NOTE) VALUES (").append(r).append(",  '").append(r % 2 == 0 ? "Y" : "N").append("' , ").append(tNote).append(");\n");
+            tgt.append("INSERT INTO N (A, B) VALUES ('a").append(r % 4).append("', ").append(tNote).append(");\n");
+        }
+        Files.write(source.resolve("DATA.sql"), src.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(target.resolve("DATA.sql"), tgt.toString().getBytes(StandardCharsets.UTF_8));
+
+        LookupDifferEngine engine = new LookupDifferEngine();
+        LookupDifferResult plain = engine.run(LookupDifferRequest.builder(source.toString(), target.toString())
+                .outDir(plainOut.toString())
+                .build());
+        LookupDifferResult dict = engine.run(LookupDifferRequest.builder(source.toString(), target.toString())
+                .outDir(dictOut.toString())
+                .valueDictionary(true)
+                .build());
+
+        assertTrue(plain.getMismatchedRows() > 0);
+        assertEquals(plain.getReportText(), dict.getReportText());
+        for (String name : new String[] {"insert_patch.sql", "update_patch.sql"}) {
+            assertArrayEquals(Files.readAllBytes(plainOut.resolve(name)), Files.readAllBytes(dictOut.resolve(name)), name);
+        }
+    }
+
+    @Test
+    void testSnapshotsGiveSameFindings() throws Exception {
+        Path source = tempDir.resolve("src_snap");
+        Path target = tempDir.resolve("tgt_snap");
+        Path dirOut = tempDir.resolve("out_snap_dirs");
+        Path snapOut = tempDir.resolve("out_snap_files");
+        Path srcSnap = tempDir.resolve("snaps/prod.ldsnap");
+        Path tgtSnap = tempDir.resolve("snaps/uat.ldsnap");
+        Files.createDirectories(source);
+        Files.createDirectories(target);
+
+        Files.write(source.resolve("T_PK.sql"), "ALTER TABLE T ADD PRIMARY KEY (ID);\n".getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve("N.sql"), "CREATE TABLE N (A VARCHAR2(10));\nINSERT INTO N (A) VALUES ('n1');\n".getBytes(StandardCharsets.UTF_8));
+        StringBuilder src = new StringBuilder("CREATE TABLE T (ID NUMBER, VAL VARCHAR2(100), EXTRA NUMBER);\n");
+        StringBuilder tgt = new StringBuilder("CREATE TABLE T (ID NUMBER, VAL VARCHAR2(100));\n");
+        for (int r = 0; r < 40; r++) {
+            src.append("INSERT INTO T (ID, VAL) VALUES (").append(r).append(", 'v").append(r).append("');\n");
+            if (r % 3 != 0) tgt.append("INSERT INTO T (ID, VAL) VALUES (").append(r).append(", '").append(r % 4 == 0 ? "x" : "v" + r).append("');\n");
+        }
+        Files.write(source.resolve("DATA.sql"), src.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(target.resolve("DATA.sql"), tgt.toString().getBytes(StandardCharsets.UTF_8));
+
+        LookupDifferEngine engine = new LookupDifferEngine();
+        LookupDifferResult fromDirs = engine.run(LookupDifferRequest.builder(source.toString(), target.toString())
+                .outDir(dirOut.toString())
+                .sourceSnapshotOut(srcSnap.toString())
+                .targetSnapshotOut(tgtSnap.toString())
+                .build());
+        assertTrue(Files.isRegularFile(srcSnap) && Files.isRegularFile(tgtSnap));
+        LookupDifferResult fromSnaps = engine.run(LookupDifferRequest.builder(srcSnap.toString(), tgtSnap.toString())
+                .outDir(snapOut.toString())
+                .valueDictionary(true)
+                .build());
+
+        assertTrue(fromDirs.getMismatchedRows() > 0);
+        assertEquals(fromDirs.getReportText(), fromSnaps.getReportText());
+        for (String name : new String[] {"schema_patch.sql", "insert_patch.sql", "update_patch.sql"}) {
+            assertArrayEquals(Files.readAllBytes(dirOut.resolve(name)), Files.readAllBytes(snapOut.resolve(name)), name);
+        }
+
+        // a snapshot only fits runs with the settings it was parsed with
+        assertThrows(IllegalArgumentException.class, () -> engine.run(new LookupDifferRequest(srcSnap.toString(),
+                target.toString(), false, null, null, null, null)));
+        assertThrows(IllegalArgumentException.class, () -> engine.run(new LookupDifferRequest(
+                source.resolve("N.sql").toString(), target.toString(), true, null, null, null, null)));
+    }
+
+    @Test
+    void testChangedColumnsMatchNamesLikeTheDiff() throws Exception {
+        Path source = tempDir.resolve("src_case");
+        Path target = tempDir.resolve("tgt_case");
+        Files.createDirectories(source);
+        Files.createDirectories(target);
+        String schema = "CREATE TABLE T (ID NUMBER, A VARCHAR2(10), B VARCHAR2(10));\nALTER TABLE T ADD PRIMARY KEY (ID);\n";
+        Files.write(source.resolve("DATA.sql"), (schema + "INSERT INTO T (ID, A, B) VALUES (1, 'a', 'b');\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(target.resolve("DATA.sql"), (schema + "INSERT INTO T (ID, B, a) VALUES (1, 'x', 'a');\n").getBytes(StandardCharsets.UTF_8));
+
+        for (boolean ci : new boolean[] {true, false}) {
+            LookupDifferResult res = new LookupDifferEngine().run(LookupDifferRequest.builder(source.toString(), target.toString())
+                    .caseInsensitive(ci)
+                    .build());
+            List<DiffFinding> mismatches = res.getFindings().stream().filter(f -> "ROW_MISMATCH".equals(f.kind)).collect(Collectors.toList());
+            assertEquals(1, mismatches.size());
+            // case-sensitive, the target's "a" is another column than A
+            assertEquals(ci ? Collections.singletonList("B") : Arrays.asList("A", "B"), mismatches.get(0).changedColumns, "ci=" + ci);
+        }
+    }
+
+    @Test
+    void testMismatchUpdatesOnlyChangedColumns() throws Exception {
+        Path source = tempDir.resolve("src_cols");
+        Path target = tempDir.resolve("tgt_cols");
+        Path out = tempDir.resolve("out_cols");
+        Files.createDirectories(source);
+        Files.createDirectories(target);
+
+        String schema = "CREATE TABLE T (ID NUMBER, A VARCHAR2(10), B VARCHAR2(10), C NUMBER);\nALTER TABLE T ADD PRIMARY KEY (ID);\n";
+        Files.write(source.resolve("DATA.sql"), (schema
+                + "INSERT INTO T (ID, A, B, C) VALUES (1, 'a', 'b', 3);\n"
+                + "INSERT INTO T (ID, A, B, C) VALUES (2, 'a', 'b', 3);\n"
+                + "INSERT INTO T (ID, A, B, C) VALUES (3, 'a', 'b', 3);\n").getBytes(StandardCharsets.UTF_8));
+        Files.write(target.resolve("DATA.sql"), (schema
+                + "INSERT INTO T (ID, A, B, C) VALUES (1, 'a', 'x', 3);\n"
+                + "INSERT INTO T (ID, C, B, A) VALUES (2, 4, 'b', 'z');\n"
+                + "INSERT INTO T (ID, C, B, A) VALUES (3, 3, 'b', 'a');\n").getBytes(StandardCharsets.UTF_8));
+
+        LookupDifferResult res = new LookupDifferEngine().run(LookupDifferRequest.builder(source.toString(), target.toString())
+                .outDir(out.toString())
+                .valueDictionary(true)
+                .build());
+
+        List<DiffFinding> mismatches = res.getFindings().stream().filter(f -> "ROW_MISMATCH".equals(f.kind)).collect(Collectors.toList());
+        assertEquals(3, mismatches.size());
+        assertEquals(Collections.singletonList("B"), mismatches.get(0).changedColumns);
+        assertEquals(Arrays.asList("A", "C"), mismatches.get(1).changedColumns);
+        assertTrue(mismatches.get(1).message.endsWith("Changed: A, C"));
+        assertEquals(Collections.emptyList(), mismatches.get(2).changedColumns, "same values in another column order");
+        assertEquals("-- Data patch: update mismatched rows (SOURCE -> TARGET)\n\n-- Table: T\n"
+                + "UPDATE T SET B = 'b' WHERE ID = 1;\n"
+                + "UPDATE T SET A = 'a', C = 3 WHERE ID = 2;\n"
+                + "-- UPDATE not needed: INSERT INTO T (ID, A, B, C) VALUES (3, 'a', 'b', 3);\n",
+                new String(Files.readAllBytes(out.resolve("update_patch.sql")), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testProgressCountsFilesStatementsAndRows() throws Exception {
+        Path source = tempDir.resolve("src_prog");
+        Path target = tempDir.resolve("tgt_prog");
+        Files.createDirectories(source);
+        Files.createDirectories(target);
+        for (String table : new String[] {"A", "B"}) {
+            StringBuilder sql = new StringBuilder("CREATE TABLE " + table + " (ID NUMBER);\n");
+            for (int r = 0; r < 10; r++) sql.append("INSERT INTO ").append(table).append(" (ID) VALUES (").append(r).append(");\n");
+            Files.write(source.resolve(table + ".sql"), sql.toString().getBytes(StandardCharsets.UTF_8));
+            Files.write(target.resolve(table + ".sql"), sql.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        LookupDifferProgress progress = new LookupDifferProgress();
+        new LookupDifferEngine().run(new LookupDifferRequest(source.toString(), target.toString(), true, null, null, null, null), progress);
+
+        assertEquals(LookupDifferProgress.Phase.DONE, progress.getPhase());
+        assertEquals(4, progress.getFilesTotal());
+        assertEquals(4, progress.getFilesIndexed());
+        assertEquals(44, progress.getStatements());
+        assertEquals(2, progress.getTablesDone());
+        assertEquals(Long.valueOf(20), progress.getRowsByTable().get("A"));
+        assertEquals(40, progress.getRowsCompared());
+        assertFalse(progress.isCancelled());
+    }
+
+    @Test
+    void testCancelStopsRunningDiff() throws Exception {
+        Path source = tempDir.resolve("src_cancel");
+        Path target = tempDir.resolve("tgt_cancel");
+        Files.createDirectories(source);
+        Files.createDirectories(target);
+        StringBuilder sql = new StringBuilder("CREATE TABLE T (ID NUMBER, VAL VARCHAR2(20));\n");
+        for (int r = 0; r < 200000; r++) sql.append("INSERT INTO T (ID, VAL) VALUES (").append(r).append(", 'v").append(r).append("');\n");
+        Files.write(source.resolve("T.sql"), sql.toString().getBytes(StandardCharsets.UTF_8));
+        Files.write(target.resolve("T.sql"), sql.toString().getBytes(StandardCharsets.UTF_8));
+        final LookupDifferRequest req = new LookupDifferRequest(source.toString(), target.toString(), true, null, null, null, null);
+
+        LookupDifferProgress cancelledUpFront = new LookupDifferProgress();
+        cancelledUpFront.cancel();
+        assertThrows(CancellationException.class, () -> new LookupDifferEngine().run(req, cancelledUpFront));
+
+        // cancelled from a worker while indexing, at a set point rather than after some delay
+        final LookupDifferProgress progress = new LookupDifferProgress();
+        progress.onUpdate(() -> {
+            if (progress.getStatements() >= 1000) progress.cancel();
+        });
+        assertThrows(CancellationException.class, () -> new LookupDifferEngine().run(req, progress));
+        assertTrue(progress.isCancelled());
+        assertEquals(LookupDifferProgress.Phase.INDEXING, progress.getPhase(), "stopped before the diff");
+        assertTrue(progress.summary().startsWith("CANCELLED"));
+    }
+
+    @Test
+    void testCancelledDiffLeavesNoPatchFiles() throws Exception {
+        Path source = tempDir.resolve("src_abort");
+        Path target = tempDir.resolve("tgt_abort");
+        Path outDir = tempDir.resolve("out_abort");
+        Files.createDirectories(source);
+        Files.createDirectories(target);
+        for (String table : new String[] {"A", "B"}) {
+            StringBuilder sql = new StringBuilder("CREATE TABLE " + table + " (ID NUMBER PRIMARY KEY, VAL VARCHAR2(20));\n");
+            for (int r = 0; r < 50; r++) sql.append("INSERT INTO ").append(table).append(" (ID, VAL) VALUES (").append(r).append(", 'v');\n");
+            Files.write(source.resolve(table + ".sql"), sql.toString().getBytes(StandardCharsets.UTF_8));
+            Files.write(target.resolve(table + ".sql"), ("CREATE TABLE " + table + " (ID NUMBER PRIMARY KEY, VAL VARCHAR2(20));\n").getBytes(StandardCharsets.UTF_8));
+        }
+        LookupDifferRequest req = LookupDifferRequest.builder(source.toString(), target.toString())
+                .outDir(outDir.toString())
+                .patchBatchRows(10)
+                .build();
+
+        // cancelled once every table is compared, while their findings are being written
+        final LookupDifferProgress progress = new LookupDifferProgress();
+        progress.onUpdate(() -> {
+            if (progress.getPhase() == LookupDifferProgress.Phase.ROWS && progress.getTablesDone() == 2) progress.cancel();
+        });
+        assertThrows(CancellationException.class, () -> new LookupDifferEngine().run(req, progress));
+        assertTrue(progress.isCancelled());
+        try (java.util.stream.Stream<Path> files = Files.list(outDir)) {
+            assertEquals(Collections.emptyList(), files.map(p -> p.getFileName().toString()).collect(Collectors.toList()));
+        }
+
+        LookupDifferResult done = new LookupDifferEngine().run(req);
+        assertEquals(100, done.getMissingRows());
+        assertTrue(new String(Files.readAllBytes(outDir.resolve("b_insert.sql")), StandardCharsets.UTF_8).endsWith("COMMIT;\n"));
+    }
+
+    @Test
+    void testCancelledDiffLeavesNoJsonOut() throws Exception {
+        Path source = tempDir.resolve("src_abort_json");
+        Path target = tempDir.resolve("tgt_abort_json");
+        Path jsonDir = tempDir.resolve("json_abort");
+        Files.createDirectories(source);
+        Files.createDirectories(target);
+        for (String table : new String[] {"A", "B"}) {
+            StringBuilder sql = new StringBuilder("CREATE TABLE " + table + " (ID NUMBER PRIMARY KEY, VAL VARCHAR2(20));\n");
+            for (int r = 0; r < 50; r++) sql.append("INSERT INTO ").append(table).append(" (ID, VAL) VALUES (").append(r).append(", 'v');\n");
+            Files.write(source.resolve(table + ".sql"), sql.toString().getBytes(StandardCharsets.UTF_8));
+            Files.write(target.resolve(table + ".sql"), ("CREATE TABLE " + table + " (ID NUMBER PRIMARY KEY, VAL VARCHAR2(20));\n").getBytes(StandardCharsets.UTF_8));
+        }
+        Path jsonOut = jsonDir.resolve("findings.json");
+        LookupDifferRequest req = LookupDifferRequest.builder(source.toString(), target.toString())
+                .jsonOut(jsonOut.toString())
+                .build();
+
+        final LookupDifferProgress progress = new LookupDifferProgress();
+        progress.onUpdate(() -> {
+            if (progress.getPhase() == LookupDifferProgress.Phase.ROWS && progress.getTablesDone() == 2) progress.cancel();
+        });
+        assertThrows(CancellationException.class, () -> new LookupDifferEngine().run(req, progress));
+        try (java.util.stream.Stream<Path> files = Files.list(jsonDir)) {
+            assertEquals(Collections.emptyList(), files.map(p -> p.getFileName().toString()).collect(Collectors.toList()));
+        }
+
+        // a report from an earlier run is kept as it was
+        Files.write(jsonOut, "[ ]".getBytes(StandardCharsets.UTF_8));
+        final LookupDifferProgress again = new LookupDifferProgress();
+        again.onUpdate(() -> {
+            if (again.getPhase() == LookupDifferProgress.Phase.ROWS && again.getTablesDone() == 2) again.cancel();
+        });
+        assertThrows(CancellationException.class, () -> new LookupDifferEngine().run(req, again));
+        assertEquals("[ ]", new String(Files.readAllBytes(jsonOut), StandardCharsets.UTF_8));
+
+        LookupDifferResult done = new LookupDifferEngine().run(req);
+        assertEquals(done.getFindings().size(), new ObjectMapper().readTree(jsonOut.toFile()).size());
+    }
+
+    @Test
+    void testPipelinedInflateReturnsAllBytes() throws Exception {
+        byte[] data = new byte[300 * 1024 + 17];
+        new Random(3).nextBytes(data);
+        ByteArrayOutputStream gz = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(gz)) {
+            out.write(data);
+        }
+
+        ByteArrayOutputStream back = new ByteArrayOutputStream();
+        try (InputStream in = new PipelinedInputStream(new GZIPInputStream(new ByteArrayInputStream(gz.toByteArray())), "test")) {
+            byte[] buf = new byte[5000];
+            int n;
+            while ((n = in.read(buf)) >= 0) back.write(buf, 0, n);
+        }
+        assertArrayEquals(data, back.toByteArray());
+    }
+
+    @Test
+    void testPipelinedInflatePassesOnRuntimeFailures() {
+        InputStream broken = new InputStream() {
+            @Override public int read() {
+                throw new IllegalStateException("corrupt block");
+            }
+        };
+        IllegalStateException e = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(IllegalStateException.class, () -> {
+            try (InputStream in = new PipelinedInputStream(broken, "test")) {
+                while (in.read() >= 0) { }
+            }
+        }));
+        assertEquals("corrupt block", e.getMessage());
+    }
 }
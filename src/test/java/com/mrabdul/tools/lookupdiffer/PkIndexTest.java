@@ -0,0 +1,37 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+class PkIndexTest {
+
+    @Test
+    void testCompositeKeyFollowsPkOrder() {
+        SqlExportIndex idx = new SqlExportIndex();
+        InsertRowParser parser = new InsertRowParser("f.sql", true, null);
+        for (String sql : new String[] {
+                "INSERT INTO T (A, B, C, D) VALUES ('a  1', 2, 'x', 4);",
+                "INSERT INTO T (A, B, C, D) VALUES ('a 1', 3, 'y', 5);",
+                "INSERT INTO T (B, C) VALUES (7, 'z');"}) {
+            SqlBytes text = SqlBytes.of(sql);
+            parser.parse(text, 0, text.length(), 1, idx);
+        }
+        List<SqlExportIndex.InsertRow> rows = idx.rowsByTableKey.get("T");
+
+        PkIndex pk = new PkIndex(Arrays.asList("c", "a"), true);
+        assertEquals("'x'|'a  1'|", pk.key(rows.get(0)));
+        assertEquals("'y'|'a 1'|", pk.key(rows.get(1)));
+        assertEquals("'z'|NULL|", pk.key(rows.get(2)));
+        assertEquals(rows.get(1).getPkKey(Arrays.asList("C", "A"), true), pk.key(rows.get(1)));
+
+        assertEquals("{0, 2}", pk.pkColumns(rows.get(0).columns).toString());
+        assertEquals("{1}", pk.pkColumns(rows.get(2).columns).toString());
+
+        PkIndex exactCase = new PkIndex(Arrays.asList("c", "a"), false);
+        assertEquals("NULL|NULL|", exactCase.key(rows.get(0)));
+        assertTrue(exactCase.pkColumns(rows.get(0).columns).isEmpty());
+    }
+}
@@ -0,0 +1,35 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlParsersTest {
+
+    @Test
+    void testNormTokenCollapsesOnlyWhitespaceRuns() {
+        String plain = "NUMBER(10,0) NOT NULL";
+        assertSame(plain, SqlParsers.normToken(plain), "token needing no change is returned as is");
+        assertEquals("NUMBER(10,0) NOT NULL", SqlParsers.normToken("  NUMBER(10,0)\t NOT\n\nNULL "));
+        assertEquals("' a  b '", SqlParsers.normToken(" ' a  b ' "), "literals keep their whitespace");
+        assertEquals("", SqlParsers.normToken(" \t"));
+        assertEquals("", SqlParsers.normToken(null));
+        assertEquals("B C", SqlParsers.normToken("xA B\u000BCx", 2, 6));
+    }
+
+    @Test
+    void testSplitTopLevelCommaUsesBoundsIntoInput() {
+        String values = " 1, 'a, (b)', NVL(x, 2) ,  \"q,\"  , ";
+        int[] bounds = SqlParsers.topLevelCommaBounds(values, 0, values.length());
+        assertEquals(10, bounds.length);
+        assertEquals(" NVL(x, 2) ", values.substring(bounds[4], bounds[5]));
+        assertEquals("", values.substring(bounds[8], bounds[9]));
+
+        assertEquals(Arrays.asList("1", "'a, (b)'", "NVL(x, 2)", "\"q,\""), SqlParsers.splitTopLevelComma(values));
+        assertEquals(Arrays.asList("", "x"), SqlParsers.splitTopLevelComma(",x"));
+        assertTrue(SqlParsers.splitTopLevelComma("   ").isEmpty());
+        assertEquals(0, SqlParsers.topLevelCommaBounds("  ", 0, 2).length);
+    }
+}
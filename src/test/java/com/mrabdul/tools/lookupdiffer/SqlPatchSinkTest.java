@@ -0,0 +1,205 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+
+class SqlPatchSinkTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testStreamsGlobalAndPerTableFiles() throws Exception {
+        Path out = tempDir.resolve("out");
+        try (SqlPatchSink sink = new SqlPatchSink(out)) {
+            DiffFinding missing = new DiffFinding("TABLE_MISSING", "T1", "a.sql", 1, "missing");
+            missing.ddl = "CREATE TABLE T1 (ID NUMBER);";
+            sink.tableMissing(missing);
+            sink.schemaChange("ALTER TABLE T2 ADD (C NUMBER);");
+            sink.rowMissing(row("ROW_MISSING", "T1", "INSERT INTO T1 (ID) VALUES (1);"));
+            sink.rowMissing(row("ROW_MISSING", "T2", "INSERT INTO T2 (ID) VALUES (1);"));
+            sink.rowMismatch(row("ROW_MISMATCH", "T2", "UPDATE T2 SET C = 1 WHERE ID = 2;"));
+            // a later table whose name differs only in case appends to the same file
+            sink.rowMissing(row("ROW_MISSING", "t2", "INSERT INTO t2 (ID) VALUES (3);"));
+
+            // the first table's file is complete as soon as the diff moves on
+            assertEquals("-- Data patch: insert missing rows (SOURCE -> TARGET)\n\n-- Table: T1 (MISSING IN TARGET)\nINSERT INTO T1 (ID) VALUES (1);\n",
+                    read(out.resolve("t1_insert.sql")));
+            sink.finish();
+        }
+
+        assertEquals("-- Tables present in SOURCE but missing in TARGET\nCREATE TABLE T1 (ID NUMBER);\n", read(out.resolve("missing_tables.sql")));
+        assertEquals("-- Schema patch: add missing columns (SOURCE -> TARGET)\nALTER TABLE T2 ADD (C NUMBER);\n", read(out.resolve("schema_patch.sql")));
+        assertEquals("-- Data patch: insert missing rows (SOURCE -> TARGET)\n"
+                + "\n-- Table: T1 (MISSING IN TARGET)\nINSERT INTO T1 (ID) VALUES (1);\n"
+                + "\n-- Table: T2\nINSERT INTO T2 (ID) VALUES (1);\n"
+                + "\n-- Table: t2\nINSERT INTO t2 (ID) VALUES (3);\n", read(out.resolve("insert_patch.sql")));
+        assertEquals("-- Data patch: insert missing rows (SOURCE -> TARGET)\n"
+                + "\n-- Table: T2\nINSERT INTO T2 (ID) VALUES (1);\n"
+                + "\n-- Table: t2\nINSERT INTO t2 (ID) VALUES (3);\n", read(out.resolve("t2_insert.sql")));
+        assertEquals("-- Data patch: update mismatched rows (SOURCE -> TARGET)\n\n-- Table: T2\nUPDATE T2 SET C = 1 WHERE ID = 2;\n",
+                read(out.resolve("t2_update.sql")));
+        assertEquals("T1\n", read(out.resolve("created_tables.txt")));
+    }
+
+    @Test
+    void testWithoutOutDirWritesNothing() throws Exception {
+        try (SqlPatchSink sink = new SqlPatchSink(null)) {
+            sink.rowMissing(row("ROW_MISSING", "T1", "INSERT INTO T1 (ID) VALUES (1);"));
+        }
+        try (java.util.stream.Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testUnfinishedSinkLeavesNoPatchFiles() throws Exception {
+        Path out = tempDir.resolve("aborted");
+        SqlExportIndex idx = new SqlExportIndex();
+        SqlBytes text = SqlBytes.of("INSERT INTO T (ID) VALUES (1)");
+        new InsertRowParser("s.sql", true, null).parse(text, 0, text.length(), 1, idx);
+        try (SqlPatchSink sink = new SqlPatchSink(out, 2, 0)) {
+            DiffFinding missing = new DiffFinding("TABLE_MISSING", "T", "a.sql", 1, "missing");
+            sink.tableMissing(missing);
+            sink.rowMissing(linked(row("ROW_MISSING", "T", "INSERT INTO T (ID) VALUES (1);"), idx.rowsByTableKey.get("T").get(0), null));
+        }
+        try (java.util.stream.Stream<Path> files = Files.list(out)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testBatchesRowsIntoInsertAllAndMerge() throws Exception {
+        Path out = tempDir.resolve("batched");
+        SqlExportIndex idx = new SqlExportIndex();
+        InsertRowParser parser = new InsertRowParser("s.sql", true, null);
+        for (String sql : new String[] {
+                "INSERT INTO T (ID, VAL) VALUES (1, 'a')", "INSERT INTO T (ID, VAL) VALUES (2, 'b')",
+                "INSERT INTO T (ID, VAL) VALUES (3, 'c')", "INSERT INTO T (ID, VAL) VALUES (3, 'd')",
+                "INSERT INTO U (ID) VALUES (9)"}) {
+            SqlBytes text = SqlBytes.of(sql);
+            parser.parse(text, 0, text.length(), 1, idx);
+        }
+        List<SqlExportIndex.InsertRow> t = idx.rowsByTableKey.get("T");
+        BitSet pk = new BitSet();
+        pk.set(0);
+
+        try (SqlPatchSink sink = new SqlPatchSink(out, 2, 3)) {
+            for (SqlExportIndex.InsertRow r : t) sink.rowMissing(linked(row("ROW_MISSING", "T", r.getOriginalSql()), r, null));
+            sink.rowMissing(linked(row("ROW_MISSING", "U", "INSERT INTO U (ID) VALUES (9);"), idx.rowsByTableKey.get("U").get(0), null));
+            // the repeated key 3 starts a new MERGE
+            for (SqlExportIndex.InsertRow r : t) sink.rowMismatch(linked(row("ROW_MISMATCH", "T", "UPDATE ..."), r, pk));
+            sink.finish();
+        }
+
+        assertEquals("-- Data patch: insert missing rows (SOURCE -> TARGET)\n"
+                + "\n-- Table: T\n"
+                + "INSERT ALL\n  INTO T (ID, VAL) VALUES (1, 'a')\n  INTO T (ID, VAL) VALUES (2, 'b')\nSELECT 1 FROM DUAL;\n"
+                + "INSERT ALL\n  INTO T (ID, VAL) VALUES (3, 'c')\n  INTO T (ID, VAL) VALUES (3, 'd')\nSELECT 1 FROM DUAL;\n"
+                + "COMMIT;\n"
+                + "\n-- Table: U\n"
+                + "INSERT ALL\n  INTO U (ID) VALUES (9)\nSELECT 1 FROM DUAL;\nCOMMIT;\n", read(out.resolve("insert_patch.sql")));
+        assertEquals("-- Data patch: update mismatched rows (SOURCE -> TARGET)\n"
+                + "\n-- Table: T\n"
+                + "MERGE INTO T tgt\nUSING (\n  SELECT 1 AS ID, 'a' AS VAL FROM DUAL\n  UNION ALL SELECT 2 AS ID, 'b' AS VAL FROM DUAL\n) src\n"
+                + "ON (tgt.ID = src.ID)\nWHEN MATCHED THEN UPDATE SET tgt.VAL = src.VAL;\n"
+                + "MERGE INTO T tgt\nUSING (\n  SELECT 3 AS ID, 'c' AS VAL FROM DUAL\n) src\n"
+                + "ON (tgt.ID = src.ID)\nWHEN MATCHED THEN UPDATE SET tgt.VAL = src.VAL;\nCOMMIT;\n"
+                + "MERGE INTO T tgt\nUSING (\n  SELECT 3 AS ID, 'd' AS VAL FROM DUAL\n) src\n"
+                + "ON (tgt.ID = src.ID)\nWHEN MATCHED THEN UPDATE SET tgt.VAL = src.VAL;\nCOMMIT;\n", read(out.resolve("update_patch.sql")));
+        assertEquals(read(out.resolve("update_patch.sql")), read(out.resolve("t_update.sql")));
+    }
+
+    @Test
+    void testMergeSetsOnlyChangedColumns() throws Exception {
+        Path out = tempDir.resolve("changed");
+        SqlExportIndex idx = new SqlExportIndex();
+        InsertRowParser parser = new InsertRowParser("s.sql", true, null);
+        for (String sql : new String[] {
+                "INSERT INTO T (ID, A, B) VALUES (1, 'a', 'b')", "INSERT INTO T (ID, A, B) VALUES (2, 'a', 'b')",
+                "INSERT INTO T (ID, A, B) VALUES (3, 'a', 'b')"}) {
+            SqlBytes text = SqlBytes.of(sql);
+            parser.parse(text, 0, text.length(), 1, idx);
+        }
+        List<SqlExportIndex.InsertRow> t = idx.rowsByTableKey.get("T");
+        BitSet pk = new BitSet();
+        pk.set(0);
+        BitSet onlyB = new BitSet();
+        onlyB.set(2);
+
+        try (SqlPatchSink sink = new SqlPatchSink(out, 10, 0)) {
+            for (int r = 0; r < t.size(); r++) {
+                DiffFinding f = linked(row("ROW_MISMATCH", "T", "UPDATE ..."), t.get(r), pk);
+                // the third row changes A as well, so it gets its own MERGE
+                f.changedPositions = r < 2 ? onlyB : null;
+                sink.rowMismatch(f);
+            }
+            sink.finish();
+        }
+
+        assertEquals("-- Data patch: update mismatched rows (SOURCE -> TARGET)\n"
+                + "\n-- Table: T\n"
+                + "MERGE INTO T tgt\nUSING (\n  SELECT 1 AS ID, 'b' AS B FROM DUAL\n  UNION ALL SELECT 2 AS ID, 'b' AS B FROM DUAL\n) src\n"
+                + "ON (tgt.ID = src.ID)\nWHEN MATCHED THEN UPDATE SET tgt.B = src.B;\n"
+                + "MERGE INTO T tgt\nUSING (\n  SELECT 3 AS ID, 'a' AS A, 'b' AS B FROM DUAL\n) src\n"
+                + "ON (tgt.ID = src.ID)\nWHEN MATCHED THEN UPDATE SET tgt.A = src.A, tgt.B = src.B;\nCOMMIT;\n",
+                read(out.resolve("update_patch.sql")));
+    }
+
+    @Test
+    void testBatchesKeepQualifiedQuotedNames() throws Exception {
+        Path out = tempDir.resolve("quoted");
+        SqlExportIndex idx = new SqlExportIndex();
+        InsertRowParser parser = new InsertRowParser("s.sql", true, null);
+        for (String sql : new String[] {
+                "Insert into \"LOOKUP\".\"T\" (\"Id\", \"Col\") values (1, 'a')",
+                "Insert into \"LOOKUP\".\"T\" (\"Id\", \"Col\") values (2, 'b')"}) {
+            SqlBytes text = SqlBytes.of(sql);
+            parser.parse(text, 0, text.length(), 1, idx);
+        }
+        List<SqlExportIndex.InsertRow> t = idx.rowsByTableKey.get("T");
+        BitSet pk = new BitSet();
+        pk.set(0);
+
+        try (SqlPatchSink sink = new SqlPatchSink(out, 10, 0)) {
+            for (SqlExportIndex.InsertRow r : t) sink.rowMissing(linked(row("ROW_MISSING", "T", r.getOriginalSql()), r, null));
+            for (SqlExportIndex.InsertRow r : t) sink.rowMismatch(linked(row("ROW_MISMATCH", "T", "UPDATE ..."), r, pk));
+            sink.finish();
+        }
+
+        assertEquals("-- Data patch: insert missing rows (SOURCE -> TARGET)\n"
+                + "\n-- Table: T\n"
+                + "INSERT ALL\n  INTO \"LOOKUP\".\"T\" (\"Id\", \"Col\") VALUES (1, 'a')\n"
+                + "  INTO \"LOOKUP\".\"T\" (\"Id\", \"Col\") VALUES (2, 'b')\nSELECT 1 FROM DUAL;\nCOMMIT;\n",
+                read(out.resolve("insert_patch.sql")));
+        assertEquals("-- Data patch: update mismatched rows (SOURCE -> TARGET)\n"
+                + "\n-- Table: T\n"
+                + "MERGE INTO \"LOOKUP\".\"T\" tgt\nUSING (\n  SELECT 1 AS \"Id\", 'a' AS \"Col\" FROM DUAL\n"
+                + "  UNION ALL SELECT 2 AS \"Id\", 'b' AS \"Col\" FROM DUAL\n) src\n"
+                + "ON (tgt.\"Id\" = src.\"Id\")\nWHEN MATCHED THEN UPDATE SET tgt.\"Col\" = src.\"Col\";\nCOMMIT;\n",
+                read(out.resolve("update_patch.sql")));
+    }
+
+    private static DiffFinding linked(DiffFinding f, SqlExportIndex.InsertRow r, BitSet pk) {
+        f.sourceRow = r;
+        f.pkColumns = pk;
+        return f;
+    }
+
+    private static DiffFinding row(String kind, String table, String sql) {
+        DiffFinding f = new DiffFinding(kind, table, "f.sql", 1, kind);
+        f.insertSql = sql;
+        return f;
+    }
+
+    private static String read(Path p) throws Exception {
+        return new String(Files.readAllBytes(p), StandardCharsets.UTF_8);
+    }
+}
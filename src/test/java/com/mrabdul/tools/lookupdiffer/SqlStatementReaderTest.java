@@ -0,0 +1,60 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+class SqlStatementReaderTest {
+
+    @Test
+    void testMatchesSplitAndNormalize() throws Exception {
+        String sql = "--------------------------------------------------------\n" +
+                     "--  DDL for Table T1\n" +
+                     "--------------------------------------------------------\n" +
+                     "  CREATE TABLE \"T1\" \n" +
+                     "   (\t\"C1\" NUMBER, /* inline */\n" +
+                     "\t\"C2\" VARCHAR2(100)\n" +
+                     "   );\n" +
+                     "INSERT INTO T1 (C1, C2) VALUES (1, 'a;  b -- not a comment');\n" +
+                     "INSERT INTO T1 (C1, C2) VALUES (2, 'Line1\nLine2')";
+
+        List<String> expected = new ArrayList<String>();
+        for (String raw : SqlParsers.splitStatements(sql)) {
+            String n = SqlParsers.normalizeSql(raw);
+            if (!n.isEmpty()) expected.add(n);
+        }
+
+        List<String> actual = new ArrayList<String>();
+        try (SqlStatementReader reader = new SqlStatementReader(new StringReader(sql))) {
+            String s;
+            while ((s = reader.next()) != null) actual.add(s);
+        }
+
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testStatementLines() throws Exception {
+        String sql = "-- header\n" +
+                     "\n" +
+                     "CREATE TABLE T1 (C1 NUMBER);\n" +
+                     "INSERT INTO T1 (C1) VALUES (1); -- trailing\n" +
+                     "INSERT INTO T1 (C1)\n" +
+                     "  VALUES ('x\ny');\n" +
+                     "INSERT INTO T1 (C1) VALUES (3);\n";
+
+        List<Integer> lines = new ArrayList<Integer>();
+        try (SqlStatementReader reader = new SqlStatementReader(new StringReader(sql))) {
+            while (reader.next() != null) lines.add(reader.getStatementLine());
+        }
+
+        assertEquals(4, lines.size());
+        assertEquals(Integer.valueOf(3), lines.get(0));
+        assertEquals(Integer.valueOf(4), lines.get(1));
+        assertEquals(Integer.valueOf(5), lines.get(2));
+        assertEquals(Integer.valueOf(8), lines.get(3));
+    }
+}
@@ -0,0 +1,64 @@
+package com.mrabdul.tools.lookupdiffer;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+class ValueDictionaryTest {
+
+    @Test
+    void testEqualValuesShareIdsPerColumn() {
+        ValueDictionary dict = new ValueDictionary(ValueDictionary.DEFAULT_BUDGET_BYTES);
+        List<String> layout = Arrays.asList("ID", "FLAG", "CODE");
+        ValueDictionary.Column[] cols = dict.columns("T", layout);
+        assertSame(cols, dict.columns("T", Arrays.asList("ID", "FLAG", "CODE")));
+        assertSame(cols[1], dict.columns("T", Arrays.asList("FLAG"))[0], "a column keeps its ids across column lists");
+
+        int[] a = encode(dict, cols, "1, 'Y', 'A'");
+        int[] b = encode(dict, cols, " 2 ,'Y' , 'Y'");
+        assertEquals(a[1], b[1]);
+        assertEquals(1, b[2], "ids are per column: 'Y' is CODE's second value but FLAG's first");
+        assertEquals(ValueDictionary.DIFFERENT, ValueDictionary.sameIds(a, b));
+        assertEquals(ValueDictionary.SAME, ValueDictionary.sameIds(a, encode(dict, cols, "1 , 'Y' ,'A'")));
+        assertNull(encode(dict, cols, "1, 'Y'"), "token count must match the columns");
+        assertArrayEquals(new String[] {"2", "'Y'", "'Y'"}, ValueDictionary.values(cols, b));
+    }
+
+    @Test
+    void testLongValuesAreDecidedOnNormalizedText() {
+        ValueDictionary dict = new ValueDictionary(ValueDictionary.DEFAULT_BUDGET_BYTES);
+        ValueDictionary.Column[] cols = dict.columns("T", Arrays.asList("V"));
+        char[] fill = new char[ValueDictionary.MAX_VALUE_BYTES - 20];
+        Arrays.fill(fill, 'x');
+        String body = new String(fill);
+
+        // raw text longer than the limit, normalized text within it
+        int[] spaced = encode(dict, cols, "NVL(          '" + body + "',      1)");
+        int[] tight = encode(dict, cols, "NVL( '" + body + "', 1)");
+        assertEquals(ValueDictionary.SAME, ValueDictionary.sameIds(spaced, tight));
+        assertNotEquals(ValueDictionary.NOT_ENCODED, tight[0]);
+
+        int[] tooLong = encode(dict, cols, "'" + body + body + "'");
+        assertEquals(ValueDictionary.NOT_ENCODED, tooLong[0]);
+        assertEquals(ValueDictionary.UNDECIDED, ValueDictionary.sameIds(tooLong, encode(dict, cols, "'other" + body + body + "'")));
+        assertNull(ValueDictionary.values(cols, tooLong));
+    }
+
+    @Test
+    void testFullDictionaryStopsAddingButKeepsIds() {
+        ValueDictionary dict = new ValueDictionary(300);
+        ValueDictionary.Column[] cols = dict.columns("T", Arrays.asList("V"));
+        int first = encode(dict, cols, "'a'")[0];
+        assertNotEquals(ValueDictionary.NOT_ENCODED, first);
+        for (int i = 0; i < 10; i++) encode(dict, cols, "'v" + i + "'");
+        assertEquals(ValueDictionary.NOT_ENCODED, encode(dict, cols, "'late'")[0]);
+        assertEquals(first, encode(dict, cols, "'a'")[0]);
+    }
+
+    private static int[] encode(ValueDictionary dict, ValueDictionary.Column[] cols, String values) {
+        SqlBytes text = SqlBytes.of(values);
+        return dict.encode(cols, new ValueTupleCursor().reset(text, 0, text.length()));
+    }
+}